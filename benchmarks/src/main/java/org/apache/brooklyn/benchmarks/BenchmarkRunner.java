@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.brooklyn.util.collections.MutableList;
+
+/**
+ * Runs the benchmarks in this module, as {@link org.openjdk.jmh.Main} does, but by default also writes
+ * the results as JSON (to {@code target/jmh-result.json}, or the file given by the system property
+ * {@value #RESULT_FILE_PROPERTY}) so they can be compared between builds.
+ * <p>
+ * Arguments are passed on to JMH, e.g. a regex of the benchmarks to run and {@code -p subscribers=1,100};
+ * results are not written by default if {@code -rf} or {@code -rff} is given.
+ */
+public class BenchmarkRunner {
+
+    public static final String RESULT_FILE_PROPERTY = "brooklyn.benchmarks.resultFile";
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(withResultFile(args));
+    }
+
+    static String[] withResultFile(String[] args) {
+        List<String> argsList = Arrays.asList(args);
+        if (argsList.contains("-rf") || argsList.contains("-rff") || argsList.contains("-h") || argsList.contains("-l")) {
+            return args;
+        }
+        File resultFile = new File(System.getProperty(RESULT_FILE_PROPERTY, "target/jmh-result.json"));
+        if (resultFile.getParentFile() != null) {
+            resultFile.getParentFile().mkdirs();
+        }
+        List<String> result = MutableList.of("-rf", "json", "-rff", resultFile.getPath());
+        result.addAll(argsList);
+        return result.toArray(new String[result.size()]);
+    }
+}
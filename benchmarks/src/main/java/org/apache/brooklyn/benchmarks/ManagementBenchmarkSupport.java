@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.benchmarks;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark state with a (non-persisting, non-OSGi) management context and an application,
+ * created once per trial, as {@code BrooklynAppUnitTestSupport} does for tests.
+ */
+@State(Scope.Benchmark)
+public abstract class ManagementBenchmarkSupport {
+
+    protected LocalManagementContext mgmt;
+    protected TestApplication app;
+
+    @Setup(Level.Trial)
+    public void setUpManagement() throws Exception {
+        mgmt = LocalManagementContextForTests.newInstance(getBrooklynProperties());
+        app = mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+        setUp();
+    }
+
+    /** The properties for the management context; by default none. */
+    protected BrooklynProperties getBrooklynProperties() {
+        return BrooklynProperties.Factory.newEmpty();
+    }
+
+    /** Called after the management context and application are created. */
+    protected void setUp() throws Exception {
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownManagement() throws Exception {
+        if (mgmt != null) Entities.destroyAll(mgmt);
+        mgmt = null;
+        app = null;
+    }
+}
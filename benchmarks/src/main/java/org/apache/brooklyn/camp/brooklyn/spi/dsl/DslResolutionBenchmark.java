@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.camp.brooklyn.spi.dsl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.camp.brooklyn.BrooklynCampConstants;
+import org.apache.brooklyn.camp.brooklyn.spi.dsl.methods.BrooklynDslCommon;
+import org.apache.brooklyn.camp.brooklyn.spi.dsl.parse.DslParser;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing {@code $brooklyn:} DSL expressions (afresh, and as cached for blueprints), and resolving DSL values
+ * immediately (as done for {@code config().getNonBlocking()} and for entity config which is DSL), including
+ * finding another entity by its plan id. Resolutions are done in batches within one task of the context entity,
+ * as the DSL looks up the entity from the current task.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class DslResolutionBenchmark extends ManagementBenchmarkSupport {
+
+    private static final int RESOLUTIONS_PER_INVOCATION = 100;
+
+    private static final String EXPRESSION = "entity(\"sibling\").config(\"benchmark.key\")";
+
+    public static final ConfigKey<String> KEY = ConfigKeys.newStringConfigKey("benchmark.key");
+
+    private TestEntity entity;
+    private BrooklynDslDeferredSupplier<?> configDsl;
+    private BrooklynDslDeferredSupplier<?> componentConfigDsl;
+    private BrooklynDslDeferredSupplier<?> attributeDsl;
+
+    @Override
+    protected void setUp() throws Exception {
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(BrooklynCampConstants.PLAN_ID, "self")
+                .configure(KEY, "own value"));
+        // some other entities for the lookup by id to skip over
+        for (int i = 0; i < 10; i++) {
+            app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                    .configure(BrooklynCampConstants.PLAN_ID, "other"+i));
+        }
+        app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(BrooklynCampConstants.PLAN_ID, "sibling")
+                .configure(KEY, "sibling value"));
+        entity.sensors().set(TestEntity.NAME, "name");
+
+        configDsl = BrooklynDslCommon.config(KEY.getName());
+        componentConfigDsl = (BrooklynDslDeferredSupplier<?>) parseAndEvaluate();
+        attributeDsl = BrooklynDslCommon.attributeWhenReady(TestEntity.NAME.getName());
+    }
+
+    @Benchmark
+    public Object parse() {
+        return new DslParser(EXPRESSION).parse();
+    }
+
+    @Benchmark
+    public Object parseCached() {
+        return DslParser.parseCached(EXPRESSION);
+    }
+
+    @Benchmark
+    public Object parseAndEvaluate() {
+        return new BrooklynDslInterpreter().evaluate(DslParser.parseCached(EXPRESSION), true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RESOLUTIONS_PER_INVOCATION)
+    public Object resolveConfig() throws Exception {
+        return resolveInEntityTask(configDsl);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RESOLUTIONS_PER_INVOCATION)
+    public Object resolveComponentConfig() throws Exception {
+        return resolveInEntityTask(componentConfigDsl);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RESOLUTIONS_PER_INVOCATION)
+    public Object resolveAttributeWhenReady() throws Exception {
+        return resolveInEntityTask(attributeDsl);
+    }
+
+    private Object resolveInEntityTask(final BrooklynDslDeferredSupplier<?> dsl) throws Exception {
+        return ((EntityInternal) entity).getExecutionContext().submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Object result = null;
+                for (int i = 0; i < RESOLUTIONS_PER_INVOCATION; i++) {
+                    result = Tasks.resolving(dsl).as(String.class)
+                            .context(entity)
+                            .immediately(true)
+                            .getMaybe()
+                            .get();
+                }
+                return result;
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.config;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Config lookups: in a {@link ConfigBag} (including one extending another), and on an entity at the bottom
+ * of a chain of {@link #depth} ancestors, for a key set locally, a key inherited from the application,
+ * and a key set nowhere (so falling back to its default after checking every ancestor).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ConfigLookupBenchmark extends ManagementBenchmarkSupport {
+
+    private static final int BAG_SIZE = 20;
+
+    public static final ConfigKey<String> LOCAL_KEY = ConfigKeys.newStringConfigKey("benchmark.local");
+    public static final ConfigKey<String> INHERITED_KEY = ConfigKeys.newStringConfigKey("benchmark.inherited");
+    public static final ConfigKey<String> DEFAULTED_KEY = ConfigKeys.newStringConfigKey("benchmark.defaulted", "", "default");
+
+    @Param({"1", "5"})
+    public int depth;
+
+    private ConfigBag bag;
+    private ConfigBag extendingBag;
+    private ConfigKey<String> bagKey;
+    private Entity leaf;
+
+    @Override
+    protected void setUp() throws Exception {
+        Map<String, Object> values = MutableMap.of();
+        for (int i = 0; i < BAG_SIZE; i++) {
+            values.put("benchmark.key"+i, "val"+i);
+        }
+        bag = ConfigBag.newInstance(values);
+        extendingBag = ConfigBag.newInstanceExtending(bag, MutableMap.of("benchmark.other", "val"));
+        bagKey = ConfigKeys.newStringConfigKey("benchmark.key"+(BAG_SIZE / 2));
+
+        app.config().set(INHERITED_KEY, "inherited");
+        Entity parent = app;
+        for (int i = 0; i < depth; i++) {
+            parent = parent.addChild(EntitySpec.create(TestEntity.class));
+        }
+        leaf = parent;
+        leaf.config().set(LOCAL_KEY, "local");
+    }
+
+    @Benchmark
+    public String configBagGet() {
+        return bag.get(bagKey);
+    }
+
+    @Benchmark
+    public String configBagExtendingGet() {
+        return extendingBag.get(bagKey);
+    }
+
+    @Benchmark
+    public String entityLocalGet() {
+        return leaf.config().get(LOCAL_KEY);
+    }
+
+    @Benchmark
+    public String entityInheritedGet() {
+        return leaf.config().get(INHERITED_KEY);
+    }
+
+    @Benchmark
+    public String entityDefaultedGet() {
+        return leaf.config().get(DEFAULTED_KEY);
+    }
+}
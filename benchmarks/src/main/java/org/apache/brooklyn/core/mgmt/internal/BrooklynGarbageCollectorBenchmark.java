@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A full {@link BrooklynGarbageCollector#gcIteration()} over completed tasks of a number of entities,
+ * all of which are over the per-tag limit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class BrooklynGarbageCollectorBenchmark extends ManagementBenchmarkSupport {
+
+    private static final int ENTITY_COUNT = 10;
+
+    @Param({"1000", "10000"})
+    public int taskCount;
+
+    private List<List<Object>> tagsPerEntity;
+    private final Callable<Integer> job = new Callable<Integer>() {
+        @Override
+        public Integer call() {
+            return 1;
+        }
+    };
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = super.getBrooklynProperties();
+        result.put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 50);
+        result.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_DAY);
+        return result;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        tagsPerEntity = MutableList.of();
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+            tagsPerEntity.add(ImmutableList.<Object>of(BrooklynTaskTags.tagForContextEntity(entity), "benchmark"));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void submitTasks() throws Exception {
+        List<Task<Integer>> tasks = MutableList.of();
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(mgmt.getExecutionManager().submit(MutableMap.of("tags", tagsPerEntity.get(i % ENTITY_COUNT)), job));
+        }
+        for (Task<Integer> task : tasks) {
+            task.get();
+        }
+    }
+
+    @Benchmark
+    public void gcIteration() {
+        mgmt.getGarbageCollector().gcIteration();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.SubscriptionManager;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.core.sensor.BasicSensorEvent;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publishing sensor events through the {@link LocalSubscriptionManager} to a number of subscribers,
+ * measured per published event, up to when all subscribers have received it
+ * (as delivery is asynchronous, measuring only the publish would let undelivered events pile up).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class LocalSubscriptionManagerBenchmark extends ManagementBenchmarkSupport {
+
+    private static final int EVENTS_PER_INVOCATION = 100;
+
+    @Param({"1", "10", "100"})
+    public int subscribers;
+
+    private SubscriptionManager subscriptionManager;
+    private TestEntity entity;
+    private TestEntity otherEntity;
+    private final AtomicLong delivered = new AtomicLong();
+    private long expected;
+    private int next;
+
+    @Override
+    protected void setUp() throws Exception {
+        subscriptionManager = mgmt.getSubscriptionManager();
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        otherEntity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        SensorEventListener<Integer> listener = new SensorEventListener<Integer>() {
+            @Override
+            public void onEvent(SensorEvent<Integer> event) {
+                delivered.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < subscribers; i++) {
+            subscriptionManager.subscribe(entity, TestEntity.SEQUENCE, listener);
+        }
+        // subscriptions to another producer, which publishing must skip over
+        for (int i = 0; i < subscribers; i++) {
+            subscriptionManager.subscribe(otherEntity, TestEntity.SEQUENCE, listener);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public long publishAndDeliver() {
+        for (int i = 0; i < EVENTS_PER_INVOCATION; i++) {
+            subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, next++));
+        }
+        expected += EVENTS_PER_INVOCATION * subscribers;
+        while (delivered.get() < expected) {
+            Thread.yield();
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.Memento;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.rebind.dto.MementosGenerators;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializing and deserializing an entity memento (with some config and attributes),
+ * with the {@link XmlMementoSerializer} and the {@link CompactMementoSerializer},
+ * as done for each changed entity when persisting and for each entity when rebinding.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class XmlMementoSerializerBenchmark extends ManagementBenchmarkSupport {
+
+    @Param({"xml", "compact"})
+    public String format;
+
+    private XmlMementoSerializer<Object> serializer;
+    private Memento memento;
+    private String serialized;
+
+    @Override
+    protected void setUp() throws Exception {
+        ClassLoader classLoader = XmlMementoSerializerBenchmark.class.getClassLoader();
+        serializer = "compact".equals(format)
+                ? new CompactMementoSerializer<Object>(classLoader)
+                : new XmlMementoSerializer<Object>(classLoader);
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(TestEntity.CONF_NAME, "myname"));
+        for (int i = 0; i < 10; i++) {
+            entity.sensors().set(Sensors.newStringSensor("mysensor"+i), "valsensor"+i);
+        }
+        memento = MementosGenerators.newBasicMemento(Entities.deproxy(entity));
+        serialized = serializer.toString(memento);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return serializer.toString(memento);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.fromString(serialized);
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        return serializer.fromString(serializer.toString(memento));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.sensor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.core.entity.AbstractEntity;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Setting and reading attributes in an {@link AttributeMap}, with either backing store,
+ * for maps of different sizes; {@link #update()} also publishes the change (with no subscribers).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class AttributeMapBenchmark extends ManagementBenchmarkSupport {
+
+    @Param({"synchronized", "concurrent"})
+    public String storage;
+
+    @Param({"10", "1000"})
+    public int attributeCount;
+
+    private AttributeMap attributeMap;
+    private List<AttributeSensor<Integer>> sensors;
+    private int next;
+
+    @Override
+    protected void setUp() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        AbstractEntity realEntity = Entities.deproxy(entity);
+        attributeMap = "concurrent".equals(storage) ? AttributeMap.newConcurrentInstance(realEntity) : new AttributeMap(realEntity);
+        sensors = MutableList.of();
+        for (int i = 0; i < attributeCount; i++) {
+            AttributeSensor<Integer> sensor = Sensors.newIntegerSensor("benchmark.sensor"+i);
+            sensors.add(sensor);
+            attributeMap.updateWithoutPublishing(sensor, i);
+        }
+    }
+
+    private AttributeSensor<Integer> nextSensor() {
+        next = (next + 1) % attributeCount;
+        return sensors.get(next);
+    }
+
+    @Benchmark
+    public Integer getValue() {
+        return attributeMap.getValue(nextSensor());
+    }
+
+    @Benchmark
+    public Integer updateWithoutPublishing() {
+        return attributeMap.updateWithoutPublishing(nextSensor(), next);
+    }
+
+    @Benchmark
+    public Integer update() {
+        return attributeMap.update(nextSensor(), next);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer getValueContended() {
+        // sensor chosen per thread so threads read different attributes
+        return attributeMap.getValue(sensors.get((int) (Thread.currentThread().getId() % attributeCount)));
+    }
+}
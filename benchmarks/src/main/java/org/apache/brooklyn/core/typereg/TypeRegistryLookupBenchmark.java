@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.typereg;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.typereg.RegisteredType;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Type registry lookups in a catalog of {@link #catalogSize} types (a quarter of them locations,
+ * the rest entities, each name with {@link #VERSIONS} versions): the best version of a name,
+ * all versions of a name, an alias, a tag, and all types of a java super-type.
+ * (Matches are counted, as the registry returns lazy iterables.)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class TypeRegistryLookupBenchmark extends ManagementBenchmarkSupport {
+
+    private static final int VERSIONS = 4;
+
+    @Param({"100", "1000", "4000"})
+    public int catalogSize;
+
+    private BasicBrooklynTypeRegistry registry;
+    private String name;
+    private String alias;
+    private String tag;
+
+    @Override
+    protected void setUp() throws Exception {
+        registry = (BasicBrooklynTypeRegistry) mgmt.getTypeRegistry();
+        for (int i = 0; i < catalogSize; i++) {
+            Class<?> superType = (i % 4 == 0) ? Location.class : Entity.class;
+            RegisteredType type = RegisteredTypes.spec("benchmark.type"+(i / VERSIONS), "1."+(i % VERSIONS),
+                    new BasicTypeImplementationPlan("benchmark", null), superType);
+            RegisteredTypes.addAliases(type, MutableList.of("benchmark.alias"+i));
+            RegisteredTypes.addTags(type, MutableList.of("benchmark.tag"+(i % 10)));
+            registry.addToLocalUnpersistedTypeRegistry(type, false);
+        }
+        int middle = catalogSize / 2;
+        name = "benchmark.type"+(middle / VERSIONS);
+        alias = "benchmark.alias"+middle;
+        tag = "benchmark.tag"+(middle % 10);
+    }
+
+    @Benchmark
+    public RegisteredType getBestVersion() {
+        return registry.get(name);
+    }
+
+    @Benchmark
+    public int getMatchingSymbolicName() {
+        return Iterables.size(registry.getMatching(RegisteredTypePredicates.symbolicName(name)));
+    }
+
+    @Benchmark
+    public RegisteredType getAlias() {
+        return registry.get(alias);
+    }
+
+    @Benchmark
+    public int getMatchingTag() {
+        return Iterables.size(registry.getMatching(RegisteredTypePredicates.tag(tag)));
+    }
+
+    @Benchmark
+    public int getMatchingSubtypeOf() {
+        return Iterables.size(registry.getMatching(RegisteredTypePredicates.subtypeOf(Location.class)));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
+import org.apache.brooklyn.benchmarks.ManagementBenchmarkSupport;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.mgmt.internal.BrooklynGarbageCollector;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Submitting tasks to the {@link BasicExecutionManager} and waiting for them, with the tags an entity's tasks
+ * would have, so including the cost of the {@link BrooklynGarbageCollector} keeping them within the per-tag limit
+ * (incrementally as they complete, or when collecting, which is done here after each iteration).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class BasicExecutionManagerBenchmark extends ManagementBenchmarkSupport {
+
+    @Param({"false", "true"})
+    public boolean incrementalGc;
+
+    private ExecutionManager executionManager;
+    private List<Object> tags;
+    private final Callable<Integer> job = new Callable<Integer>() {
+        @Override
+        public Integer call() {
+            return 1;
+        }
+    };
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = super.getBrooklynProperties();
+        result.put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 50);
+        result.put(BrooklynGarbageCollector.INCREMENTAL, incrementalGc);
+        // only collect when told to, so each iteration measures the same work
+        result.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_DAY);
+        return result;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        executionManager = mgmt.getExecutionManager();
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        tags = ImmutableList.<Object>of(BrooklynTaskTags.tagForContextEntity(entity), "benchmark");
+    }
+
+    @TearDown(Level.Iteration)
+    public void collectTasks() {
+        mgmt.getGarbageCollector().gcIteration();
+    }
+
+    @Benchmark
+    public Integer submitAndGet() throws Exception {
+        return executionManager.submit(MutableMap.of("tags", tags), job).get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer submitAndGetContended() throws Exception {
+        return executionManager.submit(MutableMap.of("tags", tags), job).get();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Runnables;
+
+/**
+ * Submitting tasks from 64 threads to a {@link BasicExecutionManager} whose tag index already holds
+ * 100k (completed but retained) tasks, some of them with the same tag as the submitted tasks,
+ * while also reading the tasks with a tag, so measuring contention on the tag index.
+ * There is no garbage collector; the submitted tasks are deleted after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class BasicExecutionManagerTagIndexBenchmark {
+
+    private static final int NUM_LIVE_TASKS = 100*1000;
+    private static final String SUBMITTED_TAG = "submitted";
+
+    private BasicExecutionManager executionManager;
+    private final Map<String, ?> flags = MutableMap.of("tags", ImmutableList.of("live", SUBMITTED_TAG));
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        executionManager = new BasicExecutionManager("benchmark");
+        // populate the tag index with completed-but-retained tasks, spread over a few tags
+        List<Task<?>> liveTasks = Lists.newArrayListWithCapacity(NUM_LIVE_TASKS);
+        for (int i = 0; i < NUM_LIVE_TASKS; i++) {
+            liveTasks.add(executionManager.submit(MutableMap.of("tags", ImmutableList.of("live", "live-"+(i % 100))), Runnables.doNothing()));
+        }
+        for (Task<?> t : liveTasks) t.blockUntilEnded();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteSubmittedTasks() {
+        for (Task<?> t : executionManager.getTasksWithTag(SUBMITTED_TAG)) t.blockUntilEnded();
+        executionManager.deleteTag(SUBMITTED_TAG);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executionManager != null) executionManager.shutdownNow();
+        executionManager = null;
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Set<Task<?>> submitWithManyLiveTasks() {
+        executionManager.submit(flags, Runnables.doNothing());
+        return executionManager.getTasksWithTag("live-0");
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.javalang.coerce;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.time.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coercions with the default {@link TypeCoercerExtensible}: to a primitive, with a generic coercer
+ * (string to number), with a registry adapter (string to {@link Duration}), and one which fails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class TypeCoercionBenchmark {
+
+    private final TypeCoercerExtensible coercer = TypeCoercerExtensible.newDefault();
+
+    @Benchmark
+    public int coerceToPrimitive() {
+        return coercer.coerce(42L, int.class);
+    }
+
+    @Benchmark
+    public Integer coerceStringToInteger() {
+        return coercer.coerce("42", Integer.class);
+    }
+
+    @Benchmark
+    public Duration coerceStringToDuration() {
+        return coercer.coerce("5m", Duration.class);
+    }
+
+    @Benchmark
+    public Maybe<Thread> coerceFailing() {
+        return coercer.tryCoerce("42", Thread.class);
+    }
+}
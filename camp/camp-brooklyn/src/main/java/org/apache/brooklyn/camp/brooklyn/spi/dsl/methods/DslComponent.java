@@ -20,10 +20,16 @@ package org.apache.brooklyn.camp.brooklyn.spi.dsl.methods;
 
 import static org.apache.brooklyn.camp.brooklyn.spi.dsl.DslUtils.resolved;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 
+import javax.annotation.Nullable;
+
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
@@ -75,6 +81,9 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
     private final DeferredSupplier<?> componentIdSupplier;
     private final DslComponent scopeComponent;
     private final Scope scope;
+    
+    /** entities found by id in the scope, remembered until the entity tree changes */
+    private transient volatile ResolvedEntities resolvedEntities;
 
     /**
      * Checks the type of {@code componentId} to create the right kind of {@link DslComponent}
@@ -175,7 +184,7 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
     
     @Override
     public final Maybe<Entity> getImmediately() {
-        return new EntityInScopeFinder(scopeComponent, scope, componentId, componentIdSupplier).getImmediately();
+        return new EntityInScopeFinder(this).getImmediately();
     }
 
     @Override
@@ -183,17 +192,52 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
         return TaskBuilder.<Entity>builder()
                 .displayName(toString())
                 .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
-                .body(new EntityInScopeFinder(scopeComponent, scope, componentId, componentIdSupplier))
+                .body(new EntityInScopeFinder(this))
                 .build();
     }
     
+    /**
+     * Entities found by a {@link DslComponent} in its scope, keyed by the context entity, the entity the scope
+     * is relative to, and the component id; valid only for one {@link EntityManagerInternal#getEntityTreeGeneration()
+     * generation} of the entity tree.
+     */
+    private static class ResolvedEntities {
+        final long generation;
+        final ConcurrentMap<List<String>, Entity> entities = new ConcurrentHashMap<List<String>, Entity>();
+        
+        ResolvedEntities(long generation) {
+            this.generation = generation;
+        }
+    }
+    
+    private ResolvedEntities getResolvedEntities(long generation) {
+        ResolvedEntities result = resolvedEntities;
+        if (result==null || result.generation!=generation) {
+            result = new ResolvedEntities(generation);
+            resolvedEntities = result;
+        }
+        return result;
+    }
+    
     protected static class EntityInScopeFinder implements Callable<Entity>, ImmediateSupplier<Entity> {
+        /** the component whose entity is being found, to remember what is found in; may be null */
+        @Nullable
+        protected final DslComponent component;
         protected final DslComponent scopeComponent;
         protected final Scope scope;
         protected final String componentId;
         protected final DeferredSupplier<?> componentIdSupplier;
         
+        public EntityInScopeFinder(DslComponent component) {
+            this(component, component.scopeComponent, component.scope, component.componentId, component.componentIdSupplier);
+        }
+        
         public EntityInScopeFinder(DslComponent scopeComponent, Scope scope, String componentId, DeferredSupplier<?> componentIdSupplier) {
+            this(null, scopeComponent, scope, componentId, componentIdSupplier);
+        }
+        
+        private EntityInScopeFinder(DslComponent component, DslComponent scopeComponent, Scope scope, String componentId, DeferredSupplier<?> componentIdSupplier) {
+            this.component = component;
             this.scopeComponent = scopeComponent;
             this.scope = scope;
             this.componentId = componentId;
@@ -242,34 +286,21 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
             }
             EntityInternal entity = (EntityInternal) entityMaybe.get();
             
-            Iterable<Entity> entitiesToSearch = null;
-            Predicate<Entity> notSelfPredicate = Predicates.not(Predicates.<Entity>equalTo(entity));
-
             switch (scope) {
                 case THIS:
                     return Maybe.<Entity>of(entity);
                 case PARENT:
                     return Maybe.<Entity>of(entity.getParent());
-                case GLOBAL:
-                    entitiesToSearch = ((EntityManagerInternal)entity.getManagementContext().getEntityManager())
-                        .getAllEntitiesInApplication( entity().getApplication() );
-                    break;
                 case ROOT:
                     return Maybe.<Entity>of(entity.getApplication());
                 case SCOPE_ROOT:
                     return Maybe.<Entity>of(Entities.catalogItemScopeRoot(entity));
+                case GLOBAL:
                 case DESCENDANT:
-                    entitiesToSearch = Entities.descendantsWithoutSelf(entity);
-                    break;
                 case ANCESTOR:
-                    entitiesToSearch = Entities.ancestorsWithoutSelf(entity);
-                    break;
                 case SIBLING:
-                    entitiesToSearch = entity.getParent().getChildren();
-                    entitiesToSearch = Iterables.filter(entitiesToSearch, notSelfPredicate);
-                    break;
                 case CHILD:
-                    entitiesToSearch = entity.getChildren();
+                    // searched below
                     break;
                 default:
                     throw new IllegalStateException("Unexpected scope "+scope);
@@ -296,7 +327,7 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 
                 // Support being passed an explicit entity via the DSL
                 if (maybeComponentId.get() instanceof BrooklynObject) {
-                    if (Iterables.contains(entitiesToSearch, maybeComponentId.get())) {
+                    if (Iterables.contains(getEntitiesToSearch(entity), maybeComponentId.get())) {
                         return Maybe.of((Entity)maybeComponentId.get());
                     } else {
                         throw new IllegalStateException("Resolved component " + maybeComponentId.get() + " is not in scope '" + scope + "' wrt " + entity);
@@ -313,14 +344,9 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 desiredComponentId = componentId;
             }
             
-            Optional<Entity> result = Iterables.tryFind(entitiesToSearch, EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, desiredComponentId));
-            if (result.isPresent()) {
-                return Maybe.of(result.get());
-            }
-            
-            result = Iterables.tryFind(entitiesToSearch, EntityPredicates.idEqualTo(desiredComponentId));
-            if (result.isPresent()) {
-                return Maybe.of(result.get());
+            Entity result = findInScope(entity, desiredComponentId);
+            if (result != null) {
+                return Maybe.of(result);
             }
             
             // could be nice if DSL has an extra .block() method to allow it to wait for a matching entity.
@@ -330,6 +356,52 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 (scopeComponent!=null ? " ("+scopeComponent+" from "+entity()+")" : ""))));
         }
         
+        protected Iterable<Entity> getEntitiesToSearch(EntityInternal entity) {
+            switch (scope) {
+                case GLOBAL:
+                    return ((EntityManagerInternal)entity.getManagementContext().getEntityManager())
+                        .getAllEntitiesInApplication( entity().getApplication() );
+                case DESCENDANT:
+                    return Entities.descendantsWithoutSelf(entity);
+                case ANCESTOR:
+                    return Entities.ancestorsWithoutSelf(entity);
+                case SIBLING:
+                    Predicate<Entity> notSelfPredicate = Predicates.not(Predicates.<Entity>equalTo(entity));
+                    return Iterables.filter(entity.getParent().getChildren(), notSelfPredicate);
+                case CHILD:
+                    return entity.getChildren();
+                default:
+                    throw new IllegalStateException("Unexpected scope for search "+scope);
+            }
+        }
+        
+        /**
+         * Finds the entity in scope with the given plan id, or else with the given entity id, or returns null.
+         * What is found is remembered in the {@link #component} until the entity tree changes,
+         * as searching (especially the whole application, for {@link Scope#GLOBAL}) is expensive.
+         */
+        @Nullable
+        protected Entity findInScope(EntityInternal entity, String desiredComponentId) {
+            long generation = ((EntityManagerInternal)entity.getManagementContext().getEntityManager()).getEntityTreeGeneration();
+            ResolvedEntities resolved = (component!=null && generation>=0) ? component.getResolvedEntities(generation) : null;
+            Entity contextEntity = entity();
+            List<String> key = Arrays.asList(contextEntity==null ? null : contextEntity.getId(), entity.getId(), desiredComponentId);
+            Entity result = (resolved!=null) ? resolved.entities.get(key) : null;
+            if (result != null) {
+                return result;
+            }
+            
+            Iterable<Entity> entitiesToSearch = getEntitiesToSearch(entity);
+            Optional<Entity> found = Iterables.tryFind(entitiesToSearch, EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, desiredComponentId));
+            if (!found.isPresent()) {
+                found = Iterables.tryFind(entitiesToSearch, EntityPredicates.idEqualTo(desiredComponentId));
+            }
+            if (found.isPresent() && resolved!=null) {
+                resolved.entities.put(key, found.get());
+            }
+            return found.orNull();
+        }
+        
         private ExecutionContext getExecutionContext() {
             return findExecutionContext(this);
         }
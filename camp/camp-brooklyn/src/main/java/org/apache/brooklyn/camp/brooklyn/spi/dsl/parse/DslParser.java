@@ -20,10 +20,21 @@ package org.apache.brooklyn.camp.brooklyn.spi.dsl.parse;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.brooklyn.util.collections.MutableList;
 
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+
 public class DslParser {
+    
+    /** The number of expressions remembered by {@link #parseCached(String)}, after which they are all forgotten. */
+    private static final int MAX_CACHED_EXPRESSIONS = 10000;
+    
+    private static final ConcurrentMap<String, Object> PARSED = new ConcurrentHashMap<String, Object>();
+    
     private final String expression;
     int index = -1;
     
@@ -31,6 +42,22 @@ public class DslParser {
         this.expression = expression;
     }
     
+    /**
+     * Parses the expression as per {@link #parse()}, or returns the result of a previous parse of the same
+     * expression (which can be shared, as the parse results are immutable).
+     * Expressions which fail to parse are not remembered.
+     */
+    @Beta
+    public static Object parseCached(String expression) {
+        Object result = PARSED.get(expression);
+        if (result==null) {
+            result = new DslParser(expression).parse();
+            if (PARSED.size() >= MAX_CACHED_EXPRESSIONS) PARSED.clear();
+            PARSED.put(expression, result);
+        }
+        return result;
+    }
+    
     public synchronized Object parse() {
         if (index>=0)
             throw new IllegalStateException("Parser can only be used once");
@@ -113,7 +140,7 @@ public class DslParser {
             index++;
             skipWhitespace();
             if (index >= expression.length())
-                return result;
+                return ImmutableList.copyOf(result);
             char c = expression.charAt(index);
             if (c=='.') {
                 // chained expression
@@ -122,13 +149,13 @@ public class DslParser {
                 Object next = next();
                 if (next instanceof List) {
                     result.addAll((Collection<? extends FunctionWithArgs>) next);
-                    return result;
+                    return ImmutableList.copyOf(result);
                 } else {
                     throw new IllegalStateException("Expected functions following position"+chainStart);
                 }
             } else {
                 // following word not something handled at this level; assume parent will handle (or throw) - e.g. a , or extra )
-                return result;
+                return ImmutableList.copyOf(result);
             }
         } else {
             // it is just a word; return it with args as null
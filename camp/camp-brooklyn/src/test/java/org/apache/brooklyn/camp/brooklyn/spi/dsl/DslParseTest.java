@@ -19,6 +19,7 @@
 package org.apache.brooklyn.camp.brooklyn.spi.dsl;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -73,6 +74,15 @@ public class DslParseTest {
         assertEquals( ((FunctionWithArgs)fx2).getFunction(), "g" );
         assertTrue( ((FunctionWithArgs)fx2).getArgs().isEmpty() );
     }
+
+    public void testParseCachedReturnsSameImmutableResult() {
+        Object fx = DslParser.parseCached("f(\"x\").g(h())");
+        assertEquals(fx.toString(), new DslParser("f(\"x\").g(h())").parse().toString());
+        assertSame(DslParser.parseCached("f(\"x\").g(h())"), fx);
+        assertTrue(fx instanceof ImmutableList, ""+fx);
+        Object hx = ((FunctionWithArgs)((List<?>)fx).get(1)).arg(0);
+        assertTrue(hx instanceof ImmutableList, ""+hx);
+    }
     
 
 }
@@ -35,6 +35,7 @@ import org.apache.brooklyn.camp.brooklyn.BrooklynCampConstants;
 import org.apache.brooklyn.camp.brooklyn.spi.dsl.methods.BrooklynDslCommon;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.objs.BasicSpecParameter;
@@ -307,6 +308,31 @@ public class DslTest extends BrooklynAppUnitTestSupport {
         }
     }
 
+    @Test
+    public void testEntityFoundAgainWhenReplaced() throws Exception {
+        TestEntity entity = app.addChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "myId"));
+        BrooklynDslDeferredSupplier<?> dsl = BrooklynDslCommon.entity("myId");
+        assertEquals(execDslImmediately(dsl, Entity.class, app, true).get(), entity);
+        
+        Entities.unmanage(entity);
+        assertTrue(execDslImmediately(dsl, Entity.class, app, true).isAbsent());
+        
+        TestEntity replacement = app.addChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "myId"));
+        assertEquals(execDslImmediately(dsl, Entity.class, app, true).get(), replacement);
+    }
+
+    @Test
+    public void testChildNotFoundWhenRemoved() throws Exception {
+        TestEntity parent = app.addChild(EntitySpec.create(TestEntity.class));
+        TestEntity child = parent.addChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "myId"));
+        BrooklynDslDeferredSupplier<?> dsl = BrooklynDslCommon.child("myId");
+        assertEquals(execDslImmediately(dsl, Entity.class, parent, true).get(), child);
+        assertTrue(execDslImmediately(dsl, Entity.class, app, true).isAbsent());
+        
+        parent.removeChild(child);
+        assertTrue(execDslImmediately(dsl, Entity.class, parent, true).isAbsent());
+    }
+
     // Different from testParentConcurrent() only in the execution context the task is submitted in (global vs app)
     @Test(invocationCount=10)
     public void testTaskContext() {
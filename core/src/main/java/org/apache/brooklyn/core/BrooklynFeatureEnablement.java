@@ -114,6 +114,17 @@ public class BrooklynFeatureEnablement {
 
     public static final String FEATURE_VALIDATE_LOCATION_SSH_KEYS = "brooklyn.validate.locationSshKeys";
 
+    /**
+     * Whether entities store their attributes in a concurrent map, with lock-free reads and compare-and-set
+     * modification, rather than in a synchronized map where every read and write takes the same lock.
+     * Useful where entities have many frequently-updated sensors which are also read frequently (e.g. over REST).
+     * <p>
+     * Note with this enabled, attributes are no longer listed in the order they were first set.
+     * 
+     * @see org.apache.brooklyn.core.sensor.AttributeMap#newConcurrentInstance(org.apache.brooklyn.core.entity.AbstractEntity)
+     */
+    public static final String FEATURE_CONCURRENT_ATTRIBUTE_MAP = FEATURE_PROPERTY_PREFIX+".concurrentAttributeMap";
+
     /**
      * Values explicitly set by Java calls.
      */
@@ -150,6 +161,7 @@ public class BrooklynFeatureEnablement {
         setDefault(FEATURE_AUTO_FIX_CATALOG_REF_ON_REBIND, false);
         setDefault(FEATURE_SSH_ASYNC_EXEC, false);
         setDefault(FEATURE_VALIDATE_LOCATION_SSH_KEYS, true);
+        setDefault(FEATURE_CONCURRENT_ATTRIBUTE_MAP, false);
     }
     
     static {
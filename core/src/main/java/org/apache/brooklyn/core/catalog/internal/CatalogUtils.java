@@ -46,6 +46,7 @@ import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl.RebindTracker;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
+import org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry;
 import org.apache.brooklyn.core.typereg.BasicManagedBundle;
 import org.apache.brooklyn.core.typereg.RegisteredTypeLoadingContexts;
 import org.apache.brooklyn.core.typereg.RegisteredTypeNaming;
@@ -352,6 +353,9 @@ public class CatalogUtils {
             RegisteredType type = mgmt.getTypeRegistry().get(symbolicName, version);
             if (type!=null) {
                 RegisteredTypes.setDeprecated(type, newValue);
+                if (mgmt.getTypeRegistry() instanceof BasicBrooklynTypeRegistry) {
+                    ((BasicBrooklynTypeRegistry) mgmt.getTypeRegistry()).onTypeChanged(type);
+                }
             } else {
                 throw new NoSuchElementException(symbolicName+":"+version);
             }
@@ -369,6 +373,9 @@ public class CatalogUtils {
             RegisteredType type = mgmt.getTypeRegistry().get(symbolicName, version);
             if (type!=null) {
                 RegisteredTypes.setDisabled(type, newValue);
+                if (mgmt.getTypeRegistry() instanceof BasicBrooklynTypeRegistry) {
+                    ((BasicBrooklynTypeRegistry) mgmt.getTypeRegistry()).onTypeChanged(type);
+                }
             } else {
                 throw new NoSuchElementException(symbolicName+":"+version);
             }
@@ -24,7 +24,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -54,9 +57,12 @@ import org.apache.brooklyn.util.core.internal.ConfigKeySelfExtracting;
 import org.apache.brooklyn.util.core.task.DeferredSupplier;
 import org.apache.brooklyn.util.exceptions.ReferenceWithError;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.javalang.Boxing;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
@@ -86,6 +92,30 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
      */
     protected final Map<ConfigKey<?>,Object> ownConfig;
 
+    /**
+     * Incremented whenever config here or at an ancestor may have changed, or the ancestors may have changed,
+     * invalidating the {@link #resolvedValues}.
+     */
+    private final transient AtomicLong generation = new AtomicLong();
+
+    /**
+     * Values resolved by {@link #getConfigImpl(ConfigKey, boolean)}, by key name, if {@link #isCachingResolvedValues()};
+     * only simple values (e.g. strings and numbers) are cached, and only if not resolved from anything deferred.
+     */
+    private final transient Map<String, ResolvedValue<?>> resolvedValues = new ConcurrentHashMap<String, ResolvedValue<?>>();
+
+    private static class ResolvedValue<T> {
+        final ConfigKey<T> queryKey;
+        final long generation;
+        final ReferenceWithError<? extends ConfigValueAtContainer<?,T>> result;
+        
+        ResolvedValue(ConfigKey<T> queryKey, long generation, ReferenceWithError<? extends ConfigValueAtContainer<?,T>> result) {
+            this.queryKey = queryKey;
+            this.generation = generation;
+            this.result = result;
+        }
+    }
+
     protected AbstractConfigMapImpl(TContainer bo) {
         // Not using ConcurrentMap, because want to (continue to) allow null values.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
@@ -179,17 +209,40 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
         } else {
             oldVal = ownConfig.put(ownKey, val);
         }
+        generation.incrementAndGet();
         postSetConfig();
         return oldVal;
     }
 
+    /** Called after config is set or removed here; implementations should call
+     * {@link #onInheritedConfigChanged()} on any descendants. */
     protected abstract void postSetConfig();
 
+    /**
+     * Whether values resolved here are cached until config here changes or {@link #onInheritedConfigChanged()}
+     * is called; subclasses should only return true if that is called whenever config at an ancestor,
+     * the declared keys here or at an ancestor, or the ancestors themselves may have changed.
+     */
+    protected boolean isCachingResolvedValues() {
+        return false;
+    }
+
+    /**
+     * Notes that config inherited here may have changed (e.g. because it has been set at an ancestor,
+     * or the parent has changed), so that any values resolved here are resolved again.
+     */
+    @Beta
+    public void onInheritedConfigChanged() {
+        generation.incrementAndGet();
+    }
+
     public void setLocalConfig(Map<ConfigKey<?>, ?> vals) {
         synchronized (ownConfig) {
             ownConfig.clear();
             ownConfig.putAll(vals);
         }
+        generation.incrementAndGet();
+        postSetConfig();
     }
 
     @SuppressWarnings("unchecked")
@@ -208,11 +261,13 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
     }
 
     public void removeKey(String key) {
-        ownConfig.remove(ConfigKeys.newConfigKey(Object.class, key));
+        removeKey(ConfigKeys.newConfigKey(Object.class, key));
     }
 
     public void removeKey(ConfigKey<?> key) {
         ownConfig.remove(key);
+        generation.incrementAndGet();
+        postSetConfig();
     }
 
     protected final TContainer getParent() {
@@ -370,7 +425,35 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
                     null),
                     new NullPointerException("Query key cannot be null"));
         }
-    
+        if (raw || !isCachingResolvedValues()) {
+            return getConfigImpl(queryKey, raw, null);
+        }
+
+        // read the generation first, so that if config changes while resolving, the value is not used again
+        long generationBefore = generation.get();
+        ResolvedValue<?> cached = resolvedValues.get(queryKey.getName());
+        // the key instance must match, as keys with the same name can have different types and defaults
+        if (cached!=null && cached.queryKey==queryKey && cached.generation==generationBefore) {
+            @SuppressWarnings("unchecked")
+            ReferenceWithError<ConfigValueAtContainer<TContainer,T>> result = (ReferenceWithError<ConfigValueAtContainer<TContainer,T>>) cached.result;
+            return result;
+        }
+        AtomicBoolean cacheable = new AtomicBoolean(true);
+        ReferenceWithError<ConfigValueAtContainer<TContainer,T>> result = getConfigImpl(queryKey, raw, cacheable);
+        if (cacheable.get() && !result.hasError() && isCacheableValue(result.getWithoutError().get())) {
+            resolvedValues.put(queryKey.getName(), new ResolvedValue<T>(queryKey, generationBefore, result));
+        }
+        return result;
+    }
+
+    /** Whether a value is known to be immutable and not resolved on lookup, so can be cached after it is resolved. */
+    private static boolean isCacheableValue(@Nullable Object value) {
+        return value==null || value instanceof String || value instanceof Enum || value instanceof Duration
+                || Boxing.isPrimitiveOrBoxedObject(value);
+    }
+
+    /** Resolves the value; if the given flag is not null, it is cleared if any value looked up is not cacheable. */
+    private <T> ReferenceWithError<ConfigValueAtContainer<TContainer,T>> getConfigImpl(final ConfigKey<T> queryKey, final boolean raw, @Nullable final AtomicBoolean cacheable) {
         // In case this entity class has overridden the given key (e.g. to set default), then retrieve this entity's key
         Function<TContainer, ConfigKey<T>> keyFn = new Function<TContainer, ConfigKey<T>>() {
             @Override public ConfigKey<T> apply(TContainer input) {
@@ -405,7 +488,11 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
                 @Override public Maybe<Object> apply(TContainer input) {
                     // lookup against ownKey as it may do extra resolution (eg grab *.* subkeys if a map)
                     Maybe<Object> result = getRawValueAtContainer(input, ownKey);
+                    if (cacheable!=null && result.isPresent() && !isCacheableValue(result.get())) cacheable.set(false);
+                    boolean rawPresent = result.isPresent();
                     if (!raw) result = resolveRawValueFromContainer(input, ownKey, result);
+                    // values not set for the key itself (e.g. map sub-keys or deprecated names) are not cached
+                    if (cacheable!=null && !rawPresent && result.isPresent()) cacheable.set(false);
                     return result;
                 }
             };
@@ -80,6 +80,7 @@ import org.apache.brooklyn.core.mgmt.BrooklynTags;
 import org.apache.brooklyn.core.mgmt.BrooklynTags.NamedStringTag;
 import org.apache.brooklyn.core.mgmt.internal.EffectorUtils;
 import org.apache.brooklyn.core.mgmt.internal.EntityManagementSupport;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.internal.SubscriptionTracker;
 import org.apache.brooklyn.core.mgmt.rebind.BasicEntityRebindSupport;
@@ -522,8 +523,9 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
     }
 
     /** Where code needs to synch on the attributes, it can access the low-level object used for synching
-     * through this method. Internally, all attribute updates synch on this object. Code wishing to
-     * update attributes or publish while holding some other lock should acquire the monitor on this
+     * through this method. Internally, all attribute updates synch on this object, unless the attribute map is
+     * {@link AttributeMap#isConcurrent() concurrent} (when no reads or writes do).
+     * Code wishing to update attributes or publish while holding some other lock should acquire the monitor on this
      * object first to prevent deadlock. */
     protected Object getAttributesSynchObjectInternal() {
         return attributesInternal.getSynchObjectInternal();
@@ -622,6 +624,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
         if (parent.isNull()) return;
         Entity oldParent = parent.get();
         parent.clear();
+        config().refreshInheritedConfig();
         if (oldParent != null) {
             if (!Entities.isNoLongerManaged(oldParent)) 
                 oldParent.removeChild(getProxyIfAvailable());
@@ -655,6 +658,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
                 }
             }
         }
+        ((EntityManagerInternal)getEntityManager()).onChildAdded(getProxyIfAvailable(), child);
         return child;
     }
 
@@ -683,9 +687,10 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
     
     @Override
     public boolean removeChild(Entity child) {
+        boolean changed;
         synchronized (getAttributesSynchObjectInternal()) {
             synchronized (children) {
-                boolean changed = children.remove(child);
+                changed = children.remove(child);
                 child.clearParent();
                 
                 if (changed) {
@@ -695,9 +700,12 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
                 if (changed) {
                     sensors().emit(AbstractEntity.CHILD_REMOVED, child);
                 }
-                return changed;
             }
         }
+        if (changed) {
+            ((EntityManagerInternal)getEntityManager()).onChildRemoved(getProxyIfAvailable(), child);
+        }
+        return changed;
     }
 
     // -------- GROUPS --------------
@@ -1144,6 +1152,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             
             attributesInternal.remove(attribute);
             entityType.removeSensor(attribute);
+            getManagementSupport().getEntityChangeListener().onAttributeChanged(attribute);
         }
 
         @Override
@@ -1210,8 +1219,8 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
 
         @Override
         public void refreshInheritedConfig() {
-            // no-op, for now, because the impl always looks at ancestors
-            // but in a distributed impl it will need to clear any local cache
+            // the impl always looks at ancestors, but may have cached values resolved from them
+            getConfigsInternal().onInheritedConfigChanged();
             refreshInheritedConfigOfChildren();
         }
         
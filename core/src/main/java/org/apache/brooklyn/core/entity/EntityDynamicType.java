@@ -242,6 +242,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
     public void addConfigKey(ConfigKey<?> newKey) {
         configKeys.put(newKey.getName(), new FieldAndValue<ConfigKey<?>>(null, newKey));
         invalidateSnapshot();
+        instance.config().refreshInheritedConfig();
         instance.sensors().emit(AbstractEntity.CONFIG_KEY_ADDED, newKey);
     }
     
@@ -261,6 +262,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
         FieldAndValue<ConfigKey<?>> result = configKeys.remove(key.getName());
         if (result != null) {
             invalidateSnapshot();
+            instance.config().refreshInheritedConfig();
             ConfigKey<?> removedKey = result.value;
             instance.sensors().emit(AbstractEntity.CONFIG_KEY_REMOVED, removedKey);
             return true;
@@ -273,6 +275,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
         Map<String, FieldAndValue<ConfigKey<?>>> oldKeys = MutableMap.copyOf(configKeys);
         configKeys.clear();
         invalidateSnapshot();
+        instance.config().refreshInheritedConfig();
         for (FieldAndValue<ConfigKey<?>> k: oldKeys.values()) {
             instance.sensors().emit(AbstractEntity.CONFIG_KEY_REMOVED, k.value);
         }
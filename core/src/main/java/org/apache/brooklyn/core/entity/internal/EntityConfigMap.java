@@ -82,6 +82,12 @@ public class EntityConfigMap extends AbstractConfigMapImpl<Entity> {
         getEntity().config().refreshInheritedConfigOfChildren();
     }
 
+    @Override
+    protected boolean isCachingResolvedValues() {
+        // the entity refreshes inherited config when its parent or declared keys change, and so do its ancestors
+        return true;
+    }
+
     @Override
     protected void postLocalEvaluate(ConfigKey<?> key, BrooklynObject bo, Maybe<?> rawValue, Maybe<?> resolvedValue) {
         // TEMPORARY CODE
@@ -19,6 +19,7 @@
 package org.apache.brooklyn.core.feed;
 
 import java.util.Collection;
+import java.util.Map;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.mgmt.rebind.RebindSupport;
@@ -35,6 +36,9 @@ import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableMap;
+
 /** 
  * Captures common fields and processes for sensor feeds.
  * These generally poll or subscribe to get sensor values for an entity.
@@ -185,6 +189,16 @@ public abstract class AbstractFeed extends AbstractEntityAdjunct implements Feed
         return isActivated() && !isSuspended() && !isDestroyed() && getPoller()!=null && getPoller().isRunning();
     }
 
+    /** 
+     * The latency and skew of each of this feed's polls, as per {@link Poller#getPollMetrics()},
+     * or an empty map if not started.
+     */
+    @Beta
+    public Map<String, Map<String, Object>> getPollMetrics() {
+        Poller<?> p = getPoller();
+        return p == null ? ImmutableMap.<String, Map<String, Object>>of() : p.getPollMetrics();
+    }
+
     @Override
     public RebindSupport<FeedMemento> getRebindSupport() {
         return new BasicFeedRebindSupport(this);
@@ -18,26 +18,44 @@
  */
 package org.apache.brooklyn.core.feed;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ExecutionContext;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.TaskAdaptable;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Attributes;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.BasicExecutionContext;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
 import org.apache.brooklyn.util.core.task.DynamicSequentialTask;
+import org.apache.brooklyn.util.core.task.DynamicTasks;
+import org.apache.brooklyn.util.core.task.PeriodicJobScheduler;
 import org.apache.brooklyn.util.core.task.ScheduledTask;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 
 
 /** 
@@ -50,46 +68,162 @@ import com.google.common.base.MoreObjects;
 public class Poller<V> {
     public static final Logger log = LoggerFactory.getLogger(Poller.class);
 
+    /**
+     * Whether polls are run directly by the execution manager's {@link PeriodicJobScheduler},
+     * rather than as a new task each period (submitted by a {@link ScheduledTask}).
+     * <p>
+     * A task is then created only for a poll which starts a sequence of failures (so that it is visible
+     * in the entity's activity), or for every poll if trace logging is enabled for this class.
+     * Other polls do not run in a task, so code which requires one (e.g. {@link Tasks#current()} or
+     * {@link DynamicTasks#queue(TaskAdaptable)}) should not be used in poll jobs; 
+     * tasks can still be submitted, for instance with {@link DynamicTasks#queueIfPossible(TaskAdaptable)}.
+     */
+    @Beta
+    public static final ConfigKey<Boolean> LIGHTWEIGHT_POLLING = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.feed.lightweightPolling",
+            "Whether feed polls are run on a shared pool without creating a task for each poll",
+            false);
+
     private final Entity entity;
     private final boolean onlyIfServiceUp;
     private final Set<Callable<?>> oneOffJobs = new LinkedHashSet<Callable<?>>();
     private final Set<PollJob<V>> pollJobs = new LinkedHashSet<PollJob<V>>();
     private final Set<Task<?>> oneOffTasks = new LinkedHashSet<Task<?>>();
     private final Set<ScheduledTask> tasks = new LinkedHashSet<ScheduledTask>();
+    private final Set<PeriodicJobScheduler.ScheduledJob> scheduledJobs = new LinkedHashSet<PeriodicJobScheduler.ScheduledJob>();
     private volatile boolean started = false;
     
     private static class PollJob<V> {
+        final Callable<V> job;
+        /** set instead of {@link #job} for a job which returns a future for its result */
+        final Callable<? extends ListenableFuture<? extends V>> asyncJob;
         final PollHandler<? super V> handler;
         final Duration pollPeriod;
-        final Runnable wrappedJob;
+        final PollMetrics metrics;
         private boolean loggedPreviousException = false;
         
         PollJob(final Callable<V> job, final PollHandler<? super V> handler, Duration period) {
+            this(job, null, handler, period);
+        }
+        
+        PollJob(final Callable<V> job, final Callable<? extends ListenableFuture<? extends V>> asyncJob, final PollHandler<? super V> handler, Duration period) {
+            this.job = job;
+            this.asyncJob = asyncJob;
             this.handler = handler;
             this.pollPeriod = period;
-            
-            wrappedJob = new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        V val = job.call();
-                        loggedPreviousException = false;
-                        if (handler.checkSuccess(val)) {
-                            handler.onSuccess(val);
-                        } else {
-                            handler.onFailure(val);
-                        }
-                    } catch (Exception e) {
-                        if (loggedPreviousException) {
-                            if (log.isTraceEnabled()) log.trace("PollJob for {}, repeated consecutive failures, handling {} using {}", new Object[] {job, e, handler});
-                        } else {
-                            if (log.isDebugEnabled()) log.debug("PollJob for {} handling {} using {}", new Object[] {job, e, handler});
-                            loggedPreviousException = true;
-                        }
-                        handler.onException(e);
-                    }
-                }
-            };
+            this.metrics = new PollMetrics(period);
+        }
+        
+        /** 
+         * Polls, and passes the result to the handler (waiting for the result, for an async job). 
+         * @return the exception if the poll failed when the previous one did not, otherwise null
+         */
+        Exception poll() {
+            try {
+                return handle((job != null) ? job.call() : getResult(asyncJob.call()));
+            } catch (Exception e) {
+                return handle(e);
+            }
+        }
+        
+        /** Passes the result of an async job, once its future has completed, to the handler; returns as per {@link #poll()}. */
+        Exception onCompleted(Future<? extends V> future) {
+            try {
+                return handle(getResult(future));
+            } catch (Exception e) {
+                return handle(e);
+            }
+        }
+        
+        private Exception handle(V val) {
+            loggedPreviousException = false;
+            if (handler.checkSuccess(val)) {
+                handler.onSuccess(val);
+            } else {
+                handler.onFailure(val);
+            }
+            return null;
+        }
+        
+        private Exception handle(Exception e) {
+            Object jobForLogging = (job != null) ? job : asyncJob;
+            Exception result = null;
+            if (loggedPreviousException) {
+                if (log.isTraceEnabled()) log.trace("PollJob for {}, repeated consecutive failures, handling {} using {}", new Object[] {jobForLogging, e, handler});
+            } else {
+                if (log.isDebugEnabled()) log.debug("PollJob for {} handling {} using {}", new Object[] {jobForLogging, e, handler});
+                loggedPreviousException = true;
+                result = e;
+            }
+            handler.onException(e);
+            return result;
+        }
+        
+        private static <T> T getResult(Future<T> future) throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), Exception.class);
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Timings of the periods of a poll job: how long each poll took (latency), and how late it started 
+     * relative to when it was due, i.e. one period after the previous one finished (skew). 
+     * Skew indicates contention for threads, or for the timer.
+     * <p>
+     * Runs of a job do not overlap, so this is written by one thread at a time.
+     */
+    @Beta
+    public static class PollMetrics {
+        private final long periodNanos;
+        private volatile long count;
+        private volatile long skipped;
+        private volatile long failures;
+        private volatile long totalLatencyNanos;
+        private volatile long lastLatencyNanos = -1;
+        private volatile long maxLatencyNanos;
+        private volatile long lastSkewNanos = -1;
+        private volatile long maxSkewNanos;
+        private long lastEndNanos = -1;
+
+        PollMetrics(Duration period) {
+            this.periodNanos = period.toNanoseconds();
+        }
+
+        void noteRun(long startNanos, long endNanos, boolean polled, boolean failed) {
+            if (lastEndNanos >= 0) {
+                long skew = Math.max(0, startNanos - lastEndNanos - periodNanos);
+                lastSkewNanos = skew;
+                if (skew > maxSkewNanos) maxSkewNanos = skew;
+            }
+            lastEndNanos = endNanos;
+            if (!polled) {
+                skipped++;
+                return;
+            }
+            long latency = endNanos - startNanos;
+            count++;
+            if (failed) failures++;
+            totalLatencyNanos += latency;
+            lastLatencyNanos = latency;
+            if (latency > maxLatencyNanos) maxLatencyNanos = latency;
+        }
+
+        public Map<String, Object> asMap() {
+            long c = count;
+            return MutableMap.<String, Object>builder()
+                    .put("count", c)
+                    .put("skipped", skipped)
+                    .put("failures", failures)
+                    .putIfNotNull("lastLatency", lastLatencyNanos >= 0 ? Duration.nanos(lastLatencyNanos) : null)
+                    .putIfNotNull("meanLatency", c > 0 ? Duration.nanos(totalLatencyNanos / c) : null)
+                    .put("maxLatency", Duration.nanos(maxLatencyNanos))
+                    .putIfNotNull("lastSkew", lastSkewNanos >= 0 ? Duration.nanos(lastSkewNanos) : null)
+                    .put("maxSkew", Duration.nanos(maxSkewNanos))
+                    .build();
         }
     }
     
@@ -122,6 +256,21 @@ public class Poller<V> {
         pollJobs.add(foo);
     }
 
+    /**
+     * As {@link #scheduleAtFixedRate(Callable, PollHandler, Duration)}, for a job which starts its poll
+     * (e.g. a non-blocking HTTP request) and returns a future for the result.
+     * With {@link #LIGHTWEIGHT_POLLING}, no thread is held while waiting for the result: 
+     * the handler is called (on the scheduler's pool) when the future completes.
+     * Otherwise each poll's task waits for the result.
+     */
+    @Beta
+    public void scheduleAtFixedRateAsync(Callable<? extends ListenableFuture<? extends V>> job, PollHandler<? super V> handler, Duration period) {
+        if (started) {
+            throw new IllegalStateException("Cannot schedule additional tasks after poller has started");
+        }
+        pollJobs.add(new PollJob<V>(null, job, handler, period));
+    }
+
     @SuppressWarnings({ "unchecked" })
     public void start() {
         // TODO Previous incarnation of this logged this logged polledSensors.keySet(), but we don't know that anymore
@@ -140,38 +289,180 @@ public class Poller<V> {
             oneOffTasks.add(((EntityInternal)entity).getExecutionContext().submit(task));
         }
         
+        PeriodicJobScheduler scheduler = getPeriodicJobScheduler();
+        
         for (final PollJob<V> pollJob : pollJobs) {
             final String scheduleName = pollJob.handler.getDescription();
             if (pollJob.pollPeriod.compareTo(Duration.ZERO) > 0) {
-                Callable<Task<?>> pollingTaskFactory = new Callable<Task<?>>() {
-                    @Override
-                    public Task<?> call() {
-                        DynamicSequentialTask<Void> task = new DynamicSequentialTask<Void>(MutableMap.of("displayName", scheduleName, "entity", entity), 
-                            new Callable<Void>() { @Override public Void call() {
-                                if (!Entities.isManaged(entity)) {
-                                    return null;
-                                }
-                                if (onlyIfServiceUp && !Boolean.TRUE.equals(entity.getAttribute(Attributes.SERVICE_UP))) {
-                                    return null;
-                                }
-                                pollJob.wrappedJob.run();
-                                return null; 
-                            } } );
-                        BrooklynTaskTags.setTransient(task);
-                        return task;
-                    }
-                };
-                Map<String, ?> taskFlags = MutableMap.of("displayName", "scheduled:" + scheduleName);
-                ScheduledTask task = new ScheduledTask(taskFlags, pollingTaskFactory)
-                        .period(pollJob.pollPeriod)
-                        .cancelOnException(false);
-                tasks.add(Entities.submit(entity, task));
+                if (scheduler != null && pollJob.asyncJob != null) {
+                    final Executor executor = scheduler.getExecutor();
+                    scheduledJobs.add(scheduler.scheduleAsyncWithFixedDelay(new Callable<ListenableFuture<?>>() {
+                        @Override public ListenableFuture<?> call() {
+                            return pollWithoutTaskAsync(pollJob, scheduleName, executor);
+                        }
+                        @Override public String toString() {
+                            return scheduleName+" ("+entity+")";
+                        }
+                    }, pollJob.pollPeriod));
+                } else if (scheduler != null) {
+                    scheduledJobs.add(scheduler.scheduleWithFixedDelay(new Runnable() {
+                        @Override public void run() {
+                            pollWithoutTask(pollJob, scheduleName);
+                        }
+                        @Override public String toString() {
+                            return scheduleName+" ("+entity+")";
+                        }
+                    }, pollJob.pollPeriod));
+                } else {
+                    Callable<Task<?>> pollingTaskFactory = new Callable<Task<?>>() {
+                        @Override
+                        public Task<?> call() {
+                            return newPollTask(pollJob, scheduleName);
+                        }
+                    };
+                    Map<String, ?> taskFlags = MutableMap.of("displayName", "scheduled:" + scheduleName);
+                    ScheduledTask task = new ScheduledTask(taskFlags, pollingTaskFactory)
+                            .period(pollJob.pollPeriod)
+                            .cancelOnException(false);
+                    tasks.add(Entities.submit(entity, task));
+                }
             } else {
                 if (log.isDebugEnabled()) log.debug("Activating poll (but leaving off, as period {}) for {} (using {})", new Object[] {pollJob.pollPeriod, entity, this});
             }
         }
     }
     
+    /** the scheduler to use for {@link #LIGHTWEIGHT_POLLING}, or null if polls should be run as scheduled tasks */
+    protected PeriodicJobScheduler getPeriodicJobScheduler() {
+        ManagementContext mgmt = ((EntityInternal)entity).getManagementContext();
+        if (!Boolean.TRUE.equals(mgmt.getConfig().getConfig(LIGHTWEIGHT_POLLING))) return null;
+        if (!(mgmt.getExecutionManager() instanceof BasicExecutionManager)) {
+            log.debug("Lightweight polling not supported by execution manager of {}; using tasks for polls of {}", mgmt, entity);
+            return null;
+        }
+        return ((BasicExecutionManager)mgmt.getExecutionManager()).getPeriodicJobScheduler();
+    }
+    
+    private Task<?> newPollTask(final PollJob<V> pollJob, String scheduleName) {
+        DynamicSequentialTask<Void> task = new DynamicSequentialTask<Void>(MutableMap.of("displayName", scheduleName, "entity", entity), 
+            new Callable<Void>() { @Override public Void call() {
+                poll(pollJob);
+                return null; 
+            } } );
+        BrooklynTaskTags.setTransient(task);
+        return task;
+    }
+    
+    /** polls (if the entity is in a suitable state) and records metrics; returns as per {@link PollJob#poll()} */
+    private Exception poll(PollJob<V> pollJob) {
+        long startNanos = System.nanoTime();
+        boolean polled = false;
+        Exception failure = null;
+        try {
+            if (!isPollable()) {
+                return null;
+            }
+            polled = true;
+            failure = pollJob.poll();
+            return failure;
+        } finally {
+            pollJob.metrics.noteRun(startNanos, System.nanoTime(), polled, failure != null || pollJob.loggedPreviousException);
+        }
+    }
+    
+    private boolean isPollable() {
+        if (!Entities.isManaged(entity)) {
+            return false;
+        }
+        if (onlyIfServiceUp && !Boolean.TRUE.equals(entity.getAttribute(Attributes.SERVICE_UP))) {
+            return false;
+        }
+        return true;
+    }
+    
+    private void pollWithoutTask(final PollJob<V> pollJob, String scheduleName) {
+        ExecutionContext executionContext = ((EntityInternal)entity).getExecutionContext();
+        if (log.isTraceEnabled()) {
+            // when debugging, run as a task as normal so the poll is visible
+            executionContext.submit(newPollTask(pollJob, scheduleName)).blockUntilEnded();
+            return;
+        }
+        final Exception[] failure = new Exception[1];
+        runWithoutTask(new Runnable() {
+            @Override public void run() {
+                failure[0] = poll(pollJob);
+            }
+        });
+        recordFailure(failure[0], scheduleName);
+    }
+    
+    /**
+     * Starts an async poll (if the entity is in a suitable state), returning a future which completes
+     * once the result has been handled on the given executor and metrics recorded, or null if nothing was started.
+     */
+    private ListenableFuture<?> pollWithoutTaskAsync(final PollJob<V> pollJob, final String scheduleName, final Executor executor) {
+        if (log.isTraceEnabled()) {
+            pollWithoutTask(pollJob, scheduleName);
+            return null;
+        }
+        final long startNanos = System.nanoTime();
+        final ListenableFuture<?>[] handled = new ListenableFuture<?>[1];
+        runWithoutTask(new Runnable() {
+            @Override public void run() {
+                if (!isPollable()) {
+                    pollJob.metrics.noteRun(startNanos, System.nanoTime(), false, false);
+                    return;
+                }
+                ListenableFuture<? extends V> started;
+                try {
+                    started = pollJob.asyncJob.call();
+                } catch (Exception e) {
+                    started = Futures.immediateFailedFuture(e);
+                }
+                final ListenableFuture<? extends V> result = started;
+                ListenableFutureTask<Void> handler = ListenableFutureTask.create(new Runnable() {
+                    @Override public void run() {
+                        final Exception[] failure = new Exception[1];
+                        runWithoutTask(new Runnable() {
+                            @Override public void run() {
+                                failure[0] = pollJob.onCompleted(result);
+                            }
+                        });
+                        pollJob.metrics.noteRun(startNanos, System.nanoTime(), true, failure[0] != null || pollJob.loggedPreviousException);
+                        recordFailure(failure[0], scheduleName);
+                    }
+                }, null);
+                result.addListener(handler, executor);
+                handled[0] = handler;
+            }
+        });
+        return handled[0];
+    }
+    
+    private void runWithoutTask(Runnable job) {
+        ExecutionContext executionContext = ((EntityInternal)entity).getExecutionContext();
+        if (executionContext instanceof BasicExecutionContext) {
+            ((BasicExecutionContext)executionContext).runWithoutTask(job);
+        } else {
+            job.run();
+        }
+    }
+    
+    /** records the start of a sequence of failures as a (failed) task, so it shows in the entity's activity */
+    private void recordFailure(final Exception e, String scheduleName) {
+        if (e != null) {
+            ExecutionContext executionContext = ((EntityInternal)entity).getExecutionContext();
+            executionContext.submit(Tasks.<Void>builder().dynamic(false).displayName(scheduleName)
+                    .description("Poll failed; subsequent consecutive failures are not recorded as tasks")
+                    .tag(BrooklynTaskTags.NON_TRANSIENT_TASK_TAG)
+                    .body(new Callable<Void>() {
+                        @Override public Void call() throws Exception {
+                            throw e;
+                        }
+                    }).build());
+        }
+    }
+    
     public void stop() {
         if (log.isDebugEnabled()) log.debug("Stopping poll for {} (using {})", new Object[] {entity, this});
         if (!started) { 
@@ -186,8 +477,12 @@ public class Poller<V> {
         for (ScheduledTask task : tasks) {
             if (task != null) task.cancel();
         }
+        for (PeriodicJobScheduler.ScheduledJob job : scheduledJobs) {
+            job.cancel();
+        }
         oneOffTasks.clear();
         tasks.clear();
+        scheduledJobs.clear();
     }
 
     public boolean isRunning() {
@@ -198,12 +493,33 @@ public class Poller<V> {
                 break;
             }
         }
+        for (PeriodicJobScheduler.ScheduledJob job : scheduledJobs) {
+            if (hasActiveTasks) break;
+            if (job.isActive()) hasActiveTasks = true;
+        }
         if (!started && hasActiveTasks) {
             log.warn("Poller should not be running, but has active tasks, tasks: "+tasks);
         }
         return started && hasActiveTasks;
     }
     
+    /** 
+     * Returns the {@link PollMetrics} of each periodic poll job, keyed by the description of its handler
+     * (with a numeric suffix if several have the same description).
+     */
+    @Beta
+    public Map<String, Map<String, Object>> getPollMetrics() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<String, Map<String, Object>>();
+        for (PollJob<V> pollJob : pollJobs) {
+            String key = pollJob.handler.getDescription();
+            for (int i = 2; result.containsKey(key); i++) {
+                key = pollJob.handler.getDescription()+"#"+i;
+            }
+            result.put(key, pollJob.metrics.asMap());
+        }
+        return result;
+    }
+    
     protected boolean isEmpty() {
         return pollJobs.isEmpty();
     }
@@ -79,6 +79,7 @@ import org.apache.brooklyn.util.core.task.BasicExecutionContext;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.executor.SharedHttpExecutors;
 import org.apache.brooklyn.util.javalang.Reflections;
 import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
@@ -137,6 +138,7 @@ public abstract class AbstractManagementContext implements ManagementContextInte
 
     protected DeferredBrooklynProperties configMap;
     protected Scratchpad scratchpad;
+    protected final SharedHttpExecutors sharedHttpExecutors = new SharedHttpExecutors();
     protected BasicLocationRegistry locationRegistry;
     protected final BasicBrooklynCatalog catalog;
     protected final BrooklynTypeRegistry typeRegistry;
@@ -381,6 +383,11 @@ public abstract class AbstractManagementContext implements ManagementContextInte
         return scratchpad;
     }
 
+    @Override
+    public SharedHttpExecutors getSharedHttpExecutors() {
+        return sharedHttpExecutors;
+    }
+
     private final Object locationRegistrySemaphore = new Object();
     
     @Override
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Predicate;
+
+/**
+ * An index of the managed entities, giving for each entity the IDs of its descendants (and itself)
+ * grouped by entity type name, and for each application the IDs of its entities grouped by the attributes
+ * they have set; so callers can find e.g. the descendants of a type, with a given sensor, without walking
+ * the entity tree and matching each entity's type.
+ * <p>
+ * Maintained by {@link LocalEntityManager} as entities are managed and unmanaged and as children are added
+ * and removed, and by {@link EntityManagementSupport} the first time an entity sets an attribute;
+ * mutations are serialized, and reads take no lock (so may not see a change still being made).
+ * The type name is that at management time. Attributes stay in the index once set, even if later removed.
+ */
+@Beta
+public class ApplicationEntityIndex {
+
+    private static class IndexedEntity {
+        final String applicationId;
+        /** when indexed, to order siblings */
+        final long sequence;
+        /** the parent's id, or null if it has none; guarded by the index's mutex */
+        volatile String parentId;
+        /** type name to the ids of this entity and its indexed descendants of that type */
+        final ConcurrentMap<String, Set<String>> subtreeByType = new ConcurrentHashMap<String, Set<String>>();
+        
+        IndexedEntity(String applicationId, long sequence, String parentId) {
+            this.applicationId = applicationId;
+            this.sequence = sequence;
+            this.parentId = parentId;
+        }
+    }
+
+    private final Object mutex = new Object();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentMap<String, IndexedEntity> entities = new ConcurrentHashMap<String, IndexedEntity>();
+    /** application id to attribute name to the ids of the application's entities which have set that attribute */
+    private final ConcurrentMap<String, ConcurrentMap<String, Set<String>>> attributesByApplication = new ConcurrentHashMap<String, ConcurrentMap<String, Set<String>>>();
+
+    /** Adds (or re-adds, e.g. on rebind) the entity, including it in the groups of its indexed ancestors. */
+    void onManaged(Entity entity) {
+        String applicationId = entity.getApplicationId();
+        if (applicationId == null) return;
+        synchronized (mutex) {
+            IndexedEntity old = entities.get(entity.getId());
+            if (old != null) remove(entity.getId(), old);
+            
+            IndexedEntity node = new IndexedEntity(applicationId, sequence.incrementAndGet(), 
+                    (entity.getParent() == null) ? null : entity.getParent().getId());
+            add(node.subtreeByType, entity.getEntityType().getName(), entity.getId());
+            // children may have been indexed first, e.g. on rebind
+            for (Entity child : entity.getChildren()) {
+                IndexedEntity childNode = entities.get(child.getId());
+                if (childNode != null && entity.getId().equals(childNode.parentId)) {
+                    addAll(node.subtreeByType, childNode.subtreeByType);
+                }
+            }
+            entities.put(entity.getId(), node);
+            addToAncestors(node);
+            
+            for (AttributeSensor<?> attribute : ((EntityInternal) entity).sensors().getAll().keySet()) {
+                add(attributes(applicationId), attribute.getName(), entity.getId());
+            }
+        }
+    }
+
+    void onUnmanaged(Entity entity) {
+        synchronized (mutex) {
+            IndexedEntity node = entities.get(entity.getId());
+            if (node == null) return;
+            remove(entity.getId(), node);
+            if (entity.getId().equals(node.applicationId)) {
+                attributesByApplication.remove(node.applicationId);
+            }
+        }
+    }
+
+    /** Includes the child's indexed subtree in the parent's and its ancestors' groups, if it is not already. */
+    void onChildAdded(Entity parent, Entity child) {
+        synchronized (mutex) {
+            IndexedEntity node = entities.get(child.getId());
+            // if not yet indexed, this is done when it is managed
+            if (node == null || parent.getId().equals(node.parentId)) return;
+            if (node.parentId != null) removeFromAncestors(node);
+            node.parentId = parent.getId();
+            addToAncestors(node);
+        }
+    }
+
+    /** Removes the child's indexed subtree from the groups of its former parent and ancestors. */
+    void onChildRemoved(Entity parent, Entity child) {
+        synchronized (mutex) {
+            IndexedEntity node = entities.get(child.getId());
+            if (node == null || !parent.getId().equals(node.parentId)) return;
+            removeFromAncestors(node);
+            node.parentId = null;
+        }
+    }
+
+    /** Records that the entity has set the attribute; called only the first time each attribute is set once managed. */
+    void onAttributeSet(Entity entity, String attributeName) {
+        IndexedEntity node = entities.get(entity.getId());
+        if (node == null) return;
+        synchronized (mutex) {
+            if (entities.get(entity.getId()) != node) return;
+            add(attributes(node.applicationId), attributeName, entity.getId());
+        }
+    }
+
+    /**
+     * The IDs of the entity and its descendants whose type name matches the filter, in tree order
+     * (children in the order they were indexed, i.e. managed);
+     * or null if the entity is not indexed (e.g. not managed here).
+     */
+    @Nullable
+    public List<String> getSubtreeEntityIds(String entityId, Predicate<? super String> typeNameFilter) {
+        return getSubtreeEntityIds(entityId, typeNameFilter, null);
+    }
+
+    /**
+     * As {@link #getSubtreeEntityIds(String, Predicate)}, but only those which have set the given attribute
+     * (it may since have been removed or set to null), unless that is null.
+     */
+    @Nullable
+    public List<String> getSubtreeEntityIds(String entityId, Predicate<? super String> typeNameFilter, @Nullable String attributeName) {
+        IndexedEntity node = entities.get(entityId);
+        if (node == null) return null;
+        Set<String> result = MutableSet.of();
+        for (Map.Entry<String, Set<String>> entry : node.subtreeByType.entrySet()) {
+            if (typeNameFilter.apply(entry.getKey())) {
+                result.addAll(entry.getValue());
+            }
+        }
+        if (attributeName != null) {
+            Map<String, Set<String>> attributes = attributesByApplication.get(node.applicationId);
+            Set<String> withAttribute = (attributes == null) ? null : attributes.get(attributeName);
+            if (withAttribute == null) return MutableList.of();
+            if (withAttribute.size() < result.size()) {
+                Set<String> matching = MutableSet.of();
+                for (String id : withAttribute) {
+                    if (result.contains(id)) matching.add(id);
+                }
+                result = matching;
+            } else {
+                result.retainAll(withAttribute);
+            }
+        }
+        return inTreeOrder(result);
+    }
+
+    /** Whether the entity is indexed (i.e. it is managed here). */
+    public boolean isIndexed(String entityId) {
+        return entities.containsKey(entityId);
+    }
+
+    /** Sorts by the sequence numbers of each entity's ancestors, from the root; drops any no longer indexed. */
+    private List<String> inTreeOrder(Collection<String> ids) {
+        final Map<String, long[]> keys = MutableMap.of();
+        for (String id : ids) {
+            long[] key = treeOrderKey(id);
+            if (key != null) keys.put(id, key);
+        }
+        List<String> result = MutableList.copyOf(keys.keySet());
+        Collections.sort(result, new Comparator<String>() {
+            @Override
+            public int compare(String id1, String id2) {
+                long[] key1 = keys.get(id1);
+                long[] key2 = keys.get(id2);
+                for (int i=0; i<key1.length && i<key2.length; i++) {
+                    if (key1[i] != key2[i]) return (key1[i] < key2[i]) ? -1 : 1;
+                }
+                return key1.length - key2.length;
+            }
+        });
+        return result;
+    }
+
+    @Nullable
+    private long[] treeOrderKey(String id) {
+        List<Long> sequences = MutableList.of();
+        IndexedEntity node = entities.get(id);
+        if (node == null) return null;
+        for (; node != null; node = parentOf(node)) {
+            sequences.add(node.sequence);
+        }
+        long[] result = new long[sequences.size()];
+        for (int i=0; i<result.length; i++) {
+            result[i] = sequences.get(result.length-1-i);
+        }
+        return result;
+    }
+
+    /** called holding the mutex */
+    private void remove(String id, IndexedEntity node) {
+        removeFromAncestors(node);
+        entities.remove(id);
+        Map<String, Set<String>> attributes = attributesByApplication.get(node.applicationId);
+        if (attributes != null) {
+            for (Set<String> group : attributes.values()) group.remove(id);
+        }
+    }
+
+    /** called holding the mutex */
+    private void addToAncestors(IndexedEntity node) {
+        for (IndexedEntity ancestor = parentOf(node); ancestor != null; ancestor = parentOf(ancestor)) {
+            addAll(ancestor.subtreeByType, node.subtreeByType);
+        }
+    }
+
+    /** called holding the mutex */
+    private void removeFromAncestors(IndexedEntity node) {
+        for (IndexedEntity ancestor = parentOf(node); ancestor != null; ancestor = parentOf(ancestor)) {
+            for (Map.Entry<String, Set<String>> entry : node.subtreeByType.entrySet()) {
+                Set<String> group = ancestor.subtreeByType.get(entry.getKey());
+                if (group != null) group.removeAll(entry.getValue());
+            }
+        }
+    }
+
+    @Nullable
+    private IndexedEntity parentOf(IndexedEntity node) {
+        String parentId = node.parentId;
+        return (parentId == null) ? null : entities.get(parentId);
+    }
+
+    /** called holding the mutex */
+    private ConcurrentMap<String, Set<String>> attributes(String applicationId) {
+        ConcurrentMap<String, Set<String>> result = attributesByApplication.get(applicationId);
+        if (result == null) {
+            result = new ConcurrentHashMap<String, Set<String>>();
+            attributesByApplication.put(applicationId, result);
+        }
+        return result;
+    }
+
+    private static void addAll(ConcurrentMap<String, Set<String>> groups, Map<String, Set<String>> others) {
+        for (Map.Entry<String, Set<String>> entry : others.entrySet()) {
+            for (String id : entry.getValue()) {
+                add(groups, entry.getKey(), id);
+            }
+        }
+    }
+
+    private static void add(ConcurrentMap<String, Set<String>> groups, String key, String id) {
+        Set<String> group = groups.get(key);
+        if (group == null) {
+            groups.putIfAbsent(key, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+            group = groups.get(key);
+        }
+        group.add(id);
+    }
+}
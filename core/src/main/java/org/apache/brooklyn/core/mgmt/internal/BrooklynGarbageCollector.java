@@ -28,16 +28,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
@@ -62,6 +68,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.collect.Iterables;
 
@@ -81,6 +88,13 @@ import com.google.common.collect.Iterables;
  * and keeping at most 100000 tasks in the system,
  * max 1000 tasks per entity, 50 per effector within that entity, and 50 per other non-effector tag
  * within that entity (or global if not attached to an entity).
+ * <p>
+ * If {@link #INCREMENTAL} is set, completed tasks are also queued (in completion order) against each
+ * of their tags as they finish, and the oldest are evicted there and then when a tag goes over its limit,
+ * so that each completed task costs a small amount of work (proportional to its number of tags) 
+ * rather than each collection scanning and sorting all tasks.
+ * The periodic full scan of all tasks is then only done every {@link #FULL_SCAN_PERIOD},
+ * as a safety net (e.g. for limits having been changed, or for tasks given grace because of other tags).
  * 
  * @author aled
  */
@@ -146,6 +160,20 @@ public class BrooklynGarbageCollector {
             "the duration after which a completed task will be automatically deleted", 
             Duration.days(30));
     
+    @Beta
+    public static final ConfigKey<Boolean> INCREMENTAL = ConfigKeys.newBooleanConfigKey(
+        "brooklyn.gc.incremental", 
+        "whether to expire tasks over the per-tag, per-entity and global limits (and over the max age) "
+        + "as each task completes, doing a full scan of all tasks only every 'brooklyn.gc.fullScanPeriod'", 
+        false);
+
+    @Beta
+    public static final ConfigKey<Duration> FULL_SCAN_PERIOD = ConfigKeys.newDurationConfigKey(
+        "brooklyn.gc.fullScanPeriod", 
+        "if 'brooklyn.gc.incremental' is set, the minimum period between full scans of all tasks "
+        + "(checks otherwise still run every 'brooklyn.gc.period', but only look at unmanaged entities and transient tasks)", 
+        Duration.minutes(15));
+
     protected final static Comparator<Task<?>> TASKS_OLDEST_FIRST_COMPARATOR = new Comparator<Task<?>>() {
         @Override public int compare(Task<?> t1, Task<?> t2) {
             long end1 = t1.getEndTimeUtc();
@@ -165,6 +193,24 @@ public class BrooklynGarbageCollector {
     private Duration gcPeriod;
     private volatile boolean running = true;
     
+    /** completed tasks for each tag being tracked for incremental gc; tasks are removed as they are deleted */
+    private final ConcurrentMap<Object, CompletedTasksForTag> completedTasksByTag = new ConcurrentHashMap<Object, CompletedTasksForTag>();
+    /** all completed tasks, oldest first, for incremental gc; tasks are removed as they are deleted */
+    private final ConcurrentSkipListSet<Task<?>> completedTasks = new ConcurrentSkipListSet<Task<?>>(TASKS_OLDEST_FIRST_THEN_BY_ID);
+    private volatile boolean incremental;
+    private volatile int maxTasksPerTag;
+    private volatile int maxTasksPerEntity;
+    private volatile int maxTasksGlobal;
+    private volatile Duration maxTaskAge;
+    private volatile long lastFullScanNanos;
+    
+    private final AtomicLong gcIterationCount = new AtomicLong();
+    private final AtomicLong fullScanCount = new AtomicLong();
+    private final AtomicLong totalGcTimeNanos = new AtomicLong();
+    private volatile long lastGcTimeNanos;
+    private final AtomicLong tasksEvictedByScan = new AtomicLong();
+    private final AtomicLong tasksEvictedIncrementally = new AtomicLong();
+    
     public BrooklynGarbageCollector(BrooklynProperties brooklynProperties, BasicExecutionManager executionManager, BrooklynStorage storage) {
         this.executionManager = executionManager;
         this.storage = storage;
@@ -172,6 +218,8 @@ public class BrooklynGarbageCollector {
 
         if (brooklynProperties.getConfig(TRACK_SOFT_MAYBE_USAGE))
             SoftlyPresent.getUsageTracker().enable();
+        refreshLimits();
+        lastFullScanNanos = System.nanoTime();
         
         executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
                 @Override public Thread newThread(Runnable r) {
@@ -182,6 +230,10 @@ public class BrooklynGarbageCollector {
                 @Override public void onTaskDone(Task<?> task) {
                     BrooklynGarbageCollector.this.onTaskDone(task);
                 }});
+        executionManager.addDeletionListener(new BasicExecutionManager.TaskDeletionListener() {
+                @Override public void onTaskDeleted(Task<?> task) {
+                    BrooklynGarbageCollector.this.onTaskDeleted(task);
+                }});
     
         scheduleCollector(true);
     }
@@ -207,7 +259,13 @@ public class BrooklynGarbageCollector {
     public void gcIteration() {
         try {
             logUsage("brooklyn gc (before)");
-            gcTasks();
+            long startTime = System.nanoTime();
+            int deleted = gcTasks();
+            long gcTime = System.nanoTime() - startTime;
+            lastGcTimeNanos = gcTime;
+            totalGcTimeNanos.addAndGet(gcTime);
+            gcIterationCount.incrementAndGet();
+            tasksEvictedByScan.addAndGet(deleted);
             logUsage("brooklyn gc (after)");
             
             double memUsage = 1.0 - 1.0*Runtime.getRuntime().freeMemory() / Runtime.getRuntime().maxMemory();
@@ -256,7 +314,46 @@ public class BrooklynGarbageCollector {
             executionManager.getNumActiveTasks()+" active, "+
             executionManager.getNumIncompleteTasks()+" unfinished; "+
             executionManager.getNumInMemoryTasks()+" remembered, "+
-            executionManager.getTotalTasksSubmitted()+" total submitted)";
+            executionManager.getTotalTasksSubmitted()+" total submitted; "+
+            "thread pool ("+executionManager.getThreadPoolMode().toString().toLowerCase()+"): "+
+            executionManager.getNumActivePoolThreads()+" busy, "+
+            executionManager.getNumPoolThreads()+" threads, "+
+            executionManager.getNumQueuedJobs()+" queued); "+
+            "gc: "+getTotalTasksEvicted()+" tasks evicted ("+getTasksEvictedIncrementally()+" incrementally), "+
+            "last took "+Duration.nanos(lastGcTimeNanos)+(incremental ? ", "+fullScanCount.get()+" full scans" : "");
+    }
+
+    /** number of times {@link #gcIteration()} has run */
+    public long getGcIterationCount() {
+        return gcIterationCount.get();
+    }
+
+    /** number of times {@link #gcIteration()} has scanned all tasks; 
+     * unless {@link #INCREMENTAL} this is the same as {@link #getGcIterationCount()} */
+    public long getFullScanCount() {
+        return fullScanCount.get();
+    }
+
+    /** total time spent in {@link #gcIteration()}'s task expiry (not including incremental eviction as tasks complete) */
+    public Duration getTotalGcTime() {
+        return Duration.nanos(totalGcTimeNanos.get());
+    }
+
+    /** time spent in the most recent {@link #gcIteration()}'s task expiry */
+    public Duration getLastGcTime() {
+        return Duration.nanos(lastGcTimeNanos);
+    }
+
+    /** number of tasks evicted for being over the per-tag, per-entity or global limits (or, if evicted incrementally, the max age),
+     * either by {@link #gcIteration()} or incrementally
+     * (not including tasks deleted immediately on completion, or tasks of unmanaged entities) */
+    public long getTotalTasksEvicted() {
+        return tasksEvictedByScan.get() + tasksEvictedIncrementally.get();
+    }
+
+    /** number of tasks evicted as other tasks completed, if {@link #INCREMENTAL} */
+    public long getTasksEvictedIncrementally() {
+        return tasksEvictedIncrementally.get();
     }
     
     public void shutdownNow() {
@@ -279,6 +376,11 @@ public class BrooklynGarbageCollector {
         executionManager.deleteTag(BrooklynTaskTags.tagForContextEntity(entity));
         executionManager.deleteTag(BrooklynTaskTags.tagForCallerEntity(entity));
         executionManager.deleteTag(BrooklynTaskTags.tagForTargetEntity(entity));
+        
+        completedTasksByTag.remove(entity);
+        completedTasksByTag.remove(BrooklynTaskTags.tagForContextEntity(entity));
+        completedTasksByTag.remove(BrooklynTaskTags.tagForCallerEntity(entity));
+        completedTasksByTag.remove(BrooklynTaskTags.tagForTargetEntity(entity));
     }
     
     public void onUnmanaged(Location loc) {
@@ -288,6 +390,165 @@ public class BrooklynGarbageCollector {
     public void onTaskDone(Task<?> task) {
         if (shouldDeleteTaskImmediately(task)) {
             executionManager.deleteTask(task);
+        } else if (incremental && running && task.isDone()) {
+            expireIncrementally(task);
+        }
+    }
+
+    /** whether a reference to the task is held for incremental gc */
+    @VisibleForTesting
+    boolean isTrackedForIncrementalGc(Task<?> task) {
+        if (completedTasks.contains(task)) return true;
+        for (CompletedTasksForTag tasksForTag : completedTasksByTag.values()) {
+            if (tasksForTag.tasks.contains(task)) return true;
+        }
+        return false;
+    }
+
+    /** drops any references held for incremental gc to a task which has been deleted (by whatever means),
+     * so that they are not kept until the next full scan */
+    protected void onTaskDeleted(Task<?> task) {
+        if (!task.isDone() || completedTasks.isEmpty()) return;
+        completedTasks.remove(task);
+        for (Object tag : task.getTags()) {
+            CompletedTasksForTag tasksForTag = completedTasksByTag.get(tag);
+            if (tasksForTag != null) tasksForTag.tasks.remove(task);
+        }
+    }
+
+    /** records a newly completed task against its tags, and evicts the oldest tasks for any of those tags
+     * which are now over their limit, and any tasks now over the global limit or max age;
+     * each task is looked at at most once per tag when being considered for eviction */
+    protected void expireIncrementally(Task<?> task) {
+        int evicted = 0;
+        completedTasks.add(task);
+        for (Object tag : task.getTags()) {
+            TagCategory category = getCategory(tag);
+            if (category == null) continue;
+            // the management context is a tag of every entity and server task, so all completions would contend on it;
+            // its limit is left to the full scan (it is still checked when evicting for a task's other tags)
+            if (tag instanceof ManagementContext) continue;
+            
+            CompletedTasksForTag tasksForTag = completedTasksByTag.get(tag);
+            if (tasksForTag == null) {
+                CompletedTasksForTag newTasksForTag = new CompletedTasksForTag();
+                tasksForTag = completedTasksByTag.putIfAbsent(tag, newTasksForTag);
+                if (tasksForTag == null) tasksForTag = newTasksForTag;
+            }
+            tasksForTag.tasks.add(task);
+            tasksForTag.added.incrementAndGet();
+            // one thread evicts for a tag at a time (without blocking the others), so that tasks with the tag
+            // completing concurrently do not each evict; the evicting thread checks again for tasks added meanwhile
+            while (tasksForTag.evicting.compareAndSet(false, true)) {
+                int added = tasksForTag.added.get();
+                try {
+                    evicted += expireOverCapacity(tag, category, tasksForTag.tasks);
+                } finally {
+                    tasksForTag.evicting.set(false);
+                }
+                if (tasksForTag.added.get() == added) break;
+            }
+        }
+        
+        if (executionManager.getTask(task.getId()) == null) {
+            // deleted concurrently, perhaps before it was recorded above
+            onTaskDeleted(task);
+        }
+        
+        Task<?> oldest;
+        while (executionManager.getNumInMemoryTasks() - executionManager.getNumIncompleteTasks() > maxTasksGlobal && (oldest = completedTasks.pollFirst()) != null) {
+            if (deleteIfPresent(oldest)) evicted++;
+        }
+        Duration maxAge = maxTaskAge;
+        while ((oldest = Iterables.getFirst(completedTasks, null)) != null && maxAge.isShorterThan(Duration.sinceUtc(oldest.getEndTimeUtc()))) {
+            // sub-tasks are deleted along with their parent, as in the full scan
+            if (completedTasks.remove(oldest) && !BrooklynTaskTags.isSubTask(oldest) && deleteIfPresent(oldest)) evicted++;
+        }
+        
+        if (evicted > 0) {
+            tasksEvictedIncrementally.addAndGet(evicted);
+            if (LOG.isTraceEnabled())
+                LOG.trace("brooklyn-gc evicted "+evicted+" tasks on completion of "+task);
+        }
+    }
+    
+    /** evicts the oldest of the given completed tasks with the tag while the tag is over capacity, returning the count */
+    private int expireOverCapacity(Object tag, TagCategory category, Set<Task<?>> tasksForTag) {
+        int evicted = 0;
+        Task<?> oldest;
+        while (isOverCapacity(tag, category) && (oldest = Iterables.getFirst(tasksForTag, null)) != null) {
+            if (executionManager.getTask(oldest.getId()) == null) {
+                // deleted by other means
+                tasksForTag.remove(oldest);
+                continue;
+            }
+            // as with the full scan, only delete if every tag in this category is over capacity;
+            // otherwise the task is kept, and considered again when the next task with this tag completes
+            // (so that tasks are always evicted oldest first)
+            if (!isOverCapacityInAllTags(oldest, category)) break;
+            tasksForTag.remove(oldest);
+            if (deleteIfPresent(oldest)) evicted++;
+        }
+        return evicted;
+    }
+    
+    /** completed tasks with a tag, oldest first (by end time, as listeners are not called in order of completion) */
+    private static class CompletedTasksForTag {
+        final Set<Task<?>> tasks = new ConcurrentSkipListSet<Task<?>>(TASKS_OLDEST_FIRST_THEN_BY_ID);
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicBoolean evicting = new AtomicBoolean();
+    }
+    
+    private static final Comparator<Task<?>> TASKS_OLDEST_FIRST_THEN_BY_ID = new Comparator<Task<?>>() {
+        @Override
+        public int compare(Task<?> t1, Task<?> t2) {
+            int result = TASKS_OLDEST_FIRST_COMPARATOR.compare(t1, t2);
+            return (result != 0) ? result : t1.getId().compareTo(t2.getId());
+        }
+    };
+    
+    private static TagCategory getCategory(Object tag) {
+        if (TagCategory.ENTITY.acceptsTag(tag)) return TagCategory.ENTITY;
+        if (TagCategory.NON_ENTITY_NORMAL.acceptsTag(tag)) return TagCategory.NON_ENTITY_NORMAL;
+        return null;
+    }
+    
+    private boolean isOverCapacity(Object tag, TagCategory category) {
+        Set<Task<?>> tasksWithTag = executionManager.tasksWithTagLiveOrNull(tag);
+        int max = (category == TagCategory.ENTITY) ? maxTasksPerEntity : maxTasksPerTag;
+        return tasksWithTag != null && tasksWithTag.size() > max;
+    }
+    
+    private boolean isOverCapacityInAllTags(Task<?> task, TagCategory category) {
+        for (Object tag : task.getTags()) {
+            if (category.acceptsTag(tag) && !isOverCapacity(tag, category)) return false;
+        }
+        return true;
+    }
+    
+    private boolean deleteIfPresent(Task<?> task) {
+        if (executionManager.getTask(task.getId()) == null) return false;
+        executionManager.deleteTask(task);
+        return true;
+    }
+    
+    /** removes references to tasks which have been deleted by other means */
+    private void pruneDeleted(Collection<Task<?>> tasks) {
+        Iterator<Task<?>> ti = tasks.iterator();
+        while (ti.hasNext()) {
+            if (executionManager.getTask(ti.next().getId()) == null) ti.remove();
+        }
+    }
+    
+    private void refreshLimits() {
+        incremental = brooklynProperties.getConfig(INCREMENTAL);
+        maxTasksPerTag = brooklynProperties.getConfig(MAX_TASKS_PER_TAG);
+        maxTasksPerEntity = brooklynProperties.getConfig(MAX_TASKS_PER_ENTITY);
+        maxTasksGlobal = brooklynProperties.getConfig(MAX_TASKS_GLOBAL);
+        maxTaskAge = brooklynProperties.getConfig(MAX_TASK_AGE);
+        if (!incremental) {
+            completedTasksByTag.clear();
+            completedTasks.clear();
         }
     }
     
@@ -337,6 +598,8 @@ public class BrooklynGarbageCollector {
     /**
      * Deletes old tasks. The age/number of tasks to keep is controlled by fields like 
      * {@link #maxTasksPerTag} and {@link #maxTaskAge}.
+     * <p>
+     * If {@link #INCREMENTAL}, this does a full scan only if it has not done one in the last {@link #FULL_SCAN_PERIOD}.
      */
     protected synchronized int gcTasks() {
         // TODO Must be careful with memory usage here: have seen OOME if we get crazy lots of tasks.
@@ -355,11 +618,29 @@ public class BrooklynGarbageCollector {
             // caller has changed period, reschedule on next run
             scheduleCollector(false);
         }
+        refreshLimits();
     
         expireUnmanagedEntityTasks();
-        expireAgedTasks();
         expireTransientTasks();
         
+        if (incremental) {
+            Duration sinceFullScan = Duration.nanos(System.nanoTime() - lastFullScanNanos);
+            if (sinceFullScan.isShorterThan(brooklynProperties.getConfig(FULL_SCAN_PERIOD))) {
+                // over-capacity and aged tasks are expired as tasks complete
+                return 0;
+            }
+            // drop references to tasks which have since been deleted by other means
+            pruneDeleted(completedTasks);
+            for (Map.Entry<Object, CompletedTasksForTag> entry : completedTasksByTag.entrySet()) {
+                pruneDeleted(entry.getValue().tasks);
+                if (entry.getValue().tasks.isEmpty()) completedTasksByTag.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        lastFullScanNanos = System.nanoTime();
+        fullScanCount.incrementAndGet();
+        
+        expireAgedTasks();
+        
         // now look at overcapacity tags, non-entity tags first
         
         Set<Object> taskTags = executionManager.getTaskTags();
@@ -20,8 +20,14 @@ package org.apache.brooklyn.core.mgmt.internal;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
 
 import org.apache.brooklyn.api.effector.Effector;
 import org.apache.brooklyn.api.entity.Application;
@@ -50,6 +56,8 @@ import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 /**
  * Encapsulates management activities at an entity.
@@ -92,6 +100,20 @@ public class EntityManagementSupport {
     protected final AtomicBoolean managementFailed = new AtomicBoolean(false);
     
     private volatile EntityChangeListener entityChangeListener = EntityChangeListener.NOOP;
+    
+    // counts all changes, including every attribute set; attributes are set far too often to read the clock each time,
+    // so changes only bump counters, and times are assigned when something asks (see getLastChangeTime())
+    private final AtomicLong changeCount = new AtomicLong();
+    // the number of times each attribute (by name) has been set since tracking started; bumped before changeCount
+    private final ConcurrentMap<String, AtomicLong> attributeVersions = new ConcurrentHashMap<String, AtomicLong>();
+    private volatile long changeTrackingStartTime = -1;
+    // all guarded by versionsMutex
+    private final Object versionsMutex = new Object();
+    private long lastChangeTime = -1;
+    private long lastChangeTimeCount;
+    private long attributeChangeTimesCount;
+    private final Map<String, Long> attributeVersionsSeen = Maps.newHashMap();
+    private final Map<String, Long> attributeChangeTimes = Maps.newHashMap();
 
     /**
      * Whether this entity is managed (i.e. "onManagementStarting" has been called, so the framework knows about it,
@@ -190,6 +212,13 @@ public class EntityManagementSupport {
                 currentlyDeployed.set(true);
                 everDeployed.set(true);
                 
+                synchronized (versionsMutex) {
+                    attributeVersions.clear();
+                    attributeVersionsSeen.clear();
+                    attributeChangeTimes.clear();
+                    changeTrackingStartTime = lastChangeTime = System.currentTimeMillis();
+                    lastChangeTimeCount = attributeChangeTimesCount = changeCount.get();
+                }
                 entityChangeListener = new EntityChangeListenerImpl();
             }
             
@@ -402,54 +431,167 @@ public class EntityManagementSupport {
         return entityChangeListener;
     }
     
+    /**
+     * The number of changes to the entity (its attributes, config, children, locations, tags, members
+     * or adjuncts) since it was first managed here; it only ever increases, so callers can compare it 
+     * with a value they saw before (e.g. to answer a conditional REST request) to tell if anything has changed.
+     * <p>
+     * Every attribute set counts as a change, even if the value is equal to the previous one
+     * (as a value may have been modified in place).
+     * <p>
+     * The count is only for this instance, so must be considered along with {@link #getChangeTrackingStartTime()}:
+     * a rebinded or restarted entity may report the same count for different changes.
+     */
+    @Beta
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+    
+    /** When changes started being counted (i.e. when the entity was managed here), or -1 if not yet managed. */
+    @Beta
+    public long getChangeTrackingStartTime() {
+        return changeTrackingStartTime;
+    }
+    
+    /** 
+     * When the entity last changed, or the {@link #getChangeTrackingStartTime() start time} if it has not changed since.
+     * <p>
+     * Changes do not read the clock; this is the first time the {@link #getChangeCount() count} was seen to have changed,
+     * so may be later than the change itself (but never earlier), e.g. if nothing has asked since.
+     */
+    @Beta
+    public long getLastChangeTime() {
+        synchronized (versionsMutex) {
+            long count = changeCount.get();
+            if (count != lastChangeTimeCount) {
+                lastChangeTimeCount = count;
+                lastChangeTime = System.currentTimeMillis();
+            }
+            return lastChangeTime;
+        }
+    }
+    
+    /** 
+     * When the given attribute was last changed, or null if it has not been set since {@link #getChangeTrackingStartTime()};
+     * like {@link #getLastChangeTime()}, this is when the change was first seen, so may be later than the change itself,
+     * but never earlier.
+     */
+    @Beta
+    @Nullable
+    public Long getAttributeChangeTime(String attributeName) {
+        synchronized (versionsMutex) {
+            refreshAttributeChangeTimes();
+            return attributeChangeTimes.get(attributeName);
+        }
+    }
+    
+    /** As {@link #getAttributeChangeTime(String)}, for all attributes (by name) set since {@link #getChangeTrackingStartTime()}. */
+    @Beta
+    public Map<String, Long> getAttributeChangeTimes() {
+        synchronized (versionsMutex) {
+            refreshAttributeChangeTimes();
+            return ImmutableMap.copyOf(attributeChangeTimes);
+        }
+    }
+    
+    /** Assigns the current time to attributes set since last called, if anything has changed; called holding {@link #versionsMutex}. */
+    private void refreshAttributeChangeTimes() {
+        // attribute versions are bumped before the count, so all sets included in this count are seen below
+        long count = changeCount.get();
+        if (count == attributeChangeTimesCount) return;
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, AtomicLong> entry : attributeVersions.entrySet()) {
+            long version = entry.getValue().get();
+            Long seen = attributeVersionsSeen.put(entry.getKey(), version);
+            if (seen == null || seen != version) attributeChangeTimes.put(entry.getKey(), now);
+        }
+        attributeChangeTimesCount = count;
+    }
+    
+    protected void recordChange() {
+        changeCount.incrementAndGet();
+    }
+    
+    /** returns true if this is the first time the attribute has been set since the entity was managed here */
+    protected boolean recordAttributeChange(AttributeSensor<?> attribute) {
+        boolean first = false;
+        AtomicLong version = attributeVersions.get(attribute.getName());
+        if (version == null) {
+            AtomicLong newVersion = new AtomicLong();
+            version = attributeVersions.putIfAbsent(attribute.getName(), newVersion);
+            if (version == null) {
+                version = newVersion;
+                first = true;
+            }
+        }
+        version.incrementAndGet();
+        changeCount.incrementAndGet();
+        return first;
+    }
+    
     private class EntityChangeListenerImpl implements EntityChangeListener {
+        private final ApplicationEntityIndex applicationEntityIndex = (getManagementContext().getEntityManager() instanceof LocalEntityManager)
+                ? ((LocalEntityManager) getManagementContext().getEntityManager()).getApplicationEntityIndex()
+                : null;
+        
         @Override
         public void onChanged() {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onChildrenChanged() {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onLocationsChanged() {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onTagsChanged() {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onMembersChanged() {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onPolicyAdded(Policy policy) {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onManaged(policy);
         }
         @Override
         public void onEnricherAdded(Enricher enricher) {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onManaged(enricher);
         }
         @Override
         public void onFeedAdded(Feed feed) {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onManaged(feed);
         }
         @Override
         public void onPolicyRemoved(Policy policy) {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onUnmanaged(policy);
         }
         @Override
         public void onEnricherRemoved(Enricher enricher) {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onUnmanaged(enricher);
         }
         @Override
         public void onFeedRemoved(Feed feed) {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onUnmanaged(feed);
         }
@@ -458,10 +600,14 @@ public class EntityManagementSupport {
             // TODO Could make this more efficient by inspecting the attribute to decide if needs persisted
             // immediately, or not important, or transient (e.g. do we really need to persist 
             // request-per-second count for rebind purposes?!)
+            if (recordAttributeChange(attribute) && applicationEntityIndex != null) {
+                applicationEntityIndex.onAttributeSet(entity, attribute.getName());
+            }
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onConfigChanged(ConfigKey<?> key) {
+            recordChange();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
@@ -22,6 +22,8 @@ import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.EntityManager;
 
+import com.google.common.annotations.Beta;
+
 public interface EntityManagerInternal extends EntityManager, BrooklynObjectManagerInternal<Entity> {
 
     /** gets all entities currently known to the application, including entities that are not yet managed */
@@ -29,4 +31,24 @@ public interface EntityManagerInternal extends EntityManager, BrooklynObjectMana
 
     public Iterable<String> getEntityIds();
     
+    /**
+     * A count which changes whenever an entity is created, managed or unmanaged, or a child is added
+     * or removed, so that lookups in the entity tree can be remembered until it changes;
+     * or -1 if such changes are not being counted.
+     */
+    @Beta
+    long getEntityTreeGeneration();
+
+    /** Records a change to the entity tree not done by this entity manager. */
+    @Beta
+    void onEntityTreeChanged();
+
+    /** Records that the child has been added to the parent, as for {@link #onEntityTreeChanged()}. */
+    @Beta
+    void onChildAdded(Entity parent, Entity child);
+
+    /** Records that the child has been removed from the parent, as for {@link #onEntityTreeChanged()}. */
+    @Beta
+    void onChildRemoved(Entity parent, Entity child);
+
 }
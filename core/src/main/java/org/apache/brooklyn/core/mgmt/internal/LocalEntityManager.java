@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
@@ -117,6 +118,10 @@ public class LocalEntityManager implements EntityManagerInternal {
     private final Map<String,String> entityTypes;
     private final Set<String> applicationIds;
 
+    private final ApplicationEntityIndex applicationEntityIndex = new ApplicationEntityIndex();
+
+    private final AtomicLong entityTreeGeneration = new AtomicLong();
+
     public LocalEntityManager(LocalManagementContext managementContext) {
         this.managementContext = checkNotNull(managementContext, "managementContext");
         this.storage = managementContext.getStorage();
@@ -257,6 +262,34 @@ public class LocalEntityManager implements EntityManagerInternal {
         return entityProxiesById.get(id);
     }
     
+    /** An index of the managed entities' descendants, maintained as entities are managed and unmanaged and children change. */
+    @Beta
+    public ApplicationEntityIndex getApplicationEntityIndex() {
+        return applicationEntityIndex;
+    }
+    
+    @Override
+    public long getEntityTreeGeneration() {
+        return entityTreeGeneration.get();
+    }
+
+    @Override
+    public void onEntityTreeChanged() {
+        entityTreeGeneration.incrementAndGet();
+    }
+
+    @Override
+    public void onChildAdded(Entity parent, Entity child) {
+        applicationEntityIndex.onChildAdded(parent, child);
+        onEntityTreeChanged();
+    }
+
+    @Override
+    public void onChildRemoved(Entity parent, Entity child) {
+        applicationEntityIndex.onChildRemoved(parent, child);
+        onEntityTreeChanged();
+    }
+
     Collection<Application> getApplications() {
         return ImmutableList.copyOf(applications);
     }
@@ -277,6 +310,7 @@ public class LocalEntityManager implements EntityManagerInternal {
             return;
         }
         preRegisteredEntitiesById.put(entity.getId(), entity);
+        onEntityTreeChanged();
     }
     
     @Override
@@ -353,6 +387,11 @@ public class LocalEntityManager implements EntityManagerInternal {
                 setManagementTransitionMode(it, mode = initialMode);
             }
             
+            if (mode.wasReadOnly() && mode.isReadOnly() && isManagedInstance(it)) {
+                // read-only rebind of only some entities; this one (and its descendants, unless also rebinded) is unchanged
+                return false;
+            }
+            
             Boolean isReadOnlyFromEntity = it.getManagementSupport().isReadOnlyRaw();
             if (isReadOnlyFromEntity==null) {
                 if (mode.isReadOnly()) {
@@ -508,6 +547,7 @@ public class LocalEntityManager implements EntityManagerInternal {
         entityProxiesById.remove(e.getId());
         entitiesById.remove(e.getId());
         entityModesById.remove(e.getId());
+        onEntityTreeChanged();
     }
     
     private void stopTasks(Entity entity) {
@@ -634,6 +674,12 @@ public class LocalEntityManager implements EntityManagerInternal {
         return preManagedEntitiesById.containsKey(e.getId());
     }
 
+    /** whether the given entity (or the instance behind the given proxy) is the instance already managed under its id */
+    private synchronized boolean isManagedInstance(Entity e) {
+        Entity realE = (e instanceof EntityProxy) ? ((EntityProxyImpl)Proxy.getInvocationHandler(e)).getDelegate() : e;
+        return realE!=null && realE==entitiesById.get(e.getId());
+    }
+
     /**
      * Should ensure that the entity is now known about, but should not be accessible from other entities yet.
      * 
@@ -647,6 +693,7 @@ public class LocalEntityManager implements EntityManagerInternal {
         
         Object old = preManagedEntitiesById.put(e.getId(), realE);
         preRegisteredEntitiesById.remove(e.getId());
+        onEntityTreeChanged();
         
         if (old!=null && mode.wasNotLoaded()) {
             if (old.equals(e)) {
@@ -706,6 +753,8 @@ public class LocalEntityManager implements EntityManagerInternal {
         }
         if (!entities.contains(proxyE)) 
             entities.add(proxyE);
+        applicationEntityIndex.onManaged(realE);
+        onEntityTreeChanged();
         
         if (old!=null && old!=e) {
             // passing the transition info will ensure the right shutdown steps invoked for old instance
@@ -762,9 +811,11 @@ public class LocalEntityManager implements EntityManagerInternal {
             }
 
             entities.remove(proxyE);
+            applicationEntityIndex.onUnmanaged(e);
             entityProxiesById.remove(e.getId());
             entityModesById.remove(e.getId());
             Object old = entitiesById.remove(e.getId());
+            onEntityTreeChanged();
 
             entityTypes.remove(e.getId());
             if (old==null) {
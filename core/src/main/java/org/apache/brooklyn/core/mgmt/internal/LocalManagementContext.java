@@ -307,7 +307,7 @@ public class LocalManagementContext extends AbstractManagementContext {
         if (!isRunning()) throw new IllegalStateException("Management context no longer running");
 
         if (subscriptions == null) {
-            subscriptions = new LocalSubscriptionManager(getExecutionManager());
+            subscriptions = new LocalSubscriptionManager(getExecutionManager(), configMap);
         }
         return subscriptions;
     }
@@ -317,7 +317,7 @@ public class LocalManagementContext extends AbstractManagementContext {
         if (!isRunning()) throw new IllegalStateException("Management context no longer running");
 
         if (execution == null) {
-            execution = new BasicExecutionManager(getManagementNodeId());
+            execution = new BasicExecutionManager(getManagementNodeId(), configMap);
             gc = new BrooklynGarbageCollector(configMap, execution, getStorage());
         }
         return execution;
@@ -339,6 +339,7 @@ public class LocalManagementContext extends AbstractManagementContext {
             osgiManager = null;
         }
         if (usageManager != null) usageManager.terminate();
+        sharedHttpExecutors.close();
         if (execution != null) execution.shutdownNow();
         if (gc != null) gc.shutdownNow();
 
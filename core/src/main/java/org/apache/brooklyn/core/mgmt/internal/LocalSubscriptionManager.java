@@ -18,10 +18,11 @@
  */
 package org.apache.brooklyn.core.mgmt.internal;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.elvis;
-import static org.apache.brooklyn.util.JavaGroovyEquivalents.groovyTruth;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.join;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -41,6 +42,9 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.sensor.BasicSensorEvent;
@@ -53,6 +57,7 @@ import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
@@ -66,22 +71,75 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     
     private static final Logger LOG = LoggerFactory.getLogger(LocalSubscriptionManager.class);
 
+    /** @see #DELIVERY_MODE */
+    @Beta
+    public enum DeliveryMode {
+        /** a task is submitted for each event for each subscriber (the default) */
+        TASK_PER_EVENT,
+        /** events are queued per subscriber, and a single task delivers everything queued; see {@link SubscriptionDeliveryQueue} */
+        BATCHED
+    }
+    
+    @Beta
+    public static final ConfigKey<DeliveryMode> DELIVERY_MODE = ConfigKeys.newConfigKey(DeliveryMode.class,
+        "brooklyn.subscriptions.deliveryMode",
+        "how sensor events are delivered to subscribers: TASK_PER_EVENT (the default), "
+        + "or BATCHED where events for a subscriber are queued and delivered in order by one task",
+        DeliveryMode.TASK_PER_EVENT);
+    
+    @Beta
+    public static final ConfigKey<Integer> MAX_BATCH_SIZE = ConfigKeys.newIntegerConfigKey(
+        "brooklyn.subscriptions.maxBatchSize",
+        "when using BATCHED delivery, the maximum number of events delivered by one task "
+        + "before it makes way for a new one (so busy subscribers do not hold a thread indefinitely)",
+        1000);
+    
     protected final ExecutionManager em;
     
+    private final DeliveryMode deliveryMode;
+    private final int maxBatchSize;
+    
     private final String tostring = "SubscriptionContext("+Identifiers.getBase64IdFromValue(System.identityHashCode(this), 5)+")";
 
     private final AtomicLong totalEventsPublishedCount = new AtomicLong();
     private final AtomicLong totalEventsDeliveredCount = new AtomicLong();
     
+    private final AtomicLong totalBatchesCount = new AtomicLong();
+    private final AtomicLong totalBatchedEventsCount = new AtomicLong();
+    private final AtomicLong maxBatchSizeSeen = new AtomicLong();
+    private final AtomicLong totalDeliveryLagNanos = new AtomicLong();
+    private final AtomicLong maxDeliveryLagNanos = new AtomicLong();
+    
+    /** queues for {@link DeliveryMode#BATCHED} delivery, keyed by the execution tags used for delivery */
+    protected final ConcurrentMap<List<Object>, SubscriptionDeliveryQueue> deliveryQueues = new ConcurrentHashMap<List<Object>, SubscriptionDeliveryQueue>();
+    
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<String, Subscription> allSubscriptions = new ConcurrentHashMap<String, Subscription>();
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsBySubscriber = new ConcurrentHashMap<Object, Set<Subscription>>();
+    
+    /** key used in {@link #subscriptionsByProducerAndSensor} for a wildcard (null) producer or sensor */
+    private static final Object WILDCARD = new Object() {
+        @Override public String toString() { return "*"; }
+    };
+    
+    /**
+     * Subscriptions indexed by producer (or {@link #WILDCARD}) then by sensor name (or {@link #WILDCARD}).
+     * The arrays are never modified once in the map: changes (which are synchronized on this manager)
+     * replace the array, so publishing can read without locking or copying.
+     */
     @SuppressWarnings("rawtypes")
-    protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsByToken = new ConcurrentHashMap<Object, Set<Subscription>>();
+    protected final ConcurrentMap<Object, ConcurrentMap<Object, Subscription[]>> subscriptionsByProducerAndSensor = new ConcurrentHashMap<Object, ConcurrentMap<Object, Subscription[]>>();
     
     public LocalSubscriptionManager(ExecutionManager m) {
+        this(m, null);
+    }
+    
+    /** as {@link #LocalSubscriptionManager(ExecutionManager)}, but reading {@link #DELIVERY_MODE} etc from the given properties, if not null */
+    public LocalSubscriptionManager(ExecutionManager m, StringConfigMap config) {
         this.em = m;
+        this.deliveryMode = config==null ? DELIVERY_MODE.getDefaultValue() : config.getConfig(DELIVERY_MODE);
+        this.maxBatchSize = config==null ? MAX_BATCH_SIZE.getDefaultValue() : config.getConfig(MAX_BATCH_SIZE);
     }
         
     public long getNumSubscriptions() {
@@ -99,6 +157,66 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         return totalEventsDeliveredCount.get();
     }
     
+    @Beta
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+    
+    int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+    
+    /** The number of tasks run to deliver events in {@link DeliveryMode#BATCHED} mode */
+    @Beta
+    public long getTotalBatchesDelivered() {
+        return totalBatchesCount.get();
+    }
+    
+    /** The mean number of events delivered by each task in {@link DeliveryMode#BATCHED} mode */
+    @Beta
+    public double getMeanBatchSize() {
+        long batches = totalBatchesCount.get();
+        return batches==0 ? 0 : 1.0*totalBatchedEventsCount.get()/batches;
+    }
+    
+    /** The largest number of events delivered by one task in {@link DeliveryMode#BATCHED} mode */
+    @Beta
+    public long getLargestBatchSize() {
+        return maxBatchSizeSeen.get();
+    }
+    
+    /** The mean time in milliseconds between an event being queued and delivered, in {@link DeliveryMode#BATCHED} mode */
+    @Beta
+    public double getMeanDeliveryLagMillis() {
+        long events = totalBatchedEventsCount.get();
+        return events==0 ? 0 : totalDeliveryLagNanos.get()/1000000.0/events;
+    }
+    
+    /** The longest time in milliseconds between an event being queued and delivered, in {@link DeliveryMode#BATCHED} mode */
+    @Beta
+    public double getMaxDeliveryLagMillis() {
+        return maxDeliveryLagNanos.get()/1000000.0;
+    }
+    
+    void recordBatch(int size) {
+        if (size==0) return;
+        totalBatchesCount.incrementAndGet();
+        totalBatchedEventsCount.addAndGet(size);
+        updateMax(maxBatchSizeSeen, size);
+    }
+    
+    void recordDeliveryLag(long nanos) {
+        totalDeliveryLagNanos.addAndGet(nanos);
+        updateMax(maxDeliveryLagNanos, nanos);
+    }
+    
+    private static void updateMax(AtomicLong max, long val) {
+        long old;
+        while (val > (old = max.get())) {
+            if (max.compareAndSet(old, val)) return;
+        }
+    }
+    
     @Override
     @SuppressWarnings("unchecked")
     protected synchronized <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
@@ -127,13 +245,23 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         
         if (LOG.isDebugEnabled()) LOG.debug("Creating subscription {} for {} on {} {} in {}", new Object[] {s.id, s.subscriber, producer, sensor, this});
         allSubscriptions.put(s.id, s);
-        addToMapOfSets(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+        addToIndex(s);
         if (s.subscriber!=null) {
             addToMapOfSets(subscriptionsBySubscriber, s.subscriber, s);
         }
         if (!s.subscriberExecutionManagerTagSupplied && s.subscriberExecutionManagerTag!=null) {
             ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
         }
+        if (deliveryMode==DeliveryMode.BATCHED) {
+            List<Object> tags = getDeliveryTags(s);
+            SubscriptionDeliveryQueue queue = deliveryQueues.get(tags);
+            if (queue==null) {
+                // all callers are synchronized so no need for putIfAbsent
+                queue = new SubscriptionDeliveryQueue(this, em, tags, s.subscriber);
+                deliveryQueues.put(tags, queue);
+            }
+            s.deliveryQueue = queue;
+        }
 
         if (notifyOfInitialValue) {
             if (producer == null) {
@@ -159,14 +287,74 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     }
 
     @Override
-    public synchronized Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
+    public Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
         Set<SubscriptionHandle> subscriptions = new LinkedHashSet<SubscriptionHandle>();
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, sensor)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, sensor)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, null)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, null)), Collections.emptySet()));
+        Object producerKey = indexKey(source);
+        Object sensorKey = indexKey(sensor);
+        addAll(subscriptions, lookupInIndex(producerKey, sensorKey));
+        addAll(subscriptions, lookupInIndex(WILDCARD, sensorKey));
+        addAll(subscriptions, lookupInIndex(producerKey, WILDCARD));
+        addAll(subscriptions, lookupInIndex(WILDCARD, WILDCARD));
         return subscriptions;
     }
+    
+    private static void addAll(Set<SubscriptionHandle> result, Subscription<?>[] subs) {
+        if (subs!=null) Collections.addAll(result, subs);
+    }
+    
+    private static Object indexKey(Entity producer) {
+        return producer==null ? WILDCARD : producer;
+    }
+    
+    private static Object indexKey(Sensor<?> sensor) {
+        return sensor==null ? WILDCARD : checkNotNull(sensor.getName(), "sensor must have non-null name: %s", sensor);
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private Subscription[] lookupInIndex(Object producerKey, Object sensorKey) {
+        ConcurrentMap<Object, Subscription[]> bySensor = subscriptionsByProducerAndSensor.get(producerKey);
+        return bySensor==null ? null : bySensor.get(sensorKey);
+    }
+    
+    /** callers must be synchronized on this */
+    @SuppressWarnings("rawtypes")
+    private void addToIndex(Subscription s) {
+        Object producerKey = indexKey(s.producer);
+        Object sensorKey = indexKey(s.sensor);
+        ConcurrentMap<Object, Subscription[]> bySensor = subscriptionsByProducerAndSensor.get(producerKey);
+        if (bySensor==null) {
+            bySensor = new ConcurrentHashMap<Object, Subscription[]>();
+            subscriptionsByProducerAndSensor.put(producerKey, bySensor);
+        }
+        Subscription[] old = bySensor.get(sensorKey);
+        if (old==null) {
+            bySensor.put(sensorKey, new Subscription[] { s });
+        } else {
+            Subscription[] updated = Arrays.copyOf(old, old.length+1);
+            updated[old.length] = s;
+            bySensor.put(sensorKey, updated);
+        }
+    }
+    
+    /** callers must be synchronized on this */
+    @SuppressWarnings("rawtypes")
+    private boolean removeFromIndex(Subscription s) {
+        Object producerKey = indexKey(s.producer);
+        Object sensorKey = indexKey(s.sensor);
+        ConcurrentMap<Object, Subscription[]> bySensor = subscriptionsByProducerAndSensor.get(producerKey);
+        if (bySensor==null) return false;
+        Subscription[] old = bySensor.get(sensorKey);
+        if (old==null) return false;
+        List<Subscription> updated = MutableList.copyOf(Arrays.asList(old));
+        if (!updated.remove(s)) return false;
+        if (updated.isEmpty()) {
+            bySensor.remove(sensorKey);
+            if (bySensor.isEmpty()) subscriptionsByProducerAndSensor.remove(producerKey);
+        } else {
+            bySensor.put(sensorKey, updated.toArray(new Subscription[updated.size()]));
+        }
+        return true;
+    }
 
     /**
      * Unsubscribe the given subscription id.
@@ -179,18 +367,34 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (!(sh instanceof Subscription)) throw new IllegalArgumentException("Only subscription handles of type Subscription supported: sh="+sh+"; type="+(sh != null ? sh.getClass().getCanonicalName() : null));
         Subscription s = (Subscription) sh;
         boolean result = allSubscriptions.remove(s.id) != null;
-        boolean b2 = removeFromMapOfCollections(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+        boolean b2 = removeFromIndex(s);
         assert result==b2;
         if (s.subscriber!=null) {
             boolean b3 = removeFromMapOfCollections(subscriptionsBySubscriber, s.subscriber, s);
             assert b3 == b2;
         }
 
+        if (s.deliveryQueue!=null && !isDeliveryQueueInUse(s.deliveryQueue, s.subscriber)) {
+            // any events still queued will still be delivered, as the draining task holds the queue
+            deliveryQueues.values().remove(s.deliveryQueue);
+        }
+
         // FIXME ALEX - this seems wrong
         ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
         return result;
     }
 
+    @SuppressWarnings("rawtypes")
+    private boolean isDeliveryQueueInUse(SubscriptionDeliveryQueue queue, Object subscriber) {
+        Collection<Subscription> others = subscriber==null ? allSubscriptions.values() : subscriptionsBySubscriber.get(subscriber);
+        if (others!=null) {
+            for (Subscription other : others) {
+                if (other.deliveryQueue==queue) return true;
+            }
+        }
+        return false;
+    }
+    
     @Override
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public <T> void publish(final SensorEvent<T> event) {
@@ -209,28 +413,51 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (LOG.isTraceEnabled()) LOG.trace("{} got event {}", this, event);
         totalEventsPublishedCount.incrementAndGet();
         
-        Set<Subscription> subs = (Set<Subscription>) ((Set<?>) getSubscriptionsForEntitySensor(event.getSource(), event.getSensor()));
-        if (groovyTruth(subs)) {
-            if (LOG.isTraceEnabled()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
-            for (Subscription s : subs) {
-                submitPublishEvent(s, event, false);
-                // excludes initial so only do it here
-                totalEventsDeliveredCount.incrementAndGet();
-            }
+        if (LOG.isTraceEnabled()) {
+            Set<SubscriptionHandle> subs = getSubscriptionsForEntitySensor(event.getSource(), event.getSensor());
+            if (!subs.isEmpty()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
         }
+        
+        // look up each combination in turn, rather than via getSubscriptionsForEntitySensor,
+        // so that nothing is allocated or locked; a subscription is only ever in one of these
+        Object producerKey = indexKey(event.getSource());
+        Object sensorKey = indexKey(event.getSensor());
+        submitPublishEvents(lookupInIndex(producerKey, sensorKey), event);
+        if (producerKey!=WILDCARD) submitPublishEvents(lookupInIndex(WILDCARD, sensorKey), event);
+        if (sensorKey!=WILDCARD) submitPublishEvents(lookupInIndex(producerKey, WILDCARD), event);
+        if (producerKey!=WILDCARD && sensorKey!=WILDCARD) submitPublishEvents(lookupInIndex(WILDCARD, WILDCARD), event);
     }
     
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    private void submitPublishEvent(final Subscription s, final SensorEvent<?> event, final boolean isInitial) {
-        if (s.eventFilter!=null && !s.eventFilter.apply(event))
-            return;
-        
-        List<Object> tags = MutableList.builder()
+    @SuppressWarnings("rawtypes")
+    private void submitPublishEvents(Subscription[] subs, SensorEvent<?> event) {
+        if (subs==null) return;
+        for (Subscription s : subs) {
+            submitPublishEvent(s, event, false);
+            // excludes initial so only do it here
+            totalEventsDeliveredCount.incrementAndGet();
+        }
+    }
+    
+    private List<Object> getDeliveryTags(Subscription<?> s) {
+        return MutableList.builder()
             .addAll(s.subscriberExtraExecTags == null ? ImmutableList.of() : s.subscriberExtraExecTags)
             .add(s.subscriberExecutionManagerTag)
             .add(BrooklynTaskTags.SENSOR_TAG)
             .build()
             .asUnmodifiable();
+    }
+    
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void submitPublishEvent(final Subscription s, final SensorEvent<?> event, final boolean isInitial) {
+        if (s.eventFilter!=null && !s.eventFilter.apply(event))
+            return;
+        
+        if (s.deliveryQueue!=null) {
+            s.deliveryQueue.add(s, event);
+            return;
+        }
+        
+        List<Object> tags = getDeliveryTags(s);
         
         StringBuilder name = new StringBuilder("sensor ");
         StringBuilder description = new StringBuilder("Sensor ");
@@ -269,21 +496,27 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             }
             @Override
             public void run() {
-                try {
-                    int count = s.eventCount.incrementAndGet();
-                    if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, s);
-                    
-                    s.listener.onEvent(event);
-                } catch (Throwable t) {
-                    if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
-                        LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
-                    } else {
-                        LOG.warn("Error processing subscriptions to "+this+": "+t, t);
-                    }
-                }
+                deliver(s, event);
             }});
     }
     
+    /** invokes the listener, in the current thread */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    void deliver(Subscription s, SensorEvent<?> event) {
+        try {
+            int count = s.eventCount.incrementAndGet();
+            if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, s);
+            
+            s.listener.onEvent(event);
+        } catch (Throwable t) {
+            if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
+                LOG.debug("Error processing subscription "+s+" of "+event+", after entity unmanaged: "+t, t);
+            } else {
+                LOG.warn("Error processing subscription "+s+" of "+event+": "+t, t);
+            }
+        }
+    }
+    
     protected boolean includeDescriptionForSensorTask(SensorEvent<?> event) {
         // just do it for simple/quick things to avoid expensive toStrings
         // (info is rarely useful, but occasionally it will be)
@@ -40,6 +40,7 @@ import org.apache.brooklyn.core.objs.proxy.InternalLocationFactory;
 import org.apache.brooklyn.core.objs.proxy.InternalPolicyFactory;
 import org.apache.brooklyn.util.core.task.TaskTags;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.executor.SharedHttpExecutors;
 
 import com.google.common.annotations.Beta;
 
@@ -122,4 +123,8 @@ public interface ManagementContextInternal extends ManagementContext {
     @Beta
     ExternalConfigSupplierRegistry getExternalConfigProviderRegistry();
 
+    /** Holds the HTTP executor shared by everything in this management context, e.g. by HTTP feeds; closed on {@link #terminate()}. */
+    @Beta
+    SharedHttpExecutors getSharedHttpExecutors();
+
 }
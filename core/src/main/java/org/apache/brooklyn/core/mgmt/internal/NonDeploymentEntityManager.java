@@ -193,4 +193,34 @@ public class NonDeploymentEntityManager implements EntityManagerInternal {
         }
     }
     
+    @Override
+    public long getEntityTreeGeneration() {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getEntityTreeGeneration();
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public void onEntityTreeChanged() {
+        if (isInitialManagementContextReal()) {
+            ((EntityManagerInternal)initialManagementContext.getEntityManager()).onEntityTreeChanged();
+        }
+    }
+
+    @Override
+    public void onChildAdded(Entity parent, Entity child) {
+        if (isInitialManagementContextReal()) {
+            ((EntityManagerInternal)initialManagementContext.getEntityManager()).onChildAdded(parent, child);
+        }
+    }
+
+    @Override
+    public void onChildRemoved(Entity parent, Entity child) {
+        if (isInitialManagementContextReal()) {
+            ((EntityManagerInternal)initialManagementContext.getEntityManager()).onChildRemoved(parent, child);
+        }
+    }
+
 }
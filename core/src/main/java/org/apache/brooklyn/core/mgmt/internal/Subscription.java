@@ -44,6 +44,8 @@ class Subscription<T> implements SubscriptionHandle {
     public final AtomicInteger eventCount = new AtomicInteger();
     public Map<String,Object> flags;
     public Predicate<SensorEvent<T>> eventFilter;
+    /** set if events are to be queued for batched delivery, rather than submitted as individual tasks */
+    public SubscriptionDeliveryQueue deliveryQueue;
 
     public Subscription(Entity producer, Sensor<T> sensor, SensorEventListener<? super T> listener) {
         this.producer = producer;
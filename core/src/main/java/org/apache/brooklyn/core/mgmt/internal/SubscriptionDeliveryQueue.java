@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.util.collections.MutableMap;
+
+/**
+ * Queue of pending sensor events for one subscriber (strictly, one combination of execution tags,
+ * which normally means one subscriber), used by {@link LocalSubscriptionManager} when
+ * {@link LocalSubscriptionManager#DELIVERY_MODE} is {@link LocalSubscriptionManager.DeliveryMode#BATCHED BATCHED}.
+ * <p>
+ * Publishing appends to a lock-free queue, and a single drain task is submitted only if one is not already active;
+ * that task delivers events in order until the queue is empty (or the max batch size is reached,
+ * in which case a new drain task is submitted so that the thread is given back).
+ * As at most one drain task is active at a time, and the drain task carries the subscriber's execution tag
+ * (and so its {@link org.apache.brooklyn.util.core.task.SingleThreadedScheduler} where one is set),
+ * events are delivered in the order they were published, as with one task per event.
+ */
+class SubscriptionDeliveryQueue {
+
+    static class PendingDelivery {
+        final Subscription<?> subscription;
+        final SensorEvent<?> event;
+        final long enqueuedNanos = System.nanoTime();
+
+        PendingDelivery(Subscription<?> subscription, SensorEvent<?> event) {
+            this.subscription = subscription;
+            this.event = event;
+        }
+    }
+
+    private final LocalSubscriptionManager manager;
+    private final ExecutionManager em;
+    private final List<Object> tags;
+    private final String subscriberName;
+    private final Queue<PendingDelivery> pending = new ConcurrentLinkedQueue<PendingDelivery>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    SubscriptionDeliveryQueue(LocalSubscriptionManager manager, ExecutionManager em, List<Object> tags, Object subscriber) {
+        this.manager = manager;
+        this.em = em;
+        this.tags = tags;
+        this.subscriberName = ""+(subscriber instanceof Entity ? ((Entity)subscriber).getId() : subscriber);
+    }
+
+    /** Queues the event, including a subscription's initial value, which is delivered in order with the others. */
+    void add(Subscription<?> s, SensorEvent<?> event) {
+        pending.add(new PendingDelivery(s, event));
+        scheduleDrainIfNeeded();
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private void scheduleDrainIfNeeded() {
+        if (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+            Map<String, Object> execFlags = MutableMap.<String,Object>of("tags", tags,
+                "displayName", "sensor delivery to "+subscriberName,
+                "description", "Sensor events publishing to "+subscriberName);
+            em.submit(execFlags, new Runnable() {
+                @Override public void run() { drain(); }
+                @Override public String toString() { return "LSM.deliverBatch("+subscriberName+")"; }
+            });
+        }
+    }
+
+    private void drain() {
+        int maxBatchSize = manager.getMaxBatchSize();
+        int count = 0;
+        try {
+            PendingDelivery next;
+            while (count < maxBatchSize && (next = pending.poll()) != null) {
+                manager.recordDeliveryLag(System.nanoTime() - next.enqueuedNanos);
+                manager.deliver(next.subscription, next.event);
+                count++;
+            }
+        } finally {
+            manager.recordBatch(count);
+            draining.set(false);
+            // anything added after our last poll (or left over from a full batch) gets a new drain task
+            scheduleDrainIfNeeded();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionDeliveryQueue["+subscriberName+"; "+tags+"]";
+    }
+}
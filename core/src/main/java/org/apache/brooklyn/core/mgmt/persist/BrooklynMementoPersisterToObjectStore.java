@@ -26,12 +26,15 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -62,6 +65,7 @@ import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessorWithLock;
 import org.apache.brooklyn.core.mgmt.rebind.PeriodicDeltaChangeListener;
+import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoImpl;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoManifestImpl;
 import org.apache.brooklyn.core.typereg.BasicManagedBundle;
@@ -78,10 +82,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Utf8;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -100,6 +111,16 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private static final Logger LOG = LoggerFactory.getLogger(BrooklynMementoPersisterToObjectStore.class);
     public static final String PLANE_ID_FILE_NAME = "planeId";
+    /** snapshot of the checksum of every object in the store, compacting the change journal written by the master 
+     * if {@link RebindManagerImpl#REBIND_READ_ONLY_INCREMENTAL}; see {@link #loadChangesSinceLoad(RebindExceptionHandler)} */
+    @Beta
+    public static final String CHECKSUMS_FILE_NAME = "checksums";
+    /** sub-path of the entries of the change journal, each the checksums of the objects written (or removed) by one write to the store */
+    @Beta
+    public static final String CHANGES_SUB_PATH = "changes";
+    /** sequence numbers of the latest {@link #CHECKSUMS_FILE_NAME} snapshot and of the latest {@link #CHANGES_SUB_PATH change journal} entry */
+    @Beta
+    public static final String CHANGES_HEAD_FILE_NAME = "changesHead";
 
 
     public static final ConfigKey<Integer> PERSISTER_MAX_THREAD_POOL_SIZE = ConfigKeys.newIntegerConfigKey(
@@ -112,6 +133,21 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             "Maximum number of attempts to serialize a memento (e.g. if first attempts fail because of concurrent modifications of an entity)", 
             5);
 
+    /** format in which mementos are written; see {@link CompactMementoSerializer} */
+    @Beta
+    public enum SerializationFormat {
+        XML,
+        COMPACT
+    }
+
+    @Beta
+    public static final ConfigKey<SerializationFormat> PERSISTER_SERIALIZATION_FORMAT = ConfigKeys.newConfigKey(
+            SerializationFormat.class,
+            "persister.serializationFormat",
+            "Format for writing mementos to the persistence store: XML (the default), or COMPACT for a smaller binary encoding; "
+            + "either format can be read, whichever is configured", 
+            SerializationFormat.XML);
+
     private final PersistenceObjectStore objectStore;
     private final MementoSerializer<Object> serializerWithStandardClassLoader;
 
@@ -119,6 +155,8 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
     private final ListeningExecutorService executor;
 
+    private final AtomicLong bytesWritten = new AtomicLong();
+
     private volatile boolean writesAllowed = false;
     private volatile boolean writesShuttingDown = false;
     private StringConfigMap brooklynProperties;
@@ -132,6 +170,128 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
      */
     private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
 
+    /** for detecting changes, not tampering; a fast function is enough */
+    private static final HashFunction CHECKSUM_FUNCTION = Hashing.murmur3_128();
+    /** whether to write the change journal when master */
+    private final boolean writeChecksums;
+    /** checksum of each object in the store, by sub-path, as written (or last loaded) by this persister, if {@link #writeChecksums} */
+    private final Map<String, String> checksums = new ConcurrentHashMap<String, String>();
+    /** marks an object as removed in {@link #pendingChanges} and in the change journal */
+    private static final String REMOVED = "-";
+    /** checksum of each object written, or {@link #REMOVED}, by sub-path, since the last change journal entry, if {@link #writeChecksums} */
+    private final Map<String, String> pendingChanges = new ConcurrentHashMap<String, String>();
+    /** sequence number of the latest change journal entry written, or -1 if the journal is to be restarted by the next write; guarded by {@link #lock} */
+    private volatile long journalSequence = -1;
+    /** sequence number of the latest snapshot written; guarded by {@link #lock} */
+    private long journalSnapshotSequence = -1;
+    /** number of change journal entries, and the lines in them, since the latest snapshot; guarded by {@link #lock} */
+    private int journalEntries = 0, journalLines = 0;
+    /** journal entries after which it is compacted, even if short, so that there are not too many objects in the store */
+    private static final int MAX_JOURNAL_ENTRIES = 100;
+    /** whether any stale change journal has been removed, if not {@link #writeChecksums} */
+    private volatile boolean checksumsRemoved = false;
+    /** whether a missing change journal has been reported, when {@link #recordingLoads} */
+    private volatile boolean journalMissingReported = false;
+
+    /** A store object as read by a load, with the checksum of what was read. */
+    private static class LoadedObject {
+        final BrooklynObjectType type;
+        final String id;
+        final String contents;
+        final String checksum;
+        @Nullable final ByteSource jar;
+        @Nullable final String jarChecksum;
+
+        LoadedObject(BrooklynObjectType type, String id, String contents, @Nullable ByteSource jar, @Nullable byte[] jarData) {
+            this.type = type;
+            this.id = id;
+            this.contents = contents;
+            this.checksum = checksum(contents);
+            this.jar = jar;
+            this.jarChecksum = (jarData==null) ? null : checksum(jarData);
+        }
+
+        /** whether the given checksums, as persisted by the master, match what was read from the given sub-path */
+        boolean isUnchanged(String subPath, Map<String, String> persistedChecksums) {
+            return checksum.equals(persistedChecksums.get(subPath))
+                && (jarChecksum==null || jarChecksum.equals(persistedChecksums.get(subPath+".jar")));
+        }
+    }
+
+    /** What a load read, by sub-path, and the change journal entry it is up to date with, to tell what has changed since. */
+    private static class LoadRecord {
+        final Map<String, LoadedObject> objects;
+        final String planeId;
+        /** sequence number of the latest journal entry applied, or -1 if not known */
+        long sequence;
+
+        LoadRecord(Map<String, LoadedObject> objects, String planeId, long sequence) {
+            this.objects = objects;
+            this.planeId = planeId;
+            this.sequence = sequence;
+        }
+    }
+
+    /** The sequence numbers in {@link #CHANGES_HEAD_FILE_NAME}. */
+    private static class JournalHead {
+        final long snapshot;
+        final long latest;
+
+        JournalHead(long snapshot, long latest) {
+            this.snapshot = snapshot;
+            this.latest = latest;
+        }
+    }
+
+    /** What has been added, changed or removed in the store since the last load; see {@link BrooklynMementoPersisterToObjectStore#loadChangesSinceLoad(RebindExceptionHandler)}. */
+    @Beta
+    public static class ChangesSinceLoad {
+        private final BrooklynMementoRawData changed;
+        private final Map<BrooklynObjectType, Set<String>> removedIds;
+        private final Map<String, LoadedObject> loaded;
+
+        private ChangesSinceLoad(BrooklynMementoRawData changed, Map<BrooklynObjectType, Set<String>> removedIds, Map<String, LoadedObject> loaded) {
+            this.changed = changed;
+            this.removedIds = removedIds;
+            this.loaded = loaded;
+        }
+
+        /** the objects added or changed, with their contents */
+        public BrooklynMementoRawData getChanged() {
+            return changed;
+        }
+
+        /** the ids of the objects of the given type which have been removed */
+        public Set<String> getRemovedIds(BrooklynObjectType type) {
+            Set<String> result = removedIds.get(type);
+            return result==null ? ImmutableSet.<String>of() : result;
+        }
+
+        /** the types of object added, changed or removed */
+        public Set<BrooklynObjectType> getTypes() {
+            Set<BrooklynObjectType> result = MutableSet.copyOf(removedIds.keySet());
+            for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+                if (!changed.getObjectsOfType(type).isEmpty()) result.add(type);
+            }
+            return result;
+        }
+
+        public boolean isEmpty() {
+            return getTypes().isEmpty();
+        }
+
+        /** the contents of the given object as now loaded, whether or not it has changed; null if none is loaded */
+        @Nullable
+        public String getContents(BrooklynObjectType type, String id) {
+            LoadedObject result = loaded.get(getPath(type.getSubPathName(), id));
+            return result==null ? null : result.contents;
+        }
+    }
+
+    private volatile boolean recordingLoads = false;
+    /** the last load, if {@link #recordingLoads}; null if nothing loaded since */
+    private volatile LoadRecord lastLoad = null;
+
     public BrooklynMementoPersisterToObjectStore(PersistenceObjectStore objectStore, ManagementContext mgmt) {
         this(objectStore, mgmt, mgmt.getCatalogClassLoader());
     }
@@ -148,8 +308,9 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         this.brooklynProperties = brooklynProperties;
         
         int maxSerializationAttempts = brooklynProperties.getConfig(PERSISTER_MAX_SERIALIZATION_ATTEMPTS);
-        MementoSerializer<Object> rawSerializer = new XmlMementoSerializer<Object>(classLoader);
+        MementoSerializer<Object> rawSerializer = newRawSerializer(classLoader);
         this.serializerWithStandardClassLoader = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
+        this.writeChecksums = brooklynProperties.getConfig(RebindManagerImpl.REBIND_READ_ONLY_INCREMENTAL);
 
         int maxThreadPoolSize = brooklynProperties.getConfig(PERSISTER_MAX_THREAD_POOL_SIZE);
 
@@ -159,6 +320,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         objectStore.createSubPath("enrichers");
         objectStore.createSubPath("feeds");
         objectStore.createSubPath("catalog");
+        if (writeChecksums) objectStore.createSubPath(CHANGES_SUB_PATH);
 
         // FIXME does it belong here or to ManagementPlaneSyncRecordPersisterToObjectStore ?
         objectStore.createSubPath("plane");
@@ -170,6 +332,25 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             }}));
     }
 
+    /** total number of bytes of mementos (and bundles) written by this persister */
+    @Beta
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Beta
+    public SerializationFormat getSerializationFormat() {
+        SerializationFormat result = brooklynProperties.getConfig(PERSISTER_SERIALIZATION_FORMAT);
+        return result==null ? SerializationFormat.XML : result;
+    }
+
+    protected MementoSerializer<Object> newRawSerializer(ClassLoader classLoader) {
+        switch (getSerializationFormat()) {
+        case COMPACT: return new CompactMementoSerializer<Object>(classLoader);
+        default: return new XmlMementoSerializer<Object>(classLoader);
+        }
+    }
+
     public MementoSerializer<Object> getMementoSerializer() {
         return getSerializerWithStandardClassLoader();
     }
@@ -186,7 +367,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     protected MementoSerializer<Object> getSerializerWithCustomClassLoader(LookupContext lookupContext, ClassLoader classLoader) {
         int maxSerializationAttempts = brooklynProperties.getConfig(PERSISTER_MAX_SERIALIZATION_ATTEMPTS);
-        MementoSerializer<Object> rawSerializer = new XmlMementoSerializer<Object>(classLoader);
+        MementoSerializer<Object> rawSerializer = newRawSerializer(classLoader);
         MementoSerializer<Object> result = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
         result.setLookupContext(lookupContext);
         return result;
@@ -310,10 +491,178 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return subPathData;
     }
     
+    /**
+     * Sets whether {@link #loadMementoRawData(RebindExceptionHandler)} should remember what it loads,
+     * so that {@link #loadChangesSinceLoad(RebindExceptionHandler)} can read only the store objects added or changed since,
+     * and the next load need not read objects which are unchanged;
+     * for a hot standby or hot backup, which loads the persisted state repeatedly.
+     * This relies on the change journal written by the master (see {@link #CHANGES_HEAD_FILE_NAME});
+     * if there is none, this is reported, and every load reads every object.
+     */
+    @Beta
+    public void setRecordingLoads(boolean recordingLoads) {
+        this.recordingLoads = recordingLoads;
+        lastLoad = null;
+    }
+
+    /**
+     * Reads the store objects added or changed since the last {@link #loadMementoRawData(RebindExceptionHandler) load}
+     * (or the last call to this), as told by the change journal written by the master, and notes those removed,
+     * so that the changes can be applied to what was loaded; when nothing has changed, this reads only 
+     * the head of the journal and the plane id.
+     * Returns null if changes cannot be told this way: if not {@link #setRecordingLoads(boolean) recording loads},
+     * if nothing has been loaded, if the plane has changed, or if there is no journal; the next load then reads everything.
+     */
+    @Beta
+    @Nullable
+    public ChangesSinceLoad loadChangesSinceLoad(RebindExceptionHandler exceptionHandler) {
+        LoadRecord load = lastLoad;
+        if (!recordingLoads || load==null) return null;
+        ChangesSinceLoad result = updateLoad(load, Strings.emptyToNull(read(PLANE_ID_FILE_NAME)), exceptionHandler);
+        if (result==null) lastLoad = null;
+        return result;
+    }
+
+    /**
+     * Brings the given load up to date with the store, from the change journal: applies the entries written since
+     * the entry the load is up to date with, or if any of those have been compacted away, compares with the latest
+     * snapshot of checksums and applies the entries written since that.
+     * Returns what has changed, or null if that cannot be told (see {@link #loadChangesSinceLoad(RebindExceptionHandler)}).
+     */
+    @Nullable
+    private ChangesSinceLoad updateLoad(LoadRecord load, @Nullable String planeId, RebindExceptionHandler exceptionHandler) {
+        if (!Objects.equal(load.planeId, planeId)) return null;
+        JournalHead head = readJournalHead();
+        if (head==null) return null;
+        
+        // checksum (or REMOVED) by sub-path, of what has been written since the load
+        Map<String, String> changes = MutableMap.of();
+        long sequence = load.sequence;
+        boolean fromEntries = sequence>=0 && sequence>=head.snapshot-1 && sequence<=head.latest;
+        if (fromEntries) {
+            sequence = readJournalEntries(changes, sequence, head.latest);
+            // an entry is missing only if compacted since the head was read
+            fromEntries = (sequence==head.latest);
+        }
+        if (!fromEntries) {
+            String snapshot = read(CHECKSUMS_FILE_NAME);
+            changes.clear();
+            sequence = parseChecksums(changes, snapshot, true);
+            if (sequence<0) return null;
+            for (String subPath: load.objects.keySet()) {
+                if (!changes.containsKey(subPath)) changes.put(subPath, REMOVED);
+            }
+            // entries after a newer snapshot than the head read are picked up next time
+            sequence = readJournalEntries(changes, sequence, head.latest);
+        }
+        load.sequence = sequence;
+        return applyChanges(load, changes, exceptionHandler);
+    }
+
+    /** Reads the journal entries after the first sequence number up to the second, into the given changes, 
+     * stopping at any missing; returns the sequence number of the last read, or the first if none. */
+    private long readJournalEntries(Map<String, String> changes, long after, long latest) {
+        long sequence = after;
+        while (sequence<latest) {
+            String entry = read(getJournalEntryPath(sequence+1));
+            if (entry==null || parseChecksums(changes, entry, false)<0) break;
+            sequence++;
+        }
+        return sequence;
+    }
+
+    /** Reads the objects which the given changes show to differ from what is in the given load, and updates the load. */
+    private ChangesSinceLoad applyChanges(final LoadRecord load, Map<String, String> changes, RebindExceptionHandler exceptionHandler) {
+        final String bundlesSubPath = BrooklynObjectType.MANAGED_BUNDLE.getSubPathName()+"/";
+        Map<BrooklynObjectType, Set<String>> removedIds = MutableMap.of();
+        BrooklynMementoRawData.Builder toRead = BrooklynMementoRawData.builder();
+        for (Map.Entry<String, String> change: changes.entrySet()) {
+            String subPath = change.getKey();
+            // a bundle's jar is read along with the bundle
+            boolean isJar = subPath.startsWith(bundlesSubPath) && subPath.endsWith(".jar");
+            String objectSubPath = isJar ? Strings.removeFromEnd(subPath, ".jar") : subPath;
+            LoadedObject previous = load.objects.get(objectSubPath);
+            if (REMOVED.equals(change.getValue())) {
+                if (!isJar && previous!=null) {
+                    load.objects.remove(objectSubPath);
+                    addTo(removedIds, previous.type, previous.id);
+                }
+            } else if (previous==null || !change.getValue().equals(isJar ? previous.jarChecksum : previous.checksum)) {
+                BrooklynObjectType type = getTypeOfSubPath(objectSubPath);
+                if (type!=null) toRead.put(type, objectSubPath.substring(objectSubPath.indexOf('/')+1), objectSubPath);
+            }
+        }
+        
+        BrooklynMementoRawData subPathsToRead = toRead.build();
+        final Map<String, LoadedObject> read = new ConcurrentHashMap<String, LoadedObject>();
+        visitMemento("loading changes", subPathsToRead, new Visitor() {
+            @Override
+            public void visit(BrooklynObjectType type, String id, String contentsSubpath) throws Exception {
+                String contents = read(contentsSubpath);
+                if (contents==null) return;
+                String xmlId = new XPathHelper(contents, "/"+type.toCamelCase()+"/").get("id");
+                byte[] jarData = (type==BrooklynObjectType.MANAGED_BUNDLE) ? readBytes(contentsSubpath+".jar") : null;
+                read.put(contentsSubpath, new LoadedObject(type, xmlId, contents, (jarData==null) ? null : ByteSource.wrap(jarData), jarData));
+            }
+        }, exceptionHandler);
+        
+        BrooklynMementoRawData.Builder changed = BrooklynMementoRawData.builder();
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            for (String subPath: subPathsToRead.getObjectsOfType(type).values()) {
+                LoadedObject object = read.get(subPath);
+                LoadedObject previous = (object==null) ? load.objects.remove(subPath) : load.objects.put(subPath, object);
+                if (object!=null) {
+                    changed.put(type, object.id, object.contents);
+                    if (object.jar!=null) changed.bundleJar(object.id, object.jar);
+                } else if (previous!=null) {
+                    // removed since the change was written
+                    addTo(removedIds, previous.type, previous.id);
+                }
+            }
+        }
+        return new ChangesSinceLoad(changed.build(), removedIds, load.objects);
+    }
+
+    private static void addTo(Map<BrooklynObjectType, Set<String>> ids, BrooklynObjectType type, String id) {
+        Set<String> idsOfType = ids.get(type);
+        if (idsOfType==null) {
+            idsOfType = MutableSet.of();
+            ids.put(type, idsOfType);
+        }
+        idsOfType.add(id);
+    }
+
+    @Nullable
+    private static BrooklynObjectType getTypeOfSubPath(String subPath) {
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            if (subPath.startsWith(type.getSubPathName()+"/")) return type;
+        }
+        return null;
+    }
+
     @Override
     public BrooklynMementoRawData loadMementoRawData(final RebindExceptionHandler exceptionHandler) {
-        BrooklynMementoRawData subPathData = listMementoSubPathsAsData(exceptionHandler);
+        String planeId = Strings.emptyToNull(read(PLANE_ID_FILE_NAME));
+        
+        // a master about to take over records what it loads, to write checksums of objects it has not written itself
+        final boolean recordingThisLoad = recordingLoads || (writeChecksums && !writesAllowed);
+        final Map<String, LoadedObject> loaded = recordingThisLoad ? new ConcurrentHashMap<String, LoadedObject>() : null;
+        Map<String, LoadedObject> unchangedSubPaths = ImmutableMap.of();
+        long sequence = -1;
+        if (recordingLoads) {
+            // bring the previous load up to date, to reuse what it read; else note the journal entry this is up to date with
+            LoadRecord previousLoad = lastLoad;
+            if (previousLoad!=null && updateLoad(previousLoad, planeId, exceptionHandler)!=null) {
+                unchangedSubPaths = previousLoad.objects;
+                sequence = previousLoad.sequence;
+            } else {
+                JournalHead head = readJournalHead();
+                if (head!=null) sequence = head.latest;
+            }
+        }
+        final Map<String, LoadedObject> unchanged = unchangedSubPaths;
         
+        BrooklynMementoRawData subPathData = listMementoSubPathsAsData(exceptionHandler);
         final BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder();
         
         Visitor loaderVisitor = new Visitor() {
@@ -324,6 +673,14 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     return;
                 }
                 
+                LoadedObject previous = unchanged.get(contentsSubpath);
+                if (previous!=null && previous.type==type) {
+                    if (previous.jar!=null) builder.bundleJar(id, previous.jar);
+                    builder.put(type, previous.id, previous.contents);
+                    loaded.put(contentsSubpath, previous);
+                    return;
+                }
+                
                 String contents = null;
                 try {
                     contents = read(contentsSubpath);
@@ -332,51 +689,83 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     exceptionHandler.onLoadMementoFailed(type, "memento "+id+" read error", e);
                 }
                 
-                String xmlId = (String) XmlUtil.xpathHandlingIllegalChars(contents, "/"+type.toCamelCase()+"/id");
+                String xmlId = new XPathHelper(contents, "/"+type.toCamelCase()+"/").get("id");
                 String safeXmlId = Strings.makeValidFilename(xmlId);
                 if (!Objects.equal(id, safeXmlId))
                     LOG.warn("ID mismatch on "+type.toCamelCase()+", "+id+" from path, "+safeXmlId+" from xml");
                 
+                ByteSource jar = null;
+                byte[] jarData = null;
                 if (type == BrooklynObjectType.MANAGED_BUNDLE) {
                     // TODO write to temp file, destroy when loaded
-                    byte[] jarData = readBytes(contentsSubpath+".jar");
-                    builder.bundleJar(id, ByteSource.wrap(jarData));
+                    jarData = readBytes(contentsSubpath+".jar");
+                    jar = ByteSource.wrap(jarData);
+                    builder.bundleJar(id, jar);
                 }
                 builder.put(type, xmlId, contents);
+                if (loaded!=null && contents!=null) {
+                    loaded.put(contentsSubpath, new LoadedObject(type, xmlId, contents, jar, jarData));
+                }
             }
         };
 
         Stopwatch stopwatch = Stopwatch.createStarted();
 
-        builder.planeId(Strings.emptyToNull(read(PLANE_ID_FILE_NAME)));
+        builder.planeId(planeId);
         visitMemento("loading raw", subPathData, loaderVisitor, exceptionHandler);
         
         BrooklynMementoRawData result = builder.build();
+        if (recordingLoads) {
+            lastLoad = new LoadRecord(loaded, planeId, sequence);
+        }
+        if (writeChecksums && !writesAllowed && loaded!=null) {
+            checksums.clear();
+            for (Map.Entry<String, LoadedObject> entry: loaded.entrySet()) {
+                checksums.put(entry.getKey(), entry.getValue().checksum);
+                if (entry.getValue().jarChecksum!=null) checksums.put(entry.getKey()+".jar", entry.getValue().jarChecksum);
+            }
+            // the first write as master snapshots these, continuing the journal of the previous master
+            pendingChanges.clear();
+            journalSequence = -1;
+        }
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Loaded rebind raw data; took {}; {} entities, {} locations, {} policies, {} enrichers, {} feeds, {} catalog items, {} bundles, from {}", new Object[]{
+            LOG.debug("Loaded rebind raw data; took {}; {} entities, {} locations, {} policies, {} enrichers, {} feeds, {} catalog items, {} bundles, "
+                     + "{} unchanged since last load, from {}", new Object[]{
                      Time.makeTimeStringRounded(stopwatch.elapsed(TimeUnit.MILLISECONDS)), result.getEntities().size(), 
                      result.getLocations().size(), result.getPolicies().size(), result.getEnrichers().size(),
                      result.getFeeds().size(), result.getCatalogItems().size(), result.getBundles().size(),
-                     objectStore.getSummaryName() });
+                     unchanged.size(), objectStore.getSummaryName() });
         }
 
         return result;
     }
 
+    /** Reads fields of persisted state, which may be XML or in the {@link CompactMementoSerializer compact format}. */
     private static class XPathHelper {
         private String contents;
         private String prefix;
+        private CompactMementoSerializer.TopLevelFields compactFields;
 
         public XPathHelper(String contents, String prefix) {
             this.contents = contents;
             this.prefix = prefix;
+            if (CompactMementoSerializer.isCompact(contents)) {
+                // read directly, rather than converting to XML for xpath
+                this.compactFields = CompactMementoSerializer.readTopLevelFields(contents);
+            }
         }
 
         private String get(String innerPath) {
+            if (compactFields != null) {
+                // as xpath, empty if absent
+                String result = compactFields.get(innerPath);
+                return result==null ? "" : result;
+            }
             return (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix+innerPath);
         }
         private List<String> getStringList(String innerPath) {
+            if (compactFields != null) return MutableList.copyOf(compactFields.getStrings(innerPath));
             List<String> result = MutableList.of();
             final NodeList nodeList =
                 (NodeList) XmlUtil.xpathHandlingIllegalChars(contents, prefix + innerPath + "//string", XPathConstants.NODESET);
@@ -608,6 +997,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            updateChangeJournal(true, exceptionHandler);
             if (LOG.isDebugEnabled()) LOG.debug("Checkpointed entire memento in {}", Time.makeTimeStringRounded(stopwatch));
         } finally {
             lock.writeLock().unlock();
@@ -694,6 +1084,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            updateChangeJournal(false, exceptionHandler);
             
             return stopwatch;
         } finally {
@@ -764,7 +1155,11 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
     private void persist(String subPath, Memento memento, PersistenceExceptionHandler exceptionHandler) {
         try {
-            getWriter(getPath(subPath, memento.getId())).put(getSerializerWithStandardClassLoader().toString(memento));
+            String content = getSerializerWithStandardClassLoader().toString(memento);
+            String path = getPath(subPath, memento.getId());
+            getWriter(path).put(content);
+            if (writeChecksums) noteWritten(path, checksum(content));
+            bytesWritten.addAndGet(Utf8.encodedLength(content));
         } catch (Exception e) {
             exceptionHandler.onPersistMementoFailed(memento, e);
         }
@@ -775,7 +1170,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             if (content==null) {
                 LOG.warn("Null content for "+type+" "+id);
             }
-            getWriter(getPath(subPath, id)).put(content);
+            String path = getPath(subPath, id);
+            getWriter(path).put(content);
+            if (writeChecksums) noteWritten(path, (content!=null) ? checksum(content) : null);
+            if (content!=null) bytesWritten.addAndGet(Utf8.encodedLength(content));
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
         }
@@ -783,7 +1181,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private void persist(String subPath, BrooklynObjectType type, String id, ByteSource content, PersistenceExceptionHandler exceptionHandler) {
         try {
-            getWriter(getPath(subPath, id)).put(content);
+            String path = getPath(subPath, id);
+            getWriter(path).put(content);
+            if (writeChecksums) noteWritten(path, content.hash(CHECKSUM_FUNCTION).toString());
+            bytesWritten.addAndGet(content.size());
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
         }
@@ -791,8 +1192,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private void delete(String subPath, String id, PersistenceExceptionHandler exceptionHandler) {
         try {
-            StoreObjectAccessorWithLock w = getWriter(getPath(subPath, id));
+            String path = getPath(subPath, id);
+            StoreObjectAccessorWithLock w = getWriter(path);
             w.delete();
+            if (writeChecksums) noteWritten(path, null);
             synchronized (writers) {
                 writers.remove(id);
             }
@@ -820,6 +1223,168 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         }
     }
 
+    /** records the checksum of what has been written to the given sub-path, or that it has been removed if null, for the change journal */
+    private void noteWritten(String subPath, @Nullable String checksum) {
+        if (checksum!=null) checksums.put(subPath, checksum);
+        else checksums.remove(subPath);
+        pendingChanges.put(subPath, (checksum!=null) ? checksum : REMOVED);
+    }
+
+    private static String checksum(String contents) {
+        return CHECKSUM_FUNCTION.hashString(contents, Charsets.UTF_8).toString();
+    }
+
+    private static String checksum(byte[] contents) {
+        return CHECKSUM_FUNCTION.hashBytes(contents).toString();
+    }
+
+    /** the head of the change journal, or null if there is none; reported if loading for a standby, as every load then reads everything */
+    @Nullable
+    private JournalHead readJournalHead() {
+        String contents = read(CHANGES_HEAD_FILE_NAME);
+        JournalHead result = null;
+        if (contents!=null) {
+            String[] sequences = contents.trim().split(" ");
+            try {
+                if (sequences.length==2) result = new JournalHead(Long.parseLong(sequences[0]), Long.parseLong(sequences[1]));
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            if (result==null) LOG.warn("Invalid "+CHANGES_HEAD_FILE_NAME+" in "+objectStore.getSummaryName()+"; ignoring change journal: "+contents);
+        }
+        if (recordingLoads) {
+            if (result==null && !journalMissingReported) {
+                LOG.warn("No change journal in "+objectStore.getSummaryName()+", although "+RebindManagerImpl.REBIND_READ_ONLY_INCREMENTAL.getName()+" is set; "
+                    + "reading all persisted state on each rebind until the master writes one (for which the master must also have it set)");
+                journalMissingReported = true;
+            } else if (result!=null && journalMissingReported) {
+                LOG.info("Change journal found in "+objectStore.getSummaryName()+"; reading only persisted state which has changed on each rebind");
+                journalMissingReported = false;
+            }
+        }
+        return result;
+    }
+
+    private static String getJournalEntryPath(long sequence) {
+        return CHANGES_SUB_PATH+"/"+sequence;
+    }
+
+    /** sub-paths of the entries of the change journal; filtered, as some stores list everything with the sub-path as a prefix, including the head */
+    private List<String> listJournalEntries() {
+        List<String> result = MutableList.of();
+        for (String subPath: objectStore.listContentsWithSubPath(CHANGES_SUB_PATH)) {
+            if (subPath.startsWith(CHANGES_SUB_PATH+"/")) result.add(subPath);
+        }
+        return result;
+    }
+
+    /**
+     * Parses checksums, a line "checksum sub-path" for each object written, or "{@value #REMOVED} sub-path" if removed,
+     * into the given map; a snapshot starts with a line "sequence N".
+     * Returns N for a snapshot, 0 for a journal entry, or -1 if there are none or they are invalid.
+     */
+    private long parseChecksums(Map<String, String> result, @Nullable String contents, boolean snapshot) {
+        if (contents==null) return -1;
+        Long sequence = snapshot ? null : 0L;
+        for (String line: Splitter.on('\n').omitEmptyStrings().split(contents)) {
+            int separator = line.indexOf(' ');
+            if (separator<=0) {
+                LOG.warn("Invalid line in checksums in "+objectStore.getSummaryName()+"; ignoring them: "+line);
+                return -1;
+            }
+            if (sequence==null) {
+                try {
+                    if (line.substring(0, separator).equals("sequence")) sequence = Long.parseLong(line.substring(separator+1));
+                } catch (NumberFormatException e) {
+                    // reported below
+                }
+                if (sequence==null) {
+                    LOG.warn("Invalid "+CHECKSUMS_FILE_NAME+" in "+objectStore.getSummaryName()+"; ignoring it: "+line);
+                    return -1;
+                }
+            } else {
+                result.put(line.substring(separator+1), line.substring(0, separator));
+            }
+        }
+        return (sequence==null) ? -1 : sequence;
+    }
+
+    /**
+     * Adds an entry to the change journal, after writes have completed, if {@link #writeChecksums}:
+     * the checksum of each object written since the last entry, and each object removed,
+     * then the entry's sequence number to {@link #CHANGES_HEAD_FILE_NAME}. So each write to the store costs
+     * a write of its own changes, rather than of all checksums.
+     * <p>
+     * The journal is compacted at a checkpoint, on the first write as master (continuing the sequence of any
+     * previous master), and when it has as many lines as a snapshot, or {@link #MAX_JOURNAL_ENTRIES} entries:
+     * the checksums of everything in the store are written to {@link #CHECKSUMS_FILE_NAME} and older entries deleted.
+     * The latest entry is kept, so a standby which has read the one before it need not read the snapshot.
+     * <p>
+     * If not {@link #writeChecksums}, removes any journal written by a previous master, as it would no longer be updated.
+     */
+    private void updateChangeJournal(boolean checkpointing, PersistenceExceptionHandler exceptionHandler) {
+        try {
+            if (writeChecksums) {
+                boolean compacting = checkpointing;
+                if (journalSequence<0) {
+                    JournalHead head = readJournalHead();
+                    journalSequence = (head==null) ? 0 : head.latest;
+                    compacting = true;
+                }
+                Map<String, String> changes = MutableMap.of();
+                for (String subPath: ImmutableList.copyOf(pendingChanges.keySet())) {
+                    String checksum = pendingChanges.remove(subPath);
+                    if (checksum!=null) changes.put(subPath, checksum);
+                }
+                if (changes.isEmpty() && !compacting) return;
+                
+                long sequence = journalSequence+1;
+                StringBuilder entry = new StringBuilder();
+                for (Map.Entry<String, String> change: changes.entrySet()) {
+                    entry.append(change.getValue()).append(' ').append(change.getKey()).append('\n');
+                }
+                objectStore.newAccessor(getJournalEntryPath(sequence)).put(entry.toString());
+                bytesWritten.addAndGet(entry.length());
+                journalSequence = sequence;
+                journalEntries++;
+                journalLines += changes.size();
+                
+                if (compacting || journalEntries>=MAX_JOURNAL_ENTRIES || journalLines>=checksums.size()) {
+                    StringBuilder snapshot = new StringBuilder("sequence ").append(sequence).append('\n');
+                    for (Map.Entry<String, String> checksum: new TreeMap<String, String>(checksums).entrySet()) {
+                        snapshot.append(checksum.getValue()).append(' ').append(checksum.getKey()).append('\n');
+                    }
+                    getWriter(CHECKSUMS_FILE_NAME).put(snapshot.toString());
+                    bytesWritten.addAndGet(snapshot.length());
+                    journalSnapshotSequence = sequence;
+                    getWriter(CHANGES_HEAD_FILE_NAME).put(sequence+" "+sequence);
+                    for (String subPath: listJournalEntries()) {
+                        if (!subPath.equals(getJournalEntryPath(sequence))) objectStore.newAccessor(subPath).delete();
+                    }
+                    journalEntries = 0;
+                    journalLines = 0;
+                } else {
+                    getWriter(CHANGES_HEAD_FILE_NAME).put(journalSnapshotSequence+" "+sequence);
+                }
+                
+            } else if (!checksumsRemoved) {
+                StoreObjectAccessorWithLock head = getWriter(CHANGES_HEAD_FILE_NAME);
+                StoreObjectAccessorWithLock snapshot = getWriter(CHECKSUMS_FILE_NAME);
+                if (head.exists() || snapshot.exists()) {
+                    LOG.debug("Removing change journal from "+objectStore.getSummaryName()+", as this server is not configured to update it");
+                    head.delete();
+                    snapshot.delete();
+                    for (String subPath: listJournalEntries()) {
+                        objectStore.newAccessor(subPath).delete();
+                    }
+                }
+                checksumsRemoved = true;
+            }
+        } catch (Exception e) {
+            exceptionHandler.onPersistRawMementoFailed(BrooklynObjectType.UNKNOWN, CHANGES_HEAD_FILE_NAME, e);
+        }
+    }
+
     private ListenableFuture<?> asyncPersist(final String subPath, final Memento memento, final PersistenceExceptionHandler exceptionHandler) {
         return executor.submit(new Runnable() {
             @Override
@@ -852,7 +1417,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             }});
     }
 
-    private String getPath(String subPath, String id) {
+    private static String getPath(String subPath, String id) {
         return subPath+"/"+Strings.makeValidFilename(id);
     }
 
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.thoughtworks.xstream.io.binary.BinaryStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamWriter;
+import com.thoughtworks.xstream.io.copy.HierarchicalStreamCopier;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+
+/**
+ * A {@link MementoSerializer} which writes a compact binary encoding of the same structure
+ * that {@link XmlMementoSerializer} writes as XML, using the same aliases and converters.
+ * <p>
+ * The XStream binary stream (where element and attribute names are written once and then referred to by id)
+ * is deflated and then base64-encoded, with a {@link #FORMAT_PREFIX prefix} to identify it,
+ * because persistence stores hold mementos as strings.
+ * <p>
+ * Anything not in the compact format (i.e. legacy XML) is read as XML, so a store can be switched
+ * to this format without migration; objects are re-written in the compact format as they change.
+ * <p>
+ * Persisted state is read directly in this format when rebinding: {@link #readTopLevelFields(String)}
+ * gives the fields needed for the manifest, without instantiating any of the persisted objects.
+ * Code which inspects persisted state as XML (e.g. transformers) should use {@link #toXml(String)}.
+ */
+@Beta
+public class CompactMementoSerializer<T> extends XmlMementoSerializer<T> {
+
+    public static final String FORMAT_PREFIX = "brooklyn-compact-v1:";
+
+    // the binary stream reads and writes a few bytes at a time, which is slow without buffering
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final BaseEncoding BASE64 = BaseEncoding.base64();
+
+    public CompactMementoSerializer(ClassLoader classLoader) {
+        super(classLoader);
+    }
+
+    public CompactMementoSerializer(ClassLoader classLoader, Map<String, String> deserializingClassRenames) {
+        super(classLoader, deserializingClassRenames);
+    }
+
+    public static boolean isCompact(String contents) {
+        return contents != null && contents.startsWith(FORMAT_PREFIX);
+    }
+
+    @Override
+    public String toString(T memento) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // favour speed: the name tokens of the binary stream already remove most of the redundancy
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            BinaryStreamWriter writer = new BinaryStreamWriter(new BufferedOutputStream(
+                    new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE), BUFFER_SIZE));
+            xstream.marshal(memento, writer);
+            writer.close();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            deflater.end();
+        }
+        return FORMAT_PREFIX + BASE64.encode(bytes.toByteArray());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T fromString(String contents) {
+        if (!isCompact(contents)) {
+            return super.fromString(contents);
+        }
+        BinaryStreamReader reader = newBinaryReader(contents);
+        try {
+            return (T) xstream.unmarshal(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the XML equivalent of the given persisted state, which may be in the compact format
+     * or already XML (in which case it is returned unchanged).
+     */
+    public static String toXml(String contents) {
+        if (!isCompact(contents)) return contents;
+        BinaryStreamReader reader = newBinaryReader(contents);
+        StringWriter result = new StringWriter();
+        PrettyPrintWriter writer = new PrettyPrintWriter(result);
+        try {
+            new HierarchicalStreamCopier().copy(reader, writer);
+        } finally {
+            reader.close();
+        }
+        writer.flush();
+        return result.append("\n").toString();
+    }
+
+    /** As {@link #toXml(String)}, for all the persisted state in the given raw data. */
+    public static BrooklynMementoRawData toXml(BrooklynMementoRawData rawData) {
+        BrooklynMementoRawData.Builder result = BrooklynMementoRawData.builder()
+                .planeId(rawData.getPlaneId())
+                .bundleJars(rawData.getBundleJars());
+        for (BrooklynObjectType type : BrooklynObjectType.values()) {
+            if (type == BrooklynObjectType.UNKNOWN) continue;
+            for (Map.Entry<String, String> entry : getObjectsOfType(rawData, type).entrySet()) {
+                result.put(type, entry.getKey(), toXml(entry.getValue()));
+            }
+        }
+        return result.build();
+    }
+
+    private static Map<String, String> getObjectsOfType(BrooklynMementoRawData rawData, BrooklynObjectType type) {
+        switch (type) {
+        case ENTITY: return rawData.getEntities();
+        case LOCATION: return rawData.getLocations();
+        case POLICY: return rawData.getPolicies();
+        case ENRICHER: return rawData.getEnrichers();
+        case FEED: return rawData.getFeeds();
+        case CATALOG_ITEM: return rawData.getCatalogItems();
+        case MANAGED_BUNDLE: return rawData.getBundles();
+        default: throw new IllegalArgumentException(type+" not supported");
+        }
+    }
+
+    /**
+     * Reads the fields (i.e. the direct children of the root element) of the given compact persisted state,
+     * without instantiating any of the persisted objects. 
+     */
+    public static TopLevelFields readTopLevelFields(String contents) {
+        checkArgument(isCompact(contents), "not in compact format");
+        TopLevelFields result = new TopLevelFields();
+        BinaryStreamReader reader = newBinaryReader(contents);
+        try {
+            while (reader.hasMoreChildren()) {
+                reader.moveDown();
+                String name = reader.getNodeName();
+                String value = reader.getValue();
+                if (reader.hasMoreChildren()) {
+                    List<String> strings = MutableList.of();
+                    readDescendantStrings(reader, strings);
+                    if (!result.strings.containsKey(name)) result.strings.put(name, strings);
+                } else if (!result.values.containsKey(name)) {
+                    result.values.put(name, value);
+                }
+                reader.moveUp();
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private static void readDescendantStrings(BinaryStreamReader reader, List<String> result) {
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            boolean isString = "string".equals(reader.getNodeName());
+            String value = reader.getValue();
+            if (reader.hasMoreChildren()) {
+                readDescendantStrings(reader, result);
+            } else if (isString) {
+                result.add(value);
+            }
+            reader.moveUp();
+        }
+    }
+
+    /**
+     * The fields of persisted state, as read by {@link CompactMementoSerializer#readTopLevelFields(String)}:
+     * the text of fields with no nested elements, and the {@code string} elements nested in the others
+     * (such as the {@code searchPath} of an entity).
+     */
+    public static class TopLevelFields {
+        private final Map<String, String> values = MutableMap.of();
+        private final Map<String, List<String>> strings = MutableMap.of();
+
+        /** the text of the given field, or null if there is no such field (or it has nested elements) */
+        @Nullable
+        public String get(String name) {
+            return values.get(name);
+        }
+
+        /** the {@code string} elements nested (at any depth) in the given field, or an empty list */
+        public List<String> getStrings(String name) {
+            List<String> result = strings.get(name);
+            return result==null ? ImmutableList.<String>of() : result;
+        }
+    }
+
+    private static BinaryStreamReader newBinaryReader(String contents) {
+        byte[] bytes = BASE64.decode(contents.substring(FORMAT_PREFIX.length()).trim());
+        return new BinaryStreamReader(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(bytes)), BUFFER_SIZE));
+    }
+
+}
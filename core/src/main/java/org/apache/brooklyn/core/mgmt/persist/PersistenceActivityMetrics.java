@@ -32,20 +32,50 @@ public class PersistenceActivityMetrics {
     long count=0, failureCount=0;
     Long lastSuccessTime, lastDuration, lastFailureTime;
     List<Map<String,Object>> errorMessages = MutableList.of();
+    
+    long checkpointCount=0, checkpointObjectCount=0, checkpointBytes=0, checkpointMillis=0, coalescedCount=0;
+    Long lastCheckpointDuration, lastCheckpointObjectCount, lastCheckpointBytes;
+    Map<String,Long> lastPhaseDurations;
 
-    public void noteSuccess(Duration duration) {
+    public synchronized void noteSuccess(Duration duration) {
         count++;
         lastSuccessTime = System.currentTimeMillis();
         lastDuration = duration.toMilliseconds();
     }
     
-    public void noteFailure(Duration duration) {
+    public synchronized void noteFailure(Duration duration) {
         count++;
         failureCount++;
         lastFailureTime = System.currentTimeMillis();
         lastDuration = duration!=null ? duration.toMilliseconds() : -1;
     }
 
+    /** records a checkpoint having been written, from when its changes were collected until the write completed, 
+     * with the number of objects (mementos written and removed) and the number of bytes written */
+    public synchronized void noteCheckpoint(Duration duration, long objectCount, long bytes) {
+        checkpointCount++;
+        checkpointObjectCount += objectCount;
+        checkpointBytes += bytes;
+        checkpointMillis += duration.toMilliseconds();
+        lastCheckpointDuration = duration.toMilliseconds();
+        lastCheckpointObjectCount = objectCount;
+        lastCheckpointBytes = bytes;
+    }
+
+    /** records a checkpoint having been merged into one waiting to be written, rather than written separately */
+    public synchronized void noteCheckpointCoalesced() {
+        coalescedCount++;
+    }
+
+    /** records the time taken by each phase of the last run, in order, e.g. for the phases of a rebind */
+    public synchronized void notePhaseDurations(Map<String,Duration> phaseDurations) {
+        Map<String,Long> result = MutableMap.of();
+        for (Map.Entry<String,Duration> entry : phaseDurations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMilliseconds());
+        }
+        lastPhaseDurations = result;
+    }
+
     public void noteError(String error) {
         noteErrorObject(error);
     }
@@ -72,9 +102,26 @@ public class PersistenceActivityMetrics {
         result.put("lastFailureTimeUtc", lastFailureTime);
         result.put("lastFailureTimeMillisSince", since(lastFailureTime));
         result.put("errorMessages", MutableList.copyOf(errorMessages));
+        if (lastPhaseDurations!=null) result.put("lastPhaseDurations", MutableMap.copyOf(lastPhaseDurations));
+        result.put("checkpointCount", checkpointCount);
+        result.put("checkpointCoalescedCount", coalescedCount);
+        result.put("checkpointObjectCount", checkpointObjectCount);
+        result.put("checkpointBytes", checkpointBytes);
+        result.put("lastCheckpointDuration", lastCheckpointDuration);
+        result.put("lastCheckpointObjectCount", lastCheckpointObjectCount);
+        result.put("lastCheckpointBytes", lastCheckpointBytes);
+        result.put("lastCheckpointObjectsPerSecond", perSecond(lastCheckpointObjectCount, lastCheckpointDuration));
+        result.put("checkpointObjectsPerSecond", perSecond(checkpointObjectCount, checkpointMillis));
+        result.put("checkpointBytesPerSecond", perSecond(checkpointBytes, checkpointMillis));
         return result;
     }
 
+    private Double perSecond(Long count, Long millis) {
+        if (count==null || millis==null) return null;
+        // treat sub-millisecond checkpoints as taking a millisecond
+        return 1000.0 * count / Math.max(1, millis);
+    }
+
     private Long since(Long time) {
         if (time==null) return null;
         return System.currentTimeMillis() - time;
@@ -22,7 +22,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,18 +40,25 @@ import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.rebind.ChangeListener;
 import org.apache.brooklyn.api.mgmt.rebind.PersistenceExceptionHandler;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.Delta;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.Memento;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
 import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.api.typereg.ManagedBundle;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.task.ScheduledTask;
@@ -60,6 +71,7 @@ import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
@@ -76,6 +88,13 @@ import com.google.common.collect.Sets;
  * prevent hammering the persister when a bunch of entity attributes change (e.g. when the entity
  * has just polled over JMX/http/etc). Such a scheduled-write approach would be similar to the 
  * Nagle buffering algorithm in TCP (see tcp_nodelay).
+ * <p>
+ * If {@link #PIPELINED} is set, mementos for the changed objects are generated in parallel
+ * (by up to {@link #PIPELINED_MAX_THREADS} transient tasks), and the resulting delta is handed to a separate writer
+ * so that the next delta can be collected and generated while the previous one is being written.
+ * If a delta is still waiting to be written when the next is ready, the two are merged so that
+ * each object is written at most once (with its most recent memento).
+ * A forced persist ({@link #persistNowSafely()}) still waits for its delta to be written.
  * 
  * @author aled
  *
@@ -88,6 +107,19 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     private static final int INITIAL_LOG_WRITES = 5;
     private static final Duration PERSIST_PLANE_ID_PERIOD = Duration.ONE_HOUR;
 
+    @Beta
+    public static final ConfigKey<Boolean> PIPELINED = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.persistence.pipelined",
+            "Whether to generate mementos in parallel, and to write each delta in the background while the next is collected "
+            + "(merging deltas waiting to be written, so each object is written once with its latest state)",
+            false);
+
+    @Beta
+    public static final ConfigKey<Integer> PIPELINED_MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.persistence.pipelined.maxThreads",
+            "Maximum number of tasks generating mementos in parallel, if 'brooklyn.persistence.pipelined'",
+            4);
+
     private static class DeltaCollector {
         private String planeId;
 
@@ -207,6 +239,33 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     private CountdownTimer planeIdPersistTimer = CountdownTimer.newInstanceStarted(Duration.ZERO);
     private Supplier<String> planeIdSupplier;
 
+    private final boolean pipelined;
+    /** max number of tasks generating mementos in parallel, if pipelined */
+    private final int pipelinedMaxThreads;
+    /** writes deltas, one at a time; null unless pipelined;
+     * shut down by {@link #stop()} and replaced if anything is written afterwards; guarded by {@link #writeStageMutex} */
+    private ThreadPoolExecutor writer;
+    private final Object writeStageMutex = new Object();
+    /** delta waiting to be written by the {@link #writer}; guarded by {@link #writeStageMutex} */
+    private PendingWrite queuedWrite;
+    /** delta being written by the {@link #writer}; guarded by {@link #writeStageMutex} */
+    private PendingWrite currentWrite;
+    /** whether a delta is being written by the {@link #writer}; guarded by {@link #writeStageMutex} */
+    private boolean writeInProgress;
+
+    /** a delta for the {@link #writer}; the outcome fields are guarded by {@link #writeStageMutex} */
+    private static class PendingWrite {
+        final PersisterDeltaImpl delta;
+        final Stopwatch timer;
+        boolean done;
+        Throwable failure;
+        
+        PendingWrite(PersisterDeltaImpl delta, Stopwatch timer) {
+            this.delta = delta;
+            this.timer = timer;
+        }
+    }
+
     public PeriodicDeltaChangeListener(
             Supplier<String> planeIdSupplier,
             ExecutionContext executionContext,
@@ -214,6 +273,19 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             PersistenceExceptionHandler exceptionHandler,
             PersistenceActivityMetrics metrics,
             Duration period) {
+        this(planeIdSupplier, executionContext, persister, exceptionHandler, metrics, period, null);
+    }
+    
+    /** as {@link #PeriodicDeltaChangeListener(Supplier, ExecutionContext, BrooklynMementoPersister, PersistenceExceptionHandler, PersistenceActivityMetrics, Duration)}
+     * but reading {@link #PIPELINED} and {@link #PIPELINED_MAX_THREADS} from the given config (if not null) */
+    public PeriodicDeltaChangeListener(
+            Supplier<String> planeIdSupplier,
+            ExecutionContext executionContext,
+            BrooklynMementoPersister persister,
+            PersistenceExceptionHandler exceptionHandler,
+            PersistenceActivityMetrics metrics,
+            Duration period,
+            StringConfigMap config) {
         this.planeIdSupplier = planeIdSupplier;
         this.executionContext = executionContext;
         this.persister = persister;
@@ -224,6 +296,35 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         this.persistPoliciesEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_POLICY_PERSISTENCE_PROPERTY);
         this.persistEnrichersEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_ENRICHER_PERSISTENCE_PROPERTY);
         this.persistFeedsEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_FEED_PERSISTENCE_PROPERTY);
+        
+        this.pipelined = config != null && Boolean.TRUE.equals(config.getConfig(PIPELINED));
+        if (pipelined) {
+            pipelinedMaxThreads = Math.max(1, config.getConfig(PIPELINED_MAX_THREADS));
+            writer = newWriter();
+        } else {
+            pipelinedMaxThreads = 1;
+            writer = null;
+        }
+    }
+    
+    private static ThreadPoolExecutor newWriter() {
+        final String threadName = "brooklyn-persister-delta-writer";
+        // thread times out when idle, as listeners can be discarded (e.g. on HA mode change) without being stopped
+        ThreadPoolExecutor result = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+            new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, threadName);
+                    t.setDaemon(true);
+                    return t;
+                }});
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+    
+    /** whether this listener is in {@link #PIPELINED} mode */
+    @Beta
+    public boolean isPipelined() {
+        return pipelined;
     }
     
     public void start() {
@@ -239,7 +340,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                     return Tasks.<Void>builder().dynamic(false).displayName("periodic-persister").body(new Callable<Void>() {
                         @Override
                         public Void call() {
-                            persistNowSafely();
+                            persistNowSafely(false, false);
                             return null;
                         }}).build();
                 }
@@ -257,9 +358,9 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         synchronized (startStopMutex) {
             state = ListenerState.STOPPING;
             try {
+                CountdownTimer expiry = timeout.countdownTimer();
 
                 if (scheduledTask != null) {
-                    CountdownTimer expiry = timeout.countdownTimer();
                     try {
                         scheduledTask.cancel(false);  
                         waitForPendingComplete(expiry.getDurationRemaining().lowerBound(Duration.ZERO).add(graceTimeoutForSubsequentOperations), true);
@@ -275,6 +376,11 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                     scheduledTask = null;
                 }
 
+                if (pipelined) {
+                    // after the final flush above, so the writer has nothing left but any write already in progress
+                    shutdownWriter(expiry.getDurationRemaining().lowerBound(Duration.ZERO).add(graceTimeoutForSubsequentOperations));
+                }
+
                 // Discard all state that was waiting to be persisted
                 synchronized (this) {
                     deltaCollector = new DeltaCollector();
@@ -285,6 +391,31 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
+    /** whether the {@link #PIPELINED} writer has no thread left, as after {@link #stop()} */
+    @VisibleForTesting
+    boolean isWriterTerminated() {
+        synchronized (writeStageMutex) {
+            return writer == null || writer.isTerminated();
+        }
+    }
+    
+    private void shutdownWriter(Duration timeout) {
+        ThreadPoolExecutor oldWriter;
+        synchronized (writeStageMutex) {
+            oldWriter = writer;
+        }
+        oldWriter.shutdown();
+        try {
+            if (!oldWriter.awaitTermination(timeout.toMilliseconds(), TimeUnit.MILLISECONDS)) {
+                LOG.warn("Persistence writer took too long to terminate, when stopping persistence; interrupting it");
+                oldWriter.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            oldWriter.shutdownNow();
+            throw Exceptions.propagate(e);
+        }
+    }
+    
     /** Waits for any in-progress writes to be completed then for or any unwritten data to be written. */
     @VisibleForTesting
     public void waitForPendingComplete(Duration timeout, boolean canTrigger) throws InterruptedException, TimeoutException {
@@ -299,7 +430,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 if (!deltaCollector.isEmpty()) {
                     if (canTrigger) {
                         // but there is data that needs to be written
-                        persistNowSafely(true);
+                        persistNowSafely(true, false);
                     } else {
                         targetWriteCount = writeCount.get()+1;
                     }
@@ -319,6 +450,18 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                     }
                 }
             }
+            if (pipelined) {
+                // deltas are written in the background; wait for those to finish too
+                synchronized (writeStageMutex) {
+                    while (writeInProgress) {
+                        Duration left = timer.getDurationRemaining();
+                        if (!left.isPositive()) {
+                            throw new TimeoutException("Timeout waiting for background write of rebind-periodic-delta, after "+timer.getDurationElapsed());
+                        }
+                        writeStageMutex.wait(left.lowerBound(Repeater.DEFAULT_REAL_QUICK_PERIOD).toMilliseconds());
+                    }
+                }
+            }
         } else {
             // someone else has been writing for the entire time 
             throw new TimeoutException("Timeout waiting for completion of in-progress write of rebind-periodic-delta, after "+timer.getDurationElapsed());
@@ -368,15 +511,32 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
+    /**
+     * Persists the changes collected so far, returning whether that succeeded.
+     * If {@link #PIPELINED}, this waits for the background writer to finish writing them.
+     */
     @VisibleForTesting
     public boolean persistNowSafely() {
-        return persistNowSafely(false);
+        return persistNowSafely(false, true);
     }
     
-    private boolean persistNowSafely(boolean alreadyHasMutex) {
+    /**
+     * @param waitForWrite if {@link #PIPELINED}, whether to wait for the writer and return its result;
+     *        otherwise the write is left to the writer, which records its success or failure
+     */
+    private boolean persistNowSafely(boolean alreadyHasMutex, boolean waitForWrite) {
         Stopwatch timer = Stopwatch.createStarted();
         try {
-            persistNowInternal(alreadyHasMutex);
+            PendingWrite write = persistNowInternal(alreadyHasMutex);
+            if (pipelined) {
+                if (!waitForWrite) {
+                    if (write==null) metrics.noteSuccess(Duration.of(timer));
+                    return true;
+                }
+                // wait also for an earlier delta still being written, even if there was nothing new
+                if (write==null) write = getOutstandingWrite();
+                if (write!=null) return awaitWrite(write);
+            }
             metrics.noteSuccess(Duration.of(timer));
             return true;
         } catch (RuntimeInterruptedException e) {
@@ -400,13 +560,18 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
-    protected void persistNowInternal(boolean alreadyHasMutex) {
+    /**
+     * @return the write the delta was queued in, if {@link #PIPELINED} and there was a delta to write; otherwise null
+     */
+    protected PendingWrite persistNowInternal(boolean alreadyHasMutex) {
         if (!isActive() && state != ListenerState.STOPPING) {
-            return;
+            return null;
         }
+        Stopwatch checkpointTimer = Stopwatch.createStarted();
+        PendingWrite result = null;
         try {
             if (!alreadyHasMutex) persistingMutex.acquire();
-            if (!isActive() && state != ListenerState.STOPPING) return;
+            if (!isActive() && state != ListenerState.STOPPING) return null;
             
             // Writes to the datastore are lossy. We'll just log failures and move on.
             // (Most) entities will get updated multiple times in their lifecycle
@@ -448,12 +613,16 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 if (prevDeltaCollector.planeId != null) {
                     persisterDelta.planeId = prevDeltaCollector.planeId;
                 }
-                for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
-                    for (BrooklynObject instance: prevDeltaCollector.getCollectionOfType(type)) {
-                        try {
-                            persisterDelta.add(type, ((BrooklynObjectInternal)instance).getRebindSupport().getMemento());
-                        } catch (Exception e) {
-                            exceptionHandler.onGenerateMementoFailed(type, instance, e);
+                if (pipelined) {
+                    addMementosInParallel(prevDeltaCollector, persisterDelta);
+                } else {
+                    for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+                        for (BrooklynObject instance: prevDeltaCollector.getCollectionOfType(type)) {
+                            try {
+                                persisterDelta.add(type, ((BrooklynObjectInternal)instance).getRebindSupport().getMemento());
+                            } catch (Exception e) {
+                                exceptionHandler.onGenerateMementoFailed(type, instance, e);
+                            }
                         }
                     }
                 }
@@ -461,17 +630,11 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                     persisterDelta.removed(type, prevDeltaCollector.getRemovedIdsOfType(type));
                 }
 
-                /*
-                 * Need to guarantee "happens before", with any thread that subsequently reads
-                 * the mementos.
-                 * 
-                 * See MementoFileWriter.writeNow for the corresponding synchronization,
-                 * that guarantees its thread has values visible for reads.
-                 */
-                synchronized (new Object()) {}
-
-                // Tell the persister to persist it
-                persister.delta(persisterDelta, exceptionHandler);
+                if (pipelined) {
+                    result = submitWrite(new PendingWrite(persisterDelta, checkpointTimer));
+                } else {
+                    writeDelta(persisterDelta, checkpointTimer);
+                }
             }
         } catch (Exception e) {
             if (isActive()) {
@@ -487,6 +650,184 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             }
             if (!alreadyHasMutex) persistingMutex.release();
         }
+        return result;
+    }
+    
+    /**
+     * Generates the mementos in up to {@link #pipelinedMaxThreads} transient tasks in our execution context,
+     * so that they are generated in a task with the entitlement context of the caller, as in the serial case.
+     */
+    private void addMementosInParallel(DeltaCollector deltaCollector, PersisterDeltaImpl persisterDelta) {
+        final List<BrooklynObjectType> types = MutableList.of();
+        final List<BrooklynObject> instances = MutableList.of();
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            for (BrooklynObject instance: deltaCollector.getCollectionOfType(type)) {
+                types.add(type);
+                instances.add(instance);
+            }
+        }
+        final Memento[] mementos = new Memento[instances.size()];
+        final Exception[] failures = new Exception[instances.size()];
+        final AtomicInteger nextIndex = new AtomicInteger();
+        Runnable generator = new Runnable() {
+            @Override public void run() {
+                int i;
+                while ((i = nextIndex.getAndIncrement()) < mementos.length) {
+                    try {
+                        mementos[i] = ((BrooklynObjectInternal)instances.get(i)).getRebindSupport().getMemento();
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        failures[i] = e;
+                    }
+                }
+            }};
+        
+        List<Task<?>> workers = MutableList.of();
+        if (mementos.length > 1 && !executionContext.isShutdown()) {
+            for (int i=0; i<Math.min(pipelinedMaxThreads, mementos.length); i++) {
+                workers.add(executionContext.submit(Tasks.builder()
+                        .displayName("periodic-persister mementos "+(i+1))
+                        .dynamic(false)
+                        .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                        .body(generator)
+                        .build()));
+            }
+        } else {
+            generator.run();
+        }
+        for (Task<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                nextIndex.set(mementos.length);
+                for (Task<?> w : workers) w.cancel(true);
+                throw Exceptions.propagate(e);
+            } catch (ExecutionException e) {
+                throw Exceptions.propagate(e.getCause());
+            }
+        }
+        
+        // add in the same order as if generated sequentially
+        for (int i=0; i<mementos.length; i++) {
+            if (failures[i] != null) {
+                exceptionHandler.onGenerateMementoFailed(types.get(i), instances.get(i), failures[i]);
+            } else {
+                persisterDelta.add(types.get(i), mementos[i]);
+            }
+        }
+    }
+    
+    /** queues the delta for the writer, merging it into any delta already waiting to be written;
+     * returns the write that will include this delta */
+    private PendingWrite submitWrite(PendingWrite write) {
+        ThreadPoolExecutor currentWriter;
+        synchronized (writeStageMutex) {
+            if (queuedWrite != null) {
+                // keeps the earlier timer, so checkpoint duration includes the time the earlier changes spent waiting
+                queuedWrite.delta.addLater(write.delta);
+                metrics.noteCheckpointCoalesced();
+                return queuedWrite;
+            }
+            queuedWrite = write;
+            if (writeInProgress) return write;
+            writeInProgress = true;
+            if (writer.isShutdown()) writer = newWriter();
+            currentWriter = writer;
+        }
+        currentWriter.execute(new Runnable() {
+            @Override public void run() {
+                drainWrites();
+            }});
+        return write;
+    }
+    
+    /** the write which, when done, means everything queued so far has been written; or null */
+    private PendingWrite getOutstandingWrite() {
+        synchronized (writeStageMutex) {
+            return queuedWrite != null ? queuedWrite : currentWrite;
+        }
+    }
+    
+    /** waits for the writer to finish the given write, returning whether it succeeded */
+    private boolean awaitWrite(PendingWrite write) {
+        synchronized (writeStageMutex) {
+            while (!write.done) {
+                try {
+                    writeStageMutex.wait();
+                } catch (InterruptedException e) {
+                    throw Exceptions.propagate(e);
+                }
+            }
+            return write.failure == null;
+        }
+    }
+    
+    private void drainWrites() {
+        while (true) {
+            PendingWrite next;
+            synchronized (writeStageMutex) {
+                next = queuedWrite;
+                queuedWrite = null;
+                currentWrite = next;
+                if (next == null) {
+                    writeInProgress = false;
+                    writeStageMutex.notifyAll();
+                    return;
+                }
+            }
+            Throwable failure = null;
+            try {
+                writeDelta(next.delta, next.timer);
+                metrics.noteSuccess(Duration.of(next.timer));
+            } catch (Throwable t) {
+                failure = t;
+                if (isActive()) {
+                    LOG.error("Problem persisting change-delta", t);
+                    metrics.noteFailure(Duration.of(next.timer));
+                    metrics.noteError(t.toString());
+                } else {
+                    LOG.debug("Problem persisting, but no longer active (ignoring)", t);
+                }
+            } finally {
+                synchronized (writeStageMutex) {
+                    next.failure = failure;
+                    next.done = true;
+                    currentWrite = null;
+                    writeStageMutex.notifyAll();
+                }
+            }
+            Exceptions.propagateIfFatal(failure);
+        }
+    }
+    
+    private void writeDelta(PersisterDeltaImpl persisterDelta, Stopwatch checkpointTimer) {
+        long bytesBefore = getPersisterBytesWritten();
+        
+        /*
+         * Need to guarantee "happens before", with any thread that subsequently reads
+         * the mementos.
+         * 
+         * See MementoFileWriter.writeNow for the corresponding synchronization,
+         * that guarantees its thread has values visible for reads.
+         */
+        synchronized (new Object()) {}
+
+        // Tell the persister to persist it
+        persister.delta(persisterDelta, exceptionHandler);
+        
+        metrics.noteCheckpoint(Duration.of(checkpointTimer), countObjects(persisterDelta), getPersisterBytesWritten() - bytesBefore);
+    }
+    
+    private long getPersisterBytesWritten() {
+        return (persister instanceof BrooklynMementoPersisterToObjectStore) ? ((BrooklynMementoPersisterToObjectStore)persister).getBytesWritten() : 0;
+    }
+    
+    private static long countObjects(Delta delta) {
+        long result = 0;
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            result += delta.getObjectsOfType(type).size() + delta.getRemovedIdsOfType(type).size();
+        }
+        return result;
     }
     
     private void updatePlaneIdIfTimedOut() {
@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.mgmt.rebind;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Set;
 
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.Delta;
@@ -195,4 +196,36 @@ public class PersisterDeltaImpl implements Delta, MutableDelta {
         getRemovedIdsOfTypeMutable(type).addAll(removedIdsOfType);    
     }
 
+    /**
+     * Merges a delta computed after this one into this one, so that they can be written as one;
+     * for any object in both, the later delta's memento (or removal) replaces this one's.
+     */
+    @Beta
+    public void addLater(Delta later) {
+        if (later.planeId() != null) {
+            planeId = later.planeId();
+        }
+        for (BrooklynObjectType type : BrooklynObjectType.values()) {
+            if (type == BrooklynObjectType.UNKNOWN) continue;
+            Collection<? extends Memento> laterObjects = later.getObjectsOfType(type);
+            Collection<String> laterRemovedIds = later.getRemovedIdsOfType(type);
+            if (laterObjects.isEmpty() && laterRemovedIds.isEmpty()) continue;
+            
+            Set<String> laterIds = Sets.newHashSet(laterRemovedIds);
+            for (Memento memento : laterObjects) {
+                laterIds.add(memento.getId());
+            }
+            Iterator<Memento> mi = getMutableUncheckedObjectsOfType(type).iterator();
+            while (mi.hasNext()) {
+                if (laterIds.contains(mi.next().getId())) mi.remove();
+            }
+            Collection<String> removedIds = getRemovedIdsOfTypeMutable(type);
+            for (Memento memento : laterObjects) {
+                removedIds.remove(memento.getId());
+            }
+            addAll(type, laterObjects);
+            removedIds.addAll(laterRemovedIds);
+        }
+    }
+
 }
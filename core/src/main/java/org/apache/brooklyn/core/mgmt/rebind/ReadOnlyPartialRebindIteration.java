@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
+import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.internal.BrooklynObjectManagementMode;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
+import org.apache.brooklyn.core.mgmt.internal.ManagementTransitionMode;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore.ChangesSinceLoad;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+/**
+ * Rebinds, in a hot standby or hot backup, only the entities which have been added, changed or removed 
+ * since the last read-only rebind (and the entities whose adjuncts have), as told by the 
+ * {@link ChangesSinceLoad changes} read from the persistence store.
+ * The new instances replace the old behind their proxies, so unchanged entities keep their instances
+ * and refer to the new ones; locations and catalog items are left as they are.
+ */
+public class ReadOnlyPartialRebindIteration extends RebindIteration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadOnlyPartialRebindIteration.class);
+    
+    /** the types of item whose changes can be rebinded this way; for others a full rebind is needed */
+    public static final Set<BrooklynObjectType> SUPPORTED_TYPES = ImmutableSet.of(
+        BrooklynObjectType.ENTITY, BrooklynObjectType.POLICY, BrooklynObjectType.ENRICHER, BrooklynObjectType.FEED);
+    
+    protected final ChangesSinceLoad changes;
+    
+    public ReadOnlyPartialRebindIteration(RebindManagerImpl rebindManager, 
+            ManagementNodeState mode,
+            ClassLoader classLoader, RebindExceptionHandler exceptionHandler,
+            Semaphore rebindActive, AtomicInteger readOnlyRebindCount, PersistenceActivityMetrics rebindMetrics, BrooklynMementoPersister persistenceStoreAccess,
+            ChangesSinceLoad changes
+            ) {
+        super(rebindManager, mode, classLoader, exceptionHandler, rebindActive, readOnlyRebindCount, rebindMetrics, persistenceStoreAccess);
+        this.changes = Preconditions.checkNotNull(changes, "changes");
+    }
+
+    /** whether the given changes can be rebinded by this iteration, i.e. are only of entities and adjuncts */
+    public static boolean isApplicable(ChangesSinceLoad changes) {
+        return SUPPORTED_TYPES.containsAll(changes.getTypes());
+    }
+
+    @Override
+    protected boolean isRebindingActiveAgain() {
+        return false;
+    }
+    
+    @Override
+    protected void doRun() throws Exception {
+        Preconditions.checkState(ManagementNodeState.isHotProxy(mode), "Read-only partial rebind only supported in hot proxy modes, not "+mode);
+        Preconditions.checkState(isApplicable(changes), "Read-only partial rebind not supported for changes to %s", changes.getTypes());
+
+        LOG.debug("Partial rebind - rebinding ("+mode+", iteration "+readOnlyRebindCount+") changes to "+changes.getTypes()
+            +" from "+rebindManager.getPersister().getBackingStoreDescription()+"...");
+
+        super.doRun();
+    }
+    
+    /** 
+     * Rather than loading everything from the persistence store (as {@link InitialFullRebindIteration} does),
+     * this takes the changed entities, the owners of changed adjuncts, and all the adjuncts of those entities,
+     * from what the persister has loaded.
+     */
+    @Override
+    protected void loadManifestFiles() throws Exception {
+        checkEnteringPhase(1);
+        Preconditions.checkState(mementoRawData==null, "Memento raw data should not yet be set when calling this");
+        
+        Map<String, Entity> adjunctOwners = MutableMap.of();
+        for (Entity entity: managementContext.getEntityManager().getEntities()) {
+            for (BrooklynObject adjunct: getAdjuncts(entity)) {
+                adjunctOwners.put(adjunct.getId(), entity);
+            }
+        }
+        
+        BrooklynMementoRawData changed = changes.getChanged();
+        Set<String> entityIds = MutableSet.copyOf(changed.getEntities().keySet());
+        for (BrooklynObjectType type: SUPPORTED_TYPES) {
+            if (type==BrooklynObjectType.ENTITY) continue;
+            for (String adjunctId: Iterables.concat(changed.getObjectsOfType(type).keySet(), changes.getRemovedIds(type))) {
+                // a new adjunct has no owner yet; its owner's memento has changed to include it
+                Entity owner = adjunctOwners.get(adjunctId);
+                if (owner!=null) entityIds.add(owner.getId());
+            }
+        }
+        entityIds.removeAll(changes.getRemovedIds(BrooklynObjectType.ENTITY));
+        
+        BrooklynMementoRawData.Builder mementoRawBuilder = BrooklynMementoRawData.builder();
+        for (String entityId: entityIds) {
+            String contents = changes.getContents(BrooklynObjectType.ENTITY, entityId);
+            if (contents==null) {
+                // not loaded (e.g. failed to read), so cannot be rebinded
+                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityId);
+                continue;
+            }
+            mementoRawBuilder.put(BrooklynObjectType.ENTITY, entityId, contents);
+            Entity entity = managementContext.getEntityManager().getEntity(entityId);
+            if (entity!=null) {
+                for (BrooklynObject adjunct: getAdjuncts(entity)) {
+                    String adjunctContents = changes.getContents(BrooklynObjectType.of(adjunct), adjunct.getId());
+                    if (adjunctContents!=null) mementoRawBuilder.put(BrooklynObjectType.of(adjunct), adjunct.getId(), adjunctContents);
+                }
+            }
+        }
+        for (BrooklynObjectType type: SUPPORTED_TYPES) {
+            if (type==BrooklynObjectType.ENTITY) continue;
+            for (Map.Entry<String, String> adjunct: changed.getObjectsOfType(type).entrySet()) {
+                mementoRawBuilder.put(type, adjunct.getKey(), adjunct.getValue());
+            }
+        }
+        mementoRawData = mementoRawBuilder.build();
+
+        preprocessManifestFiles();
+    }
+    
+    private static Iterable<BrooklynObject> getAdjuncts(Entity entity) {
+        EntityInternal entityI = (EntityInternal) entity;
+        return Iterables.<BrooklynObject>concat(entityI.policies().asList(), entityI.enrichers().asList(), entityI.feeds().getFeeds());
+    }
+    
+    @Override
+    protected void initPlaneId() {
+        // managementPlaneId is already initialized, and a changed plane id causes a full rebind
+    }
+    
+    @Override
+    protected void installBundlesAndRebuildCatalog() {
+        checkEnteringPhase(2);
+        
+        // skip; changes to bundles and catalog items cause a full rebind
+    }
+    
+    @Override
+    protected Collection<String> getMementoRootEntities() {
+        // all entities are roots here, as their parents are not necessarily rebinded;
+        // managing them parent-first skips those already managed by recursing from their parents
+        return sortParentFirst(memento.getEntityMementos()).keySet();
+    }
+    
+    @Override
+    protected void cleanupOldLocations(Set<String> oldLocations) {
+        // not applicable here; changes to locations cause a full rebind
+    }
+    
+    @Override
+    protected void cleanupOldEntities(Set<String> oldEntities) {
+        // only those removed; the others are unchanged rather than old
+        EntityManagerInternal entityManager = (EntityManagerInternal)managementContext.getEntityManager();
+        Set<String> removedEntities = MutableSet.of();
+        for (String oldEntityId: changes.getRemovedIds(BrooklynObjectType.ENTITY)) {
+            if (oldEntities.contains(oldEntityId)) removedEntities.add(oldEntityId);
+        }
+        if (!removedEntities.isEmpty()) LOG.debug("Destroying removed entities on rebind: "+removedEntities);
+        for (String oldEntityId: removedEntities) {
+            // may have been unmanaged along with an ancestor
+            Entity oldEntity = entityManager.getEntity(oldEntityId);
+            if (oldEntity!=null) {
+                entityManager.unmanage(oldEntity, ManagementTransitionMode.guessing(
+                    BrooklynObjectManagementMode.MANAGED_PRIMARY, BrooklynObjectManagementMode.NONEXISTENT));
+            }
+        }
+    }
+
+}
@@ -29,7 +29,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,6 +43,7 @@ import org.apache.brooklyn.api.catalog.CatalogItem;
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.classloading.BrooklynClassLoadingContext;
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
 import org.apache.brooklyn.api.mgmt.rebind.RebindContext;
@@ -78,6 +83,7 @@ import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.location.AbstractLocation;
 import org.apache.brooklyn.core.location.internal.LocationInternal;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.mgmt.classloading.BrooklynClassLoadingContextSequential;
 import org.apache.brooklyn.core.mgmt.classloading.JavaBrooklynClassLoadingContext;
 import org.apache.brooklyn.core.mgmt.ha.OsgiBundleInstallationResult;
@@ -106,6 +112,7 @@ import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.ClassLoaderUtils;
 import org.apache.brooklyn.util.core.flags.FlagUtils;
+import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.javalang.Reflections;
@@ -142,6 +149,13 @@ Multi-phase deserialization:
 <li> 8. manage the entities
 </ul>
 
+ If {@link RebindManagerImpl#REBIND_PARALLEL} is set, phases 3, 5 and 6 run in parallel, in tasks:
+ objects are instantiated concurrently (and registered in the order of the manifest),
+ and separate trees of locations, and of entities under each application, are reconstructed concurrently,
+ each tree parent-first (except that trees containing groups with members are reconstructed afterwards, one at a time,
+ as members can be in other trees). Mementos are always deserialized (phase 4) concurrently by the persister.
+ The time taken by each phase is recorded in the rebind metrics.
+
  If underlying data-store is changed between first and second manifest read (e.g. to add an
  entity), then second phase might try to reconstitute an entity that has not been put in
  the rebindContext. This should not affect normal production usage, because rebind is run
@@ -185,12 +199,16 @@ public abstract class RebindIteration {
     protected final RebindContextImpl rebindContext;
     protected final Reflections reflections;
     protected final BrooklynObjectInstantiator instantiator;
+    protected final boolean parallel;
+    protected final int parallelMaxThreads;
     
     // populated in the course of a run
     
     // set on run start
     
     protected Stopwatch timer;
+    protected Stopwatch phaseTimer;
+    protected final Map<String,Duration> phaseDurations = MutableMap.of();
     /** phase is used to ensure our steps are run as we've expected, and documented (in javadoc at top).
      * it's worth the extra effort due to the complication and the subtleties. */
     protected int phase = 0;
@@ -233,6 +251,8 @@ public abstract class RebindIteration {
         rebindContext = new RebindContextImpl(managementContext, exceptionHandler, classLoader);
         reflections = new Reflections(classLoader).applyClassRenames(DeserializingClassRenamesProvider.INSTANCE.loadDeserializingMapping());
         instantiator = new BrooklynObjectInstantiator(classLoader, rebindContext, reflections);
+        parallel = Boolean.TRUE.equals(managementContext.getConfig().getConfig(RebindManagerImpl.REBIND_PARALLEL));
+        parallelMaxThreads = managementContext.getConfig().getConfig(RebindManagerImpl.REBIND_PARALLEL_MAX_THREADS);
         
         if (mode==ManagementNodeState.HOT_STANDBY || mode==ManagementNodeState.HOT_BACKUP) {
             rebindContext.setAllReadOnly();
@@ -249,18 +269,37 @@ public abstract class RebindIteration {
         return rebindContext;
     }
     
+    /** time taken by each phase of the last run, in order */
+    public Map<String,Duration> getPhaseDurations() {
+        return MutableMap.copyOf(phaseDurations);
+    }
+
     protected void doRun() throws Exception {
         loadManifestFiles();
+        notePhaseDone("loadManifests");
         initPlaneId();
         installBundlesAndRebuildCatalog();
+        notePhaseDone("installBundlesAndCatalog");
         instantiateLocationsAndEntities();
+        notePhaseDone("instantiateLocationsAndEntities");
         instantiateMementos();
+        notePhaseDone("deserializeMementos");
         instantiateAdjuncts(instantiator); 
+        notePhaseDone("instantiateAdjuncts");
         reconstructEverything();
+        notePhaseDone("reconstruct");
         associateAdjunctsWithEntities();
+        notePhaseDone("associateAdjuncts");
         manageTheObjects();
+        notePhaseDone("manage");
         finishingUp();
     }
+
+    /** records the time since the previous phase was done (or the run started) against the given phase name */
+    protected void notePhaseDone(String name) {
+        phaseDurations.put(name, Duration.of(phaseTimer));
+        phaseTimer.reset().start();
+    }
     
     protected abstract void loadManifestFiles() throws Exception;
     
@@ -277,6 +316,7 @@ public abstract class RebindIteration {
                 readOnlyRebindCount.incrementAndGet();
 
             timer = Stopwatch.createStarted();
+            phaseTimer = Stopwatch.createStarted();
             exceptionHandler.onStart(rebindContext);
 
             doRun();
@@ -284,10 +324,13 @@ public abstract class RebindIteration {
             exceptionHandler.onDone();
             
             rebindMetrics.noteSuccess(Duration.of(timer));
+            rebindMetrics.notePhaseDurations(phaseDurations);
+            logRebindingDebug("Rebind phase durations{}: {}", (parallel ? " (parallel)" : ""), phaseDurations);
             noteErrors(exceptionHandler, null);
             
         } catch (Exception e) {
             rebindMetrics.noteFailure(Duration.of(timer));
+            rebindMetrics.notePhaseDurations(phaseDurations);
             
             Exceptions.propagateIfFatal(e);
             noteErrors(exceptionHandler, e);
@@ -298,6 +341,75 @@ public abstract class RebindIteration {
             RebindTracker.reset();
         }
     }
+
+    /**
+     * Runs all the given jobs, concurrently if rebinding in parallel (otherwise in order in this thread),
+     * returning when all have completed. Jobs are expected to report their own failures to the {@link #exceptionHandler};
+     * anything they throw (e.g. when failing fast) is rethrown here once all jobs are done.
+     * <p>
+     * Concurrent jobs are run by up to {@link #parallelMaxThreads} transient tasks in the server execution context,
+     * so they have the entitlement context of the caller, as any other task it submits would.
+     */
+    protected void runAll(List<? extends Runnable> jobs) {
+        if (!parallel || jobs.size()<=1) {
+            for (Runnable job : jobs) {
+                job.run();
+            }
+            return;
+        }
+        final Queue<Runnable> remaining = new ConcurrentLinkedQueue<Runnable>(jobs);
+        List<Task<?>> workers = MutableList.of();
+        for (int i=0; i<Math.min(parallelMaxThreads, jobs.size()); i++) {
+            workers.add(managementContext.getServerExecutionContext().submit(Tasks.builder()
+                    .displayName("rebind worker "+(i+1))
+                    .dynamic(false)
+                    .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                    .body(new Runnable() {
+                        @Override public void run() {
+                            RebindTracker.setRebinding();
+                            try {
+                                Runnable job;
+                                while ((job = remaining.poll()) != null) {
+                                    job.run();
+                                }
+                            } finally {
+                                RebindTracker.reset();
+                            }
+                        }})
+                    .build()));
+        }
+        Throwable failure = null;
+        for (Task<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                remaining.clear();
+                for (Task<?> w : workers) w.cancel(true);
+                throw Exceptions.propagate(e);
+            } catch (ExecutionException e) {
+                if (failure==null) failure = e.getCause();
+            }
+        }
+        if (failure!=null) throw Exceptions.propagate(failure);
+    }
+
+    /** groups the given nodes (which should be parent-first) by the root of the tree they are in, keeping their order */
+    protected <T extends TreeNode> Collection<List<T>> groupByRoot(Map<String, T> nodesParentFirst) {
+        Map<String, String> rootIds = MutableMap.of();
+        Map<String, List<T>> result = MutableMap.of();
+        for (T node : nodesParentFirst.values()) {
+            String parentRootId = (node.getParent()==null) ? null : rootIds.get(node.getParent());
+            String rootId = (parentRootId!=null) ? parentRootId : node.getId();
+            rootIds.put(node.getId(), rootId);
+            List<T> tree = result.get(rootId);
+            if (tree==null) {
+                tree = MutableList.of();
+                result.put(rootId, tree);
+            }
+            tree.add(node);
+        }
+        return result.values();
+    }
     
     protected void checkEnteringPhase(int targetPhase) {
         phase++;
@@ -498,35 +610,52 @@ public abstract class RebindIteration {
         
         // Instantiate locations
         logRebindingDebug("RebindManager instantiating locations: {}", mementoManifest.getLocationIdToType().keySet());
+        final Map<String, Location> locations = new ConcurrentHashMap<String, Location>();
+        List<Runnable> jobs = MutableList.of();
         for (Map.Entry<String, String> entry : mementoManifest.getLocationIdToType().entrySet()) {
-            String locId = entry.getKey();
-            String locType = entry.getValue();
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
-            
-            try {
-                Location location = instantiator.newLocation(locId, locType);
-                rebindContext.registerLocation(locId, location);
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locType, e);
-            }
+            final String locId = entry.getKey();
+            final String locType = entry.getValue();
+            jobs.add(new Runnable() {
+                @Override public void run() {
+                    if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
+                    
+                    try {
+                        locations.put(locId, instantiator.newLocation(locId, locType));
+                    } catch (Exception e) {
+                        exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locType, e);
+                    }
+                }});
+        }
+        runAll(jobs);
+        for (String locId : mementoManifest.getLocationIdToType().keySet()) {
+            Location location = locations.get(locId);
+            if (location != null) rebindContext.registerLocation(locId, location);
         }
         
         // Instantiate entities
         logRebindingDebug("RebindManager instantiating entities: {}", mementoManifest.getEntityIdToManifest().keySet());
+        final Map<String, Entity> entities = new ConcurrentHashMap<String, Entity>();
+        jobs = MutableList.of();
         for (Map.Entry<String, EntityMementoManifest> entry : mementoManifest.getEntityIdToManifest().entrySet()) {
-            String entityId = entry.getKey();
-            EntityMementoManifest entityManifest = entry.getValue();
-            
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
-            
-            try {
-                Entity entity = instantiator.newEntity(entityManifest);
-                ((EntityInternal)entity).getManagementSupport().setReadOnly( rebindContext.isReadOnly(entity) );
-                rebindContext.registerEntity(entityId, entity);
-
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
-            }
+            final String entityId = entry.getKey();
+            final EntityMementoManifest entityManifest = entry.getValue();
+            jobs.add(new Runnable() {
+                @Override public void run() {
+                    if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
+                    
+                    try {
+                        Entity entity = instantiator.newEntity(entityManifest);
+                        ((EntityInternal)entity).getManagementSupport().setReadOnly( rebindContext.isReadOnly(entity) );
+                        entities.put(entityId, entity);
+                    } catch (Exception e) {
+                        exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
+                    }
+                }});
+        }
+        runAll(jobs);
+        for (String entityId : mementoManifest.getEntityIdToManifest().keySet()) {
+            Entity entity = entities.get(entityId);
+            if (entity != null) rebindContext.registerEntity(entityId, entity);
         }
     }
 
@@ -552,22 +681,30 @@ public abstract class RebindIteration {
         }
     }
 
-    protected void instantiateAdjuncts(BrooklynObjectInstantiator instantiator) {
+    protected void instantiateAdjuncts(final BrooklynObjectInstantiator instantiator) {
         
         checkEnteringPhase(5);
         
+        // instantiated (concurrently, if parallel) then registered in order, once all are done
+        final Map<String, Policy> policies = new ConcurrentHashMap<String, Policy>();
+        final Map<String, Enricher> enrichers = new ConcurrentHashMap<String, Enricher>();
+        final Map<String, Feed> feeds = new ConcurrentHashMap<String, Feed>();
+        List<Runnable> jobs = MutableList.of();
+        
         // Instantiate policies
         if (rebindManager.persistPoliciesEnabled) {
             logRebindingDebug("RebindManager instantiating policies: {}", memento.getPolicyIds());
-            for (PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
-                logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
-                
-                try {
-                    Policy policy = instantiator.newPolicy(policyMemento);
-                    rebindContext.registerPolicy(policyMemento.getId(), policy);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e);
-                }
+            for (final PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
+                jobs.add(new Runnable() {
+                    @Override public void run() {
+                        logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
+                        
+                        try {
+                            policies.put(policyMemento.getId(), instantiator.newPolicy(policyMemento));
+                        } catch (Exception e) {
+                            exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e);
+                        }
+                    }});
             }
         } else {
             logRebindingDebug("Not rebinding policies; feature disabled: {}", memento.getPolicyIds());
@@ -576,15 +713,17 @@ public abstract class RebindIteration {
         // Instantiate enrichers
         if (rebindManager.persistEnrichersEnabled) {
             logRebindingDebug("RebindManager instantiating enrichers: {}", memento.getEnricherIds());
-            for (EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
-                logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
-
-                try {
-                    Enricher enricher = instantiator.newEnricher(enricherMemento);
-                    rebindContext.registerEnricher(enricherMemento.getId(), enricher);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e);
-                }
+            for (final EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
+                jobs.add(new Runnable() {
+                    @Override public void run() {
+                        logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
+
+                        try {
+                            enrichers.put(enricherMemento.getId(), instantiator.newEnricher(enricherMemento));
+                        } catch (Exception e) {
+                            exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e);
+                        }
+                    }});
             }
         } else {
             logRebindingDebug("Not rebinding enrichers; feature disabled: {}", memento.getEnricherIds());
@@ -593,122 +732,202 @@ public abstract class RebindIteration {
         // Instantiate feeds
         if (rebindManager.persistFeedsEnabled) {
             logRebindingDebug("RebindManager instantiating feeds: {}", memento.getFeedIds());
-            for (FeedMemento feedMemento : memento.getFeedMementos().values()) {
-                if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
-
-                try {
-                    Feed feed = instantiator.newFeed(feedMemento);
-                    rebindContext.registerFeed(feedMemento.getId(), feed);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e);
-                }
+            for (final FeedMemento feedMemento : memento.getFeedMementos().values()) {
+                jobs.add(new Runnable() {
+                    @Override public void run() {
+                        if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
+
+                        try {
+                            feeds.put(feedMemento.getId(), instantiator.newFeed(feedMemento));
+                        } catch (Exception e) {
+                            exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e);
+                        }
+                    }});
             }
         } else {
             logRebindingDebug("Not rebinding feeds; feature disabled: {}", memento.getFeedIds());
         }
+        
+        runAll(jobs);
+        for (String id : memento.getPolicyMementos().keySet()) {
+            if (policies.containsKey(id)) rebindContext.registerPolicy(id, policies.get(id));
+        }
+        for (String id : memento.getEnricherMementos().keySet()) {
+            if (enrichers.containsKey(id)) rebindContext.registerEnricher(id, enrichers.get(id));
+        }
+        for (String id : memento.getFeedMementos().keySet()) {
+            if (feeds.containsKey(id)) rebindContext.registerFeed(id, feeds.get(id));
+        }
     }
 
     protected void reconstructEverything() {
         
         checkEnteringPhase(6);
         
-        // Reconstruct locations
+        // Reconstruct locations (each tree of locations parent-first, separate trees concurrently if parallel)
         logRebindingDebug("RebindManager reconstructing locations");
-        for (LocationMemento locMemento : sortParentFirst(memento.getLocationMementos()).values()) {
-            Location location = rebindContext.getLocation(locMemento.getId());
-            logRebindingDebug("RebindManager reconstructing location {}", locMemento);
-            if (location == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
-            } else {
-                try {
-                    ((LocationInternal)location).getRebindSupport().reconstruct(rebindContext, locMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, location, e);
-                }
-            }
+        List<Runnable> jobs = MutableList.of();
+        for (final List<LocationMemento> tree : groupByRoot(sortParentFirst(memento.getLocationMementos()))) {
+            jobs.add(new Runnable() {
+                @Override public void run() {
+                    for (LocationMemento locMemento : tree) {
+                        reconstructLocation(locMemento);
+                    }
+                }});
         }
+        runAll(jobs);
 
-        // Reconstruct policies
+        // Reconstruct policies, enrichers and feeds; those which fail are unregistered once all are done
+        final Queue<BrooklynObject> failedAdjuncts = new ConcurrentLinkedQueue<BrooklynObject>();
+        jobs = MutableList.of();
         if (rebindManager.persistPoliciesEnabled) {
             logRebindingDebug("RebindManager reconstructing policies");
-            for (PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
-                Policy policy = rebindContext.getPolicy(policyMemento.getId());
-                logRebindingDebug("RebindManager reconstructing policy {}", policyMemento);
-   
-                if (policy == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.POLICY, policyMemento.getId());
-                } else {
-                    try {
-                        policy.getRebindSupport().reconstruct(rebindContext, policyMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.POLICY, policy, e);
-                        rebindContext.unregisterPolicy(policy);
-                    }
-                }
+            for (final PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
+                jobs.add(new Runnable() {
+                    @Override public void run() {
+                        reconstructPolicy(policyMemento, failedAdjuncts);
+                    }});
             }
         }
-
-        // Reconstruct enrichers
         if (rebindManager.persistEnrichersEnabled) {
             logRebindingDebug("RebindManager reconstructing enrichers");
-            for (EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
-                Enricher enricher = rebindContext.getEnricher(enricherMemento.getId());
-                logRebindingDebug("RebindManager reconstructing enricher {}", enricherMemento);
-      
-                if (enricher == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.ENRICHER, enricherMemento.getId());
-                } else {
-                    try {
-                        enricher.getRebindSupport().reconstruct(rebindContext, enricherMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.ENRICHER, enricher, e);
-                        rebindContext.unregisterEnricher(enricher);
-                    }
-                }
+            for (final EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
+                jobs.add(new Runnable() {
+                    @Override public void run() {
+                        reconstructEnricher(enricherMemento, failedAdjuncts);
+                    }});
             }
         }
-   
-        // Reconstruct feeds
         if (rebindManager.persistFeedsEnabled) {
             logRebindingDebug("RebindManager reconstructing feeds");
-            for (FeedMemento feedMemento : memento.getFeedMementos().values()) {
-                Feed feed = rebindContext.getFeed(feedMemento.getId());
-                logRebindingDebug("RebindManager reconstructing feed {}", feedMemento);
-      
-                if (feed == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.FEED, feedMemento.getId());
-                } else {
-                    try {
-                        feed.getRebindSupport().reconstruct(rebindContext, feedMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.FEED, feed, e);
-                        rebindContext.unregisterFeed(feed);
-                    }
-                }
-
+            for (final FeedMemento feedMemento : memento.getFeedMementos().values()) {
+                jobs.add(new Runnable() {
+                    @Override public void run() {
+                        reconstructFeed(feedMemento, failedAdjuncts);
+                    }});
+            }
+        }
+        try {
+            runAll(jobs);
+        } finally {
+            for (BrooklynObject adjunct : failedAdjuncts) {
+                if (adjunct instanceof Policy) rebindContext.unregisterPolicy((Policy)adjunct);
+                else if (adjunct instanceof Enricher) rebindContext.unregisterEnricher((Enricher)adjunct);
+                else if (adjunct instanceof Feed) rebindContext.unregisterFeed((Feed)adjunct);
             }
         }
    
-        // Reconstruct entities
+        // Reconstruct entities (each application's tree parent-first, separate trees concurrently if parallel);
+        // groups can have members in other trees, so trees with groups are done afterwards, in this thread
         logRebindingDebug("RebindManager reconstructing entities");
-        for (EntityMemento entityMemento : sortParentFirst(memento.getEntityMementos()).values()) {
-            Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
-            logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
-   
-            if (entity == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
-            } else {
-                try {
-                    entityMemento.injectTypeClass(entity.getClass());
-                    ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
-                }
+        jobs = MutableList.of();
+        List<List<EntityMemento>> treesWithGroups = MutableList.of();
+        for (final List<EntityMemento> tree : groupByRoot(sortParentFirst(memento.getEntityMementos()))) {
+            if (hasMembers(tree)) {
+                treesWithGroups.add(tree);
+                continue;
+            }
+            jobs.add(new Runnable() {
+                @Override public void run() {
+                    for (EntityMemento entityMemento : tree) {
+                        reconstructEntity(entityMemento);
+                    }
+                }});
+        }
+        runAll(jobs);
+        for (List<EntityMemento> tree : treesWithGroups) {
+            for (EntityMemento entityMemento : tree) {
+                reconstructEntity(entityMemento);
+            }
+        }
+    }
+
+    private static boolean hasMembers(List<EntityMemento> tree) {
+        for (EntityMemento entityMemento : tree) {
+            if (!entityMemento.getMembers().isEmpty()) return true;
+        }
+        return false;
+    }
+
+    protected void reconstructLocation(LocationMemento locMemento) {
+        Location location = rebindContext.getLocation(locMemento.getId());
+        logRebindingDebug("RebindManager reconstructing location {}", locMemento);
+        if (location == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
+        } else {
+            try {
+                ((LocationInternal)location).getRebindSupport().reconstruct(rebindContext, locMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, location, e);
+            }
+        }
+    }
+
+    protected void reconstructPolicy(PolicyMemento policyMemento, Collection<? super Policy> failures) {
+        Policy policy = rebindContext.getPolicy(policyMemento.getId());
+        logRebindingDebug("RebindManager reconstructing policy {}", policyMemento);
+
+        if (policy == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.POLICY, policyMemento.getId());
+        } else {
+            try {
+                policy.getRebindSupport().reconstruct(rebindContext, policyMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.POLICY, policy, e);
+                failures.add(policy);
+            }
+        }
+    }
+
+    protected void reconstructEnricher(EnricherMemento enricherMemento, Collection<? super Enricher> failures) {
+        Enricher enricher = rebindContext.getEnricher(enricherMemento.getId());
+        logRebindingDebug("RebindManager reconstructing enricher {}", enricherMemento);
+
+        if (enricher == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.ENRICHER, enricherMemento.getId());
+        } else {
+            try {
+                enricher.getRebindSupport().reconstruct(rebindContext, enricherMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.ENRICHER, enricher, e);
+                failures.add(enricher);
+            }
+        }
+    }
+
+    protected void reconstructFeed(FeedMemento feedMemento, Collection<? super Feed> failures) {
+        Feed feed = rebindContext.getFeed(feedMemento.getId());
+        logRebindingDebug("RebindManager reconstructing feed {}", feedMemento);
+
+        if (feed == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.FEED, feedMemento.getId());
+        } else {
+            try {
+                feed.getRebindSupport().reconstruct(rebindContext, feedMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.FEED, feed, e);
+                failures.add(feed);
+            }
+        }
+    }
+
+    protected void reconstructEntity(EntityMemento entityMemento) {
+        Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
+        logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
+
+        if (entity == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
+        } else {
+            try {
+                entityMemento.injectTypeClass(entity.getClass());
+                ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
             }
         }
     }
@@ -51,6 +51,7 @@ import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.ha.HighAvailabilityManagerImpl;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore.ChangesSinceLoad;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils.CreateBackupMode;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
@@ -111,6 +112,34 @@ public class RebindManagerImpl implements RebindManager {
                 + "then linear regression to allow max 5% at 100 items and above", 
                 QuorumChecks.newLinearRange("[[0,-2],[10,8],[100,95],[200,190]]"));
 
+    @Beta
+    public static final ConfigKey<Boolean> REBIND_PARALLEL =
+        ConfigKeys.newBooleanConfigKey("rebind.parallel",
+                "Whether to instantiate and reconstruct entities, locations, policies, enrichers and feeds in parallel when rebinding; "
+                + "separate trees of locations, and of entities under each application, are reconstructed concurrently "
+                + "(each tree still parent-first, and trees containing groups with members afterwards, one at a time)", 
+                false);
+
+    @Beta
+    public static final ConfigKey<Integer> REBIND_PARALLEL_MAX_THREADS =
+        ConfigKeys.newIntegerConfigKey("rebind.parallel.maxThreads",
+                "Maximum number of threads to use when rebinding in parallel", 
+                8);
+
+    @Beta
+    public static final ConfigKey<Boolean> REBIND_READ_ONLY_INCREMENTAL =
+        ConfigKeys.newBooleanConfigKey("rebind.readOnly.incremental",
+                "Whether a hot standby or hot backup, when periodically rebinding, should read from the persistence store "
+                + "only the items added or changed since its last rebind, and rebind only those: nothing if nothing has been added, changed or removed, "
+                + "otherwise the changed entities (and the entities whose policies, enrichers or feeds have changed), "
+                + "replacing them behind their proxies while unchanged entities keep their instances; "
+                + "all items are rebinded if locations, catalog items or bundles have changed, or if rebinding only the changes fails; "
+                + "changes are detected from a journal of the checksums of the persisted items written, which the master writes to the store when this is set, "
+                + "so this should be set on all servers sharing the store (a master without it removes the journal, "
+                + "and standbys then read and rebind everything, logging a warning that there is no journal); "
+                + "the contents of every persisted item are kept in memory between rebinds", 
+                false);
+
     public static final Logger LOG = LoggerFactory.getLogger(RebindManagerImpl.class);
 
     private final ManagementContextInternal managementContext;
@@ -125,6 +154,11 @@ public class RebindManagerImpl implements RebindManager {
     private volatile ScheduledTask readOnlyTask = null;
     private transient Semaphore rebindActive = new Semaphore(1);
     private transient AtomicInteger readOnlyRebindCount = new AtomicInteger(Integer.MIN_VALUE);
+    private final boolean readOnlyIncremental;
+    /** whether the last read-only rebind completed, if {@link #readOnlyIncremental}, so the next need rebind only what has changed since */
+    private volatile boolean readOnlyRebindComplete = false;
+    /** number of read-only rebinds skipped since the last one done */
+    private final AtomicInteger readOnlyRebindsSkipped = new AtomicInteger();
     
     private volatile BrooklynMementoPersister persistenceStoreAccess;
 
@@ -196,6 +230,7 @@ public class RebindManagerImpl implements RebindManager {
         loadPolicyFailureMode = managementContext.getConfig().getConfig(LOAD_POLICY_FAILURE_MODE);
         
         danglingRefsQuorumRequiredHealthy = managementContext.getConfig().getConfig(DANGLING_REFERENCES_MIN_REQUIRED_HEALTHY);
+        readOnlyIncremental = managementContext.getConfig().getConfig(REBIND_READ_ONLY_INCREMENTAL);
 
         LOG.debug("{} initialized, settings: policies={}, enrichers={}, feeds={}, catalog={}",
                 new Object[]{this, persistPoliciesEnabled, persistEnrichersEnabled, persistFeedsEnabled, persistCatalogItemsEnabled});
@@ -254,7 +289,8 @@ public class RebindManagerImpl implements RebindManager {
                 persistenceStoreAccess,
                 exceptionHandler,
                 persistMetrics,
-                periodicPersistPeriod);
+                periodicPersistPeriod,
+                managementContext.getConfig());
         this.persistencePublicChangeListener = new SafeChangeListener(persistenceRealChangeListener);
         
         if (persistenceRunning) {
@@ -314,6 +350,9 @@ public class RebindManagerImpl implements RebindManager {
         
         readOnlyRunning = true;
         readOnlyRebindCount.set(0);
+        if (readOnlyIncremental && persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore) {
+            ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).setRecordingLoads(true);
+        }
 
         try {
             rebind(null, null, mode);
@@ -327,6 +366,9 @@ public class RebindManagerImpl implements RebindManager {
                     @Override
                     public Void call() {
                         try {
+                            if (rebindReadOnlyChanges(mode)) {
+                                return null;
+                            }
                             rebind(null, null, mode);
                             return null;
                         } catch (RuntimeInterruptedException e) {
@@ -372,6 +414,54 @@ public class RebindManagerImpl implements RebindManager {
             readOnlyTask = null;
             LOG.debug("Stopped read-only rebinding ("+this+"), mgmt "+managementContext.getManagementNodeId());
         }
+        readOnlyRebindComplete = false;
+        if (persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore) {
+            ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).setRecordingLoads(false);
+        }
+    }
+    
+    /**
+     * Rebinds only what persisted has changed since the last completed read-only rebind, if {@link #REBIND_READ_ONLY_INCREMENTAL}:
+     * nothing if nothing has changed, otherwise the changed entities and adjuncts (see {@link ReadOnlyPartialRebindIteration}).
+     * Returns false if a full rebind is needed instead: if not incremental, if the changes cannot be told,
+     * if items other than entities and adjuncts have changed, or if rebinding the changes fails.
+     */
+    protected boolean rebindReadOnlyChanges(ManagementNodeState mode) {
+        if (!readOnlyRebindComplete || !(persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore)) {
+            return false;
+        }
+        RebindExceptionHandler exceptionHandler = newRebindExceptionHandler();
+        ChangesSinceLoad changes = ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).loadChangesSinceLoad(exceptionHandler);
+        if (changes==null) {
+            return false;
+        }
+        if (changes.isEmpty()) {
+            // logged for the first skip after each rebind, so that skipping (and any stale state) is visible without trace
+            if (readOnlyRebindsSkipped.getAndIncrement()==0) {
+                LOG.debug("Skipping read-only rebinds ("+this+") until something changes in "+persistenceStoreAccess.getBackingStoreDescription());
+            } else if (LOG.isTraceEnabled()) {
+                LOG.trace("Skipping read-only rebind ("+this+"), nothing changed in "+persistenceStoreAccess.getBackingStoreDescription());
+            }
+            return true;
+        }
+        readOnlyRebindsSkipped.set(0);
+        if (!ReadOnlyPartialRebindIteration.isApplicable(changes)) {
+            LOG.debug("Rebinding all items ("+this+"), as "+changes.getTypes()+" changed in "+persistenceStoreAccess.getBackingStoreDescription());
+            return false;
+        }
+        
+        ReadOnlyPartialRebindIteration iteration = new ReadOnlyPartialRebindIteration(this, mode, managementContext.getCatalogClassLoader(), exceptionHandler,
+            rebindActive, readOnlyRebindCount, rebindMetrics, persistenceStoreAccess, changes);
+        readOnlyRebindComplete = false;
+        try {
+            iteration.run();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.debug("Problem rebinding changes ("+this+"); rebinding all items: "+Exceptions.collapseText(e), e);
+            return false;
+        }
+        readOnlyRebindComplete = true;
+        return true;
     }
     
     @Override
@@ -503,15 +593,7 @@ public class RebindManagerImpl implements RebindManager {
     public List<Application> rebind(ClassLoader classLoaderO, RebindExceptionHandler exceptionHandlerO, ManagementNodeState modeO) {
         final ClassLoader classLoader = classLoaderO!=null ? classLoaderO :
             managementContext.getCatalogClassLoader();
-        final RebindExceptionHandler exceptionHandler = exceptionHandlerO!=null ? exceptionHandlerO :
-            RebindExceptionHandlerImpl.builder()
-                .danglingRefFailureMode(danglingRefFailureMode)
-                .danglingRefQuorumRequiredHealthy(danglingRefsQuorumRequiredHealthy)
-                .rebindFailureMode(rebindFailureMode)
-                .addConfigFailureMode(addConfigFailureMode)
-                .addPolicyFailureMode(addPolicyFailureMode)
-                .loadPolicyFailureMode(loadPolicyFailureMode)
-                .build();
+        final RebindExceptionHandler exceptionHandler = exceptionHandlerO!=null ? exceptionHandlerO : newRebindExceptionHandler();
         final ManagementNodeState mode = modeO!=null ? modeO : getRebindMode();
         
         if (mode!=ManagementNodeState.MASTER && mode!=ManagementNodeState.HOT_STANDBY && mode!=ManagementNodeState.HOT_BACKUP)
@@ -534,6 +616,17 @@ public class RebindManagerImpl implements RebindManager {
         }
     }
     
+    protected RebindExceptionHandler newRebindExceptionHandler() {
+        return RebindExceptionHandlerImpl.builder()
+                .danglingRefFailureMode(danglingRefFailureMode)
+                .danglingRefQuorumRequiredHealthy(danglingRefsQuorumRequiredHealthy)
+                .rebindFailureMode(rebindFailureMode)
+                .addConfigFailureMode(addConfigFailureMode)
+                .addPolicyFailureMode(addPolicyFailureMode)
+                .loadPolicyFailureMode(loadPolicyFailureMode)
+                .build();
+    }
+    
     @Override
     public BrooklynMementoRawData retrieveMementoRawData() {
         RebindExceptionHandler exceptionHandler = RebindExceptionHandlerImpl.builder()
@@ -572,7 +665,9 @@ public class RebindManagerImpl implements RebindManager {
         RebindIteration iteration = new InitialFullRebindIteration(this, mode, classLoader, exceptionHandler,
             rebindActive, readOnlyRebindCount, rebindMetrics, persistenceStoreAccess);
         
+        readOnlyRebindComplete = false;
         iteration.run();
+        readOnlyRebindComplete = readOnlyIncremental && ManagementNodeState.isHotProxy(mode);
         
         if (firstRebindAppCount==null) {
             firstRebindAppCount = iteration.getApplications().size();
@@ -28,6 +28,7 @@ import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.mgmt.persist.CompactMementoSerializer;
 import org.apache.brooklyn.core.mgmt.rebind.transformer.impl.XsltTransformer;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.ResourceUtils;
@@ -342,38 +343,39 @@ public class CompoundTransformer {
             }
         }
         
+        // raw data transformers work on XML, so convert anything persisted in the compact format
         for (BrooklynObjectType type : BrooklynObjectType.values()) {
             Collection<RawDataTransformer> transformers = rawDataTransformers.get(type);
             for (RawDataTransformer transformer : transformers) {
                 switch (type) {
                     case ENTITY:
                         for (Map.Entry<String, String> entry : entities.entrySet()) {
-                            entry.setValue(transformer.transform(entry.getValue()));
+                            entry.setValue(transformer.transform(CompactMementoSerializer.toXml(entry.getValue())));
                         }
                         break;
                     case LOCATION:
                         for (Map.Entry<String, String> entry : locations.entrySet()) {
-                            entry.setValue(transformer.transform(entry.getValue()));
+                            entry.setValue(transformer.transform(CompactMementoSerializer.toXml(entry.getValue())));
                         }
                         break;
                     case POLICY:
                         for (Map.Entry<String, String> entry : policies.entrySet()) {
-                            entry.setValue(transformer.transform(entry.getValue()));
+                            entry.setValue(transformer.transform(CompactMementoSerializer.toXml(entry.getValue())));
                         }
                         break;
                     case ENRICHER:
                         for (Map.Entry<String, String> entry : enrichers.entrySet()) {
-                            entry.setValue(transformer.transform(entry.getValue()));
+                            entry.setValue(transformer.transform(CompactMementoSerializer.toXml(entry.getValue())));
                         }
                         break;
                     case FEED:
                         for (Map.Entry<String, String> entry : feeds.entrySet()) {
-                            entry.setValue(transformer.transform(entry.getValue()));
+                            entry.setValue(transformer.transform(CompactMementoSerializer.toXml(entry.getValue())));
                         }
                         break;
                     case CATALOG_ITEM:
                         for (Map.Entry<String, String> entry : catalogItems.entrySet()) {
-                            entry.setValue(transformer.transform(entry.getValue()));
+                            entry.setValue(transformer.transform(CompactMementoSerializer.toXml(entry.getValue())));
                         }
                         break;
                     case MANAGED_BUNDLE:
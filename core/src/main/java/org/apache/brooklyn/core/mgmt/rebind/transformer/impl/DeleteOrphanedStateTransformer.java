@@ -26,6 +26,7 @@ import javax.xml.xpath.XPathConstants;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
 import org.apache.brooklyn.core.location.access.PortForwardManager;
+import org.apache.brooklyn.core.mgmt.persist.CompactMementoSerializer;
 import org.apache.brooklyn.core.mgmt.rebind.transformer.CompoundTransformer;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
@@ -74,7 +75,9 @@ public class DeleteOrphanedStateTransformer extends CompoundTransformer {
      * will we delete it.
      */
     @Override
-    public BrooklynMementoRawData transform(BrooklynMementoRawData input) {
+    public BrooklynMementoRawData transform(BrooklynMementoRawData rawInput) {
+        // the state is inspected as XML, so convert anything persisted in the compact format
+        BrooklynMementoRawData input = CompactMementoSerializer.toXml(rawInput);
         ReferencedState stateReferencedFromXpath = new ReachabilityXpathInspector().inspect(input);
         ReferencedState stateToKeepFromGrep = new ReachabilityGrepInspector().inspect(input);
         ReferencedState stateToKeepFromXpath = stateReferencedFromXpath.filterForExtant(input);
@@ -67,6 +67,12 @@ public class AdjunctConfigMap extends AbstractConfigMapImpl<EntityAdjunct> {
     @Override
     protected void postSetConfig() { /* noop */ }
 
+    @Override
+    protected boolean isCachingResolvedValues() {
+        // adjuncts have no parent to inherit from
+        return true;
+    }
+
     @Override
     protected ExecutionContext getExecutionContext(BrooklynObject bo) {
         // TODO expose ((AbstractEntityAdjunct)bo).execution ?
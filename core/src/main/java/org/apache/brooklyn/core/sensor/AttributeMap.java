@@ -23,9 +23,14 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
@@ -38,11 +43,20 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 /**
  * A {@link Map} of {@link Entity} attribute values.
+ * <p>
+ * By default values are held in a synchronized map keyed by the sensor's name parts, with every read and write
+ * taking the same monitor. If {@link BrooklynFeatureEnablement#FEATURE_CONCURRENT_ATTRIBUTE_MAP} is enabled
+ * (or the map is created with {@link #newConcurrentInstance(AbstractEntity)}), values are instead held in a
+ * {@link ConcurrentHashMap} keyed by the sensor name (whose hash is cached by {@link String}):
+ * reads, plain updates and {@link #modify(AttributeSensor, Function)} take no lock. Modifications are done by
+ * compare-and-set, and publish their events in the order of the modifications of each attribute
+ * (see {@link ModificationSequence}).
  */
 public final class AttributeMap {
 
@@ -51,12 +65,74 @@ public final class AttributeMap {
     private static enum Marker {
         NULL;
     }
+
+    /**
+     * Holds a value set by {@link AttributeMap#modify(AttributeSensor, Function)} in a concurrent instance.
+     * It does not override equals, so the compare-and-set of a later modification matches only this instance,
+     * not another value that happens to be equal (which would let modifications succeed out of ticket order).
+     */
+    private static final class ModifiedValue {
+        final Object value;
+
+        ModifiedValue(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Orders the events of the modifications of an attribute in a concurrent instance, without a lock.
+     * Each attempt takes a ticket after reading the old value and before its compare-and-set,
+     * so successful attempts have tickets in the order of the values they set.
+     * A successful attempt publishes once every earlier ticket is done, and a failed one just skips its ticket.
+     */
+    private static final class ModificationSequence {
+        private final AtomicLong nextTicket = new AtomicLong();
+        private final AtomicLong nextToPublish = new AtomicLong();
+        // tickets whose compare-and-set failed, not yet passed by nextToPublish
+        private final Set<Long> skipped = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+        long takeTicket() {
+            return nextTicket.getAndIncrement();
+        }
+
+        void awaitTurn(long ticket) {
+            // earlier tickets are at most a compare-and-set and a publish away from done
+            while (nextToPublish.get() != ticket) {
+                Thread.yield();
+            }
+        }
+
+        void finishTurn(long ticket) {
+            long next = ticket + 1;
+            nextToPublish.set(next);
+            while (skipped.remove(next)) {
+                nextToPublish.set(++next);
+            }
+        }
+
+        void skip(long ticket) {
+            skipped.add(ticket);
+            // if its turn came before it was marked, whoever finished the turn before may have missed it
+            if (nextToPublish.get() == ticket && skipped.remove(ticket)) {
+                finishTurn(ticket);
+            }
+        }
+    }
     
     private final AbstractEntity entity;
 
-    // Assumed to be something like a ConcurrentMap passed in.
+    // Assumed to be something like a ConcurrentMap passed in; null if using concurrentValues.
     private final Map<Collection<String>, Object> values;
 
+    // Keyed by the sensor name (i.e. the path joined with '.'); null unless this is a concurrent instance.
+    private final ConcurrentMap<String, Object> concurrentValues;
+
+    // What getSynchObjectInternal returns; for a concurrent instance, not used for any reads or writes here.
+    private final Object synchObject;
+
+    // Keyed by the sensor name, created on the first modification; null unless this is a concurrent instance.
+    private final ConcurrentMap<String, ModificationSequence> modificationSequences;
+
     /**
      * Creates a new AttributeMap.
      *
@@ -64,33 +140,74 @@ public final class AttributeMap {
      * @throws NullPointerException if entity is null
      */
     public AttributeMap(AbstractEntity entity) {
-        // Not using ConcurrentMap, because want to (continue to) allow null values.
+        // Not using ConcurrentMap by default, because want to (continue to) allow null values and preserve insertion order.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
-        this(entity, Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap()));
+        this(entity, BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_CONCURRENT_ATTRIBUTE_MAP) 
+                ? null
+                : Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap()));
     }
 
     /**
      * Creates a new AttributeMap.
      *
      * @param entity  the Entity this AttributeMap belongs to.
-     * @param storage the Map in which to store the values - should be concurrent or synchronized.
+     * @param storage the Map in which to store the values - should be concurrent or synchronized;
+     *                or null to use the concurrent backend (see {@link #newConcurrentInstance(AbstractEntity)}).
      * @throws NullPointerException if entity is null
      */
     public AttributeMap(AbstractEntity entity, Map<Collection<String>, Object> storage) {
         this.entity = checkNotNull(entity, "entity must be specified");
-        this.values = checkNotNull(storage, "storage map must not be null");
+        if (storage != null) {
+            this.values = storage;
+            this.concurrentValues = null;
+            this.synchObject = storage;
+            this.modificationSequences = null;
+        } else {
+            this.values = null;
+            this.concurrentValues = new ConcurrentHashMap<String, Object>();
+            this.synchObject = new Object();
+            this.modificationSequences = new ConcurrentHashMap<String, ModificationSequence>();
+        }
+    }
+
+    /**
+     * Creates a new AttributeMap backed by a {@link ConcurrentHashMap}, with lock-free reads and updates,
+     * and lock-free compare-and-set {@link #modify(AttributeSensor, Function)}, regardless of
+     * {@link BrooklynFeatureEnablement#FEATURE_CONCURRENT_ATTRIBUTE_MAP}.
+     * <p>
+     * Note that {@link #asMap()} for such an instance is not in insertion order.
+     */
+    @Beta
+    public static AttributeMap newConcurrentInstance(AbstractEntity entity) {
+        return new AttributeMap(entity, null);
+    }
+
+    /** whether this instance is backed by a concurrent map (see {@link #newConcurrentInstance(AbstractEntity)}) */
+    @Beta
+    public boolean isConcurrent() {
+        return concurrentValues != null;
     }
 
     /** Internal object this class synchs on when modifying values.
      * Exposed for internal usage to synchronize on this to enforce canonical order.
+     * <p>
+     * For a {@link #isConcurrent() concurrent} instance, attribute reads and writes do not synchronize on this,
+     * but callers can still use it to order their own locks. 
      * @return
      */
     @Beta
     public Object getSynchObjectInternal() {
-        return values;
+        return synchObject;
     }
     
     public Map<Collection<String>, Object> asRawMap() {
+        if (concurrentValues != null) {
+            ImmutableMap.Builder<Collection<String>, Object> result = ImmutableMap.builder();
+            for (Map.Entry<String, Object> entry : concurrentValues.entrySet()) {
+                result.put(toPath(entry.getKey()), unwrap(entry.getValue()));
+            }
+            return result.build();
+        }
         synchronized (values) {
             return ImmutableMap.copyOf(values);
         }
@@ -98,6 +215,14 @@ public final class AttributeMap {
 
     public Map<String, Object> asMap() {
         Map<String, Object> result = Maps.newLinkedHashMap();
+        if (concurrentValues != null) {
+            for (Map.Entry<String, Object> entry : concurrentValues.entrySet()) {
+                Object val = unwrap(entry.getValue());
+                if (isNull(val)) val = null;
+                result.put(entry.getKey(), val);
+            }
+            return result;
+        }
         synchronized (values) {
             for (Map.Entry<Collection<String>, Object> entry : values.entrySet()) {
                 String sensorName = Joiner.on('.').join(entry.getKey());
@@ -129,7 +254,7 @@ public final class AttributeMap {
         }
 
         @SuppressWarnings("unchecked")
-        T oldValue = (T) values.put(path, newValue);
+        T oldValue = (T) ((concurrentValues != null) ? unwrap(concurrentValues.put(toName(path), newValue)) : values.put(path, newValue));
         return (isNull(oldValue)) ? null : oldValue;
     }
 
@@ -154,15 +279,33 @@ public final class AttributeMap {
             }
         }
 
-        T oldValue = update(attribute.getNameParts(), newValue);
+        T oldValue;
+        if (concurrentValues != null) {
+            // keyed by name, so no need to compute (or synch on) the sensor's name parts
+            @SuppressWarnings("unchecked")
+            T rawOldValue = (T) unwrap(concurrentValues.put(attribute.getName(), (newValue == null) ? typedNull() : newValue));
+            oldValue = rawOldValue;
+        } else {
+            oldValue = update(attribute.getNameParts(), newValue);
+        }
         
         return (isNull(oldValue)) ? null : oldValue;
     }
 
     /**
      * Where atomicity is desired, the methods in this class synchronize on the {@link #values} map.
+     * <p>
+     * For a {@link #isConcurrent() concurrent} instance the value is instead changed by compare-and-set, without a lock,
+     * so the modifier may be invoked more than once (with different old values) if there are concurrent
+     * changes to the same attribute; it should therefore be free of side-effects.
+     * The events of racing modifications of an attribute are published in the order the values were set,
+     * each before its modify returns; a modification waits (without a lock) for the publishing of earlier ones.
+     * Plain updates are not ordered with modifications, as for the synchronized backend.
      */
     public <T> T modify(AttributeSensor<T> attribute, Function<? super T, Maybe<T>> modifier) {
+        if (concurrentValues != null) {
+            return modifyConcurrent(attribute, modifier);
+        }
         synchronized (values) {
             T oldValue = getValue(attribute);
             Maybe<? extends T> newValue = modifier.apply(oldValue);
@@ -177,6 +320,51 @@ public final class AttributeMap {
         }
     }
 
+    private <T> T modifyConcurrent(AttributeSensor<T> attribute, Function<? super T, Maybe<T>> modifier) {
+        String name = attribute.getName();
+        ModificationSequence sequence = modificationSequence(name);
+        while (true) {
+            Object rawOldValue = concurrentValues.get(name);
+            Object oldUnwrapped = unwrap(rawOldValue);
+            @SuppressWarnings("unchecked")
+            T oldValue = (T) TypeCoercions.coerce(isNull(oldUnwrapped) ? null : oldUnwrapped, attribute.getType());
+            Maybe<? extends T> newValue = modifier.apply(oldValue);
+
+            if (!newValue.isPresent()) {
+                if (log.isTraceEnabled()) log.trace("modified attribute {} unchanged; not emitting on {}", new Object[] {attribute.getName(), newValue, this});
+                return oldValue;
+            }
+            Object rawNewValue = new ModifiedValue((newValue.get() == null) ? typedNull() : newValue.get());
+            long ticket = sequence.takeTicket();
+            boolean set = (rawOldValue == null)
+                    ? concurrentValues.putIfAbsent(name, rawNewValue) == null
+                    : concurrentValues.replace(name, rawOldValue, rawNewValue);
+            if (!set) {
+                // updated concurrently; retry against the new value
+                sequence.skip(ticket);
+                continue;
+            }
+            sequence.awaitTurn(ticket);
+            try {
+                if (log.isTraceEnabled()) log.trace("modified attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
+                entity.emitInternal(attribute, newValue.get());
+            } finally {
+                sequence.finishTurn(ticket);
+            }
+            return oldValue;
+        }
+    }
+
+    private ModificationSequence modificationSequence(String name) {
+        ModificationSequence result = modificationSequences.get(name);
+        if (result == null) {
+            ModificationSequence newSequence = new ModificationSequence();
+            result = modificationSequences.putIfAbsent(name, newSequence);
+            if (result == null) result = newSequence;
+        }
+        return result;
+    }
+
     public void remove(AttributeSensor<?> attribute) {
         BrooklynLogging.log(log, BrooklynLogging.levelDebugOrTraceIfReadOnly(entity),
             "removing attribute {} on {}", attribute.getName(), entity);
@@ -192,7 +380,11 @@ public final class AttributeMap {
             log.trace("removing sensor {} for {}", new Object[] {path, entity});
         }
 
-        values.remove(path);
+        if (concurrentValues != null) {
+            concurrentValues.remove(toName(path));
+        } else {
+            values.remove(path);
+        }
     }
 
     /**
@@ -207,15 +399,31 @@ public final class AttributeMap {
         // or the leaf value if only one value. Arguably that is not required - what is/was the use-case?
         // 
         checkPath(path);
-        Object result = values.get(path);
+        Object result = (concurrentValues != null) ? unwrap(concurrentValues.get(toName(path))) : values.get(path);
         return (isNull(result)) ? null : result;
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getValue(AttributeSensor<T> sensor) {
+        if (concurrentValues != null) {
+            Object result = unwrap(concurrentValues.get(sensor.getName()));
+            return (T) TypeCoercions.coerce(isNull(result) ? null : result, sensor.getType());
+        }
         return (T) TypeCoercions.coerce(getValue(sensor.getNameParts()), sensor.getType());
     }
 
+    private static String toName(Collection<String> path) {
+        return (path.size() == 1) ? path.iterator().next() : Joiner.on('.').join(path);
+    }
+
+    private static Collection<String> toPath(String name) {
+        return Splitter.on('.').splitToList(name);
+    }
+
+    private static Object unwrap(Object rawValue) {
+        return (rawValue instanceof ModifiedValue) ? ((ModifiedValue) rawValue).value : rawValue;
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T typedNull() {
         return (T) Marker.NULL;
@@ -55,6 +55,7 @@ import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.core.task.BasicExecutionContext;
 import org.apache.brooklyn.util.core.task.BasicTask;
+import org.apache.brooklyn.util.core.task.BoundedTaskExecutor;
 import org.apache.brooklyn.util.core.task.DeferredSupplier;
 import org.apache.brooklyn.util.core.task.DynamicTasks;
 import org.apache.brooklyn.util.core.task.ImmediateSupplier;
@@ -329,54 +330,60 @@ public class DependentConfiguration {
                 CountdownTimer timer = timeout!=null ? timeout.countdownTimer() : null;
                 Duration maxPeriod = ValueResolver.PRETTY_QUICK_WAIT;
                 Duration nextPeriod = ValueResolver.REAL_QUICK_PERIOD;
-                while (true) {
-                    // check the source on initial run (could be done outside the loop) 
-                    // and also (optionally) on each iteration in case it is more recent 
-                    value = source.getAttribute(sensor);
-                    if (ready(value)) break;
-
-                    if (timer!=null) {
-                        if (timer.getDurationRemaining().isShorterThan(nextPeriod)) {
-                            nextPeriod = timer.getDurationRemaining();
-                        }
-                        if (timer.isExpired()) {
-                            if (onTimeout.isPresent()) return onTimeout.get();
-                            throw new RuntimeTimeoutException("Unsatisfied after "+Duration.sinceUtc(start));
+                // the attribute may be set by a task needing a thread, so make sure a bounded pool can still run it
+                BoundedTaskExecutor.beginBlockingInCurrentPool();
+                try {
+                    while (true) {
+                        // check the source on initial run (could be done outside the loop) 
+                        // and also (optionally) on each iteration in case it is more recent 
+                        value = source.getAttribute(sensor);
+                        if (ready(value)) break;
+
+                        if (timer!=null) {
+                            if (timer.getDurationRemaining().isShorterThan(nextPeriod)) {
+                                nextPeriod = timer.getDurationRemaining();
+                            }
+                            if (timer.isExpired()) {
+                                if (onTimeout.isPresent()) return onTimeout.get();
+                                throw new RuntimeTimeoutException("Unsatisfied after "+Duration.sinceUtc(start));
+                            }
                         }
-                    }
 
-                    String prevBlockingDetails = current.setBlockingDetails(blockingDetails);
-                    try {
-                        if (semaphore.tryAcquire(nextPeriod.toMilliseconds(), TimeUnit.MILLISECONDS)) {
-                            // immediately release so we are available for the next check
-                            semaphore.release();
-                            // if other permits have been made available (e.g. multiple notifications) drain them all as no point running multiple times
-                            semaphore.drainPermits();
+                        String prevBlockingDetails = current.setBlockingDetails(blockingDetails);
+                        try {
+                            if (semaphore.tryAcquire(nextPeriod.toMilliseconds(), TimeUnit.MILLISECONDS)) {
+                                // immediately release so we are available for the next check
+                                semaphore.release();
+                                // if other permits have been made available (e.g. multiple notifications) drain them all as no point running multiple times
+                                semaphore.drainPermits();
+                            }
+                        } finally {
+                            current.setBlockingDetails(prevBlockingDetails);
                         }
-                    } finally {
-                        current.setBlockingDetails(prevBlockingDetails);
-                    }
 
-                    // check any subscribed values which have come in first
-                    while (true) {
-                        synchronized (publishedValues) {
-                            if (publishedValues.isEmpty()) break;
-                            value = publishedValues.pop(); 
+                        // check any subscribed values which have come in first
+                        while (true) {
+                            synchronized (publishedValues) {
+                                if (publishedValues.isEmpty()) break;
+                                value = publishedValues.pop(); 
+                            }
+                            if (ready(value)) break;
                         }
-                        if (ready(value)) break;
-                    }
 
-                    // if unmanaged then ignore the other abort conditions
-                    if (!ignoreUnmanaged && Entities.isNoLongerManaged(entity)) {
-                        if (onUnmanaged.isPresent()) return onUnmanaged.get();
-                        throw new NotManagedException(entity);                        
-                    }
+                        // if unmanaged then ignore the other abort conditions
+                        if (!ignoreUnmanaged && Entities.isNoLongerManaged(entity)) {
+                            if (onUnmanaged.isPresent()) return onUnmanaged.get();
+                            throw new NotManagedException(entity);                        
+                        }
                     
-                    if (abortionExceptions.size() > 0) {
-                        throw new CompoundRuntimeException("Aborted waiting for ready from "+source+" "+sensor, abortionExceptions);
-                    }
+                        if (abortionExceptions.size() > 0) {
+                            throw new CompoundRuntimeException("Aborted waiting for ready from "+source+" "+sensor, abortionExceptions);
+                        }
 
-                    nextPeriod = nextPeriod.multiply(2).upperBound(maxPeriod);
+                        nextPeriod = nextPeriod.multiply(2).upperBound(maxPeriod);
+                    }
+                } finally {
+                    BoundedTaskExecutor.endBlockingInCurrentPool();
                 }
                 if (LOG.isDebugEnabled()) LOG.debug("Attribute-ready for {} in entity {}", sensor, source);
                 return postProcess(value);
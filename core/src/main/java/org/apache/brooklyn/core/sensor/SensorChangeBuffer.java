@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.sensor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.Sensor;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.entity.AbstractEntity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.time.CountdownTimer;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+/**
+ * Collects changes to the attribute values of a set of entities, through the subscription manager,
+ * for a consumer which {@link #take(Duration) takes} them in batches (e.g. a client streaming changes over REST).
+ * <p>
+ * Changes are coalesced: if an attribute changes several times before the consumer takes the changes,
+ * only its latest value is kept. The number of (coalesced) changes held is bounded; when full, the oldest
+ * change is discarded to make room, and {@link #getDiscardedCount() counted}.
+ * <p>
+ * Consumers can either block in {@link #take(Duration)}, or be {@link #setChangeListener(Runnable) notified}
+ * of changes and take them without waiting. Callers must {@link #close()} the buffer when done, to unsubscribe.
+ */
+@Beta
+public class SensorChangeBuffer {
+
+    /** The latest value of an attribute of an entity. */
+    public static class SensorChange {
+        private final Entity entity;
+        private final AttributeSensor<?> sensor;
+        private final Object value;
+        private final long timestamp;
+
+        public SensorChange(Entity entity, AttributeSensor<?> sensor, Object value, long timestamp) {
+            this.entity = entity;
+            this.sensor = sensor;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        public Entity getEntity() {
+            return entity;
+        }
+
+        public AttributeSensor<?> getSensor() {
+            return sensor;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("entity", entity).add("sensor", sensor.getName())
+                    .add("value", value).add("timestamp", timestamp).toString();
+        }
+    }
+
+    private static class Key {
+        final String entityId;
+        final String sensorName;
+
+        Key(String entityId, String sensorName) {
+            this.entityId = entityId;
+            this.sensorName = sensorName;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(entityId, sensorName);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key o = (Key) obj;
+            return entityId.equals(o.entityId) && sensorName.equals(o.sensorName);
+        }
+    }
+
+    private final String id = Identifiers.makeRandomId(8);
+    private final ManagementContext mgmt;
+    private final Predicate<? super Sensor<?>> sensorFilter;
+    private final int maxChanges;
+    /** guarded by itself; in the order each attribute first changed since the last take */
+    private final LinkedHashMap<Key, SensorChange> changes = new LinkedHashMap<Key, SensorChange>();
+    private final List<SubscriptionHandle> subscriptions = MutableList.of();
+    /** IDs of the entities whose descendants are tracked, guarded by {@link #changes} */
+    private final Set<String> trackedEntityIds = MutableSet.of();
+    private volatile Runnable changeListener;
+    private long discardedCount;
+    private boolean closed;
+
+    /**
+     * @param sensorFilter  which attributes to collect changes of, or null for all
+     * @param maxChanges  how many (coalesced) changes to hold before discarding the oldest
+     */
+    public SensorChangeBuffer(ManagementContext mgmt, Predicate<? super Sensor<?>> sensorFilter, int maxChanges) {
+        checkArgument(maxChanges > 0, "maxChanges must be positive, but was %s", maxChanges);
+        this.mgmt = checkNotNull(mgmt, "mgmt");
+        this.sensorFilter = (sensorFilter == null) ? Predicates.alwaysTrue() : sensorFilter;
+        this.maxChanges = maxChanges;
+    }
+
+    /** Collects changes to the given entity's attributes, until {@link #close() closed}. */
+    public SensorChangeBuffer subscribe(Entity entity) {
+        addSubscription(mgmt.getSubscriptionManager().subscribe(MutableMap.<String, Object>of("subscriber", this),
+                entity, null, new SensorEventListener<Object>() {
+                    @Override
+                    public void onEvent(SensorEvent<Object> event) {
+                        if (event.getSensor() instanceof AttributeSensor && sensorFilter.apply(event.getSensor())) {
+                            add(new SensorChange(event.getSource(), (AttributeSensor<?>) event.getSensor(), event.getValue(), event.getTimestamp()));
+                        }
+                    }
+                }));
+        return this;
+    }
+
+    /**
+     * Collects changes to the attributes of the given entity and its descendants which match the filter,
+     * including descendants added later, until {@link #close() closed}.
+     * <p>
+     * The filter is applied to each entity when it is found, which for those added later is on a subscription
+     * delivery thread, so it should not depend on the caller's thread (e.g. its entitlement context).
+     */
+    public SensorChangeBuffer subscribeWithDescendants(Entity root, Predicate<? super Entity> entityFilter) {
+        track(root, checkNotNull(entityFilter, "entityFilter"));
+        return this;
+    }
+
+    private void track(Entity entity, final Predicate<? super Entity> entityFilter) {
+        synchronized (changes) {
+            if (closed || !trackedEntityIds.add(entity.getId())) return;
+        }
+        // subscribe before looking at the children, so that a child added meanwhile is not missed (it is tracked only once)
+        addSubscription(mgmt.getSubscriptionManager().subscribe(MutableMap.<String, Object>of("subscriber", this),
+                entity, AbstractEntity.CHILD_ADDED, new SensorEventListener<Entity>() {
+                    @Override
+                    public void onEvent(SensorEvent<Entity> event) {
+                        track(event.getValue(), entityFilter);
+                    }
+                }));
+        if (entityFilter.apply(entity)) {
+            subscribe(entity);
+        }
+        for (Entity child : entity.getChildren()) {
+            track(child, entityFilter);
+        }
+    }
+
+    private void addSubscription(SubscriptionHandle handle) {
+        synchronized (changes) {
+            if (!closed) {
+                subscriptions.add(handle);
+                return;
+            }
+        }
+        mgmt.getSubscriptionManager().unsubscribe(handle);
+    }
+
+    /**
+     * Sets a callback to run whenever a change is added, e.g. to wake a consumer which is not waiting in
+     * {@link #take(Duration)}; it is run on the thread delivering the change, so should be quick.
+     */
+    public void setChangeListener(@Nullable Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    protected void add(SensorChange change) {
+        Key key = new Key(change.getEntity().getId(), change.getSensor().getName());
+        synchronized (changes) {
+            if (closed) return;
+            if (changes.put(key, change) == null && changes.size() > maxChanges) {
+                Iterator<SensorChange> oldest = changes.values().iterator();
+                oldest.next();
+                oldest.remove();
+                discardedCount++;
+            }
+            changes.notifyAll();
+        }
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /** Whether there are changes to {@link #take(Duration) take}. */
+    public boolean hasChanges() {
+        synchronized (changes) {
+            return !changes.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the changes since the last take, waiting up to the given time for there to be at least one;
+     * returns an empty list if there are none by then, or if the buffer is closed.
+     */
+    public List<SensorChange> take(Duration timeout) throws InterruptedException {
+        CountdownTimer timer = timeout.countdownTimer();
+        synchronized (changes) {
+            while (changes.isEmpty() && !closed) {
+                long remaining = timer.getDurationRemaining().toMilliseconds();
+                if (remaining <= 0) break;
+                changes.wait(remaining);
+            }
+            List<SensorChange> result = MutableList.copyOf(changes.values());
+            changes.clear();
+            return result;
+        }
+    }
+
+    /** The number of changes discarded because the buffer was full. */
+    public long getDiscardedCount() {
+        synchronized (changes) {
+            return discardedCount;
+        }
+    }
+
+    /** Unsubscribes, and wakes any caller waiting to {@link #take(Duration) take} changes. */
+    public void close() {
+        List<SubscriptionHandle> toUnsubscribe;
+        synchronized (changes) {
+            closed = true;
+            toUnsubscribe = MutableList.copyOf(subscriptions);
+            subscriptions.clear();
+            trackedEntityIds.clear();
+            changes.clear();
+            changes.notifyAll();
+        }
+        for (SubscriptionHandle handle : toUnsubscribe) {
+            mgmt.getSubscriptionManager().unsubscribe(handle);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SensorChangeBuffer["+id+"]";
+    }
+}
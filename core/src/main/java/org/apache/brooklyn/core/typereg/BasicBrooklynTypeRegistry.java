@@ -18,7 +18,7 @@
  */
 package org.apache.brooklyn.core.typereg;
 
-import java.util.Map;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Set;
 
@@ -39,7 +39,7 @@ import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
 import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.test.Asserts;
-import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
@@ -61,7 +61,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
     private static final Logger log = LoggerFactory.getLogger(BasicBrooklynTypeRegistry.class);
     
     private ManagementContext mgmt;
-    private Map<String,RegisteredType> localRegisteredTypes = MutableMap.of();
+    private final RegisteredTypeIndex localRegisteredTypes = new RegisteredTypeIndex();
 
     public BasicBrooklynTypeRegistry(ManagementContext mgmt) {
         this.mgmt = mgmt;
@@ -73,9 +73,8 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
     }
     
     private Iterable<RegisteredType> getAllWithoutCatalog(Predicate<? super RegisteredType> filter) {
-        // TODO thread safety
-        // TODO optimisation? make indexes and look up?
-        return Iterables.filter(localRegisteredTypes.values(), filter);
+        // uses the indexes if the filter is for a single symbolic name, alias, tag, super-type or kind
+        return localRegisteredTypes.getMatching(filter);
     }
 
     private Maybe<RegisteredType> getExactWithoutLegacyCatalog(String symbolicName, String version, RegisteredTypeLoadingContext constraint) {
@@ -84,13 +83,33 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         return RegisteredTypes.tryValidate(item, constraint);
     }
 
+    /** Items in the legacy catalog matching the filter, and with the given symbolic name if not null
+     * (which is checked before converting the items, as that is costly with large catalogs). */
     @SuppressWarnings("deprecation")
+    private Iterable<RegisteredType> getLegacyCatalogMatching(@Nullable final String symbolicName, Predicate<? super RegisteredType> filter) {
+        Iterable<CatalogItem<Object,Object>> items = mgmt.getCatalog().getCatalogItems();
+        if (symbolicName!=null) {
+            items = Iterables.filter(items, new Predicate<CatalogItem<Object,Object>>() {
+                @Override
+                public boolean apply(CatalogItem<Object,Object> input) {
+                    return symbolicName.equals(input.getSymbolicName());
+                }
+            });
+        }
+        return Iterables.filter(Iterables.transform(items, RegisteredTypes.CI_TO_RT), filter);
+    }
+
     @Override
     public Iterable<RegisteredType> getMatching(Predicate<? super RegisteredType> filter) {
-        return Iterables.filter(Iterables.concat(
-                getAllWithoutCatalog(filter),
-                Iterables.transform(mgmt.getCatalog().getCatalogItems(), RegisteredTypes.CI_TO_RT)), 
-            filter);
+        Iterable<RegisteredType> legacyItems;
+        if (filter instanceof RegisteredTypePredicates.AliasPresent) {
+            // legacy catalog items do not have aliases
+            legacyItems = Collections.emptyList();
+        } else {
+            legacyItems = getLegacyCatalogMatching(filter instanceof RegisteredTypePredicates.SymbolicNameEqualTo
+                ? ((RegisteredTypePredicates.SymbolicNameEqualTo)filter).name : null, filter);
+        }
+        return Iterables.concat(getAllWithoutCatalog(filter), legacyItems);
     }
 
     @SuppressWarnings("deprecation")
@@ -110,12 +129,16 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         if (BrooklynCatalog.DEFAULT_VERSION.equals(version)) {
             // alternate code path, if version blank or default
             
-            Iterable<RegisteredType> types = getMatching(Predicates.and(RegisteredTypePredicates.symbolicName(symbolicNameOrAliasIfNoVersion), 
-                RegisteredTypePredicates.satisfies(context)));
+            Predicate<RegisteredType> satisfiesContext = RegisteredTypePredicates.satisfies(context);
+            // local versions are indexed best first, so only the first satisfying the context is a candidate
+            Iterable<RegisteredType> types = MutableList.copyOf(Iterables.concat(
+                Iterables.limit(Iterables.filter(localRegisteredTypes.getBestFirst(symbolicNameOrAliasIfNoVersion), satisfiesContext), 1),
+                getLegacyCatalogMatching(symbolicNameOrAliasIfNoVersion, satisfiesContext)));
             if (Iterables.isEmpty(types)) {
                 // look for alias if no exact symbolic name match AND no version is specified
-                types = getMatching(Predicates.and(RegisteredTypePredicates.alias(symbolicNameOrAliasIfNoVersion), 
-                    RegisteredTypePredicates.satisfies(context) ) );
+                // (legacy catalog items do not have aliases)
+                types = MutableList.copyOf(Iterables.filter(localRegisteredTypes.getMatching(RegisteredTypePredicates.alias(symbolicNameOrAliasIfNoVersion)), 
+                    satisfiesContext));
                 // if there are multiple symbolic names then throw?
                 Set<String> uniqueSymbolicNames = MutableSet.of();
                 for (RegisteredType t: types) {
@@ -315,10 +338,11 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         if (!type.getId().equals(type.getSymbolicName()+":"+type.getVersion()))
             Asserts.fail("Registered type "+type+" has ID / symname mismatch");
         
-        RegisteredType oldType = mgmt.getTypeRegistry().get(type.getId());
+        // exact lookup, not get(id) which also looks for a type whose name is the id
+        RegisteredType oldType = mgmt.getTypeRegistry().get(type.getSymbolicName(), type.getVersion());
         if (oldType==null || canForce || BrooklynVersionSyntax.isSnapshot(oldType.getVersion())) {
             log.debug("Inserting "+type+" into "+this);
-            localRegisteredTypes.put(type.getId(), type);
+            localRegisteredTypes.put(type);
         } else {
             assertSameEnoughToAllowReplacing(oldType, type);
         }
@@ -429,6 +453,15 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         return RegisteredTypes.arePlansEquivalent(oldType, type);
     }
 
+    /**
+     * Updates the indexes for a type which has been changed in place,
+     * e.g. with {@link RegisteredTypes#setDeprecated(RegisteredType, boolean)}.
+     */
+    @Beta
+    public void onTypeChanged(RegisteredType type) {
+        localRegisteredTypes.reindex(type.getId());
+    }
+
     @Beta // API stabilising
     public void delete(VersionedName type) {
         RegisteredType registeredTypeRemoved = localRegisteredTypes.remove(type.toString());
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.typereg;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry.RegisteredTypeKind;
+import org.apache.brooklyn.api.typereg.RegisteredType;
+import org.apache.brooklyn.core.typereg.RegisteredTypePredicates.AliasPresent;
+import org.apache.brooklyn.core.typereg.RegisteredTypePredicates.KindEqualTo;
+import org.apache.brooklyn.core.typereg.RegisteredTypePredicates.SubtypeOf;
+import org.apache.brooklyn.core.typereg.RegisteredTypePredicates.SymbolicNameEqualTo;
+import org.apache.brooklyn.core.typereg.RegisteredTypePredicates.TagPresent;
+import org.apache.brooklyn.core.typereg.RegisteredTypes.RegisteredTypeNameThenBestFirstComparator;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * The types held by a {@link BasicBrooklynTypeRegistry}, by id, and indexed by symbolic name, alias, tag,
+ * java super-type and kind, with the versions of each symbolic name kept best first
+ * (as per {@link RegisteredTypes#getBestVersion(Iterable)}).
+ * <p>
+ * The index records the fields of a type when it is {@link #put(RegisteredType)}; types are normally
+ * replaced rather than changed, but if one is changed in place it should be {@link #reindex(String) reindexed}.
+ * Lookups return copies, so callers can iterate while the index is changed.
+ */
+class RegisteredTypeIndex {
+
+    private static final Ordering<RegisteredType> BEST_FIRST = Ordering.from(RegisteredTypeNameThenBestFirstComparator.INSTANCE);
+
+    /** A set of types, by id, under a key of one of the indexes */
+    private static class Bucket<K> {
+        final Map<K, Bucket<K>> index;
+        final K key;
+        final Map<String, RegisteredType> types = MutableMap.of();
+
+        Bucket(Map<K, Bucket<K>> index, K key) {
+            this.index = index;
+            this.key = key;
+        }
+
+        void remove(String id) {
+            types.remove(id);
+            if (types.isEmpty()) index.remove(key);
+        }
+    }
+
+    private final Map<String, RegisteredType> byId = MutableMap.of();
+    private final Map<String, Bucket<String>> bySymbolicName = MutableMap.of();
+    private final Map<String, Bucket<String>> byAlias = MutableMap.of();
+    private final Map<Object, Bucket<Object>> byTag = MutableMap.of();
+    private final Map<RegisteredTypeKind, Bucket<RegisteredTypeKind>> byKind = MutableMap.of();
+    /** java types of which the types are subtypes, from their supertypes which are java types */
+    private final Map<Class<?>, Bucket<Class<?>>> bySuperType = MutableMap.of();
+    /** types with registered types as supertypes, which are checked for any super-type lookup
+     * (as those registered types may since have been changed) */
+    private final Map<String, RegisteredType> withRegisteredSuperTypes = MutableMap.of();
+    /** the versions of each symbolic name, best first */
+    private final Map<String, List<RegisteredType>> bestFirstBySymbolicName = MutableMap.of();
+    /** the buckets each type (by id) was put in, to remove it from */
+    private final Map<String, List<Bucket<?>>> bucketsById = MutableMap.of();
+
+    /** Adds the type, replacing and returning any with the same id. */
+    synchronized RegisteredType put(RegisteredType type) {
+        RegisteredType old = byId.put(type.getId(), type);
+        if (old!=null) unindex(old);
+        index(type);
+        return old;
+    }
+
+    synchronized RegisteredType remove(String id) {
+        RegisteredType old = byId.remove(id);
+        if (old!=null) unindex(old);
+        return old;
+    }
+
+    /** Updates the index for the type with the given id, e.g. if it has been deprecated or disabled. */
+    synchronized void reindex(String id) {
+        RegisteredType type = byId.get(id);
+        if (type!=null) {
+            unindex(type);
+            index(type);
+        }
+    }
+
+    @Nullable
+    synchronized RegisteredType get(String id) {
+        return byId.get(id);
+    }
+
+    synchronized List<RegisteredType> getAll() {
+        return MutableList.copyOf(byId.values());
+    }
+
+    /** The versions of the given symbolic name, best first. */
+    synchronized List<RegisteredType> getBestFirst(String symbolicName) {
+        List<RegisteredType> result = bestFirstBySymbolicName.get(symbolicName);
+        return (result==null) ? Collections.<RegisteredType>emptyList() : result;
+    }
+
+    /**
+     * The types matching the filter, looked up in the index if it is one of the {@link RegisteredTypePredicates}
+     * for a single symbolic name, alias, tag, java super-type or kind, otherwise by checking every type.
+     */
+    List<RegisteredType> getMatching(Predicate<? super RegisteredType> filter) {
+        Iterable<RegisteredType> candidates = getCandidates(filter);
+        return MutableList.copyOf(Iterables.filter(candidates!=null ? candidates : getAll(), filter));
+    }
+
+    /** The types which might match the filter, if it can be looked up in the index, otherwise null. */
+    @Nullable
+    synchronized Iterable<RegisteredType> getCandidates(Predicate<? super RegisteredType> filter) {
+        if (filter instanceof SymbolicNameEqualTo) {
+            return values(bySymbolicName, ((SymbolicNameEqualTo)filter).name);
+        }
+        if (filter instanceof AliasPresent) {
+            return values(byAlias, ((AliasPresent)filter).alias);
+        }
+        if (filter instanceof TagPresent) {
+            return values(byTag, ((TagPresent)filter).tag);
+        }
+        if (filter instanceof KindEqualTo) {
+            return values(byKind, ((KindEqualTo)filter).kind);
+        }
+        if (filter instanceof SubtypeOf) {
+            Class<?> superType = ((SubtypeOf)filter).superType;
+            // interfaces are not recorded as subtypes of Object
+            if (superType==Object.class) return null;
+            Set<RegisteredType> result = MutableSet.copyOf(values(bySuperType, superType));
+            result.addAll(withRegisteredSuperTypes.values());
+            return result;
+        }
+        return null;
+    }
+
+    private static <K> List<RegisteredType> values(Map<K, Bucket<K>> index, K key) {
+        Bucket<K> bucket = index.get(key);
+        return (bucket==null) ? Collections.<RegisteredType>emptyList() : MutableList.copyOf(bucket.types.values());
+    }
+
+    private void index(RegisteredType type) {
+        List<Bucket<?>> buckets = MutableList.of();
+        add(type, bySymbolicName, type.getSymbolicName(), buckets);
+        for (String alias: type.getAliases()) {
+            add(type, byAlias, alias, buckets);
+        }
+        for (Object tag: type.getTags()) {
+            add(type, byTag, tag, buckets);
+        }
+        if (type.getKind()!=null) {
+            add(type, byKind, type.getKind(), buckets);
+        }
+        for (Object superType: type.getSuperTypes()) {
+            if (superType instanceof Class) {
+                for (Class<?> superTypeOrAncestor: TypeToken.of((Class<?>)superType).getTypes().rawTypes()) {
+                    add(type, bySuperType, superTypeOrAncestor, buckets);
+                }
+            } else if (superType instanceof RegisteredType) {
+                withRegisteredSuperTypes.put(type.getId(), type);
+            }
+        }
+        bucketsById.put(type.getId(), buckets);
+        updateBestFirst(type.getSymbolicName());
+    }
+
+    private void unindex(RegisteredType type) {
+        List<Bucket<?>> buckets = bucketsById.remove(type.getId());
+        if (buckets!=null) {
+            for (Bucket<?> bucket: buckets) {
+                bucket.remove(type.getId());
+            }
+        }
+        withRegisteredSuperTypes.remove(type.getId());
+        updateBestFirst(type.getSymbolicName());
+    }
+
+    private static <K> void add(RegisteredType type, Map<K, Bucket<K>> index, K key, List<Bucket<?>> buckets) {
+        Bucket<K> bucket = index.get(key);
+        if (bucket==null) {
+            bucket = new Bucket<K>(index, key);
+            index.put(key, bucket);
+        }
+        bucket.types.put(type.getId(), type);
+        buckets.add(bucket);
+    }
+
+    private void updateBestFirst(String symbolicName) {
+        Bucket<String> bucket = bySymbolicName.get(symbolicName);
+        if (bucket==null) {
+            bestFirstBySymbolicName.remove(symbolicName);
+        } else {
+            bestFirstBySymbolicName.put(symbolicName, Collections.unmodifiableList(BEST_FIRST.sortedCopy(bucket.types.values())));
+        }
+    }
+}
@@ -28,11 +28,11 @@ import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.sensor.Enricher;
+import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry.RegisteredTypeKind;
 import org.apache.brooklyn.api.typereg.OsgiBundleWithUrl;
 import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.api.typereg.RegisteredTypeLoadingContext;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
-import org.apache.brooklyn.util.collections.CollectionFunctionals;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.osgi.VersionedName;
 import org.slf4j.Logger;
@@ -40,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 
@@ -119,7 +120,7 @@ public class RegisteredTypePredicates {
     }
 
     public static Predicate<RegisteredType> symbolicName(final String name) {
-        return symbolicName(Predicates.equalTo(name));
+        return new SymbolicNameEqualTo(name);
     }
     public static Predicate<RegisteredType> symbolicName(final Predicate<? super String> filter) {
         return new SymbolicNameMatches(filter);
@@ -137,6 +138,19 @@ public class RegisteredTypePredicates {
         }
     }
 
+    // this and the other predicates for a single value are looked up in the RegisteredTypeIndex
+    static class SymbolicNameEqualTo implements Predicate<RegisteredType> {
+        final String name;
+        
+        public SymbolicNameEqualTo(String name) {
+            this.name = name;
+        }
+        @Override
+        public boolean apply(@Nullable RegisteredType item) {
+            return (item != null) && Objects.equal(name, item.getSymbolicName());
+        }
+    }
+
     public static Predicate<RegisteredType> version(final String name) {
         return version(Predicates.equalTo(name));
     }
@@ -157,7 +171,7 @@ public class RegisteredTypePredicates {
     }
 
     public static Predicate<RegisteredType> alias(final String alias) {
-        return aliases(CollectionFunctionals.any(Predicates.equalTo(alias)));
+        return new AliasPresent(alias);
     }
     public static Predicate<RegisteredType> aliases(final Predicate<? super Iterable<String>> filter) {
         return new AliasesMatch(filter);
@@ -175,8 +189,20 @@ public class RegisteredTypePredicates {
         }
     }
 
+    static class AliasPresent implements Predicate<RegisteredType> {
+        final String alias;
+        
+        public AliasPresent(String alias) {
+            this.alias = alias;
+        }
+        @Override
+        public boolean apply(@Nullable RegisteredType item) {
+            return (item != null) && item.getAliases().contains(alias);
+        }
+    }
+
     public static Predicate<RegisteredType> tag(final Object tag) {
-        return tags(CollectionFunctionals.any(Predicates.equalTo(tag)));
+        return new TagPresent(tag);
     }
     public static Predicate<RegisteredType> tags(final Predicate<? super Iterable<Object>> filter) {
         return new TagsMatch(filter);
@@ -194,14 +220,39 @@ public class RegisteredTypePredicates {
         }
     }
 
+    static class TagPresent implements Predicate<RegisteredType> {
+        final Object tag;
+        
+        public TagPresent(Object tag) {
+            this.tag = tag;
+        }
+        @Override
+        public boolean apply(@Nullable RegisteredType item) {
+            return (item != null) && item.getTags().contains(tag);
+        }
+    }
+
+    public static Predicate<RegisteredType> kind(final RegisteredTypeKind kind) {
+        return new KindEqualTo(kind);
+    }
+
+    static class KindEqualTo implements Predicate<RegisteredType> {
+        final RegisteredTypeKind kind;
+        
+        public KindEqualTo(RegisteredTypeKind kind) {
+            this.kind = kind;
+        }
+        @Override
+        public boolean apply(@Nullable RegisteredType item) {
+            return (item != null) && item.getKind() == kind;
+        }
+    }
+
     public static <T> Predicate<RegisteredType> anySuperType(final Predicate<Class<T>> filter) {
         return new AnySuperTypeMatches(filter);
     }
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     public static Predicate<RegisteredType> subtypeOf(final Class<?> filter) {
-        // the assignableFrom predicate checks if this class is assignable from the subsequent *input*.
-        // in other words, we're checking if any input is a subtype of this class
-        return anySuperType((Predicate)Predicates.assignableFrom(filter));
+        return new SubtypeOf(filter);
     }
     
     private static class AnySuperTypeMatches implements Predicate<RegisteredType> {
@@ -217,6 +268,17 @@ public class RegisteredTypePredicates {
             return RegisteredTypes.isAnyTypeOrSuperSatisfying(item.getSuperTypes(), filter);
         }
     }
+
+    static class SubtypeOf extends AnySuperTypeMatches {
+        final Class<?> superType;
+        
+        private SubtypeOf(Class<?> superType) {
+            // the assignableFrom predicate checks if this class is assignable from the subsequent *input*.
+            // in other words, we're checking if any input is a subtype of this class
+            super(Predicates.assignableFrom(superType));
+            this.superType = superType;
+        }
+    }
     
     public static final Predicate<RegisteredType> IS_APPLICATION = subtypeOf(Application.class);
     public static final Predicate<RegisteredType> IS_ENTITY = subtypeOf(Entity.class);
@@ -139,26 +139,20 @@ public abstract class AbstractMultipleSensorAggregator<U> extends AbstractAggreg
     }
 
     public <T> Map<Entity,T> getValues(Sensor<T> sensor) {
-        Map<Entity, T> valuesCopy = copyValues(sensor);
-        return coerceValues(valuesCopy, sensor.getType());
-    }
-
-    private <T> Map<Entity, T> coerceValues(Map<Entity, T> values, Class<? super T> type) {
-        Map<Entity, T> typedValues = MutableMap.of();
-        for (Entry<Entity, T> entry : values.entrySet()) {
-            @SuppressWarnings("unchecked")
-            T typedValue = (T) TypeCoercions.coerce(entry.getValue(), type);
-            typedValues.put(entry.getKey(), typedValue);
-        }
-        return typedValues;
-    }
-
-    private <T> Map<Entity, T> copyValues(Sensor<T> sensor) {
+        // copies and coerces in one pass, as this is called on every change
+        Class<? super T> type = sensor.getType();
         synchronized (values) {
-            @SuppressWarnings("unchecked")
-            Map<Entity, T> sv = (Map<Entity, T>) values.get(sensor.getName());
+            Map<Entity, ?> sv = values.get(sensor.getName());
             //use MutableMap because of potentially null values
-            return MutableMap.copyOf(sv).asUnmodifiable();
+            Map<Entity, T> typedValues = MutableMap.of();
+            if (sv != null) {
+                for (Entry<Entity, ?> entry : sv.entrySet()) {
+                    @SuppressWarnings("unchecked")
+                    T typedValue = (T) TypeCoercions.coerce(entry.getValue(), type);
+                    typedValues.put(entry.getKey(), typedValue);
+                }
+            }
+            return typedValues;
         }
     }
 
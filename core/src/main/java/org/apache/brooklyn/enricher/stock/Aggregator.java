@@ -42,6 +42,7 @@ import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import com.google.common.reflect.TypeToken;
@@ -61,7 +62,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
             "enricher.transformation.untyped",
             "Specifies a transformation, as a function from a collection to the value, or as a string " +
                     "matching a pre-defined named transformation, such as 'average' (for numbers), " +
-                    "'sum' (for numbers), 'isQuorate' (to compute a quorum), " +
+                    "'sum' (for numbers), 'count', 'min' and 'max' (for numbers), 'isQuorate' (to compute a quorum), " +
                     "'list' (the default, putting any collection of items into a list), " +
                     "or 'first' (the first value, or null if empty)");
 
@@ -78,6 +79,19 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     public static final ConfigKey<Integer> QUORUM_TOTAL_SIZE = ConfigKeys.newIntegerConfigKey(
             "quorum.total.size", "The total size to consider when determining if quorate", 1);
 
+    /**
+     * Whether to update the result as each value changes, rather than applying the transformation to all values;
+     * this makes each update O(1) (or O(log n) for min and max) rather than O(n), for large numbers of producers.
+     * Only supported for transformations which are an {@link IncrementalComputation.Factory} (sum, average, count, min and max);
+     * ignored for others.
+     */
+    @Beta
+    public static final ConfigKey<Boolean> INCREMENTAL = ConfigKeys.newBooleanConfigKey(
+            "enricher.aggregating.incremental",
+            "Whether to update the aggregate as each value changes, rather than recomputing it from all values "
+                    + "(where supported by the transformation)",
+            false);
+
     protected Sensor<T> sourceSensor;
     protected Function<? super Collection<T>, ? extends U> transformation;
     
@@ -88,6 +102,9 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     // We use a synchronizedMap over a ConcurrentHashMap for entities that store null values.
     protected final Map<Entity, T> values = Collections.synchronizedMap(new LinkedHashMap<Entity, T>());
 
+    /** if computing {@link #INCREMENTAL incrementally}, the result for the values which pass the filter; guarded by {@link #values} */
+    protected IncrementalComputation<T, ? extends U> incrementalComputation;
+
     public Aggregator() {}
 
     @Override
@@ -112,6 +129,14 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         } else if (t1!=null && !Objects.equals(t2, this.transformation)) {
             throw new IllegalStateException("Cannot supply both "+TRANSFORMATION_UNTYPED+" and "+TRANSFORMATION+" unless they are equal.");
         }
+
+        if (Boolean.TRUE.equals(config().get(INCREMENTAL))) {
+            if (this.transformation instanceof IncrementalComputation.Factory) {
+                this.incrementalComputation = ((IncrementalComputation.Factory<T, ? extends U>) (Object) this.transformation).newIncrementalComputation();
+            } else {
+                LOG.debug("Transformation "+this.transformation+" for "+this+" does not support incremental computation; will recompute on each change");
+            }
+        }
     }
         
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -120,6 +145,9 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         if ("sum".equalsIgnoreCase(t1)) return new Enrichers.ComputingSum(null, null, targetSensor.getTypeToken());
         if ("isQuorate".equalsIgnoreCase(t1)) return new Enrichers.ComputingIsQuorate(targetSensor.getTypeToken(),
                 QuorumChecks.of(config().get(QUORUM_CHECK_TYPE)), config().get(QUORUM_TOTAL_SIZE));
+        if ("count".equalsIgnoreCase(t1)) return new Enrichers.ComputingCount(null, null, targetSensor.getTypeToken());
+        if ("min".equalsIgnoreCase(t1)) return new Enrichers.ComputingMin(null, null, targetSensor.getTypeToken());
+        if ("max".equalsIgnoreCase(t1)) return new Enrichers.ComputingMax(null, null, targetSensor.getTypeToken());
         if ("list".equalsIgnoreCase(t1)) return new ComputingList();
         if ("first".equalsIgnoreCase(t1)) return new FirstOrNull();
         return null;
@@ -178,7 +206,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
                 } else {
                     initialVal = null;
                 }
-                values.put(producer, initialVal != null ? initialVal : defaultMemberValue);
+                putValue(producer, initialVal != null ? initialVal : defaultMemberValue);
                 //we might skip in onEvent in the short window while !values.containsKey(producer)
                 //but that's okay because the put which would have been done there is done here now
             } else {
@@ -191,7 +219,12 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     
     @Override
     protected void onProducerRemoved(Entity producer) {
-        values.remove(producer);
+        synchronized (values) {
+            if (values.containsKey(producer)) {
+                T old = values.remove(producer);
+                if (incrementalComputation!=null && valueFilter.apply(old)) incrementalComputation.remove(old);
+            }
+        }
         onUpdated();
     }
 
@@ -200,7 +233,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         Entity e = event.getSource();
         synchronized (values) {
             if (values.containsKey(e)) {
-                values.put(e, event.getValue());
+                putValue(e, event.getValue());
             } else {
                 if (LOG.isDebugEnabled()) LOG.debug("{} received event for unknown producer ({}); presumably that producer has recently been removed", this, e);
             }
@@ -208,6 +241,16 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         onUpdated();
     }
 
+    /** Sets the value for the producer, updating the {@link #incrementalComputation} if there is one; callers must synchronize on {@link #values}. */
+    private void putValue(Entity producer, T value) {
+        boolean existed = values.containsKey(producer);
+        T old = values.put(producer, value);
+        if (incrementalComputation!=null) {
+            if (existed && valueFilter.apply(old)) incrementalComputation.remove(old);
+            if (valueFilter.apply(value)) incrementalComputation.add(value);
+        }
+    }
+
     @Override
     protected void onUpdated() {
         try {
@@ -221,6 +264,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     @Override
     protected Object compute() {
         synchronized (values) {
+            if (incrementalComputation!=null) return incrementalComputation.get();
             // TODO Could avoid copying when filter not needed
             List<T> vs = MutableList.copyOf(Iterables.filter(values.values(), valueFilter));
             if (transformation==null) return vs;
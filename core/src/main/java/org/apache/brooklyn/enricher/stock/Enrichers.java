@@ -53,6 +53,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.TreeMultiset;
 import com.google.common.reflect.TypeToken;
 
 public class Enrichers {
@@ -855,7 +856,7 @@ public class Enrichers {
     }
 
     @Beta
-    public static class ComputingSum<T extends Number> extends ComputingNumber<T> {
+    public static class ComputingSum<T extends Number> extends ComputingNumber<T> implements IncrementalComputation.Factory<T,T> {
         public ComputingSum(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
             super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
@@ -863,10 +864,17 @@ public class Enrichers {
         @Override public T apply(Collection<T> input) {
             return (T) sum(input, defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
+        @Override public IncrementalComputation<T,T> newIncrementalComputation() {
+            return new IncrementalNumbers<T>(this, false) {
+                @Override public T get() {
+                    return cast((count==0) ? valueToReportIfNoSensors : total(), typeToken);
+                }
+            };
+        }
     }
 
     @Beta
-    public static class ComputingAverage<T extends Number> extends ComputingNumber<T> {
+    public static class ComputingAverage<T extends Number> extends ComputingNumber<T> implements IncrementalComputation.Factory<T,T> {
         public ComputingAverage(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
             super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
@@ -874,6 +882,164 @@ public class Enrichers {
         @Override public T apply(Collection<T> input) {
             return (T) average(input, defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
+        @Override public IncrementalComputation<T,T> newIncrementalComputation() {
+            return new IncrementalNumbers<T>(this, false) {
+                @Override public T get() {
+                    Double doubleValueToReportIfNoSensors = (valueToReportIfNoSensors == null) ? null : valueToReportIfNoSensors.doubleValue();
+                    return cast((count==0) ? doubleValueToReportIfNoSensors : (Double) (total() / count), typeToken);
+                }
+            };
+        }
+    }
+
+    /** Counts the values, including nulls only if there is a default value for them. */
+    @Beta
+    public static class ComputingCount<T extends Number> extends ComputingNumber<T> implements IncrementalComputation.Factory<T,T> {
+        public ComputingCount(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
+            super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
+        }
+        @Override public T apply(Collection<T> input) {
+            return cast(count(input, defaultValueForUnreportedSensors!=null), typeToken);
+        }
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        @Override public IncrementalComputation<T,T> newIncrementalComputation() {
+            // accepts values of any type, as apply does
+            return (IncrementalComputation) new IncrementalComputation<Object,T>() {
+                private int count;
+                @Override public void add(Object value) {
+                    if (value!=null || defaultValueForUnreportedSensors!=null) count++;
+                }
+                @Override public void remove(Object value) {
+                    if (value!=null || defaultValueForUnreportedSensors!=null) count--;
+                }
+                @Override public T get() {
+                    return cast(count, typeToken);
+                }
+            };
+        }
+    }
+
+    /** The smallest value (with {@link Double#compare(double, double)}), or the value to report if there are none. */
+    @Beta
+    public static class ComputingMin<T extends Number> extends ComputingNumber<T> implements IncrementalComputation.Factory<T,T> {
+        public ComputingMin(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
+            super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
+        }
+        @Override public T apply(Collection<T> input) {
+            Double result = null;
+            for (Number val : input) {
+                Number n = (val!=null) ? val : defaultValueForUnreportedSensors;
+                if (n!=null && (result==null || Double.compare(n.doubleValue(), result) < 0)) result = n.doubleValue();
+            }
+            return cast((result==null) ? valueToReportIfNoSensors : result, typeToken);
+        }
+        @Override public IncrementalComputation<T,T> newIncrementalComputation() {
+            return new IncrementalNumbers<T>(this, true) {
+                @Override public T get() {
+                    return cast((count==0) ? valueToReportIfNoSensors : sorted.firstEntry().getElement(), typeToken);
+                }
+            };
+        }
+    }
+
+    /** The largest value (with {@link Double#compare(double, double)}), or the value to report if there are none. */
+    @Beta
+    public static class ComputingMax<T extends Number> extends ComputingNumber<T> implements IncrementalComputation.Factory<T,T> {
+        public ComputingMax(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
+            super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
+        }
+        @Override public T apply(Collection<T> input) {
+            Double result = null;
+            for (Number val : input) {
+                Number n = (val!=null) ? val : defaultValueForUnreportedSensors;
+                if (n!=null && (result==null || Double.compare(n.doubleValue(), result) > 0)) result = n.doubleValue();
+            }
+            return cast((result==null) ? valueToReportIfNoSensors : result, typeToken);
+        }
+        @Override public IncrementalComputation<T,T> newIncrementalComputation() {
+            return new IncrementalNumbers<T>(this, true) {
+                @Override public T get() {
+                    return cast((count==0) ? valueToReportIfNoSensors : sorted.lastEntry().getElement(), typeToken);
+                }
+            };
+        }
+    }
+
+    /**
+     * Running totals of numbers for {@link ComputingNumber} functions, where nulls are
+     * taken as the default value (or ignored if there is none), as those functions do.
+     * <p>
+     * The sum is compensated (i.e. Neumaier summation) so that adding and removing fractional values
+     * does not accumulate rounding error; sums of integers are exact, as when computed from scratch.
+     * Infinite and NaN values are counted rather than summed, so that they can be removed again.
+     */
+    private abstract static class IncrementalNumbers<T extends Number> implements IncrementalComputation<T,T> {
+        protected final Number defaultValueForUnreportedSensors;
+        protected final Number valueToReportIfNoSensors;
+        protected final TypeToken<T> typeToken;
+        /** all values, if needed for min or max; updates are O(log n) */
+        protected final TreeMultiset<Double> sorted;
+        protected int count;
+        private double sum;
+        private double compensation;
+        private int nanCount;
+        private int positiveInfinityCount;
+        private int negativeInfinityCount;
+
+        IncrementalNumbers(ComputingNumber<T> function, boolean sorted) {
+            this.defaultValueForUnreportedSensors = function.defaultValueForUnreportedSensors;
+            this.valueToReportIfNoSensors = function.valueToReportIfNoSensors;
+            this.typeToken = function.typeToken;
+            this.sorted = sorted ? TreeMultiset.<Double>create() : null;
+        }
+
+        @Override
+        public void add(T value) {
+            Number n = (value!=null) ? value : defaultValueForUnreportedSensors;
+            if (n==null) return;
+            count++;
+            accumulate(n.doubleValue(), 1);
+            if (sorted!=null) sorted.add(n.doubleValue());
+        }
+
+        @Override
+        public void remove(T value) {
+            Number n = (value!=null) ? value : defaultValueForUnreportedSensors;
+            if (n==null) return;
+            count--;
+            accumulate(n.doubleValue(), -1);
+            if (sorted!=null) sorted.remove(n.doubleValue());
+            if (count==0) {
+                sum = 0;
+                compensation = 0;
+            }
+        }
+
+        private void accumulate(double val, int sign) {
+            if (Double.isNaN(val)) {
+                nanCount += sign;
+            } else if (val == Double.POSITIVE_INFINITY) {
+                positiveInfinityCount += sign;
+            } else if (val == Double.NEGATIVE_INFINITY) {
+                negativeInfinityCount += sign;
+            } else {
+                double x = sign * val;
+                double t = sum + x;
+                if (Math.abs(sum) >= Math.abs(x)) {
+                    compensation += (sum - t) + x;
+                } else {
+                    compensation += (x - t) + sum;
+                }
+                sum = t;
+            }
+        }
+
+        protected double total() {
+            if (nanCount > 0 || (positiveInfinityCount > 0 && negativeInfinityCount > 0)) return Double.NaN;
+            if (positiveInfinityCount > 0) return Double.POSITIVE_INFINITY;
+            if (negativeInfinityCount > 0) return Double.NEGATIVE_INFINITY;
+            return sum + compensation;
+        }
     }
 
     protected static <T extends Number> T average(Collection<T> vals, Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> type) {
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.enricher.stock;
+
+import java.util.Collection;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
+
+/**
+ * The result of applying a {@link Function} to a collection of values, kept up-to-date as values are
+ * added to and removed from the collection, rather than by re-applying the function to all values;
+ * used by {@link Aggregator} when {@link Aggregator#INCREMENTAL} is set.
+ * <p>
+ * {@link #get()} must return the same as the function would for the current values
+ * (other than for floating-point rounding, where values are not integers).
+ * Implementations need not be thread-safe.
+ */
+@Beta
+public interface IncrementalComputation<T,U> {
+
+    /** Implemented by a function from a collection which can also be computed incrementally. */
+    public interface Factory<T,U> extends Function<Collection<T>, U> {
+        IncrementalComputation<T,U> newIncrementalComputation();
+    }
+
+    void add(T value);
+
+    /** Removes one occurrence of a value previously {@link #add(Object) added}. */
+    void remove(T value);
+
+    U get();
+}
@@ -18,15 +18,13 @@
  */
 package org.apache.brooklyn.enricher.stock;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-
 import org.apache.brooklyn.api.catalog.Catalog;
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.collections.TimeSeriesBuffer;
 import org.apache.brooklyn.util.time.Duration;
 
 import com.google.common.base.Function;
@@ -79,8 +77,7 @@ public class YamlRollingTimeWindowMeanEnricher<T extends Number> extends Abstrac
         
     }
     
-    private final LinkedList<T> values = new LinkedList<T>();
-    private final LinkedList<Long> timestamps = new LinkedList<Long>();
+    private final TimeSeriesBuffer values = new TimeSeriesBuffer();
     volatile ConfidenceQualifiedNumber lastAverage = new ConfidenceQualifiedNumber(0d,0d);
     
     @Override
@@ -100,8 +97,7 @@ public class YamlRollingTimeWindowMeanEnricher<T extends Number> extends Abstrac
                 if (event.getValue()==null) {
                     return null;
                 }
-                values.addLast(event.getValue());
-                timestamps.addLast(eventTime);
+                values.add(eventTime, event.getValue().doubleValue());
                 if (eventTime>0) {
                     ConfidenceQualifiedNumber average = getAverage(eventTime, 0);
 
@@ -120,22 +116,21 @@ public class YamlRollingTimeWindowMeanEnricher<T extends Number> extends Abstrac
     }
     
     public ConfidenceQualifiedNumber getAverage(long fromTime, long graceAllowed) {
-        if (timestamps.isEmpty()) {
+        if (values.isEmpty()) {
             return lastAverage = new ConfidenceQualifiedNumber(lastAverage.value, 0.0d);
         }
         
         long firstTimestamp = -1;
-        Iterator<Long> ti = timestamps.iterator();
-        while (ti.hasNext()) {
-            firstTimestamp = ti.next();
+        for (int i = 0; i < values.size(); i++) {
+            firstTimestamp = values.getTimestamp(i);
             if (firstTimestamp>0) break;
         }
         if (firstTimestamp<=0) {
             // no values with reasonable timestamps
-            return lastAverage = new ConfidenceQualifiedNumber(values.get(values.size()-1).doubleValue(), 0.0d);
+            return lastAverage = new ConfidenceQualifiedNumber(values.getLatestValue(), 0.0d);
         }
 
-        long lastTimestamp = timestamps.get(timestamps.size()-1);
+        long lastTimestamp = values.getLatestTimestamp();
 
         long now = fromTime;
         if (lastTimestamp > fromTime - graceAllowed) {
@@ -151,7 +146,7 @@ public class YamlRollingTimeWindowMeanEnricher<T extends Number> extends Abstrac
         Double confidence = ((double)(windowEnd - windowStart)) / timePeriod.toMilliseconds();
         if (confidence <= 0.0000001d) {
             // not enough timestamps in window 
-            double lastValue = values.get(values.size()-1).doubleValue();
+            double lastValue = values.getLatestValue();
             return lastAverage = new ConfidenceQualifiedNumber(lastValue, 0.0d);
         }
         
@@ -159,15 +154,13 @@ public class YamlRollingTimeWindowMeanEnricher<T extends Number> extends Abstrac
         long end;
         double weightedAverage = 0.0d;
         
-        Iterator<T> valuesIter = values.iterator();
-        Iterator<Long> timestampsIter = timestamps.iterator();
-        while (valuesIter.hasNext()) {
-            // Ignores null and out-of-date values (and also values that are received out-of-order, but that shouldn't happen!)
-            Number val = valuesIter.next();
-            Long timestamp = timestampsIter.next();
-            if (val!=null && timestamp >= start) {
+        for (int i = 0; i < values.size(); i++) {
+            // Ignores out-of-date values (and also values that are received out-of-order, but that shouldn't happen!)
+            double val = values.getValue(i);
+            long timestamp = values.getTimestamp(i);
+            if (timestamp >= start) {
                 end = timestamp;
-                weightedAverage += ((end - start) / (confidence * timePeriod.toMilliseconds())) * val.doubleValue();
+                weightedAverage += ((end - start) / (confidence * timePeriod.toMilliseconds())) * val;
                 start = timestamp;
             }
         }
@@ -181,9 +174,7 @@ public class YamlRollingTimeWindowMeanEnricher<T extends Number> extends Abstrac
     private void pruneValues(long now) {
         // keep one value from before the period, so that we can tell the window's start time
         Duration timePeriod = getConfig(WINDOW_DURATION);
-        while(timestamps.size() > 1 && timestamps.get(1) < (now - timePeriod.toMilliseconds())) {
-            timestamps.removeFirst();
-            values.removeFirst();
-        }
+        long cutoff = now - timePeriod.toMilliseconds();
+        values.removeOldest(values.countBefore(cutoff) - 1);
     }
 }
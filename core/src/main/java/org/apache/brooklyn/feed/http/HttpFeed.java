@@ -35,23 +35,30 @@ import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.location.MachineLocation;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
 import org.apache.brooklyn.core.feed.Poller;
 import org.apache.brooklyn.core.location.Locations;
 import org.apache.brooklyn.core.location.Machines;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.executor.HttpExecutorFactory;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.http.HttpToolResponse;
 import org.apache.brooklyn.util.http.executor.UsernamePassword;
+import org.apache.brooklyn.util.http.executor.AsyncHttpExecutor;
 import org.apache.brooklyn.util.http.executor.HttpConfig;
 import org.apache.brooklyn.util.http.executor.HttpExecutor;
 import org.apache.brooklyn.util.http.executor.HttpRequest;
 import org.apache.brooklyn.util.http.executor.HttpResponse;
+import org.apache.brooklyn.util.http.executor.SharedHttpExecutors;
 import org.apache.brooklyn.util.http.executor.apacheclient.HttpExecutorImpl;
 import org.apache.brooklyn.util.stream.Streams;
 import org.apache.brooklyn.util.time.Duration;
@@ -60,12 +67,15 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -73,6 +83,8 @@ import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Provides a feed of attribute values, by polling over http.
@@ -127,6 +139,24 @@ public class HttpFeed extends AbstractFeed {
             new TypeToken<SetMultimap<HttpPollIdentifier, HttpPollConfig<?>>>() {},
             "polls");
 
+    /**
+     * Overrides {@link HttpPollCoalescer#COALESCE_WINDOW} for this feed's polls;
+     * if unset, the management context's setting is used.
+     */
+    @Beta
+    public static final ConfigKey<Duration> COALESCE_WINDOW = ConfigKeys.newDurationConfigKey("coalesceWindow");
+
+    /**
+     * Whether feeds (unless given their own executor) use the management context's {@link SharedHttpExecutors shared executor},
+     * whose settings are given by other properties with the prefix {@link SharedHttpExecutors#PREFIX}.
+     */
+    @Beta
+    public static final ConfigKey<Boolean> SHARED_HTTP_EXECUTOR = ConfigKeys.newBooleanConfigKey(
+            SharedHttpExecutors.ENABLED,
+            "Whether HTTP feeds (unless given their own executor) use a non-blocking client and connection pool shared "
+                    + "across the management context, rather than opening a new connection for each request",
+            false);
+
     public static Builder builder() {
         return new Builder();
     }
@@ -144,6 +174,7 @@ public class HttpFeed extends AbstractFeed {
         private Credentials credentials;
         private String uniqueTag;
         private HttpExecutor httpExecutor;
+        private Duration coalesceWindow;
         private volatile boolean built;
 
         public Builder entity(Entity val) {
@@ -228,6 +259,12 @@ public class HttpFeed extends AbstractFeed {
             this.httpExecutor = val;
             return this;
         }
+        /** @see HttpFeed#COALESCE_WINDOW */
+        @Beta
+        public Builder coalesceWindow(Duration val) {
+            this.coalesceWindow = val;
+            return this;
+        }
         public HttpFeed build() {
             built = true;
             HttpFeed result = new HttpFeed(this);
@@ -243,6 +280,7 @@ public class HttpFeed extends AbstractFeed {
     }
     
     private static class HttpPollIdentifier {
+        /** null if the management context's {@link SharedHttpExecutors shared executor} should be used */
         final HttpExecutor httpExecutor;
         final String method;
         final Supplier<URI> uriProvider;
@@ -298,6 +336,7 @@ public class HttpFeed extends AbstractFeed {
     
     protected HttpFeed(Builder builder) {
         setConfig(ONLY_IF_SERVICE_UP, builder.onlyIfServiceUp);
+        if (builder.coalesceWindow != null) setConfig(COALESCE_WINDOW, builder.coalesceWindow);
         Map<String,String> baseHeaders = ImmutableMap.copyOf(checkNotNull(builder.headers, "headers"));
 
         HttpExecutor httpExecutor;
@@ -311,6 +350,9 @@ public class HttpFeed extends AbstractFeed {
                 httpExecutorFactory = location.get().getExtension(HttpExecutorFactory.class);
                 Map<String, Object> httpExecutorProps = location.get().getAllConfig(true);
                 httpExecutor = httpExecutorFactory.getHttpExecutor(httpExecutorProps);
+            } else if (isSharedHttpExecutorEnabled(((EntityInternal)builder.entity).getManagementContext())) {
+                // not stored in the feed's config (which is persisted); looked up when the feed starts
+                httpExecutor = null;
             } else {
                 httpExecutor = HttpExecutorImpl.newInstance();
             }
@@ -360,6 +402,7 @@ public class HttpFeed extends AbstractFeed {
             //     own dedicated instance of HttpContext.
             //  http://hc.apache.org/httpcomponents-client-ga/tutorial/html/connmgmt.html
 
+            final HttpExecutor httpExecutor = (pollInfo.httpExecutor != null) ? pollInfo.httpExecutor : getDefaultHttpExecutor();
             Set<HttpPollConfig<?>> configs = polls.get(pollInfo);
             long minPeriod = Integer.MAX_VALUE;
             Set<AttributePollHandler<? super HttpToolResponse>> handlers = Sets.newLinkedHashSet();
@@ -369,37 +412,137 @@ public class HttpFeed extends AbstractFeed {
                 if (config.getPeriod() > 0) minPeriod = Math.min(minPeriod, config.getPeriod());
             }
 
-            Callable<HttpToolResponse> pollJob;
-            pollJob = new Callable<HttpToolResponse>() {
-                @Override
-                public HttpToolResponse call() throws Exception {
-                    if (log.isTraceEnabled()) log.trace("http polling for {} sensors at {}", entity, pollInfo);
-
-                    UsernamePassword creds = null;
-                    if (pollInfo.credentials.isPresent()) {
-                        creds =  new UsernamePassword(
-                                pollInfo.credentials.get().getUserPrincipal().getName(),
-                                pollInfo.credentials.get().getPassword());
-                    }
-
-                    HttpResponse response =  pollInfo.httpExecutor.execute(new HttpRequest.Builder()
-                            .headers(pollInfo.headers)
-                            .uri(pollInfo.uriProvider.get())
-                            .credentials(creds)
-                            .method(pollInfo.method)
-                            .body(pollInfo.body)
-                            .config(HttpConfig.builder()
-                                    .trustSelfSigned(true)
-                                    .trustAll(true)
-                                    .laxRedirect(true)
-                                    .build())
-                            .build());
-                    return createHttpToolRespose(response);
-                }};
-                getPoller().scheduleAtFixedRate(pollJob, new DelegatingPollHandler<HttpToolResponse>(handlers), minPeriod);
+            final Duration coalesceWindow = getCoalesceWindow();
+            // the built-in executors are equivalent, so polls using any of them can share a request
+            final HttpExecutor coalesceExecutorKey = (pollInfo.httpExecutor instanceof HttpExecutorImpl) ? null : pollInfo.httpExecutor;
+            DelegatingPollHandler<HttpToolResponse> handler = new DelegatingPollHandler<HttpToolResponse>(handlers);
+
+            if (httpExecutor instanceof AsyncHttpExecutor) {
+                // the poll completes when the response arrives, so no thread waits for it
+                final AsyncHttpExecutor asyncHttpExecutor = (AsyncHttpExecutor) httpExecutor;
+                Callable<ListenableFuture<HttpToolResponse>> pollJob = new Callable<ListenableFuture<HttpToolResponse>>() {
+                    @Override
+                    public ListenableFuture<HttpToolResponse> call() throws Exception {
+                        if (log.isTraceEnabled()) log.trace("http polling (async) for {} sensors at {}", entity, pollInfo);
+
+                        final HttpRequest httpRequest = newHttpRequest(pollInfo);
+                        Callable<ListenableFuture<HttpToolResponse>> request = new Callable<ListenableFuture<HttpToolResponse>>() {
+                            @Override
+                            public ListenableFuture<HttpToolResponse> call() {
+                                return Futures.transform(asyncHttpExecutor.executeAsync(httpRequest), new Function<HttpResponse, HttpToolResponse>() {
+                                    @Override
+                                    public HttpToolResponse apply(HttpResponse response) {
+                                        try {
+                                            return createHttpToolRespose(response);
+                                        } catch (IOException e) {
+                                            throw Exceptions.propagate(e);
+                                        }
+                                    }});
+                            }};
+                        if (coalesceWindow.isPositive()) {
+                            Object key = newCoalesceKey(coalesceExecutorKey, pollInfo, httpRequest);
+                            return HttpPollCoalescer.get(getManagementContextForFeed()).executeAsync(key, coalesceWindow, request);
+                        } else {
+                            return request.call();
+                        }
+                    }};
+                getPoller().scheduleAtFixedRateAsync(pollJob, handler, Duration.millis(minPeriod));
+            } else {
+                Callable<HttpToolResponse> pollJob = new Callable<HttpToolResponse>() {
+                    @Override
+                    public HttpToolResponse call() throws Exception {
+                        if (log.isTraceEnabled()) log.trace("http polling for {} sensors at {}", entity, pollInfo);
+
+                        final HttpRequest httpRequest = newHttpRequest(pollInfo);
+                        Callable<HttpToolResponse> request = new Callable<HttpToolResponse>() {
+                            @Override
+                            public HttpToolResponse call() throws Exception {
+                                return createHttpToolRespose(httpExecutor.execute(httpRequest));
+                            }};
+                        if (coalesceWindow.isPositive()) {
+                            Object key = newCoalesceKey(coalesceExecutorKey, pollInfo, httpRequest);
+                            return HttpPollCoalescer.get(getManagementContextForFeed()).execute(key, coalesceWindow, getPollTimeout(pollInfo), request);
+                        } else {
+                            return request.call();
+                        }
+                    }};
+                getPoller().scheduleAtFixedRate(pollJob, handler, minPeriod);
+            }
+        }
+    }
+
+    private HttpRequest newHttpRequest(HttpPollIdentifier pollInfo) {
+        final UsernamePassword creds;
+        if (pollInfo.credentials.isPresent()) {
+            creds =  new UsernamePassword(
+                    pollInfo.credentials.get().getUserPrincipal().getName(),
+                    pollInfo.credentials.get().getPassword());
+        } else {
+            creds = null;
+        }
+        return new HttpRequest.Builder()
+                .headers(pollInfo.headers)
+                .uri(pollInfo.uriProvider.get())
+                .credentials(creds)
+                .method(pollInfo.method)
+                .body(pollInfo.body)
+                .config(HttpConfig.builder()
+                        .trustSelfSigned(true)
+                        .trustAll(true)
+                        .laxRedirect(true)
+                        .build())
+                .build();
+    }
+
+    /**
+     * How long a poll's request can take: its connection timeout plus its socket timeout, each 30s if not set
+     * (as for the {@link SharedHttpExecutors shared executor}).
+     */
+    private static Duration getPollTimeout(HttpPollIdentifier pollInfo) {
+        Duration connectionTimeout = (pollInfo.connectionTimeout != null) ? pollInfo.connectionTimeout : Duration.THIRTY_SECONDS;
+        Duration socketTimeout = (pollInfo.socketTimeout != null) ? pollInfo.socketTimeout : Duration.THIRTY_SECONDS;
+        return connectionTimeout.add(socketTimeout);
+    }
+
+    private Object newCoalesceKey(HttpExecutor coalesceExecutorKey, HttpPollIdentifier pollInfo, HttpRequest request) {
+        org.apache.brooklyn.util.http.executor.Credentials creds = request.credentials();
+        return new HttpPollCoalescer.RequestKey(coalesceExecutorKey, pollInfo.method, request.uri(), pollInfo.headers, pollInfo.body,
+                (creds != null) ? ImmutableList.of(creds.getUser(), creds.getPassword()) : null);
+    }
+
+    /**
+     * The executor for polls which were not given one, i.e. the management context's {@link SharedHttpExecutors shared executor};
+     * or if that has since been disabled (e.g. when rebinding), a new {@link HttpExecutorImpl}.
+     */
+    protected HttpExecutor getDefaultHttpExecutor() {
+        ManagementContextInternal mgmt = (ManagementContextInternal) getManagementContextForFeed();
+        if (isSharedHttpExecutorEnabled(mgmt)) {
+            Map<String, Object> settings = MutableMap.of();
+            for (String setting : SharedHttpExecutors.SETTINGS) {
+                Object val = mgmt.getConfig().getConfig(ConfigKeys.newConfigKey(Object.class, SharedHttpExecutors.PREFIX+setting));
+                if (val != null) settings.put(setting, val);
+            }
+            return mgmt.getSharedHttpExecutors().get(settings);
+        } else {
+            return HttpExecutorImpl.newInstance();
         }
     }
 
+    private static boolean isSharedHttpExecutorEnabled(ManagementContext mgmt) {
+        return Boolean.TRUE.equals(mgmt.getConfig().getConfig(SHARED_HTTP_EXECUTOR));
+    }
+
+    /** how long identical polls can share a response, from {@link #COALESCE_WINDOW} or else {@link HttpPollCoalescer#COALESCE_WINDOW} */
+    protected Duration getCoalesceWindow() {
+        Duration result = getConfig(COALESCE_WINDOW);
+        if (result == null) result = getManagementContextForFeed().getConfig().getConfig(HttpPollCoalescer.COALESCE_WINDOW);
+        return (result != null) ? result : Duration.ZERO;
+    }
+
+    private ManagementContext getManagementContextForFeed() {
+        return ((EntityInternal)entity).getManagementContext();
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected Poller<HttpToolResponse> getPoller() {
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.http.HttpToolResponse;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Lets identical HTTP polls, from any feed in a management context, share a single request:
+ * a poll made while an identical request is in flight waits for that request's response,
+ * and a poll made within the freshness window after an identical request completed is given its response.
+ * Failed requests are shared only with polls that were waiting for them, and are not cached.
+ * <p>
+ * Enabled for {@link HttpFeed}s by setting {@link #COALESCE_WINDOW} (in brooklyn.properties, or on the feed).
+ */
+@Beta
+public class HttpPollCoalescer {
+
+    public static final ConfigKey<Duration> COALESCE_WINDOW = ConfigKeys.newDurationConfigKey(
+            "brooklyn.feed.http.coalesceWindow",
+            "How old a response to an identical request (same method, URI, headers, body and credentials) can be "
+                    + "for an HTTP poll to use it rather than sending its own request; 0 to disable coalescing",
+            Duration.ZERO);
+
+    private static final ConfigKey<HttpPollCoalescer> INSTANCE = ConfigKeys.newConfigKey(HttpPollCoalescer.class,
+            "brooklyn.feed.http.coalescer.instance");
+
+    /** how many requests are sent between each removal of expired responses */
+    private static final int PURGE_INTERVAL = 256;
+
+    private static final Object CREATION_LOCK = new Object();
+
+    /** Returns the management context's coalescer, creating it if necessary. */
+    public static HttpPollCoalescer get(ManagementContext mgmt) {
+        checkNotNull(mgmt, "mgmt");
+        synchronized (CREATION_LOCK) {
+            HttpPollCoalescer result = mgmt.getScratchpad().get(INSTANCE);
+            if (result == null) {
+                result = new HttpPollCoalescer();
+                mgmt.getScratchpad().put(INSTANCE, result);
+            }
+            return result;
+        }
+    }
+
+    private final ConcurrentMap<Object, Entry> entries = new ConcurrentHashMap<Object, Entry>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong joinedInFlight = new AtomicLong();
+    private final AtomicLong cachedHits = new AtomicLong();
+    private volatile long maxWindowNanos;
+
+    private static class Entry {
+        final SettableFuture<HttpToolResponse> future = SettableFuture.create();
+        volatile long completedNanos;
+        volatile boolean succeeded;
+
+        boolean isFresh(long nowNanos, long windowNanos) {
+            return succeeded && nowNanos - completedNanos <= windowNanos;
+        }
+    }
+
+    /**
+     * Returns the response to an identical request (i.e. one with an {@link Object#equals(Object) equal} key)
+     * which is in flight or completed within the given window, or otherwise calls the given request.
+     * Exceptions thrown by the request are thrown to its caller and to any polls which joined it.
+     * <p>
+     * A poll which joins a request in flight waits for its response for at most the given timeout
+     * (normally as long as the poll's own request could take), and then fails with a {@link TimeoutException}.
+     */
+    public HttpToolResponse execute(Object key, Duration window, Duration timeout, Callable<HttpToolResponse> request) throws Exception {
+        requests.incrementAndGet();
+        long windowNanos = window.toNanoseconds();
+        if (windowNanos > maxWindowNanos) maxWindowNanos = windowNanos;
+
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                if (!existing.future.isDone()) {
+                    joinedInFlight.incrementAndGet();
+                    return waitFor(existing, timeout);
+                } else if (existing.isFresh(System.nanoTime(), windowNanos)) {
+                    cachedHits.incrementAndGet();
+                    return waitFor(existing, timeout);
+                } else if (!entries.remove(key, existing)) {
+                    // replaced concurrently; look again
+                    continue;
+                }
+            }
+            Entry entry = new Entry();
+            if (entries.putIfAbsent(key, entry) != null) continue;
+
+            if (sent.incrementAndGet() % PURGE_INTERVAL == 0) purgeExpired();
+            try {
+                HttpToolResponse result = request.call();
+                entry.completedNanos = System.nanoTime();
+                entry.succeeded = true;
+                entry.future.set(result);
+                return result;
+            } catch (Throwable t) {
+                entries.remove(key, entry);
+                entry.future.setException(t);
+                throw propagate(t);
+            }
+        }
+    }
+
+    private static Exception propagate(Throwable t) {
+        if (t instanceof Exception) return (Exception) t;
+        throw Exceptions.propagate(t);
+    }
+
+    private static HttpToolResponse waitFor(Entry entry, Duration timeout) throws Exception {
+        try {
+            return entry.future.get(timeout.toNanoseconds(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Identical request in flight did not complete within "+timeout);
+        }
+    }
+
+    /**
+     * As {@link #execute(Object, Duration, Duration, Callable)}, for a request which returns a future for its response
+     * (e.g. from {@link org.apache.brooklyn.util.http.executor.AsyncHttpExecutor#executeAsync(org.apache.brooklyn.util.http.executor.HttpRequest)}):
+     * returns the future of an identical request in flight, or of one which completed within the window,
+     * or otherwise calls the given request. Nothing blocks waiting for the response, so there is no timeout here;
+     * the future completes within the timeouts of the request which was sent.
+     */
+    public ListenableFuture<HttpToolResponse> executeAsync(final Object key, Duration window, Callable<? extends ListenableFuture<HttpToolResponse>> request) {
+        requests.incrementAndGet();
+        long windowNanos = window.toNanoseconds();
+        if (windowNanos > maxWindowNanos) maxWindowNanos = windowNanos;
+
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                if (!existing.future.isDone()) {
+                    joinedInFlight.incrementAndGet();
+                    return existing.future;
+                } else if (existing.isFresh(System.nanoTime(), windowNanos)) {
+                    cachedHits.incrementAndGet();
+                    return existing.future;
+                } else if (!entries.remove(key, existing)) {
+                    // replaced concurrently; look again
+                    continue;
+                }
+            }
+            final Entry entry = new Entry();
+            if (entries.putIfAbsent(key, entry) != null) continue;
+
+            if (sent.incrementAndGet() % PURGE_INTERVAL == 0) purgeExpired();
+            ListenableFuture<HttpToolResponse> result;
+            try {
+                result = request.call();
+            } catch (Throwable t) {
+                result = Futures.immediateFailedFuture(t);
+            }
+            Futures.addCallback(result, new FutureCallback<HttpToolResponse>() {
+                @Override
+                public void onSuccess(HttpToolResponse response) {
+                    entry.completedNanos = System.nanoTime();
+                    entry.succeeded = true;
+                    entry.future.set(response);
+                }
+                @Override
+                public void onFailure(Throwable t) {
+                    entries.remove(key, entry);
+                    entry.future.setException(t);
+                }
+            });
+            return entry.future;
+        }
+    }
+
+    /** Removes responses which are older than the largest window requested, so are no longer of use. */
+    protected void purgeExpired() {
+        long now = System.nanoTime();
+        long windowNanos = maxWindowNanos;
+        for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();) {
+            Entry entry = iter.next();
+            if (entry.future.isDone() && !entry.isFresh(now, windowNanos)) iter.remove();
+        }
+    }
+
+    /**
+     * Returns counts of polls: {@code requests} in total, of which {@code sent} resulted in a request,
+     * {@code joinedInFlight} shared a request in flight and {@code cachedHits} used a recent response;
+     * and the {@code hitRate}, the fraction of polls which did not send their own request.
+     */
+    public Map<String, Object> getMetrics() {
+        long requestCount = requests.get();
+        long joinedCount = joinedInFlight.get();
+        long cachedCount = cachedHits.get();
+        return MutableMap.<String, Object>builder()
+                .put("requests", requestCount)
+                .put("sent", sent.get())
+                .put("joinedInFlight", joinedCount)
+                .put("cachedHits", cachedCount)
+                .put("hitRate", (requestCount == 0) ? 0d : (double) (joinedCount + cachedCount) / requestCount)
+                .put("cachedResponses", entries.size())
+                .build();
+    }
+
+    /**
+     * A key for requests which are the same, for use with {@link HttpPollCoalescer#execute(Object, Duration, Duration, Callable)};
+     * the executor should be omitted (i.e. null) where it does not affect the response, e.g. for the default executors.
+     */
+    public static class RequestKey {
+        private final Object executor;
+        private final String method;
+        private final Object uri;
+        private final Map<String, String> headers;
+        private final byte[] body;
+        private final Object credentials;
+
+        public RequestKey(Object executor, String method, Object uri, Map<String, String> headers, byte[] body, Object credentials) {
+            this.executor = executor;
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+            this.body = body;
+            this.credentials = credentials;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(executor, method, uri, headers, Arrays.hashCode(body), credentials);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof RequestKey)) return false;
+            RequestKey o = (RequestKey) other;
+            return Objects.equal(executor, o.executor) &&
+                    Objects.equal(method, o.method) &&
+                    Objects.equal(uri, o.uri) &&
+                    Objects.equal(headers, o.headers) &&
+                    Arrays.equals(body, o.body) &&
+                    Objects.equal(credentials, o.credentials);
+        }
+
+        @Override
+        public String toString() {
+            return method+" "+uri;
+        }
+    }
+}
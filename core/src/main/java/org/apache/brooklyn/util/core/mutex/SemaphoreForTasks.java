@@ -25,6 +25,7 @@ import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.task.BoundedTaskExecutor;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.time.Time;
 
@@ -67,6 +68,45 @@ public class SemaphoreForTasks extends SemaphoreWithOwners {
         return ImmutableList.copyOf(owningTasks);
     }
 
+    @Override
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+    
+    @Override
+    public void acquire(int permits) throws InterruptedException {
+        boolean compensating = beginBlockingIfContended(permits);
+        try {
+            super.acquire(permits);
+        } finally {
+            if (compensating) BoundedTaskExecutor.endBlockingInCurrentPool();
+        }
+    }
+    
+    @Override
+    public void acquireUninterruptibly() {
+        acquireUninterruptibly(1);
+    }
+    
+    @Override
+    public void acquireUninterruptibly(int permits) {
+        boolean compensating = beginBlockingIfContended(permits);
+        try {
+            super.acquireUninterruptibly(permits);
+        } finally {
+            if (compensating) BoundedTaskExecutor.endBlockingInCurrentPool();
+        }
+    }
+    
+    /** if the caller is about to park, because the permits are not immediately available,
+     * lets a bounded pool run an extra thread meanwhile, as the owner may need one to release them;
+     * done outside of this semaphore's monitor, and not done for the non-blocking or timed tryAcquire calls */
+    private boolean beginBlockingIfContended(int permits) {
+        if (availablePermits() >= permits && !hasQueuedThreads()) return false;
+        BoundedTaskExecutor.beginBlockingInCurrentPool();
+        return true;
+    }
+    
     @Override
     protected synchronized void onRequesting() {
         if (!owningTasks.isEmpty() || !requestingTasks.isEmpty()) {
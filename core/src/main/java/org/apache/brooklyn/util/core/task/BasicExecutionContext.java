@@ -46,6 +46,7 @@ import org.apache.brooklyn.util.guava.Maybe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
@@ -155,6 +156,20 @@ public class BasicExecutionContext extends AbstractExecutionContext {
         }
     }
     
+    /** runs the given job in the calling thread with this as the {@link #getCurrentExecutionContext() current execution context},
+     * so that tasks it submits (e.g. with {@link DynamicTasks#queueIfPossible(TaskAdaptable)}) run here,
+     * but without creating a task for the job itself; for lightweight periodic work, such as feed polls */
+    @Beta
+    public void runWithoutTask(Runnable job) {
+        BasicExecutionContext oldExecutionContext = getCurrentExecutionContext();
+        registerPerThreadExecutionContext();
+        try {
+            job.run();
+        } finally {
+            perThreadExecutionContext.set(oldExecutionContext);
+        }
+    }
+    
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     protected <T> Task<T> submitInternal(Map<?,?> propertiesQ, final Object task) {
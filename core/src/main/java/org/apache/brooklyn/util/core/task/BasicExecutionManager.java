@@ -20,9 +20,10 @@ package org.apache.brooklyn.util.core.task;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -33,9 +34,12 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
@@ -43,14 +47,19 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 
 import org.apache.brooklyn.api.mgmt.ExecutionManager;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.TaskAdaptable;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.Sanitizer;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.util.collections.MutableList;
@@ -70,6 +79,8 @@ import com.google.common.base.CaseFormat;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ExecutionList;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -84,6 +95,48 @@ import groovy.lang.Closure;
 public class BasicExecutionManager implements ExecutionManager {
     private static final Logger log = LoggerFactory.getLogger(BasicExecutionManager.class);
 
+    /** @see #THREAD_POOL_MODE */
+    @Beta
+    public enum ThreadPoolMode {
+        /** unbounded pool, creating a thread for every task which cannot be given an idle one (the default) */
+        CACHED,
+        /** bounded pool with a bounded queue; see {@link BoundedTaskExecutor} */
+        BOUNDED
+    }
+
+    @Beta
+    public static final ConfigKey<ThreadPoolMode> THREAD_POOL_MODE = ConfigKeys.newConfigKey(ThreadPoolMode.class,
+        "brooklyn.executionManager.threadPool.mode",
+        "the type of thread pool used to run tasks: CACHED (unbounded, the default) or BOUNDED "
+        + "(at most maxThreads running, plus any temporarily added to compensate for threads blocked waiting on other tasks, "
+        + "attributes or task semaphores; further submissions are queued, and submitters wait if the queue is full; "
+        + "tasks blocking in other ways on work needing a thread, e.g. on their own latches, can exhaust a BOUNDED pool)",
+        ThreadPoolMode.CACHED);
+
+    @Beta
+    public static final ConfigKey<Integer> THREAD_POOL_MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+        "brooklyn.executionManager.threadPool.maxThreads",
+        "the number of threads in a BOUNDED thread pool, excluding those added to compensate for blocked threads",
+        256);
+
+    @Beta
+    public static final ConfigKey<Integer> THREAD_POOL_QUEUE_CAPACITY = ConfigKeys.newIntegerConfigKey(
+        "brooklyn.executionManager.threadPool.queueCapacity",
+        "the number of tasks which can be queued in a BOUNDED thread pool before submitters are made to wait",
+        100000);
+
+    @Beta
+    public static final ConfigKey<Duration> THREAD_POOL_KEEP_ALIVE = ConfigKeys.newDurationConfigKey(
+        "brooklyn.executionManager.threadPool.keepAlive",
+        "how long an idle thread is kept before being discarded",
+        Duration.TEN_SECONDS);
+
+    @Beta
+    public static final ConfigKey<Integer> PERIODIC_JOB_MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+        "brooklyn.executionManager.periodicJobs.maxThreads",
+        "the number of threads used to run lightweight periodic jobs (see PeriodicJobScheduler), such as feed polls",
+        32);
+
     private static final boolean RENAME_THREADS = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_RENAME_THREADS);
     private static final String JITTER_THREADS_MAX_DELAY_PROPERTY = BrooklynFeatureEnablement.FEATURE_JITTER_THREADS + ".maxDelay";
 
@@ -106,15 +159,19 @@ public class BasicExecutionManager implements ExecutionManager {
         
     private final ScheduledExecutorService delayedRunner;
     
+    private final int periodicJobMaxThreads;
+    
+    private PeriodicJobScheduler periodicJobScheduler;
+    
     // TODO Could have a set of all knownTasks; but instead we're having a separate set per tag,
     // so the same task could be listed multiple times if it has multiple tags...
 
-    //access to this field AND to members in this field is synchronized, 
-    //to allow us to preserve order while guaranteeing thread-safe
-    //(but more testing is needed before we are completely sure it is thread-safe!)
-    //synch blocks are as finely grained as possible for efficiency;
-    //NB CopyOnWriteArraySet is a perf bottleneck, and the simple map makes it easier to remove when a tag is empty
-    private Map<Object,Set<Task<?>>> tasksByTag = new HashMap<Object,Set<Task<?>>>();
+    // index of tasks by tag; see TagBin. adding and removing tasks do not lock anything, except when a tag's bin
+    // is created or (once empty) dropped from the map, which locks only that tag's entry in the map.
+    private final ConcurrentHashMap<Object,TagBin> tasksByTag = new ConcurrentHashMap<Object,TagBin>();
+    
+    /** orders the tasks in each {@link TagBin}, across all bins so that a task re-added to a new bin goes at its end */
+    private final AtomicLong tagIndexSequence = new AtomicLong();
     
     private ConcurrentMap<String,Task<?>> tasksById = new ConcurrentHashMap<String,Task<?>>();
 
@@ -131,6 +188,15 @@ public class BasicExecutionManager implements ExecutionManager {
     
     private final List<ExecutionListener> listeners = new CopyOnWriteArrayList<ExecutionListener>();
     
+    private final List<TaskDeletionListener> deletionListeners = new CopyOnWriteArrayList<TaskDeletionListener>();
+    
+    /** notified when a task is deleted from the manager, however it is deleted */
+    @Beta
+    public interface TaskDeletionListener {
+        /** invoked after the task has been removed; the task's children are notified separately */
+        public void onTaskDeleted(Task<?> task);
+    }
+    
     private final static ThreadLocal<String> threadOriginalName = new ThreadLocal<String>() {
         @Override
         protected String initialValue() {
@@ -141,23 +207,63 @@ public class BasicExecutionManager implements ExecutionManager {
     };
     
     public BasicExecutionManager(String contextid) {
+        this(contextid, null);
+    }
+    
+    /** as {@link #BasicExecutionManager(String)}, but reading the thread pool configuration 
+     * ({@link #THREAD_POOL_MODE} etc) from the given properties, if not null */
+    public BasicExecutionManager(String contextid, StringConfigMap config) {
         threadFactory = newThreadFactory(contextid);
         daemonThreadFactory = new ThreadFactoryBuilder()
                 .setThreadFactory(threadFactory)
                 .setDaemon(true)
                 .build();
-                
-        // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
-        runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
-                daemonThreadFactory);
+        
+        runner = newRunner(config);
             
         delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
 
+        periodicJobMaxThreads = config==null ? PERIODIC_JOB_MAX_THREADS.getDefaultValue() : config.getConfig(PERIODIC_JOB_MAX_THREADS);
+
         if (jitterThreads) {
             log.info("Task startup jittering enabled with a maximum of " + jitterThreadsMaxDelay + " delay.");
         }
     }
     
+    protected ExecutorService newRunner(StringConfigMap config) {
+        ThreadPoolMode mode = config==null ? THREAD_POOL_MODE.getDefaultValue() : config.getConfig(THREAD_POOL_MODE);
+        Duration keepAlive = config==null ? THREAD_POOL_KEEP_ALIVE.getDefaultValue() : config.getConfig(THREAD_POOL_KEEP_ALIVE);
+        switch (mode) {
+        case BOUNDED:
+            int maxThreads = config.getConfig(THREAD_POOL_MAX_THREADS);
+            int queueCapacity = config.getConfig(THREAD_POOL_QUEUE_CAPACITY);
+            log.debug("Using bounded thread pool for "+this+": "+maxThreads+" threads, queue capacity "+queueCapacity);
+            return new BoundedTaskExecutor(maxThreads, queueCapacity, keepAlive, daemonThreadFactory);
+        case CACHED:
+            // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 10s rather than 60s for better shutdown!
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, keepAlive.toMilliseconds(), TimeUnit.MILLISECONDS, 
+                    new SynchronousQueue<Runnable>(), daemonThreadFactory);
+        default:
+            throw new IllegalStateException("Unsupported thread pool mode "+mode);
+        }
+    }
+    
+    /** 
+     * Returns the scheduler for lightweight periodic jobs, sharing the timer thread used for scheduled tasks
+     * but running jobs on a separate bounded pool (of {@link #PERIODIC_JOB_MAX_THREADS}), created on first use.
+     */
+    @Beta
+    public synchronized PeriodicJobScheduler getPeriodicJobScheduler() {
+        if (periodicJobScheduler == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(periodicJobMaxThreads, periodicJobMaxThreads, 
+                    THREAD_POOL_KEEP_ALIVE.getDefaultValue().toMilliseconds(), TimeUnit.MILLISECONDS, 
+                    new LinkedBlockingQueue<Runnable>(), daemonThreadFactory);
+            pool.allowCoreThreadTimeOut(true);
+            periodicJobScheduler = new PeriodicJobScheduler(delayedRunner, pool);
+        }
+        return periodicJobScheduler;
+    }
+    
     private final static class UncaughtExceptionHandlerImplementation implements Thread.UncaughtExceptionHandler {
         @Override
         public void uncaughtException(Thread t, Throwable e) {
@@ -188,6 +294,9 @@ public class BasicExecutionManager implements ExecutionManager {
     public boolean shutdownNow(Duration howLongToWaitForTermination) {
         runner.shutdownNow();
         delayedRunner.shutdownNow();
+        synchronized (this) {
+            if (periodicJobScheduler != null) periodicJobScheduler.shutdownNow();
+        }
         if (howLongToWaitForTermination!=null) {
             CountdownTimer timer = howLongToWaitForTermination.countdownTimer();
             try {
@@ -208,6 +317,16 @@ public class BasicExecutionManager implements ExecutionManager {
         listeners.remove(listener);
     }
     
+    @Beta
+    public void addDeletionListener(TaskDeletionListener listener) {
+        deletionListeners.add(listener);
+    }
+    
+    @Beta
+    public void removeDeletionListener(TaskDeletionListener listener) {
+        deletionListeners.remove(listener);
+    }
+    
     /**
      * Deletes the given tag, including all tasks using this tag.
      * 
@@ -215,11 +334,10 @@ public class BasicExecutionManager implements ExecutionManager {
      * a reference to it as a tag.
      */
     public void deleteTag(Object tag) {
-        Set<Task<?>> tasks;
-        synchronized (tasksByTag) {
-            tasks = tasksByTag.remove(tag);
-        }
+        TagBin tasks = tasksByTag.remove(tag);
         if (tasks != null) {
+            // a task being added concurrently then goes in a new bin, rather than being lost with this one
+            tasks.removed = true;
             for (Task<?> task : tasks) {
                 deleteTask(task);
             }
@@ -241,21 +359,22 @@ public class BasicExecutionManager implements ExecutionManager {
     protected boolean deleteTaskNonRecursive(Task<?> task) {
         Set<?> tags = checkNotNull(task, "task").getTags();
         for (Object tag : tags) {
-            synchronized (tasksByTag) {
-                Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
-                if (tasks != null) {
-                    tasks.remove(task);
-                    if (tasks.isEmpty()) {
-                        tasksByTag.remove(tag);
-                    }
-                }
-            }
+            removeTaskFromTagIndex(tag, task);
         }
         Task<?> removed = tasksById.remove(task.getId());
         incompleteTaskIds.remove(task.getId());
         if (removed!=null && removed.isSubmitted() && !removed.isDone()) {
             log.warn("Deleting submitted task before completion: "+removed+"; this task will continue to run in the background outwith "+this+", but perhaps it should have been cancelled?");
         }
+        if (removed!=null) {
+            for (TaskDeletionListener listener : deletionListeners) {
+                try {
+                    listener.onTaskDeleted(removed);
+                } catch (Exception e) {
+                    log.warn("Error running deletion listener "+listener+" of task "+removed, e);
+                }
+            }
+        }
         return removed != null;
     }
 
@@ -284,24 +403,140 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksById.size();
     }
 
-    private Set<Task<?>> tasksWithTagCreating(Object tag) {
+    /** the type of thread pool in use; see {@link #THREAD_POOL_MODE} */
+    @Beta
+    public ThreadPoolMode getThreadPoolMode() {
+        return (runner instanceof BoundedTaskExecutor) ? ThreadPoolMode.BOUNDED : ThreadPoolMode.CACHED;
+    }
+    
+    /** count of jobs waiting for a thread (always 0 unless using a {@link ThreadPoolMode#BOUNDED} pool) */
+    @Beta
+    public int getNumQueuedJobs() {
+        return (runner instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor)runner).getQueue().size() : 0;
+    }
+    
+    /** count of threads in the pool, whether busy or idle */
+    @Beta
+    public int getNumPoolThreads() {
+        return (runner instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor)runner).getPoolSize() : -1;
+    }
+    
+    /** count of threads in the pool which are running a job */
+    @Beta
+    public int getNumActivePoolThreads() {
+        return (runner instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor)runner).getActiveCount() : -1;
+    }
+    
+    /** count of threads temporarily added to a {@link ThreadPoolMode#BOUNDED} pool 
+     * because others are blocked waiting on tasks */
+    @Beta
+    public int getNumCompensatingPoolThreads() {
+        return (runner instanceof BoundedTaskExecutor) ? ((BoundedTaskExecutor)runner).getCompensatingThreadCount() : 0;
+    }
+    
+    /**
+     * The tasks with a tag, in the order they were added, as an unmodifiable live view.
+     * Tasks are added and removed without locking, and iteration is weakly consistent (never throws CME).
+     * <p>
+     * When a bin becomes empty it is dropped from the index; that is done in a compute on the tag's entry, 
+     * which marks the bin {@link #removed}, and an add which then sees it so marked re-adds the task
+     * in a compute on the same entry (so with the removal either complete or abandoned).
+     */
+    private static class TagBin extends AbstractSet<Task<?>> {
+        // ordered by sequence (so iteration is in order of adding), and by task (for removal, and the size)
+        private final ConcurrentSkipListMap<Long,Task<?>> tasksBySequence = new ConcurrentSkipListMap<Long,Task<?>>();
+        private final ConcurrentHashMap<Task<?>,Long> sequenceByTask = new ConcurrentHashMap<Task<?>,Long>();
+        private volatile boolean removed;
+        
+        void addTask(Task<?> task, long sequence) {
+            if (sequenceByTask.putIfAbsent(task, sequence) != null) return;
+            tasksBySequence.put(sequence, task);
+            // in case the task was removed between those two
+            if (!Long.valueOf(sequence).equals(sequenceByTask.get(task))) tasksBySequence.remove(sequence, task);
+        }
+        
+        void removeTask(Task<?> task) {
+            Long sequence = sequenceByTask.remove(task);
+            if (sequence != null) tasksBySequence.remove(sequence, task);
+        }
+        
+        @Override
+        public Iterator<Task<?>> iterator() {
+            return Iterators.unmodifiableIterator(tasksBySequence.values().iterator());
+        }
+        
+        @Override
+        public int size() {
+            return sequenceByTask.size();
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return sequenceByTask.isEmpty();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return sequenceByTask.containsKey(o);
+        }
+    }
+    
+    private void addTaskToTagIndex(Object tag, final Task<?> task) {
         Preconditions.checkNotNull(tag);
-        synchronized (tasksByTag) {
-            Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
-            if (result==null) {
-                result = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
-                tasksByTag.put(tag, result);
-            }
-            return result;
+        final long sequence = tagIndexSequence.incrementAndGet();
+        TagBin tasks = tasksByTag.get(tag);
+        if (tasks == null) {
+            tasks = tasksByTag.computeIfAbsent(tag, new java.util.function.Function<Object, TagBin>() {
+                @Override
+                public TagBin apply(Object tag) {
+                    return new TagBin();
+                }
+            });
+        }
+        tasks.addTask(task, sequence);
+        if (tasks.removed) {
+            // the bin was dropped (or was being dropped) when empty; add under the entry's lock, where that is settled
+            tasksByTag.compute(tag, new BiFunction<Object, TagBin, TagBin>() {
+                @Override
+                public TagBin apply(Object tag, TagBin tasks) {
+                    if (tasks == null || tasks.removed) tasks = new TagBin();
+                    tasks.addTask(task, sequence);
+                    return tasks;
+                }
+            });
+        }
+    }
+    
+    private void removeTaskFromTagIndex(Object tag, Task<?> task) {
+        final TagBin tasks = tasksByTag.get(tag);
+        if (tasks == null) return;
+        tasks.removeTask(task);
+        if (tasks.isEmpty()) {
+            tasksByTag.computeIfPresent(tag, new BiFunction<Object, TagBin, TagBin>() {
+                @Override
+                public TagBin apply(Object tag, TagBin current) {
+                    if (current != tasks) return current;
+                    // mark it first, so an add either sees the mark or is seen by the check below
+                    tasks.removed = true;
+                    if (!tasks.isEmpty()) {
+                        tasks.removed = false;
+                        return tasks;
+                    }
+                    // returning null removes the bin from the index
+                    return null;
+                }
+            });
         }
     }
 
-    /** exposes live view, for internal use only */
+    /** 
+     * Returns an unmodifiable live view of the tasks with the given tag, in the order they were submitted,
+     * or null if there are none; for internal use only.
+     * The view is weakly consistent, and tasks submitted later with the tag may not be in it.
+     */
     @Beta
     public Set<Task<?>> tasksWithTagLiveOrNull(Object tag) {
-        synchronized (tasksByTag) {
-            return tasksByTag.get(tag);
-        }
+        return tasksByTag.get(tag);
     }
 
     @Override
@@ -322,9 +557,7 @@ public class BasicExecutionManager implements ExecutionManager {
     public Set<Task<?>> getTasksWithTag(Object tag) {
         Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
         if (result==null) return Collections.emptySet();
-        synchronized (result) {
-            return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
-        }
+        return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
     }
     
     @Override
@@ -334,9 +567,7 @@ public class BasicExecutionManager implements ExecutionManager {
         while (ti.hasNext()) {
             Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(ti.next());
             if (tasksForTag!=null) {
-                synchronized (tasksForTag) {
-                    result.addAll(tasksForTag);
-                }
+                result.addAll(tasksForTag);
             }
         }
         return Collections.unmodifiableSet(result);
@@ -369,9 +600,7 @@ public class BasicExecutionManager implements ExecutionManager {
     
     @Override
     public Set<Object> getTaskTags() { 
-        synchronized (tasksByTag) {
-            return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
-        }
+        return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
     }
 
     @Override public Task<?> submit(Runnable r) { return submit(new LinkedHashMap<Object,Object>(1), r); }
@@ -582,6 +811,32 @@ public class BasicExecutionManager implements ExecutionManager {
             this.task = task;
         }
 
+        // if blocking in a worker of a bounded pool, make sure the pool can still run the task we're waiting on
+        
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            BoundedTaskExecutor pool = isDone() ? null : BoundedTaskExecutor.getCurrentPool();
+            if (pool==null) return super.get();
+            pool.beginBlocking();
+            try {
+                return super.get();
+            } finally {
+                pool.endBlocking();
+            }
+        }
+        
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException, ExecutionException {
+            BoundedTaskExecutor pool = isDone() ? null : BoundedTaskExecutor.getCurrentPool();
+            if (pool==null) return super.get(timeout, unit);
+            pool.beginBlocking();
+            try {
+                return super.get(timeout, unit);
+            } finally {
+                pool.endBlocking();
+            }
+        }
+
         @Override
         public boolean cancel(TaskCancellationMode mode) {
             boolean result = false;
@@ -739,7 +994,7 @@ public class BasicExecutionManager implements ExecutionManager {
         if (flags.get("tags")!=null) ((TaskInternal<?>)task).getMutableTags().addAll((Collection<?>)flags.remove("tags"));
 
         for (Object tag: ((TaskInternal<?>)task).getTags()) {
-            tasksWithTagCreating(tag).add(task);
+            addTaskToTagIndex(tag, task);
         }
     }
 
@@ -920,6 +1175,30 @@ public class BasicExecutionManager implements ExecutionManager {
         }
     }
     
+    /** 
+     * Returns the number of submissions waiting in each tag's {@link SingleThreadedScheduler}, 
+     * for those which have any waiting, largest first; useful for spotting slow subscribers.
+     */
+    @Beta
+    public Map<Object, Integer> getTaskSchedulerQueueSizes() {
+        List<Map.Entry<Object, Integer>> sizes = MutableList.of();
+        for (Map.Entry<Object, TaskScheduler> entry : schedulerByTag.entrySet()) {
+            if (entry.getValue() instanceof SingleThreadedScheduler) {
+                int size = ((SingleThreadedScheduler)entry.getValue()).getQueueSize();
+                if (size > 0) sizes.add(Maps.immutableEntry(entry.getKey(), size));
+            }
+        }
+        Collections.sort(sizes, new Comparator<Map.Entry<Object, Integer>>() {
+            @Override public int compare(Map.Entry<Object, Integer> o1, Map.Entry<Object, Integer> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }});
+        Map<Object, Integer> result = new LinkedHashMap<Object, Integer>();
+        for (Map.Entry<Object, Integer> entry : sizes) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+    
     @VisibleForTesting
     public ConcurrentMap<Object, TaskScheduler> getSchedulerByTag() {
         return schedulerByTag;
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link ThreadPoolExecutor} with a bounded number of threads and a bounded queue,
+ * for use by {@link BasicExecutionManager} in place of its default unbounded cached pool.
+ * <p>
+ * Brooklyn tasks routinely block on other tasks (e.g. a parent calling {@link org.apache.brooklyn.api.mgmt.Task#get()}
+ * on its children), so a plain bounded pool can deadlock once every thread is waiting on queued work.
+ * To prevent that, a worker thread which is about to block on a task calls {@link #beginBlocking()}
+ * and {@link #endBlocking()} around the wait; the pool is temporarily grown by one thread for the duration
+ * (similar to a fork-join pool's <code>ManagedBlocker</code>).
+ * Waits on things other than tasks, which other tasks may be needed to satisfy, do the same through
+ * {@link #beginBlockingInCurrentPool()} and {@link #endBlockingInCurrentPool()}: this is done when waiting for an
+ * attribute in {@link org.apache.brooklyn.core.sensor.DependentConfiguration}, and when waiting for a
+ * {@link org.apache.brooklyn.util.core.mutex.SemaphoreForTasks} (and so for an entity's mutexes).
+ * <p>
+ * Code which blocks in any other way (e.g. on its own latch) on work that needs a thread from the pool
+ * can still exhaust the pool and deadlock, which it could not do with the unbounded default pool;
+ * this is why the bounded pool is used only if configured.
+ * <p>
+ * When the queue is full, submitters are made to wait for space (back-pressure) rather than
+ * tasks being rejected; a worker thread waiting in this way is also compensated as above.
+ */
+@Beta
+public class BoundedTaskExecutor extends ThreadPoolExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedTaskExecutor.class);
+
+    /** the pool which the current thread is a worker for, if any; set only while a job is running */
+    private static final ThreadLocal<BoundedTaskExecutor> currentPool = new ThreadLocal<BoundedTaskExecutor>();
+
+    private final int baseThreads;
+    private final AtomicInteger compensatingThreads = new AtomicInteger();
+    private final AtomicInteger maxCompensatingThreads = new AtomicInteger();
+    private final AtomicLong submissionsDelayed = new AtomicLong();
+
+    public BoundedTaskExecutor(int maxThreads, int queueCapacity, Duration keepAlive, ThreadFactory threadFactory) {
+        super(maxThreads, maxThreads, keepAlive.toMilliseconds(), TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), threadFactory, new WaitForSpacePolicy());
+        Preconditions.checkArgument(maxThreads>0, "maxThreads must be positive");
+        this.baseThreads = maxThreads;
+        allowCoreThreadTimeOut(true);
+    }
+
+    /** the pool the calling thread is currently running a job for, or null */
+    public static BoundedTaskExecutor getCurrentPool() {
+        return currentPool.get();
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        currentPool.set(this);
+        super.beforeExecute(t, r);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        currentPool.remove();
+    }
+
+    /** to be invoked by a worker thread of this pool before it blocks waiting on other work;
+     * must be followed by {@link #endBlocking()} (in a finally block) */
+    public void beginBlocking() {
+        int count;
+        synchronized (this) {
+            count = compensatingThreads.incrementAndGet();
+            // when growing, max must be raised before core
+            setMaximumPoolSize(baseThreads + count);
+            setCorePoolSize(baseThreads + count);
+        }
+        int max;
+        while (count > (max = maxCompensatingThreads.get())) {
+            if (maxCompensatingThreads.compareAndSet(max, count)) {
+                if (count % 100 == 0) {
+                    log.warn("High number of blocked threads in "+this+": "+count+" compensating threads in use");
+                }
+                break;
+            }
+        }
+    }
+
+    /** if the calling thread is a worker of a bounded pool, invokes {@link #beginBlocking()} on that pool;
+     * for use before a wait which other tasks may be needed to satisfy, 
+     * followed by {@link #endBlockingInCurrentPool()} (in a finally block) */
+    public static void beginBlockingInCurrentPool() {
+        BoundedTaskExecutor pool = getCurrentPool();
+        if (pool!=null) pool.beginBlocking();
+    }
+
+    /** @see #beginBlockingInCurrentPool() */
+    public static void endBlockingInCurrentPool() {
+        BoundedTaskExecutor pool = getCurrentPool();
+        if (pool!=null) pool.endBlocking();
+    }
+
+    /** @see #beginBlocking() */
+    public void endBlocking() {
+        synchronized (this) {
+            int count = compensatingThreads.decrementAndGet();
+            // when shrinking, core must be lowered before max
+            setCorePoolSize(baseThreads + count);
+            setMaximumPoolSize(baseThreads + count);
+        }
+    }
+
+    /** the configured number of threads, excluding any temporarily added to compensate for blocked threads */
+    public int getBaseThreads() {
+        return baseThreads;
+    }
+
+    /** number of threads currently added to compensate for workers blocked on other tasks */
+    public int getCompensatingThreadCount() {
+        return compensatingThreads.get();
+    }
+
+    /** high-water mark of {@link #getCompensatingThreadCount()} */
+    public int getMaxCompensatingThreadCount() {
+        return maxCompensatingThreads.get();
+    }
+
+    /** number of submissions which had to wait for space in the queue */
+    public long getSubmissionsDelayedCount() {
+        return submissionsDelayed.get();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()+"[base="+baseThreads+"; compensating="+compensatingThreads.get()+"]";
+    }
+
+    /** blocks the submitter until there is space in the queue, rather than rejecting */
+    private static class WaitForSpacePolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            BoundedTaskExecutor pool = (BoundedTaskExecutor) executor;
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Executor "+pool+" has been shut down; cannot run "+r);
+            }
+            pool.submissionsDelayed.incrementAndGet();
+            boolean isWorker = (getCurrentPool() == pool);
+            if (isWorker) pool.beginBlocking();
+            try {
+                pool.getQueue().put(r);
+            } catch (InterruptedException e) {
+                throw Exceptions.propagate(e);
+            } finally {
+                if (isWorker) pool.endBlocking();
+            }
+            if (pool.isShutdown() && pool.remove(r)) {
+                throw new RejectedExecutionException("Executor "+pool+" has been shut down; cannot run "+r);
+            }
+        }
+    }
+}
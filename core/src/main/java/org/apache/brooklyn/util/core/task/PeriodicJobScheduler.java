@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Runs periodic jobs directly on a shared pool, without creating a {@link Task} (or any other
+ * per-iteration object beyond the timer's entry) for each run; this suits high-volume, short-lived
+ * work such as feed polls, where a {@link ScheduledTask} would create and index a new task every period.
+ * <p>
+ * A single timer thread dispatches each job to the pool when it is due; the job is rescheduled
+ * when it completes (i.e. with a fixed delay, as for {@link ScheduledTask}), so a job never overlaps with itself.
+ * Because the pool is bounded, slow jobs delay others rather than consuming more threads;
+ * callers can detect this by comparing when a job ran with when it was due.
+ * <p>
+ * Jobs are responsible for handling their own exceptions; anything thrown is logged, and the job is rescheduled.
+ * <p>
+ * A job which waits on something else, such as a non-blocking HTTP request, can be scheduled with
+ * {@link #scheduleAsyncWithFixedDelay(Callable, Duration)}, so that it holds no thread while waiting.
+ */
+@Beta
+public class PeriodicJobScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(PeriodicJobScheduler.class);
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService pool;
+
+    public PeriodicJobScheduler(ScheduledExecutorService timer, ExecutorService pool) {
+        this.timer = timer;
+        this.pool = pool;
+    }
+
+    /** Runs the job now (on the pool), and then repeatedly the given period after each run completes. */
+    public ScheduledJob scheduleWithFixedDelay(Runnable job, Duration period) {
+        ScheduledJob result = new ScheduledJob(job, null, period);
+        result.dispatcher.run();
+        return result;
+    }
+
+    /**
+     * As {@link #scheduleWithFixedDelay(Runnable, Duration)}, for a job which starts work that completes later:
+     * the job returns a future for that work (or null if there is none), and the next run is scheduled
+     * when the future completes rather than when the job returns, so runs still never overlap.
+     * <p>
+     * Listeners the job adds to the future should be run on {@link #getExecutor()}, rather than
+     * on whichever thread completes the future.
+     */
+    public ScheduledJob scheduleAsyncWithFixedDelay(Callable<? extends ListenableFuture<?>> job, Duration period) {
+        ScheduledJob result = new ScheduledJob(null, job, period);
+        result.dispatcher.run();
+        return result;
+    }
+
+    /** The pool on which jobs are run. */
+    public Executor getExecutor() {
+        return pool;
+    }
+
+    public void shutdownNow() {
+        pool.shutdownNow();
+    }
+
+    public class ScheduledJob {
+        private final Runnable job;
+        private final Callable<? extends ListenableFuture<?>> asyncJob;
+        private final Duration period;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private volatile Future<?> next;
+
+        private final Runnable dispatcher = new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) return;
+                try {
+                    pool.execute(runner);
+                } catch (RejectedExecutionException e) {
+                    if (log.isDebugEnabled()) log.debug("Periodic job "+getJob()+" not run, as pool has been shut down");
+                    done = true;
+                }
+            }
+        };
+
+        private final Runnable runner = new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) return;
+                ListenableFuture<?> pending = null;
+                try {
+                    if (job != null) {
+                        job.run();
+                    } else {
+                        pending = asyncJob.call();
+                    }
+                } catch (Throwable t) {
+                    log.warn("Periodic job "+getJob()+" threw (continuing): "+t, t);
+                } finally {
+                    if (pending != null) {
+                        pending.addListener(rescheduler, MoreExecutors.directExecutor());
+                    } else {
+                        scheduleNext();
+                    }
+                }
+            }
+        };
+
+        private final Runnable rescheduler = new Runnable() {
+            @Override
+            public void run() {
+                scheduleNext();
+            }
+        };
+
+        ScheduledJob(Runnable job, Callable<? extends ListenableFuture<?>> asyncJob, Duration period) {
+            this.job = job;
+            this.asyncJob = asyncJob;
+            this.period = period;
+        }
+
+        private Object getJob() {
+            return (job != null) ? job : asyncJob;
+        }
+
+        private void scheduleNext() {
+            if (cancelled) return;
+            try {
+                next = timer.schedule(dispatcher, period.toNanoseconds(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                if (log.isDebugEnabled()) log.debug("Periodic job "+getJob()+" not rescheduled, as timer has been shut down");
+                done = true;
+            }
+        }
+
+        public Duration getPeriod() {
+            return period;
+        }
+
+        /** Stops future runs; a run already in progress is allowed to complete. */
+        public void cancel() {
+            cancelled = true;
+            Future<?> n = next;
+            if (n != null) n.cancel(false);
+        }
+
+        /** Whether the job is still scheduled, i.e. has not been cancelled and its executors have not been shut down. */
+        public boolean isActive() {
+            return !cancelled && !done;
+        }
+
+        @Override
+        public String toString() {
+            return "ScheduledJob["+getJob()+"; period="+period+(cancelled ? "; cancelled" : "")+"]";
+        }
+    }
+}
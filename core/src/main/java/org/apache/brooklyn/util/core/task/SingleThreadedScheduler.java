@@ -20,14 +20,13 @@ package org.apache.brooklyn.util.core.task;
 
 import java.util.Queue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.mgmt.Task;
 import org.slf4j.Logger;
@@ -40,15 +39,22 @@ import org.slf4j.LoggerFactory;
  * Tasks can be presented through {@link #submit(Callable)}. The order of execution is the
  * sumbission order.
  * <p>
- * This implementation does so by blocking on a {@link ConcurrentLinkedQueue}, <em>after</em>
- * the task is started in a thread (and {@link Task#isBegun()} returns true), but (of course)
- * <em>before</em> the {@link TaskInternal#getJob()} actually gets invoked.
+ * This implementation is a lock-free serial executor: submissions are appended to a {@link ConcurrentLinkedQueue},
+ * and whichever submitter flips the <code>running</code> flag (by CAS) starts a single drain job on the executor.
+ * That job runs queued items one after another on the same thread, without resubmitting, until the queue is empty
+ * (or {@link #MAX_RUN_PER_DRAIN} items have run, when it hands over to a new drain job so a busy queue cannot hold 
+ * a thread indefinitely).
+ * <p>
+ * Once the executor is shut down, items not yet started are cancelled rather than run, so nothing waits on them forever.
  */
 public class SingleThreadedScheduler implements TaskScheduler, CanSetName {
     private static final Logger LOG = LoggerFactory.getLogger(SingleThreadedScheduler.class);
     
-    private final Queue<QueuedSubmission<?>> order = new ConcurrentLinkedQueue<QueuedSubmission<?>>();
-    private int queueSize = 0;
+    /** max number of items run by one drain job before it resubmits itself */
+    static final int MAX_RUN_PER_DRAIN = 1000;
+    
+    private final Queue<QueuedTask<?>> order = new ConcurrentLinkedQueue<QueuedTask<?>>();
+    private final AtomicInteger queueSize = new AtomicInteger();
     private final AtomicBoolean running = new AtomicBoolean(false);
     
     private ExecutorService executor;
@@ -70,147 +76,104 @@ public class SingleThreadedScheduler implements TaskScheduler, CanSetName {
         this.executor = executor;
     }
 
+    /** number of submissions waiting to run (excluding any currently running) */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+    
     @Override
-    public synchronized <T> Future<T> submit(Callable<T> c) {
-        if (running.compareAndSet(false, true)) {
-            return executeNow(c);
-        } else {
-            WrappingFuture<T> f = new WrappingFuture<T>();
-            order.add(new QueuedSubmission<T>(c, f));
-            queueSize++;
-            if (queueSize>0 && (queueSize == 50 || (queueSize<=500 && (queueSize%100)==0) || (queueSize%1000)==0) && queueSize!=lastSizeWarn) {
-                LOG.warn("{} is backing up, {} tasks queued", this, queueSize);
+    public <T> Future<T> submit(Callable<T> c) {
+        QueuedTask<T> f = new QueuedTask<T>(c);
+        order.add(f);
+        int size = queueSize.incrementAndGet();
+        if (!startDrainIfIdle()) {
+            // only warn if we're actually waiting for something already running
+            if (size == 50 || (size<=500 && (size%100)==0) || (size%1000)==0) {
+                LOG.warn("{} is backing up, {} tasks queued", this, size);
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Task queue backing up detail, queue "+this+"; task context is "+Tasks.current()+"; latest task is "+c+"; first task is "+order.peek());
                 }
-                lastSizeWarn = queueSize;
             }
-            return f;
         }
+        return f;
     }
-    int lastSizeWarn = 0;
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private synchronized void onEnd() {
-        boolean done = false;
-        while (!done) {
-            if (order.isEmpty()) {
+    private boolean startDrainIfIdle() {
+        if (!order.isEmpty() && running.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override public void run() { drain(); }
+                    @Override public String toString() { return "drain("+SingleThreadedScheduler.this+")"; }
+                });
+            } catch (RejectedExecutionException e) {
                 running.set(false);
-                done = true;
-            } else {
-                QueuedSubmission<?> qs = order.remove();
-                queueSize--;
-                if (!qs.f.isCancelled()) {
-                    Future future = executeNow(qs.c);
-                    qs.f.setDelegate(future);
-                    done = true;
-                }
+                if (executor.isShutdown()) cancelQueued();
+                throw e;
             }
+            return true;
         }
-    }
-
-    private synchronized <T> Future<T> executeNow(final Callable<T> c) {
-        return executor.submit(new Callable<T>() {
-            @Override public T call() throws Exception {
-                try {
-                    return c.call();
-                } finally {
-                    onEnd();
-                }
-            }});
+        return false;
     }
     
-    
-    private static class QueuedSubmission<T> {
-        final Callable<T> c;
-        final WrappingFuture<T> f;
-        
-        QueuedSubmission(Callable<T> c, WrappingFuture<T> f) {
-            this.c = c;
-            this.f = f;
-        }
-        
-        @Override
-        public String toString() {
-            return "QueuedSubmission["+c+"]@"+Integer.toHexString(System.identityHashCode(this));
-        }
-    }
-    
-    /**
-     * A future, where the task may not yet have been submitted to the real executor.
-     * It delegates to the real future if present, and otherwise waits for that to appear
-     */
-    private static class WrappingFuture<T> implements Future<T> {
-        private volatile Future<T> delegate;
-        private boolean cancelled;
-        
-        void setDelegate(Future<T> delegate) {
-            synchronized (this) {
-                this.delegate = delegate;
-                notifyAll();
-            }
-        }
-        
-        @Override public boolean cancel(boolean mayInterruptIfRunning) {
-            if (delegate != null) {
-                return delegate.cancel(mayInterruptIfRunning);
-            } else {
-                cancelled = true;
-                synchronized (this) {
-                    notifyAll();
+    private void drain() {
+        int count = 0;
+        try {
+            QueuedTask<?> next;
+            while (count < MAX_RUN_PER_DRAIN && !executor.isShutdown() && (next = order.poll()) != null) {
+                queueSize.decrementAndGet();
+                count++;
+                next.run();
+                if (next.interruptedRunner) {
+                    // clear the interrupt from that item's cancellation so it does not leak into the next item;
+                    // any other interrupt (e.g. the executor shutting down) is left in place
+                    Thread.interrupted();
                 }
-                return true;
             }
-        }
-        
-        @Override public boolean isCancelled() {
-            if (delegate != null) {
-                return delegate.isCancelled();
+        } finally {
+            running.set(false);
+            if (executor.isShutdown()) {
+                cancelQueued();
             } else {
-                return cancelled;
+                // pick up anything submitted after we last looked (or left over after the max run)
+                startDrainIfIdle();
             }
         }
-        
-        @Override public boolean isDone() {
-            return (delegate != null) ? delegate.isDone() : cancelled;
+    }
+
+    private void cancelQueued() {
+        QueuedTask<?> next;
+        while ((next = order.poll()) != null) {
+            queueSize.decrementAndGet();
+            next.cancel(false);
         }
-        
-        @Override public T get() throws CancellationException, ExecutionException, InterruptedException {
-            if (cancelled) {
-                throw new CancellationException();
-            } else if (delegate != null) {
-                return delegate.get();
-            } else {
-                synchronized (this) {
-                    while (delegate == null && !cancelled) {
-                        wait();
-                    }
-                }
-                return get();
-            }
+    }
+
+    /** Records whether a {@link #cancel(boolean)} interrupted the thread running it. */
+    private static class QueuedTask<T> extends FutureTask<T> {
+        private volatile Thread runner;
+        private volatile boolean interruptedRunner;
+
+        QueuedTask(Callable<T> callable) {
+            super(callable);
         }
-        
-        @Override public T get(long timeout, TimeUnit unit) throws CancellationException, ExecutionException, InterruptedException, TimeoutException {
-            long endtime = System.currentTimeMillis()+unit.toMillis(timeout);
-            
-            if (cancelled) {
-                throw new CancellationException();
-            } else if (delegate != null) {
-                return delegate.get(timeout, unit);
-            } else if (System.currentTimeMillis() >= endtime) {
-                throw new TimeoutException();
-            } else {
-                synchronized (this) {
-                    while (delegate == null && !cancelled && System.currentTimeMillis() < endtime) {
-                        long remaining = endtime - System.currentTimeMillis();
-                        if (remaining > 0) {
-                            wait(remaining);
-                        }
-                    }
-                }
-                long remaining = endtime - System.currentTimeMillis();
-                return get(remaining, TimeUnit.MILLISECONDS);
+
+        @Override
+        public void run() {
+            runner = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                runner = null;
             }
         }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            // set before cancelling, as the interrupt can be delivered before super.cancel returns
+            if (mayInterruptIfRunning && runner != null) interruptedRunner = true;
+            boolean result = super.cancel(mayInterruptIfRunning);
+            if (!result) interruptedRunner = false;
+            return result;
+        }
     }
 }
@@ -64,9 +64,13 @@ public class AttributeMapTest {
         app = TestApplication.Factory.newManagedInstanceForTests();
         TestEntity entity = app.addChild(EntitySpec.create(TestEntity.class));
         entityImpl = (TestEntityImpl) Entities.deproxy(entity);
-        map = new AttributeMap(entityImpl, Collections.synchronizedMap(MutableMap.<Collection<String>,Object>of()));
+        map = newAttributeMap(entityImpl);
         executor = Executors.newCachedThreadPool();
     }
+
+    protected AttributeMap newAttributeMap(TestEntityImpl entityImpl) {
+        return new AttributeMap(entityImpl, Collections.synchronizedMap(MutableMap.<Collection<String>,Object>of()));
+    }
     
     @AfterMethod(alwaysRun=true)
     public void tearDown() {
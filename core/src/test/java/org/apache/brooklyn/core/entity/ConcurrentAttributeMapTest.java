@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.entity;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.sensor.AttributeMap;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntityImpl;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/** Runs the {@link AttributeMapTest} tests against {@link AttributeMap#newConcurrentInstance(AbstractEntity)}. */
+public class ConcurrentAttributeMapTest extends AttributeMapTest {
+
+    @Override
+    protected AttributeMap newAttributeMap(TestEntityImpl entityImpl) {
+        return AttributeMap.newConcurrentInstance(entityImpl);
+    }
+
+    @Test
+    public void testIsConcurrent() throws Exception {
+        assertTrue(map.isConcurrent());
+    }
+
+    @Test
+    public void testNullValuesAndRawPaths() throws Exception {
+        AttributeSensor<String> sensor = Sensors.newStringSensor("a.b", "");
+        map.update(sensor, null);
+        assertNull(map.getValue(sensor));
+        assertTrue(map.asMap().containsKey("a.b"));
+        
+        map.update(sensor, "val");
+        assertEquals(map.getValue(ImmutableList.of("a", "b")), "val");
+        Map<Collection<String>, Object> raw = map.asRawMap();
+        assertEquals(raw.get(ImmutableList.of("a", "b")), "val");
+        
+        map.remove(ImmutableList.of("a", "b"));
+        assertNull(map.getValue(sensor));
+        assertTrue(map.asMap().isEmpty());
+    }
+
+    @Test
+    public void testReadsUpdatesAndModificationsDoNotBlockOnSynchObject() throws Exception {
+        final AttributeSensor<Integer> sensor = Sensors.newIntegerSensor("a", "");
+        map.update(sensor, 1);
+        
+        synchronized (map.getSynchObjectInternal()) {
+            Future<Integer> future = executor.submit(new Callable<Integer>() {
+                @Override public Integer call() {
+                    map.update(sensor, map.getValue(sensor) + 1);
+                    map.modify(sensor, new Function<Integer, Maybe<Integer>>() {
+                        @Override public Maybe<Integer> apply(Integer input) {
+                            return Maybe.of(input + 1);
+                        }
+                    });
+                    return map.getValue(sensor);
+                }});
+            assertEquals(future.get(30, TimeUnit.SECONDS), Integer.valueOf(3));
+        }
+    }
+
+    @Test
+    public void testModifiedValuesReadAsSet() throws Exception {
+        final AttributeSensor<String> sensor = Sensors.newStringSensor("a.b", "");
+        map.modify(sensor, new Function<String, Maybe<String>>() {
+            @Override public Maybe<String> apply(String input) {
+                return Maybe.of("val");
+            }
+        });
+        assertEquals(map.getValue(sensor), "val");
+        assertEquals(map.getValue(ImmutableList.of("a", "b")), "val");
+        assertEquals(map.asMap().get("a.b"), "val");
+        assertEquals(map.asRawMap().get(ImmutableList.of("a", "b")), "val");
+        assertEquals(map.update(sensor, null), "val");
+        
+        map.modify(sensor, new Function<String, Maybe<String>>() {
+            @Override public Maybe<String> apply(String input) {
+                assertNull(input);
+                return Maybe.<String>of((String) null);
+            }
+        });
+        assertNull(map.getValue(sensor));
+        assertTrue(map.asMap().containsKey("a.b"));
+    }
+
+    @Test
+    public void testConcurrentModificationsPublishedInOrder() throws Exception {
+        final AttributeSensor<Integer> sensor = Sensors.newIntegerSensor("a", "");
+        final int numModifications = 1000;
+        final List<Integer> published = Collections.synchronizedList(Lists.<Integer>newArrayList());
+        app.subscriptions().subscribe(entityImpl.getProxyIfAvailable(), sensor, new SensorEventListener<Integer>() {
+            @Override public void onEvent(SensorEvent<Integer> event) {
+                published.add(event.getValue());
+            }});
+        
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < numModifications; i++) {
+            futures.add(executor.submit(new Runnable() {
+                @Override public void run() {
+                    map.modify(sensor, new Function<Integer, Maybe<Integer>>() {
+                        @Override public Maybe<Integer> apply(Integer input) {
+                            return Maybe.of((input == null) ? 1 : input + 1);
+                        }
+                    });
+                }}));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(published.size(), numModifications);
+            }});
+        for (int i = 0; i < numModifications; i++) {
+            assertEquals(published.get(i), Integer.valueOf(i+1));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.entity;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.core.task.DeferredSupplier;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Config values resolved at an entity are cached, so these check they are resolved again when they may have changed.
+ */
+public class EntityConfigCachingTest extends BrooklynAppUnitTestSupport {
+
+    private static final ConfigKey<String> MY_KEY = ConfigKeys.newStringConfigKey("test.myKey");
+    private static final ConfigKey<String> MY_KEY_WITH_DEFAULT = ConfigKeys.newStringConfigKey("test.myKey", "", "myDefault");
+
+    private TestEntity entity;
+    private TestEntity grandchild;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        grandchild = entity.addChild(EntitySpec.create(TestEntity.class));
+    }
+
+    @Test
+    public void testSeesChangesAtAncestor() throws Exception {
+        app.config().set(MY_KEY, "val1");
+        assertEquals(grandchild.config().get(MY_KEY), "val1");
+
+        app.config().set(MY_KEY, "val2");
+        assertEquals(grandchild.config().get(MY_KEY), "val2");
+
+        entity.config().set(MY_KEY, "val3");
+        assertEquals(grandchild.config().get(MY_KEY), "val3");
+
+        entity.config().removeKey(MY_KEY);
+        assertEquals(grandchild.config().get(MY_KEY), "val2");
+    }
+
+    @Test
+    public void testSeesNewParent() throws Exception {
+        app.config().set(MY_KEY, "val1");
+        TestEntity orphan = mgmt.getEntityManager().createEntity(EntitySpec.create(TestEntity.class));
+        assertNull(orphan.config().get(MY_KEY));
+
+        orphan.setParent(app);
+        assertEquals(orphan.config().get(MY_KEY), "val1");
+    }
+
+    @Test
+    public void testSeesKeyAddedToEntityType() throws Exception {
+        assertNull(entity.config().get(MY_KEY));
+
+        ((EntityInternal)entity).getMutableEntityType().addConfigKey(MY_KEY_WITH_DEFAULT);
+        assertEquals(entity.config().get(MY_KEY), "myDefault");
+    }
+
+    @Test
+    public void testDistinguishesKeysWithSameName() throws Exception {
+        assertNull(entity.config().get(MY_KEY));
+        assertEquals(entity.config().get(MY_KEY_WITH_DEFAULT), "myDefault");
+        assertNull(entity.config().get(MY_KEY));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testResolvesDeferredSupplierEachTime() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        app.config().set((ConfigKey<Object>)(ConfigKey<?>)MY_KEY, new DeferredSupplier<String>() {
+            @Override
+            public String get() {
+                return "val"+count.incrementAndGet();
+            }
+        });
+        assertEquals(grandchild.config().get(MY_KEY), "val1");
+        assertEquals(grandchild.config().get(MY_KEY), "val2");
+    }
+}
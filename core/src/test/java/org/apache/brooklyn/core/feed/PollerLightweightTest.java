@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.feed;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.feed.function.FunctionFeed;
+import org.apache.brooklyn.feed.function.FunctionPollConfig;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.core.task.DynamicTasks;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+public class PollerLightweightTest extends BrooklynAppUnitTestSupport {
+
+    private TestEntity entity;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        app.start(ImmutableList.of(app.newSimulatedLocation()));
+    }
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = BrooklynProperties.Factory.newEmpty();
+        result.put(Poller.LIGHTWEIGHT_POLLING, true);
+        return result;
+    }
+
+    @Test
+    public void testPollsWithoutTask() throws Exception {
+        final List<Task<?>> currentTasks = new CopyOnWriteArrayList<Task<?>>();
+        final AtomicInteger counter = new AtomicInteger();
+        FunctionFeed feed = FunctionFeed.builder()
+                .entity(entity)
+                .period(Duration.millis(10))
+                .poll(new FunctionPollConfig<Integer, Integer>(TestEntity.SEQUENCE)
+                        .callable(new Callable<Integer>() {
+                            @Override public Integer call() {
+                                if (Tasks.current() != null) currentTasks.add(Tasks.current());
+                                return counter.incrementAndGet();
+                            }}))
+                .build();
+
+        EntityAsserts.assertAttributeEventually(entity, TestEntity.SEQUENCE, new com.google.common.base.Predicate<Integer>() {
+            @Override public boolean apply(Integer input) {
+                return input != null && input >= 5;
+            }});
+        assertTrue(feed.isRunning());
+        assertEquals(currentTasks, ImmutableList.of());
+
+        Map<String, Object> metrics = Iterables.getOnlyElement(feed.getPollMetrics().values());
+        assertTrue((Long)metrics.get("count") >= 5, "metrics="+metrics);
+        assertEquals(metrics.get("failures"), 0L, "metrics="+metrics);
+        assertNotNull(metrics.get("meanLatency"), "metrics="+metrics);
+        assertNotNull(metrics.get("lastSkew"), "metrics="+metrics);
+
+        feed.stop();
+        assertFalse(feed.isRunning());
+        final int countAfterStop = counter.get();
+        Asserts.succeedsContinually(new Runnable() {
+            @Override public void run() {
+                // allow for a poll that was already in progress
+                assertTrue(counter.get() <= countAfterStop + 1, "count="+counter.get()+"; afterStop="+countAfterStop);
+            }});
+    }
+
+    @Test
+    public void testFirstPollRunsBeforePeriodElapses() throws Exception {
+        FunctionFeed.builder()
+                .entity(entity)
+                .period(Duration.ONE_HOUR)
+                .poll(new FunctionPollConfig<String, String>(TestEntity.NAME)
+                        .callable(new Callable<String>() {
+                            @Override public String call() {
+                                return "polled";
+                            }}))
+                .build();
+
+        EntityAsserts.assertAttributeEqualsEventually(entity, TestEntity.NAME, "polled");
+    }
+
+    @Test
+    public void testPollCanSubmitTasks() throws Exception {
+        FunctionFeed.builder()
+                .entity(entity)
+                .period(Duration.millis(10))
+                .poll(new FunctionPollConfig<String, String>(TestEntity.NAME)
+                        .callable(new Callable<String>() {
+                            @Override public String call() {
+                                Task<String> task = Tasks.<String>builder().displayName("inner")
+                                        .body(new Callable<String>() {
+                                            @Override public String call() {
+                                                return "fromTask";
+                                            }})
+                                        .build();
+                                return DynamicTasks.queueIfPossible(task).orSubmitAsync().asTask().getUnchecked();
+                            }}))
+                .build();
+
+        EntityAsserts.assertAttributeEqualsEventually(entity, TestEntity.NAME, "fromTask");
+    }
+
+    @Test
+    public void testFailureRecordedAsTaskOnlyOnceWhileFailing() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final FunctionFeed feed = FunctionFeed.builder()
+                .entity(entity)
+                .period(Duration.millis(10))
+                .poll(new FunctionPollConfig<Integer, Integer>(TestEntity.SEQUENCE)
+                        .callable(new Callable<Integer>() {
+                            @Override public Integer call() {
+                                counter.incrementAndGet();
+                                throw new IllegalStateException("simulated poll failure");
+                            }}))
+                .build();
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertTrue(counter.get() >= 5, "count="+counter.get());
+            }});
+        Map<String, Object> metrics = Iterables.getOnlyElement(feed.getPollMetrics().values());
+        assertTrue((Long)metrics.get("failures") >= 5, "metrics="+metrics);
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                List<Task<?>> failedTasks = ImmutableList.of();
+                for (Task<?> task : mgmt.getExecutionManager().getTasksWithTag(BrooklynTaskTags.tagForContextEntity(entity))) {
+                    if (task.isError()) failedTasks = ImmutableList.<Task<?>>builder().addAll(failedTasks).add(task).build();
+                }
+                assertEquals(failedTasks.size(), 1, "failed="+failedTasks);
+            }});
+    }
+}
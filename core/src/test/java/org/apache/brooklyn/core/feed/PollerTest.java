@@ -18,6 +18,9 @@
  */
 package org.apache.brooklyn.core.feed;
 
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -32,16 +35,21 @@ import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.core.entity.EntityAsserts;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.feed.function.FunctionFeed;
 import org.apache.brooklyn.feed.function.FunctionPollConfig;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.core.task.DynamicTasks;
 import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.time.Duration;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Callables;
 
 public class PollerTest extends BrooklynAppUnitTestSupport {
 
@@ -83,6 +91,25 @@ public class PollerTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsContinually(timeoutFlags, fee, FeedExceptionEntity.FLAG, true);
     }
 
+    @Test
+    public void testRecordsPollMetrics() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final FunctionFeed feed = FunctionFeed.builder()
+                .entity(entity)
+                .period(Duration.millis(10))
+                .poll(new FunctionPollConfig<Integer, Integer>(TestEntity.SEQUENCE)
+                        .callable(Callables.returning(123)))
+                .build();
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                Map<String, Object> metrics = Iterables.getOnlyElement(feed.getPollMetrics().values());
+                assertTrue((Long)metrics.get("count") >= 3, "metrics="+metrics);
+                assertNotNull(metrics.get("meanLatency"), "metrics="+metrics);
+                assertNotNull(metrics.get("lastSkew"), "metrics="+metrics);
+            }});
+    }
+
     @ImplementedBy(FeedExceptionEntityImpl.class)
     public static interface FeedExceptionEntity extends Entity {
         ConfigKey<ThrowingPoller> POLLER = ConfigKeys.newConfigKey(ThrowingPoller.class, "poller");
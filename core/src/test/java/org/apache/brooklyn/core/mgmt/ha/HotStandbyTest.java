@@ -40,6 +40,7 @@ import org.apache.brooklyn.api.mgmt.ha.ManagementPlaneSyncRecordPersister;
 import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
 import org.apache.brooklyn.core.mgmt.internal.AbstractManagementContext;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
@@ -71,6 +72,7 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 
 public class HotStandbyTest {
@@ -81,6 +83,8 @@ public class HotStandbyTest {
     Map<String,byte[]> sharedBackingStore = MutableMap.of();
     Map<String,Date> sharedBackingStoreDates = MutableMap.of();
     private ClassLoader classLoader = getClass().getClassLoader();
+    /** properties for management contexts subsequently created; null for the defaults */
+    private BrooklynProperties brooklynProperties;
     
     public class HaMgmtNode {
         // TODO share with WarmStandbyTest and SplitBrainTest and a few others (minor differences but worth it ultimately)
@@ -138,6 +142,7 @@ public class HotStandbyTest {
     public void setUp() throws Exception {
         nodes.clear();
         sharedBackingStore.clear();
+        brooklynProperties = null;
     }
     
     public HaMgmtNode newNode(Duration persistOrRebindPeriod) throws Exception {
@@ -155,7 +160,7 @@ public class HotStandbyTest {
     }
 
     protected ManagementContextInternal newLocalManagementContext() {
-        return new LocalManagementContextForTests();
+        return new LocalManagementContextForTests(brooklynProperties);
     }
 
     protected PersistenceObjectStore newPersistenceObjectStore() {
@@ -635,6 +640,73 @@ public class HotStandbyTest {
         }
     }
     
+    @Test
+    public void testHotStandbyRebindsOnlyWhenPersistedStateChanges() throws Exception {
+        brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(RebindManagerImpl.REBIND_READ_ONLY_INCREMENTAL, true);
+        HaMgmtNode n1 = createMaster(Duration.PRACTICALLY_FOREVER);
+        TestApplication app = createFirstAppAndPersist(n1);
+        final HaMgmtNode n2 = createHotStandby(Duration.millis(10));
+
+        // once the standby has loaded what the master persisted, periodic rebinds are skipped
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                long count = n2.rebinder().getReadOnlyRebindCount();
+                Time.sleep(Duration.millis(200));
+                assertEquals(n2.rebinder().getReadOnlyRebindCount(), count);
+            }
+        });
+        long count = n2.rebinder().getReadOnlyRebindCount();
+
+        app.sensors().set(TestEntity.SEQUENCE, 4);
+        forcePersistNow(n1);
+        expectRebindSequenceNumber(n1, n2, app, 4, false);
+        Assert.assertTrue(n2.rebinder().getReadOnlyRebindCount() > count);
+    }
+
+    @Test
+    public void testHotStandbyRebindsOnlyChangedEntities() throws Exception {
+        brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(RebindManagerImpl.REBIND_READ_ONLY_INCREMENTAL, true);
+        HaMgmtNode n1 = createMaster(Duration.PRACTICALLY_FOREVER);
+        TestApplication app = createFirstAppAndPersist(n1);
+        TestEntity child1 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity child2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        forcePersistNow(n1);
+        final HaMgmtNode n2 = createHotStandby(Duration.millis(10));
+
+        final Entity child1RO = n2.mgmt.lookup(child1.getId(), Entity.class);
+        final Entity child2RO = n2.mgmt.lookup(child2.getId(), Entity.class);
+        Entity child1Instance = Entities.deproxy(child1RO);
+        Entity child2Instance = Entities.deproxy(child2RO);
+
+        // only the changed entity is replaced, behind its proxy
+        child1.sensors().set(TestEntity.SEQUENCE, 5);
+        forcePersistNow(n1);
+        EntityAsserts.assertAttributeEqualsEventually(child1RO, TestEntity.SEQUENCE, 5);
+        Assert.assertTrue(n2.mgmt.lookup(child1.getId(), Entity.class)==child1RO);
+        Assert.assertTrue(Entities.deproxy(child1RO)!=child1Instance);
+        Assert.assertTrue(Entities.deproxy(child2RO)==child2Instance);
+
+        // a removed entity is unmanaged, and an added one managed
+        Entities.unmanage(child2);
+        final TestEntity child3 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        forcePersistNow(n1);
+        final Application appRO = n2.mgmt.lookup(app.getId(), Application.class);
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(n2.mgmt.lookup(child2RO.getId(), Entity.class), null);
+                Entity child3RO = n2.mgmt.lookup(child3.getId(), Entity.class);
+                Assert.assertNotNull(child3RO);
+                assertEquals(ImmutableSet.copyOf(appRO.getChildren()), ImmutableSet.of(child1RO, child3RO));
+            }
+        });
+        Assert.assertTrue(n2.mgmt.lookup(app.getId(), Application.class)==appRO);
+        assertEquals(child1RO.getParent(), appRO);
+    }
+
     @Test(groups="Integration")
     public void testHotStandbyDoesNotStartFeedsRebindingManyTimes() throws Exception {
         testHotStandbyDoesNotStartFeeds();
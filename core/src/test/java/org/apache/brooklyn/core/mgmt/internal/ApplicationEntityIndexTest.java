@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.entity.EntityInitializer;
+import org.apache.brooklyn.api.entity.EntityLocal;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+
+public class ApplicationEntityIndexTest extends BrooklynAppUnitTestSupport {
+
+    private ApplicationEntityIndex index;
+    private TestEntity entity;
+    private TestEntity grandchild;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        index = ((LocalEntityManager) mgmt.getEntityManager()).getApplicationEntityIndex();
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        grandchild = entity.addChild(EntitySpec.create(TestEntity.class));
+    }
+
+    @Test
+    public void testIndexesDescendantsByType() throws Exception {
+        assertTrue(index.isIndexed(app.getId()));
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue()),
+                ImmutableList.of(app.getId(), entity.getId(), grandchild.getId()));
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.equalTo(TestEntity.class.getName())),
+                ImmutableList.of(entity.getId(), grandchild.getId()));
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.equalTo(TestApplication.class.getName())),
+                ImmutableList.of(app.getId()));
+        assertEquals(index.getSubtreeEntityIds(grandchild.getId(), Predicates.alwaysTrue()),
+                ImmutableList.of(grandchild.getId()));
+    }
+
+    @Test
+    public void testIndexesChildrenAddedLaterInTreeOrder() throws Exception {
+        TestEntity child = app.addChild(EntitySpec.create(TestEntity.class));
+        TestEntity grandchild2 = entity.addChild(EntitySpec.create(TestEntity.class));
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue()),
+                ImmutableList.of(app.getId(), entity.getId(), grandchild.getId(), grandchild2.getId(), child.getId()));
+        assertEquals(index.getSubtreeEntityIds(entity.getId(), Predicates.alwaysTrue()),
+                ImmutableList.of(entity.getId(), grandchild.getId(), grandchild2.getId()));
+    }
+
+    @Test
+    public void testRemovesChildrenRemovedFromParent() throws Exception {
+        entity.removeChild(grandchild);
+        assertTrue(index.isIndexed(grandchild.getId()));
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue()), ImmutableList.of(app.getId(), entity.getId()));
+        assertEquals(index.getSubtreeEntityIds(entity.getId(), Predicates.alwaysTrue()), ImmutableList.of(entity.getId()));
+    }
+
+    @Test
+    public void testRemovesUnmanagedEntities() throws Exception {
+        Entities.unmanage(entity);
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue()), ImmutableList.of(app.getId()));
+        assertFalse(index.isIndexed(grandchild.getId()));
+        assertNull(index.getSubtreeEntityIds(entity.getId(), Predicates.alwaysTrue()));
+
+        Entities.unmanage(app);
+        assertFalse(index.isIndexed(app.getId()));
+        assertNull(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue()));
+    }
+
+    @Test
+    public void testGroupsByAttributeSet() throws Exception {
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue(), TestEntity.SEQUENCE.getName()), ImmutableList.of());
+        
+        grandchild.sensors().set(TestEntity.SEQUENCE, 1);
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue(), TestEntity.SEQUENCE.getName()),
+                ImmutableList.of(grandchild.getId()));
+        
+        // attributes set before the entity is managed
+        TestEntity child = app.addChild(EntitySpec.create(TestEntity.class).configure(TestEntity.CONF_NAME, "x")
+                .addInitializer(new EntityInitializer() {
+                    @Override public void apply(EntityLocal entity) {
+                        entity.sensors().set(TestEntity.SEQUENCE, 2);
+                    }}));
+        assertEquals(index.getSubtreeEntityIds(app.getId(), Predicates.alwaysTrue(), TestEntity.SEQUENCE.getName()),
+                ImmutableList.of(grandchild.getId(), child.getId()));
+        assertEquals(index.getSubtreeEntityIds(entity.getId(), Predicates.alwaysTrue(), TestEntity.SEQUENCE.getName()),
+                ImmutableList.of(grandchild.getId()));
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -286,6 +287,116 @@ public class EntityExecutionManagerTest extends BrooklynAppUnitTestSupport {
         assertTaskMaxCountForEntityEventually(e, 2);
     }
 
+    public void testIncrementalGcTaskAtNormalTagLimitWithoutFullScan() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.INCREMENTAL, true);
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 2);
+        replaceManagementContext(LocalManagementContextForTests.newInstance(brooklynProperties));
+        setUpApp();
+        final TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final BrooklynGarbageCollector gc = ((LocalManagementContext)mgmt).getGarbageCollector();
+
+        List<Task<?>> tasks = Lists.newArrayList();
+        for (int count=0; count<5; count++) {
+            tasks.add(runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag"));
+            // eviction is ordered by end time, which has millisecond granularity
+            Time.sleep(Duration.millis(2));
+        }
+
+        // evicted as tasks complete, oldest first, without any gc iteration
+        final Set<Task<?>> recentTasks = ImmutableSet.copyOf(tasks.subList(3, 5));
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(mgmt.getExecutionManager().getTasksWithTag("boring-tag"), recentTasks);
+            }});
+        assertEquals(gc.getTasksEvictedIncrementally(), 3);
+        assertEquals(gc.getGcIterationCount(), 0);
+
+        // a gc iteration within the full scan period does not do a full scan
+        forceGc();
+        assertEquals(gc.getGcIterationCount(), 1);
+        assertEquals(gc.getFullScanCount(), 0);
+        assertEquals(gc.getTotalTasksEvicted(), 3);
+    }
+
+    public void testIncrementalGcWithConcurrentCompletionsEvictsDownToLimit() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.INCREMENTAL, true);
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 10);
+        replaceManagementContext(LocalManagementContextForTests.newInstance(brooklynProperties));
+        setUpApp();
+        final TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final BrooklynGarbageCollector gc = ((LocalManagementContext)mgmt).getGarbageCollector();
+
+        List<Task<?>> tasks = Lists.newArrayList();
+        for (int count=0; count<200; count++) {
+            tasks.add(((EntityInternal)e).getExecutionContext().submit(newEmptyTask("task"+count)
+                    .tag(ManagementContextInternal.NON_TRANSIENT_TASK_TAG).tag("busy-tag").build()));
+        }
+        for (Task<?> task : tasks) {
+            task.getUnchecked();
+        }
+
+        // completions are seen concurrently, but only as many tasks as needed are evicted
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(gc.getTasksEvictedIncrementally(), 190);
+            }});
+        assertEquals(mgmt.getExecutionManager().getTasksWithTag("busy-tag").size(), 10);
+        assertEquals(gc.getFullScanCount(), 0);
+    }
+
+    public void testIncrementalGcDropsTasksDeletedByOtherMeans() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.INCREMENTAL, true);
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        replaceManagementContext(LocalManagementContextForTests.newInstance(brooklynProperties));
+        setUpApp();
+        TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final BrooklynGarbageCollector gc = ((LocalManagementContext)mgmt).getGarbageCollector();
+
+        final Task<?> deletedTask = runEmptyTaskWithNameAndTags(e, "deleted", ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        final Task<?> unmanagedTask = runEmptyTaskWithNameAndTags(e, "unmanaged", ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "other-tag");
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertTrue(gc.isTrackedForIncrementalGc(deletedTask));
+                assertTrue(gc.isTrackedForIncrementalGc(unmanagedTask));
+            }});
+
+        // references are dropped as soon as the tasks are deleted, without waiting for a full scan
+        ((BasicExecutionManager)mgmt.getExecutionManager()).deleteTask(deletedTask);
+        assertFalse(gc.isTrackedForIncrementalGc(deletedTask));
+        
+        Entities.unmanage(e);
+        forceGc();
+        assertFalse(gc.isTrackedForIncrementalGc(unmanagedTask));
+        assertEquals(gc.getFullScanCount(), 0);
+    }
+
+    public void testIncrementalGcDoesFullScanAfterFullScanPeriod() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.INCREMENTAL, true);
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        brooklynProperties.put(BrooklynGarbageCollector.FULL_SCAN_PERIOD, Duration.ZERO);
+        replaceManagementContext(LocalManagementContextForTests.newInstance(brooklynProperties));
+        setUpApp();
+        TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        BrooklynGarbageCollector gc = ((LocalManagementContext)mgmt).getGarbageCollector();
+
+        for (int count=0; count<5; count++) {
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        }
+        
+        // limit lowered after the tasks completed, so only the full scan will find them
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 2);
+        assertTaskMaxCountForEntityEventually(e, 2);
+        assertTrue(gc.getFullScanCount() > 0, "fullScans="+gc.getFullScanCount());
+        assertTrue(gc.getTotalTasksEvicted() >= 3, "evicted="+gc.getTotalTasksEvicted());
+    }
+
     public void testUnmanagedEntityCanBeGcedEvenIfPreviouslyTagged() throws Exception {
         TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
         String eId = e.getId();
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.policy.PolicySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.policy.TestPolicy;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+
+public class EntityManagementSupportChangeCountTest extends BrooklynAppUnitTestSupport {
+
+    private TestEntity entity;
+    private EntityManagementSupport support;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        support = entity.getManagementSupport();
+    }
+
+    @Test
+    public void testChangeTrackingStartsWhenManaged() throws Exception {
+        assertTrue(support.getChangeTrackingStartTime() > 0);
+        assertTrue(support.getLastChangeTime() >= support.getChangeTrackingStartTime());
+    }
+
+    @Test
+    public void testCountsAttributeChanges() throws Exception {
+        long before = support.getChangeCount();
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        assertEquals(support.getChangeCount(), before+1);
+    }
+
+    @Test
+    public void testLastChangeTimeNotBeforeChange() throws Exception {
+        long lastChangeTime = support.getLastChangeTime();
+        assertEquals(support.getLastChangeTime(), lastChangeTime);
+        
+        Time.sleep(Duration.millis(10));
+        long beforeChange = System.currentTimeMillis();
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        assertTrue(support.getLastChangeTime() >= beforeChange);
+    }
+
+    @Test
+    public void testCountsAttributeChangesWithEqualHashes() throws Exception {
+        // equal hash codes, so a comparison of hashes would not see the change
+        AttributeSensor<List<Integer>> sensor = Sensors.newSensor(new TypeToken<List<Integer>>() {}, "test.list");
+        assertEquals(ImmutableList.of(0, 31).hashCode(), ImmutableList.of(1, 0).hashCode());
+        entity.sensors().set(sensor, ImmutableList.of(0, 31));
+        long before = support.getChangeCount();
+        entity.sensors().set(sensor, ImmutableList.of(1, 0));
+        assertEquals(support.getChangeCount(), before+1);
+    }
+
+    @Test
+    public void testCountsSettingEqualAttributeValue() throws Exception {
+        // the value may have been modified in place
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        long before = support.getChangeCount();
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        assertEquals(support.getChangeCount(), before+1);
+    }
+
+    @Test
+    public void testAttributeChangeTimes() throws Exception {
+        assertNull(support.getAttributeChangeTime(TestEntity.SEQUENCE.getName()));
+        long beforeFirstChange = System.currentTimeMillis();
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        long firstChangeTime = support.getAttributeChangeTime(TestEntity.SEQUENCE.getName());
+        assertTrue(firstChangeTime >= beforeFirstChange);
+        assertEquals(support.getAttributeChangeTime(TestEntity.SEQUENCE.getName()), (Long)firstChangeTime);
+        
+        Time.sleep(Duration.millis(10));
+        long beforeSecondChange = System.currentTimeMillis();
+        entity.sensors().set(TestEntity.SEQUENCE, 2);
+        assertTrue(support.getAttributeChangeTime(TestEntity.SEQUENCE.getName()) >= beforeSecondChange);
+        assertFalse(support.getAttributeChangeTimes().containsKey(TestEntity.NAME.getName()));
+    }
+
+    @Test
+    public void testCountsConfigChildAndAdjunctChanges() throws Exception {
+        long count = support.getChangeCount();
+        entity.config().set(TestEntity.CONF_NAME, "changed");
+        assertTrue(support.getChangeCount() > count);
+
+        count = support.getChangeCount();
+        entity.addChild(EntitySpec.create(TestEntity.class));
+        assertTrue(support.getChangeCount() > count);
+
+        count = support.getChangeCount();
+        entity.policies().add(PolicySpec.create(TestPolicy.class));
+        assertTrue(support.getChangeCount() > count);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalSubscriptionManager.DeliveryMode;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the {@link LocalSubscriptionManagerTest} tests with {@link DeliveryMode#BATCHED} delivery.
+ */
+public class LocalSubscriptionManagerBatchedTest extends LocalSubscriptionManagerTest {
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = BrooklynProperties.Factory.newEmpty();
+        result.put(LocalSubscriptionManager.DELIVERY_MODE, DeliveryMode.BATCHED);
+        result.put(LocalSubscriptionManager.MAX_BATCH_SIZE, 10);
+        return result;
+    }
+
+    @Test
+    public void testBatchedDeliveryPreservesOrder() throws Exception {
+        final int numEvents = 1000;
+        LocalSubscriptionManager subscriptionManager = (LocalSubscriptionManager) mgmt.getSubscriptionManager();
+        assertEquals(subscriptionManager.getDeliveryMode(), DeliveryMode.BATCHED);
+        
+        final TestEntity entity2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+        app.subscriptions().subscribe(entity2, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+            @Override public void onEvent(SensorEvent<Integer> event) {
+                received.add(event.getValue());
+            }});
+        
+        for (int i = 0; i < numEvents; i++) {
+            entity2.sensors().set(TestEntity.SEQUENCE, i);
+        }
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(received.size(), numEvents);
+            }});
+        for (int i = 0; i < numEvents; i++) {
+            assertEquals(received.get(i), (Integer)i);
+        }
+        
+        assertTrue(subscriptionManager.getTotalBatchesDelivered() > 0);
+        assertTrue(subscriptionManager.getLargestBatchSize() <= 10, "largest="+subscriptionManager.getLargestBatchSize());
+        assertTrue(subscriptionManager.getMeanBatchSize() >= 1);
+    }
+}
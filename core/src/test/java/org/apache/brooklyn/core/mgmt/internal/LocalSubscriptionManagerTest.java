@@ -19,9 +19,12 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -38,6 +41,8 @@ import org.apache.brooklyn.entity.group.BasicGroup;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * testing the {@link SubscriptionManager} and associated classes.
  */
@@ -170,4 +175,32 @@ public class LocalSubscriptionManagerTest extends BrooklynAppUnitTestSupport {
         if (threadException.get() != null) throw threadException.get();
     }
 
+    @Test
+    public void testGetSubscriptionsForEntitySensorIncludesWildcards() throws Exception {
+        TestEntity other = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        SensorEventListener<Object> noopListener = new SensorEventListener<Object>() {
+            @Override public void onEvent(SensorEvent<Object> event) {
+            }
+        };
+        SubscriptionManager subscriptionManager = mgmt.getSubscriptionManager();
+        int numWildcardBefore = subscriptionManager.getSubscriptionsForEntitySensor(entity, TestEntity.SEQUENCE).size();
+        
+        SubscriptionHandle exact = subscriptionManager.subscribe(entity, TestEntity.SEQUENCE, noopListener);
+        SubscriptionHandle anyProducer = subscriptionManager.subscribe(null, TestEntity.SEQUENCE, noopListener);
+        SubscriptionHandle anySensor = subscriptionManager.subscribe(entity, null, noopListener);
+        SubscriptionHandle otherProducer = subscriptionManager.subscribe(other, TestEntity.SEQUENCE, noopListener);
+        SubscriptionHandle otherSensor = subscriptionManager.subscribe(entity, TestEntity.NAME, noopListener);
+        
+        Set<SubscriptionHandle> subs = subscriptionManager.getSubscriptionsForEntitySensor(entity, TestEntity.SEQUENCE);
+        assertEquals(subs.size(), numWildcardBefore + 3, "subs="+subs);
+        assertTrue(subs.containsAll(ImmutableList.of(exact, anyProducer, anySensor)), "subs="+subs);
+        assertFalse(subs.contains(otherProducer));
+        assertFalse(subs.contains(otherSensor));
+        
+        for (SubscriptionHandle handle : ImmutableList.of(exact, anyProducer, anySensor, otherProducer, otherSensor)) {
+            assertTrue(subscriptionManager.unsubscribe(handle));
+        }
+        assertEquals(subscriptionManager.getSubscriptionsForEntitySensor(entity, TestEntity.SEQUENCE).size(), numWildcardBefore);
+        assertEquals(subscriptionManager.getSubscriptionsForEntitySensor(other, TestEntity.SEQUENCE).size(), numWildcardBefore);
+    }
 }
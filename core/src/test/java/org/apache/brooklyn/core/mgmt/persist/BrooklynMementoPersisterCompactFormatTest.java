@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.rebind.RebindManager.RebindFailureMode;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMemento;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoManifest;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoManifest.EntityMementoManifest;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore.SerializationFormat;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.core.mgmt.rebind.RecordingRebindExceptionHandler;
+import org.apache.brooklyn.core.mgmt.rebind.transformer.CompoundTransformer;
+import org.apache.brooklyn.core.mgmt.rebind.transformer.impl.DeleteOrphanedStateTransformer;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.entity.TestEntityImpl;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+@Test
+public class BrooklynMementoPersisterCompactFormatTest extends BrooklynMementoPersisterTestFixture {
+
+    @Override
+    protected ManagementContext newPersistingManagementContext() {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BrooklynMementoPersisterToObjectStore.PERSISTER_SERIALIZATION_FORMAT, SerializationFormat.COMPACT);
+        return RebindTestUtils.managementContextBuilder(classLoader, new InMemoryObjectStore())
+            .properties(props)
+            .persistPeriod(Duration.millis(10)).buildStarted();
+    }
+
+    @Test
+    public void testWritesAndLoadsRawDataInCompactFormat() throws Exception {
+        assertEquals(((BrooklynMementoPersisterToObjectStore)persister).getSerializationFormat(), SerializationFormat.COMPACT);
+        RebindTestUtils.waitForPersisted(localManagementContext);
+
+        String stored = objectStore.newAccessor("entities/"+entity.getId()).get();
+        assertTrue(CompactMementoSerializer.isCompact(stored), stored);
+
+        // not converted to XML when loading
+        BrooklynMementoRawData rawMemento = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+        assertTrue(CompactMementoSerializer.isCompact(rawMemento.getEntities().get(entity.getId())));
+        assertTrue(CompactMementoSerializer.isCompact(rawMemento.getLocations().get(location.getId())));
+    }
+
+    @Test
+    public void testLoadsManifestSameAsFromXml() throws Exception {
+        ((EntityInternal)entity).setCatalogItemIdAndSearchPath("mycatalog:1.0", ImmutableList.of("other:1.0", "another:2.0"));
+        entity.sensors().set(TestEntity.NAME, "myname");
+        BrooklynMementoRawData rawMemento = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+        RecordingRebindExceptionHandler failFast = new RecordingRebindExceptionHandler(RebindFailureMode.FAIL_FAST, RebindFailureMode.FAIL_FAST);
+
+        BrooklynMementoManifest manifest = persister.loadMementoManifest(rawMemento, failFast);
+        BrooklynMementoManifest xmlManifest = persister.loadMementoManifest(CompactMementoSerializer.toXml(rawMemento), failFast);
+
+        EntityMementoManifest entityManifest = manifest.getEntityIdToManifest().get(entity.getId());
+        assertEquals(entityManifest.getType(), TestEntityImpl.class.getName());
+        assertEquals(entityManifest.getParent(), app.getId());
+        assertEquals(entityManifest.getCatalogItemId(), "mycatalog:1.0");
+        assertEquals(entityManifest.getCatalogItemIdSearchPath(), ImmutableList.of("other:1.0", "another:2.0"));
+
+        assertEquals(manifest.getEntityIdToManifest().keySet(), xmlManifest.getEntityIdToManifest().keySet());
+        for (EntityMementoManifest expected : xmlManifest.getEntityIdToManifest().values()) {
+            EntityMementoManifest actual = manifest.getEntityIdToManifest().get(expected.getId());
+            assertEquals(actual.getType(), expected.getType());
+            assertEquals(actual.getParent(), expected.getParent());
+            assertEquals(actual.getCatalogItemId(), expected.getCatalogItemId());
+            assertEquals(actual.getCatalogItemIdSearchPath(), expected.getCatalogItemIdSearchPath());
+        }
+        assertEquals(manifest.getLocationIdToType(), xmlManifest.getLocationIdToType());
+        assertEquals(manifest.getPolicyIdToType(), xmlManifest.getPolicyIdToType());
+        assertEquals(manifest.getEnricherIdToType(), xmlManifest.getEnricherIdToType());
+    }
+
+    @Test
+    public void testTransformsRawDataInCompactFormat() throws Exception {
+        BrooklynMementoRawData rawMemento = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+
+        BrooklynMementoRawData renamed = CompoundTransformer.builder()
+                .xmlReplaceItem("//entity/id/text()", "myid")
+                .build()
+                .transform(rawMemento);
+        assertTrue(renamed.getEntities().get(entity.getId()).contains("<id>myid</id>"));
+
+        // the location is referenced by the app, so is kept
+        BrooklynMementoRawData cleaned = DeleteOrphanedStateTransformer.builder().build().transform(rawMemento);
+        assertEquals(cleaned.getLocations().keySet(), rawMemento.getLocations().keySet());
+        assertEquals(cleaned.getPolicies().keySet(), rawMemento.getPolicies().keySet());
+    }
+
+    @Test
+    public void testLoadsLegacyXml() throws Exception {
+        entity.sensors().set(TestEntity.NAME, "myname");
+        RebindTestUtils.waitForPersisted(localManagementContext);
+
+        // overwrite with the XML form, as previously written
+        String path = "entities/"+entity.getId();
+        String xml = CompactMementoSerializer.toXml(objectStore.newAccessor(path).get());
+        objectStore.newAccessor(path).put(xml);
+
+        BrooklynMemento reloadedMemento = loadMemento();
+        assertEquals(reloadedMemento.getEntityMemento(entity.getId()).getAttributes().get(TestEntity.NAME), "myname");
+    }
+}
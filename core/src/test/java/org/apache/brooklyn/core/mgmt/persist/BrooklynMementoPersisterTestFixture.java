@@ -96,6 +96,7 @@ public abstract class BrooklynMementoPersisterTestFixture {
         if (persister != null) persister.stop(false);
         if (objectStore!=null) objectStore.deleteCompletely();
         persister = null;
+        objectStore = null;
     }
 
     protected BrooklynMemento loadMemento() throws Exception {
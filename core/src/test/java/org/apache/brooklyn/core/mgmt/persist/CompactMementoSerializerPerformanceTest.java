@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.util.List;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.Memento;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.rebind.dto.MementosGenerators;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.qa.performance.AbstractPerformanceTest;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Compares {@link XmlMementoSerializer} with {@link CompactMementoSerializer}, for the serialized size
+ * and the serialize/deserialize throughput of the mementos of a large number of entities.
+ */
+public class CompactMementoSerializerPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactMementoSerializerPerformanceTest.class);
+
+    private XmlMementoSerializer<Object> xmlSerializer;
+    private CompactMementoSerializer<Object> compactSerializer;
+    private List<Memento> mementos;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        xmlSerializer = new XmlMementoSerializer<Object>(CompactMementoSerializerPerformanceTest.class.getClassLoader());
+        compactSerializer = new CompactMementoSerializer<Object>(CompactMementoSerializerPerformanceTest.class.getClassLoader());
+    }
+
+    protected int numEntities() {
+        return 5000;
+    }
+
+    protected int numIterations() {
+        return 5;
+    }
+
+    @Test(groups={"Live", "Acceptance"})
+    public void testXmlFormat() throws Exception {
+        runComparison("xml", xmlSerializer);
+    }
+
+    @Test(groups={"Live", "Acceptance"})
+    public void testCompactFormat() throws Exception {
+        runComparison("compact", compactSerializer);
+    }
+
+    protected void runComparison(String format, final XmlMementoSerializer<Object> serializer) {
+        final List<Memento> mementos = getMementos();
+        final List<String> serialized = MutableList.of();
+        long totalBytes = 0;
+        for (Memento memento : mementos) {
+            String val = serializer.toString(memento);
+            serialized.add(val);
+            totalBytes += val.getBytes(Charsets.UTF_8).length;
+        }
+        LOG.info("Serialized "+mementos.size()+" entity mementos in "+format+" format: "+totalBytes+" bytes");
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("mementoSerializer."+format+".serialize("+mementos.size()+" entities; size="+totalBytes+"bytes)")
+                .warmupIterations(2)
+                .iterations(numIterations())
+                .minAcceptablePerSecond(PERFORMANCE_EXPECTATION / 10)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        for (Memento memento : mementos) {
+                            serializer.toString(memento);
+                        }
+                    }}));
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("mementoSerializer."+format+".deserialize("+mementos.size()+" entities; size="+totalBytes+"bytes)")
+                .warmupIterations(2)
+                .iterations(numIterations())
+                .minAcceptablePerSecond(PERFORMANCE_EXPECTATION / 10)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        for (String val : serialized) {
+                            serializer.fromString(val);
+                        }
+                    }}));
+    }
+
+    private List<Memento> getMementos() {
+        if (mementos == null) {
+            mementos = MutableList.of();
+            for (int i = 0; i < numEntities(); i++) {
+                Entity entity = app.addChild(EntitySpec.create(TestEntity.class)
+                        .configure(TestEntity.CONF_NAME, "myname"+i));
+                for (int j = 0; j < 10; j++) {
+                    AttributeSensor<String> sensor = Sensors.newStringSensor("mysensor"+j);
+                    entity.sensors().set(sensor, "valsensor"+j+"-"+i);
+                }
+                mementos.add(MementosGenerators.newBasicMemento(Entities.deproxy(entity)));
+            }
+        }
+        return mementos;
+    }
+}
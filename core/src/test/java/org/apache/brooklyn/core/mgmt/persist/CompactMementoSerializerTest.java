@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.Memento;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.persist.CompactMementoSerializer.TopLevelFields;
+import org.apache.brooklyn.core.mgmt.rebind.dto.MementosGenerators;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.text.Strings;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class CompactMementoSerializerTest extends BrooklynAppUnitTestSupport {
+
+    private CompactMementoSerializer<Object> serializer;
+    private XmlMementoSerializer<Object> xmlSerializer;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        serializer = new CompactMementoSerializer<Object>(CompactMementoSerializerTest.class.getClassLoader());
+        xmlSerializer = new XmlMementoSerializer<Object>(CompactMementoSerializerTest.class.getClassLoader());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, Object> obj = MutableMap.<String, Object>of("a", "myval", "b", MutableList.of(1, 2L, "three"), "c", null);
+        String serializedForm = serializer.toString(obj);
+        assertTrue(CompactMementoSerializer.isCompact(serializedForm), serializedForm);
+        assertEquals(serializer.fromString(serializedForm), obj);
+    }
+
+    @Test
+    public void testRoundTripLongString() throws Exception {
+        String val = Strings.repeat("abcdefghij", 10000);
+        assertEquals(serializer.fromString(serializer.toString(val)), val);
+    }
+
+    @Test
+    public void testReadsLegacyXml() throws Exception {
+        Map<String, Object> obj = MutableMap.<String, Object>of("a", "myval");
+        String xml = xmlSerializer.toString(obj);
+        assertFalse(CompactMementoSerializer.isCompact(xml), xml);
+        assertEquals(serializer.fromString(xml), obj);
+    }
+
+    @Test
+    public void testEntityMementoSmallerAndConvertibleToXml() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(TestEntity.CONF_NAME, "myname"));
+        entity.sensors().set(TestEntity.SEQUENCE, 123);
+        Memento memento = MementosGenerators.newBasicMemento(Entities.deproxy(entity));
+
+        String xml = xmlSerializer.toString(memento);
+        String compact = serializer.toString(memento);
+        assertTrue(compact.length() < xml.length(), "compact="+compact.length()+"; xml="+xml.length());
+
+        // conversion is lossless, so xpath-based inspection of persisted state sees the same XML
+        assertEquals(CompactMementoSerializer.toXml(compact), xml);
+        assertEquals(CompactMementoSerializer.toXml(xml), xml);
+    }
+
+    @Test
+    public void testReadTopLevelFields() throws Exception {
+        ((EntityInternal)app).setCatalogItemIdAndSearchPath("mycatalog:1.0", ImmutableList.of("other:1.0", "another:2.0"));
+        Memento memento = MementosGenerators.newBasicMemento(Entities.deproxy(app));
+
+        TopLevelFields fields = CompactMementoSerializer.readTopLevelFields(serializer.toString(memento));
+        assertEquals(fields.get("id"), app.getId());
+        assertEquals(fields.get("type"), memento.getType());
+        assertEquals(fields.get("catalogItemId"), "mycatalog:1.0");
+        assertEquals(fields.getStrings("searchPath"), ImmutableList.of("other:1.0", "another:2.0"));
+        assertNull(fields.get("parent"));
+        assertEquals(fields.getStrings("doesNotExist"), ImmutableList.of());
+    }
+}
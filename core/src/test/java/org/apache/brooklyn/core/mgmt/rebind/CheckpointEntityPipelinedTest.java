@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.mgmt.rebind.PersistenceExceptionHandler;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.Delta;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.EntityMemento;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+/** Runs the {@link CheckpointEntityTest} tests with {@link PeriodicDeltaChangeListener#PIPELINED} */
+public class CheckpointEntityPipelinedTest extends CheckpointEntityTest {
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(PeriodicDeltaChangeListener.PIPELINED, true);
+        return result;
+    }
+
+    @Test
+    public void testRecordsCheckpointMetrics() throws Exception {
+        RebindTestUtils.waitForPersisted(origApp);
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metrics = (Map<String, Object>) origManagementContext.getRebindManager().getMetrics().get("persist");
+        assertTrue(((Number)metrics.get("checkpointCount")).longValue() > 0, "metrics="+metrics);
+        assertTrue(((Number)metrics.get("checkpointObjectCount")).longValue() > 0, "metrics="+metrics);
+        assertTrue(((Number)metrics.get("checkpointBytes")).longValue() > 0, "metrics="+metrics);
+    }
+
+    @Test
+    public void testMergedDeltaKeepsLatestStatePerObject() throws Exception {
+        EntityMemento memento = ((EntityInternal)origApp).getRebindSupport().getMemento();
+        EntityMemento otherMemento = ((EntityInternal)Iterables.getOnlyElement(origApp.getChildren())).getRebindSupport().getMemento();
+        
+        PersisterDeltaImpl earlier = new PersisterDeltaImpl();
+        earlier.add(BrooklynObjectType.ENTITY, memento);
+        earlier.removed(BrooklynObjectType.ENTITY, ImmutableSet.of(otherMemento.getId()));
+        
+        PersisterDeltaImpl later = new PersisterDeltaImpl();
+        later.add(BrooklynObjectType.ENTITY, otherMemento);
+        later.removed(BrooklynObjectType.ENTITY, ImmutableSet.of(memento.getId()));
+        
+        earlier.addLater(later);
+        assertEquals(earlier.entities().size(), 1);
+        assertEquals(Iterables.getOnlyElement(earlier.entities()).getId(), otherMemento.getId());
+        assertEquals(ImmutableSet.copyOf(earlier.removedEntityIds()), ImmutableSet.of(memento.getId()));
+        assertFalse(earlier.removedEntityIds().contains(otherMemento.getId()));
+    }
+
+    @Test
+    public void testForcedPersistWaitsForWriteAndReportsFailure() throws Exception {
+        final AtomicBoolean written = new AtomicBoolean();
+        final AtomicBoolean fail = new AtomicBoolean();
+        BrooklynMementoPersister persister = Mockito.mock(BrooklynMementoPersister.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override public Void answer(InvocationOnMock invocation) {
+                Time.sleep(Duration.millis(200));
+                if (fail.get()) throw new IllegalStateException("Simulated write failure");
+                written.set(true);
+                return null;
+            }}).when(persister).delta(Mockito.any(Delta.class), Mockito.any(PersistenceExceptionHandler.class));
+        
+        PeriodicDeltaChangeListener listener = new PeriodicDeltaChangeListener(Suppliers.ofInstance("myplane"),
+                origManagementContext.getServerExecutionContext(), persister, PersistenceExceptionHandlerImpl.builder().build(),
+                new PersistenceActivityMetrics(), Duration.ONE_HOUR, origManagementContext.getConfig());
+        assertTrue(listener.isPipelined());
+        listener.start();
+        try {
+            listener.onChanged(origApp);
+            assertTrue(listener.persistNowSafely());
+            assertTrue(written.get());
+            
+            fail.set(true);
+            listener.onChanged(origApp);
+            assertFalse(listener.persistNowSafely());
+        } finally {
+            listener.stop();
+        }
+    }
+
+    @Test
+    public void testStopTerminatesWriterAndRestartWritesAgain() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        BrooklynMementoPersister persister = Mockito.mock(BrooklynMementoPersister.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override public Void answer(InvocationOnMock invocation) {
+                writes.incrementAndGet();
+                return null;
+            }}).when(persister).delta(Mockito.any(Delta.class), Mockito.any(PersistenceExceptionHandler.class));
+        
+        PeriodicDeltaChangeListener listener = new PeriodicDeltaChangeListener(Suppliers.ofInstance("myplane"),
+                origManagementContext.getServerExecutionContext(), persister, PersistenceExceptionHandlerImpl.builder().build(),
+                new PersistenceActivityMetrics(), Duration.ONE_HOUR, origManagementContext.getConfig());
+        listener.start();
+        listener.onChanged(origApp);
+        listener.stop();
+        assertEquals(writes.get(), 1);
+        assertTrue(listener.isWriterTerminated());
+        
+        listener.start();
+        try {
+            listener.onChanged(origApp);
+            assertTrue(listener.persistNowSafely());
+            assertEquals(writes.get(), 2);
+        } finally {
+            listener.stop();
+        }
+        assertTrue(listener.isWriterTerminated());
+    }
+}
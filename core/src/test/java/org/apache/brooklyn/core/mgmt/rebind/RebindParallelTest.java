@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.brooklyn.api.entity.Application;
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.location.LocationSpec;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.api.mgmt.rebind.RebindContext;
+import org.apache.brooklyn.api.mgmt.rebind.RebindSupport;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.EntityMemento;
+import org.apache.brooklyn.api.policy.PolicySpec;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.location.SimulatedLocation;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
+import org.apache.brooklyn.core.mgmt.entitlement.WebEntitlementContext;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.entity.TestEntityImpl;
+import org.apache.brooklyn.core.test.policy.TestPolicy;
+import org.apache.brooklyn.entity.group.BasicGroup;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+/** Runs the {@link RebindEntityTest} tests with {@link RebindManagerImpl#REBIND_PARALLEL} */
+public class RebindParallelTest extends RebindEntityTest {
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(RebindManagerImpl.REBIND_PARALLEL, true);
+        result.put(RebindManagerImpl.REBIND_PARALLEL_MAX_THREADS, 4);
+        return result;
+    }
+
+    @Test
+    public void testRebindsManyTreesConcurrently() throws Exception {
+        BasicGroup group = origApp.createAndManageChild(EntitySpec.create(BasicGroup.class));
+        List<String> childIds = MutableList.of();
+        for (int i = 0; i < 10; i++) {
+            TestApplication app = origManagementContext.getEntityManager().createEntity(EntitySpec.create(TestApplication.class)
+                    .displayName("app"+i)
+                    .location(LocationSpec.create(SimulatedLocation.class)));
+            TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                    .policy(PolicySpec.create(TestPolicy.class)));
+            TestEntity grandchild = child.addChild(EntitySpec.create(TestEntity.class));
+            grandchild.sensors().set(TestEntity.NAME, "grandchild"+i);
+            group.addMember(grandchild);
+            childIds.add(child.getId());
+        }
+
+        rebind();
+
+        assertEquals(newManagementContext.getApplications().size(), 11);
+        BasicGroup newGroup = (BasicGroup) newManagementContext.getEntityManager().getEntity(group.getId());
+        assertEquals(newGroup.getMembers().size(), 10);
+        for (Entity member : newGroup.getMembers()) {
+            assertTrue(member.getParent().getParent() instanceof Application, "member="+member);
+        }
+        for (int i = 0; i < childIds.size(); i++) {
+            Entity child = newManagementContext.getEntityManager().getEntity(childIds.get(i));
+            assertNotNull(child);
+            assertTrue(child.getParent() instanceof Application);
+            assertEquals(child.getParent().getDisplayName(), "app"+i);
+            assertEquals(Iterables.getOnlyElement(child.getParent().getLocations()).getClass(), SimulatedLocation.class);
+            assertEquals(Iterables.getOnlyElement(child.policies()).getClass(), TestPolicy.class);
+            Entity grandchild = Iterables.getOnlyElement(child.getChildren());
+            EntityAsserts.assertAttributeEquals(grandchild, TestEntity.NAME, "grandchild"+i);
+        }
+    }
+
+    @Test
+    public void testReconstructsInTasksWithEntitlementContext() throws Exception {
+        List<String> ids = MutableList.of();
+        for (int i = 0; i < 3; i++) {
+            TestApplication app = origManagementContext.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+            ids.add(app.createAndManageChild(EntitySpec.create(TestEntity.class).impl(EntityRecordingReconstructContextImpl.class)).getId());
+        }
+        EntityRecordingReconstructContextImpl.entitlementContexts.clear();
+        EntityRecordingReconstructContextImpl.tasks.clear();
+
+        WebEntitlementContext entitlementContext = new WebEntitlementContext("myuser", "127.0.0.1", "/myuri", "myrequest");
+        Entitlements.setEntitlementContext(entitlementContext);
+        try {
+            rebind();
+        } finally {
+            Entitlements.clearEntitlementContext();
+        }
+
+        for (String id : ids) {
+            assertEquals(EntityRecordingReconstructContextImpl.entitlementContexts.get(id), entitlementContext, "id="+id);
+            assertNotNull(EntityRecordingReconstructContextImpl.tasks.get(id), "id="+id);
+        }
+    }
+
+    @Test
+    public void testRecordsPhaseDurations() throws Exception {
+        rebind();
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metrics = (Map<String, Object>) newManagementContext.getRebindManager().getMetrics().get("rebind");
+        @SuppressWarnings("unchecked")
+        Map<String, Long> phases = (Map<String, Long>) metrics.get("lastPhaseDurations");
+        assertNotNull(phases, "metrics="+metrics);
+        assertEquals(ImmutableList.copyOf(phases.keySet()), ImmutableList.of("loadManifests", "installBundlesAndCatalog",
+                "instantiateLocationsAndEntities", "deserializeMementos", "instantiateAdjuncts", "reconstruct",
+                "associateAdjuncts", "manage"));
+    }
+
+    public static class EntityRecordingReconstructContextImpl extends TestEntityImpl {
+        static final Map<String, EntitlementContext> entitlementContexts = new ConcurrentHashMap<String, EntitlementContext>();
+        static final Map<String, Task<?>> tasks = new ConcurrentHashMap<String, Task<?>>();
+
+        @Override
+        public RebindSupport<EntityMemento> getRebindSupport() {
+            return new BasicEntityRebindSupport(this) {
+                @Override protected void doReconstruct(RebindContext rebindContext, EntityMemento memento) {
+                    super.doReconstruct(rebindContext, memento);
+                    EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+                    if (entitlementContext!=null) entitlementContexts.put(getId(), entitlementContext);
+                    if (Tasks.current()!=null) tasks.put(getId(), Tasks.current());
+                }
+            };
+        }
+    }
+}
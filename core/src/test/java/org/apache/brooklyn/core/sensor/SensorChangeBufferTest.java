@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.sensor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.Sensor;
+import org.apache.brooklyn.core.sensor.SensorChangeBuffer.SensorChange;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableMap;
+
+public class SensorChangeBufferTest extends BrooklynAppUnitTestSupport {
+
+    private TestEntity entity;
+    private TestEntity entity2;
+    private SensorChangeBuffer buffer;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        entity2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            if (buffer != null) buffer.close();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void testCoalescesChanges() throws Exception {
+        buffer = new SensorChangeBuffer(mgmt, Predicates.<Sensor<?>>equalTo(TestEntity.SEQUENCE), 100)
+                .subscribe(entity)
+                .subscribe(entity2);
+        for (int i = 1; i <= 10; i++) {
+            entity.sensors().set(TestEntity.SEQUENCE, i);
+        }
+        entity2.sensors().set(TestEntity.SEQUENCE, 20);
+        entity.sensors().set(TestEntity.NAME, "ignored");
+
+        final Map<String, Object> latest = MutableMap.of();
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (SensorChange change : buffer.take(Duration.millis(10))) {
+                        assertEquals(change.getSensor(), TestEntity.SEQUENCE);
+                        latest.put(change.getEntity().getId(), change.getValue());
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                assertEquals(latest, ImmutableMap.of(entity.getId(), 10, entity2.getId(), 20));
+            }});
+    }
+
+    @Test
+    public void testTakeWaitsForChange() throws Exception {
+        buffer = new SensorChangeBuffer(mgmt, null, 100).subscribe(entity);
+        assertTrue(buffer.take(Duration.millis(10)).isEmpty());
+
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        List<SensorChange> changes = buffer.take(Asserts.DEFAULT_LONG_TIMEOUT);
+        assertEquals(changes.size(), 1, "changes="+changes);
+        assertEquals(changes.get(0).getValue(), 1);
+    }
+
+    @Test
+    public void testDiscardsOldestWhenFull() throws Exception {
+        buffer = new SensorChangeBuffer(mgmt, Predicates.<Sensor<?>>equalTo(TestEntity.SEQUENCE), 1)
+                .subscribe(entity)
+                .subscribe(entity2);
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                entity2.sensors().set(TestEntity.SEQUENCE, 2);
+                assertTrue(buffer.getDiscardedCount() > 0);
+            }});
+        List<SensorChange> changes = buffer.take(Duration.ZERO);
+        assertEquals(changes.size(), 1, "changes="+changes);
+        assertEquals(changes.get(0).getEntity(), entity2);
+    }
+
+    @Test
+    public void testSubscribeWithDescendantsTracksAddedChildren() throws Exception {
+        buffer = new SensorChangeBuffer(mgmt, Predicates.<Sensor<?>>equalTo(TestEntity.SEQUENCE), 100)
+                .subscribeWithDescendants(app, Predicates.not(Predicates.<Entity>equalTo(entity2)));
+        final TestEntity grandchild = entity.addChild(EntitySpec.create(TestEntity.class));
+
+        final Map<String, Object> latest = MutableMap.of();
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                entity.sensors().set(TestEntity.SEQUENCE, 1);
+                entity2.sensors().set(TestEntity.SEQUENCE, 2);
+                grandchild.sensors().set(TestEntity.SEQUENCE, 3);
+                try {
+                    for (SensorChange change : buffer.take(Duration.millis(10))) {
+                        latest.put(change.getEntity().getId(), change.getValue());
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                assertEquals(latest, ImmutableMap.of(entity.getId(), 1, grandchild.getId(), 3));
+            }});
+    }
+
+    @Test
+    public void testChangeListenerNotifiedOfChanges() throws Exception {
+        final AtomicInteger notified = new AtomicInteger();
+        buffer = new SensorChangeBuffer(mgmt, null, 100).subscribe(entity);
+        buffer.setChangeListener(new Runnable() {
+            @Override
+            public void run() {
+                notified.incrementAndGet();
+            }});
+        assertFalse(buffer.hasChanges());
+
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(notified.get() > 0);
+            }});
+        assertTrue(buffer.hasChanges());
+        assertEquals(buffer.take(Duration.ZERO).size(), 1);
+        assertFalse(buffer.hasChanges());
+    }
+
+    @Test
+    public void testCloseUnsubscribes() throws Exception {
+        buffer = new SensorChangeBuffer(mgmt, null, 100).subscribe(entity);
+        assertEquals(mgmt.getSubscriptionManager().getSubscriptionsForSubscriber(buffer).size(), 1);
+        buffer.close();
+        assertEquals(mgmt.getSubscriptionManager().getSubscriptionsForSubscriber(buffer).size(), 0);
+
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        assertTrue(buffer.take(Duration.millis(10)).isEmpty());
+    }
+}
@@ -18,7 +18,11 @@
  */
 package org.apache.brooklyn.core.typereg;
 
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry.RegisteredTypeKind;
 import org.apache.brooklyn.api.typereg.RegisteredType;
+import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
 import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableList;
@@ -184,4 +188,71 @@ public class BasicBrooklynTypeRegistryTest extends BrooklynMgmtUnitTestSupport {
         
     }
 
+    @Test
+    public void testGetMatchingByKindAndSuperType() {
+        add(SAMPLE_TYPE);
+        RegisteredType sampleSpec = RegisteredTypes.spec("item.B", "1", new BasicTypeImplementationPlan("ignore", null), Entity.class);
+        add(sampleSpec);
+        
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.kind(RegisteredTypeKind.BEAN)),
+            MutableList.of(SAMPLE_TYPE) );
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.kind(RegisteredTypeKind.SPEC)),
+            MutableList.of(sampleSpec) );
+        
+        // ancestors of the super-types are matched too
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.subtypeOf(CharSequence.class)),
+            MutableList.of(SAMPLE_TYPE) );
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.subtypeOf(BrooklynObject.class)),
+            MutableList.of(sampleSpec) );
+        Assert.assertEquals( MutableSet.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(Object.class))),
+            MutableSet.of(SAMPLE_TYPE, sampleSpec) );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.subtypeOf(Integer.class))) );
+    }
+
+    @Test
+    public void testGetMatchingBySubtypeOfRegisteredType() {
+        add(SAMPLE_TYPE);
+        RegisteredType subtype = RegisteredTypes.addSuperType(
+            RegisteredTypes.bean("item.C", "1", new BasicTypeImplementationPlan("ignore", null)),
+            SAMPLE_TYPE);
+        add(subtype);
+        
+        Assert.assertEquals( MutableSet.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(String.class))),
+            MutableSet.of(SAMPLE_TYPE, subtype) );
+    }
+
+    @Test
+    public void testIndexesUpdatedOnDelete() {
+        add(SAMPLE_TYPE);
+        add(SAMPLE_TYPE2);
+        Assert.assertEquals( registry().get(SAMPLE_TYPE.getSymbolicName()), SAMPLE_TYPE2 );
+        
+        registry().delete(SAMPLE_TYPE2);
+        Assert.assertEquals( registry().get(SAMPLE_TYPE.getSymbolicName()), SAMPLE_TYPE );
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.subtypeOf(String.class)),
+            MutableList.of(SAMPLE_TYPE) );
+        
+        registry().delete(SAMPLE_TYPE);
+        Assert.assertNull( registry().get(SAMPLE_TYPE.getSymbolicName()) );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(
+            RegisteredTypePredicates.symbolicName(SAMPLE_TYPE.getSymbolicName()))) );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.subtypeOf(String.class))) );
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testBestVersionUpdatedWhenDeprecated() {
+        RegisteredType type1 = RegisteredTypes.bean("item.D", "1", new BasicTypeImplementationPlan("ignore", null), String.class);
+        RegisteredType type2 = RegisteredTypes.bean("item.D", "2", new BasicTypeImplementationPlan("ignore", null), String.class);
+        add(type1);
+        add(type2);
+        Assert.assertEquals( registry().get("item.D"), type2 );
+        
+        CatalogUtils.setDeprecated(mgmt, "item.D", "2", true);
+        Assert.assertEquals( registry().get("item.D"), type1 );
+        
+        CatalogUtils.setDeprecated(mgmt, "item.D", "2", false);
+        Assert.assertEquals( registry().get("item.D"), type2 );
+    }
+
 }
@@ -19,11 +19,13 @@
 package org.apache.brooklyn.enricher.stock;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.location.LocationSpec;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.EnricherSpec;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityAsserts;
 import org.apache.brooklyn.core.location.SimulatedLocation;
@@ -31,6 +33,7 @@ import org.apache.brooklyn.core.sensor.BasicAttributeSensor;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.entity.group.BasicGroup;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -348,6 +351,63 @@ public class CustomAggregatingEnricherTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsEventually(group, target, 1);
     }
     
+    @Test
+    public void testIncrementalAggregationMatchesFullComputation() {
+        BasicGroup group = app.createAndManageChild(EntitySpec.create(BasicGroup.class));
+        AttributeSensor<Integer> incrementalTarget = new BasicAttributeSensor<Integer>(Integer.class, "incremental target sensor");
+        AttributeSensor<Integer> maxTarget = new BasicAttributeSensor<Integer>(Integer.class, "max target sensor");
+        AttributeSensor<Integer> incrementalMaxTarget = new BasicAttributeSensor<Integer>(Integer.class, "incremental max target sensor");
+        group.enrichers().add(Enrichers.builder()
+                .aggregating(intSensor)
+                .publishing(target)
+                .computingSum()
+                .fromMembers()
+                .defaultValueForUnreportedSensors(0)
+                .build());
+        group.enrichers().add(Enrichers.builder()
+                .aggregating(intSensor)
+                .publishing(incrementalTarget)
+                .computingSum()
+                .fromMembers()
+                .defaultValueForUnreportedSensors(0)
+                .build()
+                .configure(Aggregator.INCREMENTAL, true));
+        group.enrichers().add(EnricherSpec.create(Aggregator.class)
+                .configure(Aggregator.SOURCE_SENSOR, intSensor)
+                .configure(Aggregator.TARGET_SENSOR, maxTarget)
+                .configure(Aggregator.FROM_MEMBERS, true)
+                .configure(Aggregator.TRANSFORMATION_UNTYPED, "max"));
+        group.enrichers().add(EnricherSpec.create(Aggregator.class)
+                .configure(Aggregator.SOURCE_SENSOR, intSensor)
+                .configure(Aggregator.TARGET_SENSOR, incrementalMaxTarget)
+                .configure(Aggregator.FROM_MEMBERS, true)
+                .configure(Aggregator.TRANSFORMATION_UNTYPED, "max")
+                .configure(Aggregator.INCREMENTAL, true));
+
+        List<TestEntity> members = MutableList.of();
+        for (int i = 0; i < 5; i++) {
+            TestEntity member = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+            group.addMember(member);
+            member.sensors().set(intSensor, i);
+            members.add(member);
+        }
+        EntityAsserts.assertAttributeEqualsEventually(group, target, 10);
+        EntityAsserts.assertAttributeEqualsEventually(group, incrementalTarget, 10);
+        EntityAsserts.assertAttributeEqualsEventually(group, incrementalMaxTarget, 4);
+
+        members.get(4).sensors().set(intSensor, -3);
+        members.get(1).sensors().set(intSensor, null);
+        group.removeMember(members.get(3));
+        EntityAsserts.assertAttributeEqualsEventually(group, target, -1);
+        EntityAsserts.assertAttributeEqualsEventually(group, incrementalTarget, -1);
+        EntityAsserts.assertAttributeEqualsEventually(group, maxTarget, 2);
+        EntityAsserts.assertAttributeEqualsEventually(group, incrementalMaxTarget, 2);
+
+        group.addMember(members.get(3));
+        EntityAsserts.assertAttributeEqualsEventually(group, incrementalTarget, 2);
+        EntityAsserts.assertAttributeEqualsEventually(group, incrementalMaxTarget, 3);
+    }
+
     @Test(groups = "Integration", invocationCount=50)
     public void testAggregatesGroupMembersFiftyTimes() {
         testAggregatesNewMembersOfGroup();
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.enricher.stock;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.testng.annotations.Test;
+
+import com.google.common.reflect.TypeToken;
+
+public class IncrementalComputationTest {
+
+    @Test
+    public void testIntegerFunctionsMatchFullComputation() {
+        TypeToken<Integer> type = TypeToken.of(Integer.class);
+        for (Number defaultValue : MutableList.<Number>of(null, 7)) {
+            assertMatchesFullComputation(new Enrichers.ComputingSum<Integer>(defaultValue, -1, type), false);
+            assertMatchesFullComputation(new Enrichers.ComputingAverage<Integer>(defaultValue, -1, type), false);
+            assertMatchesFullComputation(new Enrichers.ComputingCount<Integer>(defaultValue, -1, type), false);
+            assertMatchesFullComputation(new Enrichers.ComputingMin<Integer>(defaultValue, -1, type), false);
+            assertMatchesFullComputation(new Enrichers.ComputingMax<Integer>(defaultValue, -1, type), false);
+        }
+    }
+
+    @Test
+    public void testDoubleFunctionsMatchFullComputation() {
+        TypeToken<Double> type = TypeToken.of(Double.class);
+        for (Number defaultValue : MutableList.<Number>of(null, 0.5)) {
+            assertMatchesFullComputation(new Enrichers.ComputingSum<Double>(defaultValue, null, type), true);
+            assertMatchesFullComputation(new Enrichers.ComputingAverage<Double>(defaultValue, null, type), true);
+            assertMatchesFullComputation(new Enrichers.ComputingMin<Double>(defaultValue, null, type), true);
+            assertMatchesFullComputation(new Enrichers.ComputingMax<Double>(defaultValue, null, type), true);
+        }
+    }
+
+    @Test
+    public void testNonFiniteValuesCanBeRemoved() {
+        IncrementalComputation<Double, Double> sum = new Enrichers.ComputingSum<Double>(null, null, TypeToken.of(Double.class)).newIncrementalComputation();
+        sum.add(1d);
+        sum.add(Double.POSITIVE_INFINITY);
+        assertEquals(sum.get(), (Double) Double.POSITIVE_INFINITY);
+        sum.add(Double.NEGATIVE_INFINITY);
+        assertTrue(sum.get().isNaN());
+        sum.remove(Double.POSITIVE_INFINITY);
+        sum.remove(Double.NEGATIVE_INFINITY);
+        assertEquals(sum.get(), (Double) 1d);
+    }
+
+    @Test
+    public void testNoValues() {
+        IncrementalComputation<Integer, Integer> sum = new Enrichers.ComputingSum<Integer>(null, 40, TypeToken.of(Integer.class)).newIncrementalComputation();
+        assertEquals(sum.get(), (Integer) 40);
+        sum.add(null);
+        assertEquals(sum.get(), (Integer) 40);
+        sum.add(2);
+        assertEquals(sum.get(), (Integer) 2);
+        sum.remove(2);
+        assertEquals(sum.get(), (Integer) 40);
+    }
+
+    private <T extends Number> void assertMatchesFullComputation(IncrementalComputation.Factory<T, T> function, boolean fractional) {
+        Random random = new Random(1234);
+        IncrementalComputation<T, T> incremental = function.newIncrementalComputation();
+        List<T> values = MutableList.of();
+        for (int i = 0; i < 1000; i++) {
+            if (!values.isEmpty() && random.nextInt(3) == 0) {
+                T removed = values.remove(random.nextInt(values.size()));
+                incremental.remove(removed);
+            } else {
+                T added = newValue(random, fractional);
+                values.add(added);
+                incremental.add(added);
+            }
+            T expected = function.apply(MutableList.copyOf(values));
+            T actual = incremental.get();
+            if (fractional && expected != null) {
+                assertEquals(actual.doubleValue(), expected.doubleValue(), 1e-9, "function="+function+"; values="+values);
+            } else {
+                assertEquals(actual, expected, "function="+function+"; values="+values);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Number> T newValue(Random random, boolean fractional) {
+        if (random.nextInt(10) == 0) return null;
+        if (fractional) return (T) (Double) (random.nextDouble() * 1000 - 500);
+        return (T) (Integer) (random.nextInt(1000) - 500);
+    }
+}
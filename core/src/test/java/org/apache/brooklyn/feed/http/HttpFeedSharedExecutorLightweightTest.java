@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.http;
+
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.feed.Poller;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.testng.annotations.Test;
+
+import com.google.mockwebserver.Dispatcher;
+import com.google.mockwebserver.MockResponse;
+import com.google.mockwebserver.RecordedRequest;
+
+/**
+ * Runs the {@link HttpFeedSharedExecutorTest} tests with {@link Poller#LIGHTWEIGHT_POLLING},
+ * so that polls are completed from the HTTP client's callbacks, with a single thread to run them.
+ */
+public class HttpFeedSharedExecutorLightweightTest extends HttpFeedSharedExecutorTest {
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = super.getBrooklynProperties();
+        result.put(Poller.LIGHTWEIGHT_POLLING, true);
+        result.put(BasicExecutionManager.PERIODIC_JOB_MAX_THREADS, 1);
+        return result;
+    }
+
+    @Test
+    public void testPollsInFlightDoNotHoldThreads() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                inFlight.incrementAndGet();
+                release.await();
+                return new MockResponse().setResponseCode(200);
+            }});
+
+        List<TestEntity> entities = MutableList.of();
+        List<HttpFeed> feeds = MutableList.of();
+        for (int i = 0; i < 4; i++) {
+            TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+            entities.add(e);
+            feeds.add(HttpFeed.builder()
+                    .entity(e)
+                    .baseUrl(baseUrl)
+                    .poll(HttpPollConfig.forSensor(SENSOR_INT)
+                            .period(50)
+                            .onSuccess(HttpValueFunctions.responseCode()))
+                    .build());
+        }
+        try {
+            // if each poll held the one pool thread while waiting, only one request would be in flight
+            Asserts.succeedsEventually(new Runnable() {
+                @Override public void run() {
+                    assertTrue(inFlight.get() >= 4, "inFlight="+inFlight.get());
+                }});
+            release.countDown();
+            for (TestEntity e : entities) {
+                EntityAsserts.assertAttributeEqualsEventually(e, SENSOR_INT, 200);
+            }
+        } finally {
+            release.countDown();
+            for (HttpFeed f : feeds) {
+                f.stop();
+            }
+        }
+    }
+}
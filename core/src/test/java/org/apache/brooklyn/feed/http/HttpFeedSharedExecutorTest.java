@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.http;
+
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.http.executor.SharedHttpExecutors;
+import org.apache.brooklyn.util.http.executor.apacheclient.PooledHttpExecutor;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.mockwebserver.RecordedRequest;
+
+/** Runs the {@link HttpFeedTest} tests with {@link HttpFeed#SHARED_HTTP_EXECUTOR} */
+public class HttpFeedSharedExecutorTest extends HttpFeedTest {
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = BrooklynProperties.Factory.newEmpty();
+        result.put(HttpFeed.SHARED_HTTP_EXECUTOR, true);
+        return result;
+    }
+
+    @Test
+    public void testFeedsShareConnections() throws Exception {
+        TestEntity entity2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        feed = HttpFeed.builder()
+                .entity(entity)
+                .baseUrl(baseUrl)
+                .poll(HttpPollConfig.forSensor(SENSOR_INT)
+                        .period(50)
+                        .onSuccess(HttpValueFunctions.responseCode()))
+                .build();
+        HttpFeed feed2 = HttpFeed.builder()
+                .entity(entity2)
+                .baseUrl(baseUrl)
+                .poll(HttpPollConfig.forSensor(SENSOR_INT)
+                        .period(50)
+                        .onSuccess(HttpValueFunctions.responseCode()))
+                .build();
+        try {
+            EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_INT, 200);
+            EntityAsserts.assertAttributeEqualsEventually(entity2, SENSOR_INT, 200);
+
+            // some requests must have been sent on an existing connection
+            int maxSequenceNumber = 0;
+            for (int i = 0; i < 4; i++) {
+                RecordedRequest request = server.takeRequest();
+                maxSequenceNumber = Math.max(maxSequenceNumber, request.getSequenceNumber());
+            }
+            assertTrue(maxSequenceNumber > 0, "maxSequenceNumber="+maxSequenceNumber);
+        } finally {
+            feed2.stop();
+        }
+    }
+
+    @Test
+    public void testSharedExecutorClosedWithManagementContext() throws Exception {
+        LocalManagementContext mgmt2 = LocalManagementContextForTests.newInstance(getBrooklynProperties());
+        SharedHttpExecutors shared = ((ManagementContextInternal)mgmt2).getSharedHttpExecutors();
+        PooledHttpExecutor executor = shared.get(ImmutableMap.<String, Object>of());
+        assertSame(shared.get(ImmutableMap.<String, Object>of()), executor);
+
+        mgmt2.terminate();
+        try {
+            executor.executeAsync(new HttpRequest.Builder().method("GET").uri(baseUrl.toURI()).build());
+            fail("Expected executor to have been closed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertTrue(shared.get(ImmutableMap.<String, Object>of()) != executor);
+        shared.close();
+    }
+}
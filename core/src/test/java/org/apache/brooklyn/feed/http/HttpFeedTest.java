@@ -23,6 +23,7 @@ import static org.testng.Assert.assertTrue;
 
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
@@ -30,6 +31,7 @@ import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityAsserts;
 import org.apache.brooklyn.core.entity.EntityFunctions;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.entity.EntityInternal.FeedSupport;
@@ -138,6 +140,42 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
         Assert.assertEquals(feeds.getFeeds().size(), 1, "Wrong feed count: "+feeds.getFeeds());
     }
     
+    @Test
+    public void testCoalescesIdenticalPolls() throws Exception {
+        TestEntity entity2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        feed = HttpFeed.builder()
+                .entity(entity)
+                .baseUrl(baseUrl)
+                .coalesceWindow(Duration.ONE_MINUTE)
+                .poll(HttpPollConfig.forSensor(SENSOR_STRING)
+                        .period(100)
+                        .onSuccess(HttpValueFunctions.stringContentsFunction()))
+                .build();
+        HttpFeed feed2 = HttpFeed.builder()
+                .entity(entity2)
+                .baseUrl(baseUrl)
+                .coalesceWindow(Duration.ONE_MINUTE)
+                .poll(HttpPollConfig.forSensor(SENSOR_STRING)
+                        .period(100)
+                        .onSuccess(HttpValueFunctions.stringContentsFunction()))
+                .build();
+        try {
+            assertSensorEventually(SENSOR_STRING, "{\"foo\":\"myfoo\"}", TIMEOUT_MS);
+            EntityAsserts.assertAttributeEqualsEventually(entity2, SENSOR_STRING, "{\"foo\":\"myfoo\"}");
+            Asserts.succeedsEventually(new Runnable() {
+                @Override public void run() {
+                    Map<String, Object> metrics = HttpPollCoalescer.get(mgmt).getMetrics();
+                    assertTrue((Long)metrics.get("requests") >= 4, "metrics="+metrics);
+                    // with a window much longer than the test, only the first poll sends a request
+                    assertEquals(metrics.get("sent"), 1L, "metrics="+metrics);
+                    assertTrue((Double)metrics.get("hitRate") > 0.5, "metrics="+metrics);
+                }});
+            assertEquals(server.getRequestCount(), 1);
+        } finally {
+            feed2.stop();
+        }
+    }
+
     @Test
     public void testSetsConnectionTimeout() throws Exception {
         feed = HttpFeed.builder()
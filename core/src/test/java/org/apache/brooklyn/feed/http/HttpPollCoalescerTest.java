@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.http;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.util.http.HttpToolResponse;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class HttpPollCoalescerTest {
+
+    private HttpPollCoalescer coalescer;
+    private ExecutorService executor;
+    private AtomicInteger callCount;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        coalescer = new HttpPollCoalescer();
+        executor = Executors.newCachedThreadPool();
+        callCount = new AtomicInteger();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Test
+    public void testUsesRecentResponse() throws Exception {
+        HttpToolResponse response1 = coalescer.execute(newKey("http://example.com/a"), Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        HttpToolResponse response2 = coalescer.execute(newKey("http://example.com/a"), Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        assertSame(response2, response1);
+        assertEquals(callCount.get(), 1);
+
+        Map<String, Object> metrics = coalescer.getMetrics();
+        assertEquals(metrics.get("requests"), 2L, "metrics="+metrics);
+        assertEquals(metrics.get("sent"), 1L, "metrics="+metrics);
+        assertEquals(metrics.get("cachedHits"), 1L, "metrics="+metrics);
+        assertEquals(metrics.get("hitRate"), 0.5d, "metrics="+metrics);
+    }
+
+    @Test
+    public void testDifferentRequestsNotShared() throws Exception {
+        coalescer.execute(newKey("http://example.com/a"), Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        coalescer.execute(newKey("http://example.com/b"), Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        coalescer.execute(new HttpPollCoalescer.RequestKey(null, "get", URI.create("http://example.com/a"),
+                ImmutableMap.<String, String>of(), null, ImmutableList.of("user", "password")), Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        assertEquals(callCount.get(), 3);
+    }
+
+    @Test
+    public void testExpiredResponseNotUsed() throws Exception {
+        HttpToolResponse response1 = coalescer.execute(newKey("http://example.com/a"), Duration.millis(10), Duration.ONE_MINUTE, newRequest());
+        Time.sleep(Duration.millis(20));
+        HttpToolResponse response2 = coalescer.execute(newKey("http://example.com/a"), Duration.millis(10), Duration.ONE_MINUTE, newRequest());
+        assertNotSame(response2, response1);
+        assertEquals(callCount.get(), 2);
+    }
+
+    @Test
+    public void testJoinsRequestInFlight() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<HttpToolResponse> slowRequest = new Callable<HttpToolResponse>() {
+            @Override public HttpToolResponse call() throws Exception {
+                started.countDown();
+                release.await();
+                return newRequest().call();
+            }};
+        Future<HttpToolResponse> first = executor.submit(new Callable<HttpToolResponse>() {
+            @Override public HttpToolResponse call() throws Exception {
+                return coalescer.execute(newKey("http://example.com/a"), Duration.ZERO, Duration.ONE_MINUTE, slowRequest);
+            }});
+        started.await();
+        Future<HttpToolResponse> second = executor.submit(new Callable<HttpToolResponse>() {
+            @Override public HttpToolResponse call() throws Exception {
+                return coalescer.execute(newKey("http://example.com/a"), Duration.ZERO, Duration.ONE_MINUTE, newRequest());
+            }});
+        // give the second poll time to find the request in flight
+        while (!Long.valueOf(1).equals(coalescer.getMetrics().get("joinedInFlight"))) {
+            Time.sleep(Duration.millis(1));
+        }
+        release.countDown();
+
+        assertSame(second.get(), first.get());
+        assertEquals(callCount.get(), 1);
+    }
+
+    @Test
+    public void testJoinedRequestWaitIsBounded() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit(new Callable<HttpToolResponse>() {
+            @Override public HttpToolResponse call() throws Exception {
+                return coalescer.execute(newKey("http://example.com/a"), Duration.ZERO, Duration.ONE_MINUTE, new Callable<HttpToolResponse>() {
+                    @Override public HttpToolResponse call() throws Exception {
+                        started.countDown();
+                        release.await();
+                        return newRequest().call();
+                    }});
+            }});
+        started.await();
+        try {
+            coalescer.execute(newKey("http://example.com/a"), Duration.ZERO, Duration.millis(10), newRequest());
+            fail();
+        } catch (TimeoutException e) {
+            // expected; the joined request gave up without making its own
+            assertEquals(callCount.get(), 0);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testRequestsWithDifferentExecutorsNotShared() throws Exception {
+        Object executor1 = "executor1";
+        Object executor2 = "executor2";
+        HttpPollCoalescer.RequestKey key1 = new HttpPollCoalescer.RequestKey(executor1, "get", URI.create("http://example.com/a"),
+                ImmutableMap.<String, String>of(), null, null);
+        HttpPollCoalescer.RequestKey key1b = new HttpPollCoalescer.RequestKey(executor1, "get", URI.create("http://example.com/a"),
+                ImmutableMap.<String, String>of(), null, null);
+        HttpPollCoalescer.RequestKey key2 = new HttpPollCoalescer.RequestKey(executor2, "get", URI.create("http://example.com/a"),
+                ImmutableMap.<String, String>of(), null, null);
+        assertEquals(key1b, key1);
+        assertEquals(key1b.hashCode(), key1.hashCode());
+
+        coalescer.execute(key1, Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        coalescer.execute(key1b, Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        coalescer.execute(key2, Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        assertEquals(callCount.get(), 2);
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+        try {
+            coalescer.execute(newKey("http://example.com/a"), Duration.ONE_MINUTE, Duration.ONE_MINUTE, new Callable<HttpToolResponse>() {
+                @Override public HttpToolResponse call() throws Exception {
+                    throw new IllegalStateException("simulated failure");
+                }});
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.toString().contains("simulated failure"), "e="+e);
+        }
+        coalescer.execute(newKey("http://example.com/a"), Duration.ONE_MINUTE, Duration.ONE_MINUTE, newRequest());
+        assertEquals(callCount.get(), 1);
+    }
+
+    private HttpPollCoalescer.RequestKey newKey(String uri) {
+        return new HttpPollCoalescer.RequestKey(null, "get", URI.create(uri), ImmutableMap.<String, String>of(), null, null);
+    }
+
+    private Callable<HttpToolResponse> newRequest() {
+        return new Callable<HttpToolResponse>() {
+            @Override public HttpToolResponse call() throws Exception {
+                int count = callCount.incrementAndGet();
+                return new HttpToolResponse(200, ImmutableMap.<String, ImmutableList<String>>of(), ("response"+count).getBytes(), 0, 0, 0);
+            }};
+    }
+}
@@ -28,6 +28,7 @@ import static org.testng.Assert.fail;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -217,6 +218,80 @@ public class BasicTaskExecutionTest {
         assertEquals(em.getTasksWithAllTags(ImmutableList.of("A", "B")), ImmutableSet.of());
     }
     
+    @Test
+    public void testTagIndexConsistentWithConcurrentSubmitAndDelete() throws Exception {
+        final int numThreads = 8;
+        final int numTasksPerThread = 500;
+        final List<Task<?>> kept = Collections.synchronizedList(Lists.<Task<?>>newArrayList());
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < numThreads; i++) {
+            threads.add(new Thread() {
+                @Override public void run() {
+                    for (int j = 0; j < numTasksPerThread; j++) {
+                        Task<?> t = em.submit(MutableMap.of("tags", ImmutableList.of("A", "B-"+(j%3))), newNoop());
+                        t.blockUntilEnded();
+                        if (j%2==0) em.deleteTask(t);
+                        else kept.add(t);
+                    }
+                }});
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join(TIMEOUT_MS);
+        
+        assertEquals(kept.size(), numThreads*numTasksPerThread/2);
+        assertEquals(em.getTasksWithTag("A"), ImmutableSet.copyOf(kept));
+        assertEquals(em.getTasksWithAnyTag(ImmutableList.of("B-0", "B-1", "B-2")), ImmutableSet.copyOf(kept));
+        
+        for (Task<?> t : kept) em.deleteTask(t);
+        assertEquals(em.getTaskTags(), ImmutableSet.of());
+    }
+    
+    @Test
+    public void testTagIndexKeepsTaskAddedWhileTagEmptied() throws Exception {
+        // the tag's set is repeatedly emptied and dropped from the index while other threads add to it
+        final int numThreads = 8;
+        final int numTasksPerThread = 500;
+        final List<Task<?>> kept = Collections.synchronizedList(Lists.<Task<?>>newArrayList());
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < numThreads; i++) {
+            threads.add(new Thread() {
+                @Override public void run() {
+                    for (int j = 0; j < numTasksPerThread; j++) {
+                        Task<?> t = em.submit(MutableMap.of("tags", ImmutableList.of("C")), newNoop());
+                        t.blockUntilEnded();
+                        if (j < numTasksPerThread-1) em.deleteTask(t);
+                        else kept.add(t);
+                    }
+                }});
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join(TIMEOUT_MS);
+        
+        assertEquals(em.getTasksWithTag("C"), ImmutableSet.copyOf(kept));
+    }
+    
+    @Test
+    public void testTasksWithTagInSubmissionOrder() throws Exception {
+        List<Task<?>> submitted = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            submitted.add(em.submit(MutableMap.of("tag", "D"), newNoop()));
+        }
+        assertEquals(ImmutableList.copyOf(em.getTasksWithTag("D")), submitted);
+        
+        em.deleteTask(submitted.remove(50));
+        Task<?> t = em.submit(MutableMap.of("tag", "D"), newNoop());
+        submitted.add(t);
+        assertEquals(ImmutableList.copyOf(em.tasksWithTagLiveOrNull("D")), submitted);
+        
+        try {
+            em.tasksWithTagLiveOrNull("D").remove(t);
+            fail("live view of tasks should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertTrue(em.getTasksWithTag("D").contains(t));
+    }
+    
     @Test
     public void testRetrievingTasksWithMultipleTags() throws Exception {
         Task<?> t = new BasicTask<Void>(newNoop());
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.sensor.DependentConfiguration;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.mutex.SemaphoreForTasks;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.ThreadPoolMode;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BoundedTaskExecutorTest {
+
+    private static final int MAX_THREADS = 4;
+
+    private BasicExecutionManager em;
+    private LocalManagementContext mgmt;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        em = new BasicExecutionManager("mycontextid", newBoundedProperties());
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() {
+        if (em != null) em.shutdownNow();
+        if (mgmt != null) Entities.destroyAll(mgmt);
+        mgmt = null;
+    }
+
+    private static BrooklynProperties newBoundedProperties() {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.THREAD_POOL_MODE, ThreadPoolMode.BOUNDED);
+        props.put(BasicExecutionManager.THREAD_POOL_MAX_THREADS, MAX_THREADS);
+        props.put(BasicExecutionManager.THREAD_POOL_QUEUE_CAPACITY, 10);
+        return props;
+    }
+
+    @Test
+    public void testUsesBoundedPool() throws Exception {
+        assertEquals(em.getThreadPoolMode(), ThreadPoolMode.BOUNDED);
+
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        List<Task<?>> tasks = MutableList.of();
+        for (int i=0; i<MAX_THREADS*3; i++) {
+            tasks.add(em.submit(new Runnable() {
+                @Override public void run() {
+                    int c = concurrent.incrementAndGet();
+                    synchronized (maxConcurrent) { maxConcurrent.set(Math.max(maxConcurrent.get(), c)); }
+                    Time.sleep(20);
+                    concurrent.decrementAndGet();
+                }}));
+        }
+        for (Task<?> t: tasks) t.get();
+
+        assertTrue(maxConcurrent.get() <= MAX_THREADS, "max="+maxConcurrent);
+        assertTrue(em.getNumPoolThreads() <= MAX_THREADS, "threads="+em.getNumPoolThreads());
+    }
+
+    @Test
+    public void testParentsBlockingOnChildrenDoNotDeadlock() throws Exception {
+        // more parents than threads, each blocking on a child which needs a thread of its own
+        List<Task<String>> parents = MutableList.of();
+        for (int i=0; i<MAX_THREADS*2; i++) {
+            final int id = i;
+            parents.add(em.submit(new Callable<String>() {
+                @Override public String call() throws Exception {
+                    Task<String> child = em.submit(new Callable<String>() {
+                        @Override public String call() throws Exception {
+                            return "child-"+id;
+                        }});
+                    return child.get();
+                }}));
+        }
+        for (int i=0; i<parents.size(); i++) {
+            assertEquals(parents.get(i).get(Duration.THIRTY_SECONDS), "child-"+i);
+        }
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(em.getNumCompensatingPoolThreads(), 0);
+            }});
+    }
+
+    @Test
+    public void testTasksWaitingOnAttributeDoNotDeadlock() throws Exception {
+        mgmt = LocalManagementContextForTests.newInstance(newBoundedProperties());
+        final TestApplication app = mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+        
+        // more tasks waiting for the attribute than threads, and the attribute set by a task queued after them
+        List<Task<String>> waiters = MutableList.of();
+        for (int i=0; i<MAX_THREADS+1; i++) {
+            waiters.add(((EntityInternal)app).getExecutionContext().submit(
+                DependentConfiguration.attributeWhenReady(app, TestApplication.MY_ATTRIBUTE)));
+        }
+        ((EntityInternal)app).getExecutionContext().submit(new Runnable() {
+            @Override public void run() {
+                app.sensors().set(TestApplication.MY_ATTRIBUTE, "ready");
+            }});
+        
+        for (Task<String> waiter : waiters) {
+            assertEquals(waiter.get(Duration.THIRTY_SECONDS), "ready");
+        }
+    }
+
+    @Test
+    public void testUncontendedSemaphoreDoesNotCompensate() throws Exception {
+        mgmt = LocalManagementContextForTests.newInstance(newBoundedProperties());
+        final SemaphoreForTasks semaphore = new SemaphoreForTasks("test", mgmt);
+        final AtomicInteger compensating = new AtomicInteger(-1);
+        em.submit(new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                semaphore.acquire();
+                semaphore.release();
+                // held by this thread, so the permit is not available, but tryAcquire never parks
+                semaphore.acquire();
+                semaphore.tryAcquire();
+                compensating.set(BoundedTaskExecutor.getCurrentPool().getMaxCompensatingThreadCount());
+                semaphore.release();
+                return null;
+            }}).get(Duration.THIRTY_SECONDS);
+        assertEquals(compensating.get(), 0);
+    }
+
+    @Test
+    public void testSubmittersWaitWhenQueueFull() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger completed = new AtomicInteger();
+        final int numTasks = MAX_THREADS + 10 + 5;
+        Thread submitter = new Thread() {
+            @Override public void run() {
+                for (int i=0; i<numTasks; i++) {
+                    em.submit(new Runnable() {
+                        @Override public void run() {
+                            try {
+                                latch.await();
+                            } catch (InterruptedException e) {
+                                throw new RuntimeException(e);
+                            }
+                            completed.incrementAndGet();
+                        }});
+                }
+            }
+        };
+        submitter.start();
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(em.getNumQueuedJobs(), 10);
+                assertEquals(submitter.getState(), Thread.State.WAITING);
+            }});
+
+        latch.countDown();
+        submitter.join(Duration.THIRTY_SECONDS.toMilliseconds());
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(completed.get(), numTasks);
+            }});
+    }
+}
@@ -27,6 +27,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -187,6 +189,95 @@ public class SingleThreadedSchedulerTest {
         assertEquals(future.get(), (Integer)123);
     }
     
+    @Test
+    public void testQueueSizeReportedPerTag() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        em.submit(MutableMap.of("tag", "category1"), newLatchAwaiter(latch));
+        for (int i = 0; i < 5; i++) {
+            em.submit(MutableMap.of("tag", "category1"), Callables.returning(i));
+        }
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(em.getTaskSchedulerQueueSizes(), MutableMap.of("category1", 5));
+            }});
+        
+        latch.countDown();
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(em.getTaskSchedulerQueueSizes(), MutableMap.of());
+            }});
+    }
+    
+    @Test
+    public void testQueuedTasksRunOnSameThread() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        em.submit(MutableMap.of("tag", "category1"), newLatchAwaiter(latch));
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        List<Future<?>> futures = new CopyOnWriteArrayList<Future<?>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(em.submit(MutableMap.of("tag", "category1"), new Runnable() {
+                @Override public void run() {
+                    threads.add(Thread.currentThread());
+                }}));
+        }
+        latch.countDown();
+        for (Future<?> f : futures) f.get();
+        
+        assertEquals(threads.size(), 10);
+        for (Thread t : threads) assertEquals(t, threads.get(0));
+    }
+    
+    @Test
+    public void testCancelledTaskInterruptDoesNotLeakIntoNextTask() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            SingleThreadedScheduler scheduler = new SingleThreadedScheduler();
+            scheduler.injectExecutor(executor);
+            final CountDownLatch started = new CountDownLatch(1);
+            Future<?> running = scheduler.submit(new Callable<Void>() {
+                @Override public Void call() throws Exception {
+                    started.countDown();
+                    Thread.sleep(Long.MAX_VALUE);
+                    return null;
+                }});
+            Future<Boolean> next = scheduler.submit(new Callable<Boolean>() {
+                @Override public Boolean call() {
+                    return Thread.currentThread().isInterrupted();
+                }});
+            started.await();
+            running.cancel(true);
+            assertFalse(next.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testQueuedTasksCancelledOnShutdown() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        SingleThreadedScheduler scheduler = new SingleThreadedScheduler();
+        scheduler.injectExecutor(executor);
+        final CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit(new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                started.countDown();
+                Thread.sleep(Long.MAX_VALUE);
+                return null;
+            }});
+        Future<Integer> queued = scheduler.submit(Callables.returning(123));
+        started.await();
+        executor.shutdownNow();
+        
+        try {
+            queued.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (CancellationException e) {
+            // success
+        }
+        assertEquals(scheduler.getQueueSize(), 0);
+    }
+    
     private Callable<Void> newLatchAwaiter(final CountDownLatch latch) {
         return new Callable<Void>() {
             @Override
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.executor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.http.executor.HttpResponse;
+import org.apache.brooklyn.util.http.executor.apacheclient.PooledHttpExecutor;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mockwebserver.Dispatcher;
+import com.google.mockwebserver.MockResponse;
+import com.google.mockwebserver.RecordedRequest;
+
+/** Runs the {@link HttpExecutorImplTest} tests against a {@link PooledHttpExecutor} */
+public class PooledHttpExecutorTest extends HttpExecutorImplTest {
+
+    @Override
+    protected Map<?, ?> getProps() {
+        return ImmutableMap.of(
+                HttpExecutorFactory.HTTP_EXECUTOR_CLASS_CONFIG, PooledHttpExecutor.class.getName(),
+                HttpExecutorFactory.HTTP_EXECUTOR_CLASS_CONFIG_PREFIX + PooledHttpExecutor.MAX_CONNECTIONS_PER_HOST, "2",
+                HttpExecutorFactory.HTTP_EXECUTOR_CLASS_CONFIG_PREFIX + PooledHttpExecutor.KEEP_ALIVE, "10s");
+    }
+
+    @Test
+    public void testCreatedByFactory() throws Exception {
+        PooledHttpExecutor executor = (PooledHttpExecutor) factory.getHttpExecutor(getProps());
+        try {
+            assertTrue(executor.toString().contains("maxConnectionsPerHost=2"), "executor="+executor);
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testReusesConnection() throws Exception {
+        PooledHttpExecutor executor = PooledHttpExecutor.builder().build();
+        try {
+            for (int i = 0; i < 3; i++) {
+                server.enqueue(new MockResponse().setResponseCode(200).setBody("body"+i));
+            }
+            for (int i = 0; i < 3; i++) {
+                HttpResponse response = executor.execute(new HttpRequest.Builder()
+                        .method("GET")
+                        .uri(baseUrl.toURI())
+                        .build());
+                assertEquals(new String(ByteStreams.toByteArray(response.getContent())), "body"+i);
+            }
+            // the sequence number is the index of the request on its connection
+            for (int i = 0; i < 3; i++) {
+                assertEquals(server.takeRequest().getSequenceNumber(), i);
+            }
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncReturnsBeforeResponse() throws Exception {
+        final CountDownLatch requested = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                requested.countDown();
+                release.await();
+                return new MockResponse().setResponseCode(200).setBody(request.getPath());
+            }});
+        PooledHttpExecutor executor = PooledHttpExecutor.builder().ioThreads(1).build();
+        try {
+            ListenableFuture<HttpResponse> future1 = executor.executeAsync(new HttpRequest.Builder()
+                    .method("GET")
+                    .uri(baseUrl.toURI().resolve("/1"))
+                    .build());
+            ListenableFuture<HttpResponse> future2 = executor.executeAsync(new HttpRequest.Builder()
+                    .method("GET")
+                    .uri(baseUrl.toURI().resolve("/2"))
+                    .build());
+
+            // both are in flight at once, with a single I/O thread and no thread of the caller's
+            assertTrue(requested.await(10, TimeUnit.SECONDS));
+            assertFalse(future1.isDone());
+            release.countDown();
+            assertEquals(new String(ByteStreams.toByteArray(future1.get(10, TimeUnit.SECONDS).getContent())), "/1");
+            assertEquals(new String(ByteStreams.toByteArray(future2.get(10, TimeUnit.SECONDS).getContent())), "/2");
+        } finally {
+            release.countDown();
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncFailsOnConnectionError() throws Exception {
+        PooledHttpExecutor executor = PooledHttpExecutor.builder().build();
+        try {
+            server.shutdown();
+            ListenableFuture<HttpResponse> future = executor.executeAsync(new HttpRequest.Builder()
+                    .method("GET")
+                    .uri(baseUrl.toURI())
+                    .build());
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Expected connection to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException, "cause="+e.getCause());
+            }
+        } finally {
+            server = null;
+            executor.close();
+        }
+    }
+}
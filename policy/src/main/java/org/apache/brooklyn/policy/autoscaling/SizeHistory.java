@@ -18,17 +18,13 @@
  */
 package org.apache.brooklyn.policy.autoscaling;
 
-import java.util.List;
-
-import org.apache.brooklyn.util.collections.MutableMap;
-import org.apache.brooklyn.util.collections.TimeWindowedList;
-import org.apache.brooklyn.util.collections.TimestampedValue;
+import org.apache.brooklyn.util.collections.TimeSeriesBuffer;
 import org.apache.brooklyn.util.time.Duration;
 
 import com.google.common.base.MoreObjects;
 
 /**
- * Using a {@link TimeWindowedList}, tracks the recent history of values to allow a summary of 
+ * Using a {@link TimeSeriesBuffer}, tracks the recent history of values to allow a summary of 
  * those values to be obtained. 
  *   
  * @author aled
@@ -66,18 +62,22 @@ public class SizeHistory {
         }
     }
     
-    private final TimeWindowedList<Number> recentDesiredResizes;
+    /** values within the window, and the most recent value before it */
+    private final TimeSeriesBuffer recentDesiredResizes = new TimeSeriesBuffer();
+    private volatile Duration windowSize;
     
     public SizeHistory(long windowSize) {
-        recentDesiredResizes = new TimeWindowedList<Number>(MutableMap.of("timePeriod", windowSize, "minExpiredVals", 1));
+        this.windowSize = Duration.millis(windowSize);
     }
 
-    public void add(final int val) {
-        recentDesiredResizes.add(val);
+    public synchronized void add(final int val) {
+        long now = System.currentTimeMillis();
+        recentDesiredResizes.add(now, val);
+        pruneValues(now);
     }
 
     public void setWindowSize(Duration newWindowSize) {
-        recentDesiredResizes.setTimePeriod(newWindowSize);
+        windowSize = newWindowSize;
     }
     
     /**
@@ -90,14 +90,39 @@ public class SizeHistory {
      *   <li>"stable for shrinking" means that since that low value, there have not been any lower values
      * </ul>
      */
-    public WindowSummary summarizeWindow(Duration windowSize) {
+    public synchronized WindowSummary summarizeWindow(Duration windowSize) {
         long now = System.currentTimeMillis();
-        List<TimestampedValue<Number>> windowVals = recentDesiredResizes.getValuesInWindow(now, windowSize);
+        long startTime = now - windowSize.toMilliseconds();
+        int size = recentDesiredResizes.size();
+        
+        // summarise the values in the window, preceded by the most recent value before the window (if any)
+        int mostRecentExpired = -1;
+        for (int i = 0; i < size; i++) {
+            if (recentDesiredResizes.getTimestamp(i) < startTime) mostRecentExpired = i;
+        }
         
-        Number latestObj = latestInWindow(windowVals);
-        long latest = (latestObj == null) ? -1: latestObj.longValue();
-        long max = maxInWindow(windowVals, windowSize).longValue();
-        long min = minInWindow(windowVals, windowSize).longValue();
+        long latest = -1;
+        long max = Integer.MAX_VALUE;
+        long min = Integer.MIN_VALUE;
+        boolean first = true;
+        for (int j = (mostRecentExpired >= 0) ? -1 : 0; j < size; j++) {
+            int i = (j < 0) ? mostRecentExpired : j;
+            long timestamp = recentDesiredResizes.getTimestamp(i);
+            if (j >= 0 && timestamp < startTime) continue;
+            
+            long val = (long) recentDesiredResizes.getValue(i);
+            if (first) {
+                // if the entire time-window is not covered by the values, then max and min are unbounded
+                boolean covered = (timestamp <= startTime);
+                max = covered ? val : Integer.MAX_VALUE;
+                min = covered ? val : Integer.MIN_VALUE;
+                first = false;
+            } else {
+                max = Math.max(max, val);
+                min = Math.min(min, val);
+            }
+            latest = val;
+        }
         
         // TODO Could do more sophisticated "stable" check; this is the easiest code - correct but not most efficient
         // in terms of the caller having to schedule additional stability checks.
@@ -107,60 +132,13 @@ public class SizeHistory {
     }
     
     /**
-     * If the entire time-window is not covered by the given values, then returns Integer.MAX_VALUE.
-     */
-    private <T extends Number> T maxInWindow(List<TimestampedValue<T>> vals, Duration timeWindow) {
-        // TODO bad casting from Integer default result to T
-        long now = System.currentTimeMillis();
-        long epoch = now - timeWindow.toMilliseconds();
-        T result = null;
-        double resultAsDouble = Integer.MAX_VALUE;
-        for (TimestampedValue<T> val : vals) {
-            T valAsNum = val.getValue();
-            double valAsDouble = (valAsNum != null) ? valAsNum.doubleValue() : 0;
-            if (result == null && val.getTimestamp() > epoch) {
-                result = withDefault(null, Integer.MAX_VALUE);
-                resultAsDouble = result.doubleValue();
-            }
-            if (result == null || (valAsNum != null && valAsDouble > resultAsDouble)) {
-                result = valAsNum;
-                resultAsDouble = valAsDouble;
-            }
-        }
-        return withDefault(result, Integer.MAX_VALUE);
-    }
-    
-    /**
-     * If the entire time-window is not covered by the given values, then returns Integer.MIN_VALUE
-     */
-    private <T extends Number> T minInWindow(List<TimestampedValue<T>> vals, Duration timeWindow) {
-        long now = System.currentTimeMillis();
-        long epoch = now - timeWindow.toMilliseconds();
-        T result = null;
-        double resultAsDouble = Integer.MIN_VALUE;
-        for (TimestampedValue<T> val : vals) {
-            T valAsNum = val.getValue();
-            double valAsDouble = (valAsNum != null) ? valAsNum.doubleValue() : 0;
-            if (result == null && val.getTimestamp() > epoch) {
-                result = withDefault(null, Integer.MIN_VALUE);
-                resultAsDouble = result.doubleValue();
-            }
-            if (result == null || (val.getValue() != null && valAsDouble < resultAsDouble)) {
-                result = valAsNum;
-                resultAsDouble = valAsDouble;
-            }
-        }
-        return withDefault(result, Integer.MIN_VALUE);
-    }
-
-    @SuppressWarnings("unchecked")
-    private <T> T withDefault(T result, Integer defaultValue) {
-        return result!=null ? result : (T) defaultValue;
-    }
-    /**
-     * @return null if empty, or the most recent value
+     * Discards values from before the window, other than the most recent of those.
      */
-    private <T extends Number> T latestInWindow(List<TimestampedValue<T>> vals) {
-        return vals.isEmpty() ? null : vals.get(vals.size()-1).getValue();
+    private void pruneValues(long now) {
+        Duration period = windowSize;
+        int expiredCount = period.equals(Duration.ZERO)
+                ? recentDesiredResizes.size()
+                : recentDesiredResizes.countBefore(now - period.toMilliseconds());
+        recentDesiredResizes.removeOldest(expiredCount - 1);
     }
 }
@@ -18,9 +18,6 @@
  */
 package org.apache.brooklyn.policy.enricher;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-
 import org.apache.brooklyn.api.catalog.Catalog;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
@@ -31,6 +28,7 @@ import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.enricher.stock.AbstractTypeTransformingEnricher;
 import org.apache.brooklyn.enricher.stock.YamlRollingTimeWindowMeanEnricher;
+import org.apache.brooklyn.util.collections.TimeSeriesBuffer;
 import org.apache.brooklyn.util.core.flags.SetFromFlag;
 import org.apache.brooklyn.util.javalang.JavaClassNames;
 import org.apache.brooklyn.util.time.Duration;
@@ -88,8 +86,8 @@ public class RollingTimeWindowMeanEnricher<T extends Number> extends AbstractTyp
         
     }
     
-    private final LinkedList<T> values = new LinkedList<T>();
-    private final LinkedList<Long> timestamps = new LinkedList<Long>();
+    /** values in the window, with nulls recorded as NaN */
+    private final TimeSeriesBuffer values = new TimeSeriesBuffer();
     volatile ConfidenceQualifiedNumber lastAverage = new ConfidenceQualifiedNumber(0d,0d);
     
     @SetFromFlag
@@ -122,8 +120,7 @@ public class RollingTimeWindowMeanEnricher<T extends Number> extends AbstractTyp
     }
     
     public void onEvent(SensorEvent<T> event, long eventTime) {
-        values.addLast(event.getValue());
-        timestamps.addLast(eventTime);
+        values.add(eventTime, TimeSeriesBuffer.fromNumber(event.getValue()));
         if (eventTime>0) {
             ConfidenceQualifiedNumber average = getAverage(eventTime, 0);
 
@@ -149,22 +146,21 @@ public class RollingTimeWindowMeanEnricher<T extends Number> extends AbstractTyp
     }
     
     public ConfidenceQualifiedNumber getAverage(long fromTime, long graceAllowed) {
-        if (timestamps.isEmpty()) {
+        if (values.isEmpty()) {
             return lastAverage = new ConfidenceQualifiedNumber(lastAverage.value, 0.0d);
         }
         
         long firstTimestamp = -1;
-        Iterator<Long> ti = timestamps.iterator();
-        while (ti.hasNext()) {
-            firstTimestamp = ti.next();
+        for (int i = 0; i < values.size(); i++) {
+            firstTimestamp = values.getTimestamp(i);
             if (firstTimestamp>0) break;
         }
         if (firstTimestamp<=0) {
             // no values with reasonable timestamps
-            return lastAverage = new ConfidenceQualifiedNumber(values.get(values.size()-1).doubleValue(), 0.0d);
+            return lastAverage = new ConfidenceQualifiedNumber(TimeSeriesBuffer.toNumber(values.getLatestValue()), 0.0d);
         }
 
-        long lastTimestamp = timestamps.get(timestamps.size()-1);
+        long lastTimestamp = values.getLatestTimestamp();
 
         long now = fromTime;
         if (lastTimestamp > fromTime - graceAllowed) {
@@ -179,23 +175,20 @@ public class RollingTimeWindowMeanEnricher<T extends Number> extends AbstractTyp
         Double confidence = ((double)(windowEnd - windowStart)) / timePeriod.toMilliseconds();
         if (confidence <= 0.0000001d) {
             // not enough timestamps in window 
-            double lastValue = values.get(values.size()-1).doubleValue();
-            return lastAverage = new ConfidenceQualifiedNumber(lastValue, 0.0d);
+            return lastAverage = new ConfidenceQualifiedNumber(TimeSeriesBuffer.toNumber(values.getLatestValue()), 0.0d);
         }
         
         long start = windowStart;
         long end;
         double weightedAverage = 0.0d;
         
-        Iterator<T> valuesIter = values.iterator();
-        Iterator<Long> timestampsIter = timestamps.iterator();
-        while (valuesIter.hasNext()) {
+        for (int i = 0; i < values.size(); i++) {
             // Ignores null and out-of-date values (and also values that are received out-of-order, but that shouldn't happen!)
-            Number val = valuesIter.next();
-            Long timestamp = timestampsIter.next();
-            if (val!=null && timestamp >= start) {
+            double val = values.getValue(i);
+            long timestamp = values.getTimestamp(i);
+            if (!Double.isNaN(val) && timestamp >= start) {
                 end = timestamp;
-                weightedAverage += ((end - start) / (confidence * timePeriod.toMilliseconds())) * val.doubleValue();
+                weightedAverage += ((end - start) / (confidence * timePeriod.toMilliseconds())) * val;
                 start = timestamp;
             }
         }
@@ -208,9 +201,7 @@ public class RollingTimeWindowMeanEnricher<T extends Number> extends AbstractTyp
      */
     private void pruneValues(long now) {
         // keep one value from before the period, so that we can tell the window's start time 
-        while(timestamps.size() > 1 && timestamps.get(1) < (now - timePeriod.toMilliseconds())) {
-            timestamps.removeFirst();
-            values.removeFirst();
-        }
+        long cutoff = now - timePeriod.toMilliseconds();
+        values.removeOldest(values.countBefore(cutoff) - 1);
     }
 }
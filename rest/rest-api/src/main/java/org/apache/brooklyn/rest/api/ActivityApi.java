@@ -31,6 +31,7 @@ import io.swagger.annotations.ApiResponses;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 @Path("/activities")
 @Api("Activities")
@@ -73,6 +74,33 @@ public interface ActivityApi {
             @ApiParam(value = "Max depth to traverse, or -1 for all (default)", required = false) 
             @QueryParam("maxDepth") @DefaultValue("-1") int maxDepth);
     
+    @GET
+    @Path("/{task}/children/recurse/page")
+    @ApiOperation(value = "Fetch a page of child tasks and their descendants, most recently submitted first, optionally filtered; "
+            + "the tasks are streamed as a list, and if there may be more a 'next' link header gives the URL of the next page",
+            response = org.apache.brooklyn.rest.domain.TaskSummary.class,
+            responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Invalid cursor, status or time"),
+            @ApiResponse(code = 404, message = "Could not find task")
+    })
+    public Response getAllChildrenPage(
+            @ApiParam(value = "Task ID", required = true) @PathParam("task") String taskId,
+            @ApiParam(value = "Max number of tasks in the page, or -1 for all (default 200)", required = false)
+            @QueryParam("limit") @DefaultValue("200") int limit,
+            @ApiParam(value = "Max depth to traverse, or -1 for all (default)", required = false)
+            @QueryParam("maxDepth") @DefaultValue("-1") int maxDepth,
+            @ApiParam(value = "Cursor from the previous page's 'next' link, to continue from there", required = false)
+            @QueryParam("cursor") String cursor,
+            @ApiParam(value = "Tag which tasks must have (e.g. EFFECTOR)", required = false)
+            @QueryParam("tag") String tag,
+            @ApiParam(value = "Status which tasks must have: one of submitted, running, done, succeeded, failed or cancelled", required = false)
+            @QueryParam("status") String status,
+            @ApiParam(value = "Time (ISO-8601 or millis since epoch) at or after which tasks must have been submitted", required = false)
+            @QueryParam("submittedAfter") String submittedAfter,
+            @ApiParam(value = "Time (ISO-8601 or millis since epoch) before which tasks must have been submitted", required = false)
+            @QueryParam("submittedBefore") String submittedBefore);
+
     /** @deprecated since 0.12.0 use {@link #getAllChildrenAsMap(String, int, int)} with depth -1 */
     @Deprecated
     public Map<String,TaskSummary> getAllChildrenAsMap(String taskId);
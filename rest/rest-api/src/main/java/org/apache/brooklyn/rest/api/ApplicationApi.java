@@ -26,11 +26,14 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -39,6 +42,8 @@ import org.apache.brooklyn.rest.domain.EntityDetail;
 import org.apache.brooklyn.rest.domain.EntitySummary;
 
 import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiImplicitParam;
+import io.swagger.annotations.ApiImplicitParams;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
@@ -53,8 +58,19 @@ public interface ApplicationApi {
     @GET
     @Path("/fetch")
     @ApiOperation(
-            value = "Fetch display details for all applications and optionally selected additional entities"
+            value = "Fetch display details for all applications and optionally selected additional entities",
+            notes = "Returns an ETag, and 304 (Not Modified) if none of the entities have changed since a request with that tag "
+                    + "(and the same parameters) in If-None-Match"
     )
+    @ApiImplicitParams(value = {
+            @ApiImplicitParam(name = "since", paramType = "query", dataType = "string", required = false,
+                    value = "Return only the applications and entities with changes (to themselves or their descendants) at or after this time, "
+                            + "e.g. the Last-Modified of an earlier response (UTC milliseconds, or a date); "
+                            + "applications which have since been removed are not reported")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(code = 304, message = "Entities not modified")
+    })
     public List<EntityDetail> fetch(
             @ApiParam(value="Selected additional entity ID's to include, comma-separated", required=false)
             @DefaultValue("")
@@ -189,4 +205,38 @@ public interface ApplicationApi {
             @DefaultValue(".*")
             @QueryParam("typeRegex") String typeRegex);
 
+    @GET
+    @Path("/{application}/descendants/sensors/stream")
+    @Produces("text/event-stream")
+    @ApiOperation(value = "Stream changes to sensor values of all (or filtered) descendants, including those added later, by long-polling with server-sent event (text/event-stream) framing",
+            notes = "Each 'sensor' event's data is a map of entityId, sensor, value and timestamp, "
+                    + "and a 'discarded' event gives the number of changes dropped because the client was not keeping up. "
+                    + "Changes are coalesced, so a sensor which changes several times within the interval is sent once, with its latest value. "
+                    + "This is not a persistent connection: each response is one batch of events, sent when there are changes (or after the timeout, with none); "
+                    + "the client (e.g. an EventSource) reconnects after the interval with the Last-Event-ID it received, to resume the stream. "
+                    + "A 'reset' event means the stream could not be resumed, so changes may have been missed and current values should be re-read")
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "Application not found")
+    })
+    public void streamDescendantsSensorChanges(
+            @ApiParam(value = "Application ID or name", required = true)
+            @PathParam("application") String application,
+            @ApiParam(value = "Sensor names to stream (repeat for several); all sensors if omitted", required = false)
+            @QueryParam("sensor") List<String> sensors,
+            @ApiParam(value="Regular expression for an entity type which must be matched", required=false)
+            @DefaultValue(".*")
+            @QueryParam("typeRegex") String typeRegex,
+            @ApiParam(value = "Minimum interval between batches of changes sent (default 1s)", required = false)
+            @DefaultValue("1s")
+            @QueryParam("interval") String interval,
+            @ApiParam(value = "How long to wait for changes before answering with none (default 30s)", required = false)
+            @DefaultValue("30s")
+            @QueryParam("timeout") String timeout,
+            @ApiParam(value = "Max number of changes held for the client between batches, before the oldest are discarded (default 1000)", required = false)
+            @DefaultValue("1000")
+            @QueryParam("maxBuffered") int maxBuffered,
+            @ApiParam(value = "The ID of the last event received, to resume the stream", required = false)
+            @HeaderParam("Last-Event-ID") String lastEventId,
+            @Suspended AsyncResponse response);
+
 }
@@ -55,8 +55,10 @@ public interface EntityApi {
     @GET
     @Path("/{entity}")
     @ApiOperation(value = "Fetch details about a specific application entity",
+            notes = "Returns an ETag, and 304 (Not Modified) if the entity is unchanged since a request with that tag in If-None-Match",
             response = org.apache.brooklyn.rest.domain.EntitySummary.class)
     @ApiResponses(value = {
+            @ApiResponse(code = 304, message = "Entity not modified"),
             @ApiResponse(code = 404, message = "Application or entity missing")
     })
     public EntitySummary get(
@@ -117,6 +119,32 @@ public interface EntityApi {
             @ApiParam(value = "Whether to include subtasks recursively across different entities (default false)", required = false)
             @QueryParam("recurse") @DefaultValue("false") Boolean recurse);
 
+    @GET
+    @Path("/{entity}/activities/page")
+    @ApiOperation(value = "Fetch a page of tasks for this entity, most recently submitted first, optionally filtered; "
+            + "the tasks are streamed as a list, and if there may be more a 'next' link header gives the URL of the next page",
+            response = org.apache.brooklyn.rest.domain.TaskSummary.class,
+            responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Invalid cursor, status or time"),
+            @ApiResponse(code = 404, message = "Could not find application or entity")
+    })
+    public Response listTasksPage(
+            @ApiParam(value = "Application ID or name", required = true) @PathParam("application") String applicationId,
+            @ApiParam(value = "Entity ID or name", required = true) @PathParam("entity") String entityId,
+            @ApiParam(value = "Max number of tasks in the page, or -1 for all (default 200)", required = false)
+            @QueryParam("limit") @DefaultValue("200") int limit,
+            @ApiParam(value = "Cursor from the previous page's 'next' link, to continue from there", required = false)
+            @QueryParam("cursor") String cursor,
+            @ApiParam(value = "Tag which tasks must have (e.g. EFFECTOR)", required = false)
+            @QueryParam("tag") String tag,
+            @ApiParam(value = "Status which tasks must have: one of submitted, running, done, succeeded, failed or cancelled", required = false)
+            @QueryParam("status") String status,
+            @ApiParam(value = "Time (ISO-8601 or millis since epoch) at or after which tasks must have been submitted", required = false)
+            @QueryParam("submittedAfter") String submittedAfter,
+            @ApiParam(value = "Time (ISO-8601 or millis since epoch) before which tasks must have been submitted", required = false)
+            @QueryParam("submittedBefore") String submittedBefore);
+
     /** @deprecated since 0.12.0 use {@link #listTasks(String, String, Integer, Boolean)} */
     @Deprecated
     public List<TaskSummary> listTasks(
@@ -35,6 +35,8 @@ import javax.ws.rs.core.MediaType;
 
 import org.apache.brooklyn.rest.domain.SensorSummary;
 
+import io.swagger.annotations.ApiImplicitParam;
+import io.swagger.annotations.ApiImplicitParams;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.ApiOperation;
@@ -61,7 +63,17 @@ public interface SensorApi {
 
     @GET
     @Path("/current-state")
-    @ApiOperation(value = "Fetch sensor values in batch", notes="Returns a map of sensor name to value")
+    @ApiOperation(value = "Fetch sensor values in batch",
+            notes="Returns a map of sensor name to value, with an ETag, and 304 (Not Modified) if the entity is unchanged "
+                    + "since a request with that tag (and the same parameters) in If-None-Match")
+    @ApiImplicitParams(value = {
+            @ApiImplicitParam(name = "since", paramType = "query", dataType = "string", required = false,
+                    value = "Return only the sensors changed at or after this time, e.g. the Last-Modified of an earlier response "
+                            + "(UTC milliseconds, or a date)")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(code = 304, message = "Entity not modified")
+    })
     public Map<String, Object> batchSensorRead(
             @ApiParam(value = "Application ID or name", required = true)
             @PathParam("application") final String application,
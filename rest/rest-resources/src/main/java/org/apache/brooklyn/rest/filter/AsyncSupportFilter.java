@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.filter;
+
+import java.lang.reflect.Method;
+
+import javax.annotation.Priority;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.brooklyn.rest.domain.ApiError;
+import org.apache.cxf.continuations.ContinuationProvider;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.PhaseInterceptorChain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rejects requests for methods taking a {@link Suspended} {@link AsyncResponse}
+ * when the container cannot suspend them, rather than failing obscurely as CXF creates the response.
+ * <p>
+ * Async support must be enabled on the servlet registration: {@code web.xml} and the launchers do so,
+ * but the servlet registered by the Karaf CXF feature is not async-supported.
+ */
+@Provider
+@Priority(100)
+public class AsyncSupportFilter implements ContainerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncSupportFilter.class);
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Method method = resourceInfo.getResourceMethod();
+        if (method != null && isSuspended(method) && !isAsyncSupported()) {
+            log.warn("Rejecting request for "+requestContext.getUriInfo().getPath()+" as the servlet does not support async requests");
+            requestContext.abortWith(ApiError.builder()
+                    .message("This request needs async request support, which is not enabled for the REST servlet of this server")
+                    .errorCode(Response.Status.NOT_IMPLEMENTED).build().asJsonResponse());
+        }
+    }
+
+    /** Whether the current request can be suspended; CXF sets a continuation provider only if so. */
+    protected boolean isAsyncSupported() {
+        Message message = PhaseInterceptorChain.getCurrentMessage();
+        return message == null || message.get(ContinuationProvider.class.getName()) != null;
+    }
+
+    private static boolean isSuspended(Method method) {
+        // the parameter annotations are on the API interface, not necessarily on the resource method
+        for (Class<?> type : method.getParameterTypes()) {
+            if (AsyncResponse.class.isAssignableFrom(type)) return true;
+        }
+        return false;
+    }
+
+}
@@ -42,6 +42,9 @@ public class EntitlementContextFilter implements ContainerRequestFilter, Contain
 
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
+        // a suspended request's response filters run on the thread which resumes it, so may not have cleared this one
+        Entitlements.clearEntitlementContext();
+
         SecurityContext securityContext = requestContext.getSecurityContext();
         Principal user = securityContext.getUserPrincipal();
 
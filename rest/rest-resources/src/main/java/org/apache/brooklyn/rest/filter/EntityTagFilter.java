@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.filter;
+
+import java.util.Date;
+
+import javax.annotation.Nullable;
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status.Family;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Sets the {@code ETag} and {@code Last-Modified} headers of successful responses, for resources which
+ * {@link #evaluatePreconditions(Request, HttpServletRequest, EntityTag, Date) evaluate preconditions};
+ * their API methods can then return the payload itself rather than a {@link javax.ws.rs.core.Response}.
+ */
+@Provider
+@Priority(300)
+public class EntityTagFilter implements ContainerResponseFilter {
+    public static final String ATT_ENTITY_TAG = EntityTagFilter.class.getName() + ".entityTag";
+    public static final String ATT_LAST_MODIFIED = EntityTagFilter.class.getName() + ".lastModified";
+
+    /**
+     * Throws a {@link WebApplicationException} with a 304 (Not Modified) response if the request's
+     * {@code If-None-Match} matches the tag, otherwise records the tag and time for this filter to set on the response.
+     */
+    public static void evaluatePreconditions(Request request, HttpServletRequest servletRequest, EntityTag tag, @Nullable Date lastModified) {
+        ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            throw new WebApplicationException(notModified.tag(tag).lastModified(lastModified).build());
+        }
+        servletRequest.setAttribute(ATT_ENTITY_TAG, tag);
+        servletRequest.setAttribute(ATT_LAST_MODIFIED, lastModified);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (response.getStatusInfo().getFamily() != Family.SUCCESSFUL) return;
+        // request properties are backed by the servlet request's attributes
+        Object tag = request.getProperty(ATT_ENTITY_TAG);
+        if (tag != null) {
+            response.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+        }
+        Object lastModified = request.getProperty(ATT_LAST_MODIFIED);
+        if (lastModified != null) {
+            response.getHeaders().putSingle(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+    }
+
+}
@@ -20,12 +20,15 @@ package org.apache.brooklyn.rest.resources;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.ws.rs.core.Response;
+
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
@@ -34,11 +37,13 @@ import org.apache.brooklyn.core.mgmt.BrooklynTaskTags.WrappedStream;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.rest.api.ActivityApi;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.util.TaskPage;
 import org.apache.brooklyn.rest.transform.TaskTransformer;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableSet;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -64,6 +69,50 @@ public class ActivityResource extends AbstractBrooklynRestResource implements Ac
         return getAllDescendantTasks(parentTask, limit, maxDepth);
     }
 
+    @Override
+    public Response getAllChildrenPage(String taskId, int limit, int maxDepth, String cursor,
+            String tag, String status, String submittedAfter, String submittedBefore) {
+        final Task<?> parentTask = findTask(taskId);
+        TaskPage page = TaskPage.select(new DescendantTasksIterator(parentTask, maxDepth),
+                TaskPage.filter(tag, status, submittedAfter, submittedBefore), cursor, limit);
+        return page.toResponse(ui.getRequestUriBuilder(), ui.getBaseUriBuilder(), mapper());
+    }
+
+    /**
+     * Iterates lazily through the descendants of a task, breadth-first, to the given depth (or all if negative).
+     * Task trees are acyclic, so only the next layer is kept (as a set, in case a task lists a child twice),
+     * not every task already returned.
+     */
+    private static class DescendantTasksIterator extends AbstractIterator<Task<?>> {
+        private Iterator<Task<?>> thisLayer;
+        private Set<Task<?>> nextLayer = MutableSet.of();
+        private int depthRemaining;
+
+        DescendantTasksIterator(Task<?> parentTask, int maxDepth) {
+            thisLayer = MutableSet.copyOf(childrenOf(parentTask)).iterator();
+            depthRemaining = maxDepth;
+        }
+
+        @Override
+        protected Task<?> computeNext() {
+            while (depthRemaining != 0) {
+                if (thisLayer.hasNext()) {
+                    Task<?> task = thisLayer.next();
+                    Iterables.addAll(nextLayer, childrenOf(task));
+                    return task;
+                }
+                if (nextLayer.isEmpty() || --depthRemaining == 0) break;
+                thisLayer = nextLayer.iterator();
+                nextLayer = MutableSet.of();
+            }
+            return endOfData();
+        }
+
+        private static Iterable<Task<?>> childrenOf(Task<?> task) {
+            return (task instanceof HasTaskChildren) ? ((HasTaskChildren) task).getChildren() : Collections.<Task<?>>emptyList();
+        }
+    }
+
     protected Task<?> findTask(final String taskId) {
         final Task<?> task = mgmt().getExecutionManager().getTask(taskId);
         if (task == null) {
@@ -31,8 +31,13 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.UriInfo;
@@ -43,12 +48,14 @@ import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.entity.Group;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.core.config.ConstraintViolationException;
 import org.apache.brooklyn.core.entity.Attributes;
+import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityPredicates;
 import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
 import org.apache.brooklyn.core.entity.trait.Startable;
@@ -58,6 +65,8 @@ import org.apache.brooklyn.core.mgmt.entitlement.EntitlementPredicates;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.StringAndArgument;
+import org.apache.brooklyn.core.sensor.SensorChangeBuffer;
+import org.apache.brooklyn.core.sensor.SensorChangeBuffer.SensorChange;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.typereg.RegisteredTypeLoadingContexts;
 import org.apache.brooklyn.core.typereg.RegisteredTypes;
@@ -68,11 +77,15 @@ import org.apache.brooklyn.rest.domain.ApplicationSummary;
 import org.apache.brooklyn.rest.domain.EntityDetail;
 import org.apache.brooklyn.rest.domain.EntitySummary;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.filter.EntityTagFilter;
 import org.apache.brooklyn.rest.filter.HaHotStateRequired;
 import org.apache.brooklyn.rest.transform.ApplicationTransformer;
 import org.apache.brooklyn.rest.transform.EntityTransformer;
 import org.apache.brooklyn.rest.transform.TaskTransformer;
 import org.apache.brooklyn.rest.util.BrooklynRestResourceUtils;
+import org.apache.brooklyn.rest.util.EntityChangeVersions;
+import org.apache.brooklyn.rest.util.SensorChangeStreams;
+import org.apache.brooklyn.rest.util.SensorChangeStreams.SensorChangeStream;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.ResourceUtils;
@@ -87,11 +100,16 @@ import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @HaHotStateRequired
 public class ApplicationResource extends AbstractBrooklynRestResource implements ApplicationApi {
@@ -101,6 +119,12 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
     @Context
     private UriInfo uriInfo;
 
+    @Context
+    private Request request;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
     private EntityDetail fromEntity(Entity entity) {
         Boolean serviceUp = entity.getAttribute(Attributes.SERVICE_UP);
 
@@ -175,12 +199,10 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
 
     @Override
     public List<EntityDetail> fetch(String entityIds) {
+        // not a parameter of the API method, so as not to change its signature for existing clients
+        Long sinceTime = EntityChangeVersions.parseSince(ui.getQueryParameters().getFirst("since"));
 
-        List<EntityDetail> entitySummaries = Lists.newArrayList();
-        for (Entity application : mgmt().getApplications()) {
-            entitySummaries.add(fromEntity(application));
-        }
-
+        List<Entity> entities = Lists.<Entity>newArrayList(mgmt().getApplications());
         if (entityIds != null) {
             entityIds = entityIds.trim();
             if ((entityIds.startsWith("{") && entityIds.endsWith("}")) ||
@@ -192,15 +214,44 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
                 Entity entity = mgmt().getEntityManager().getEntity(entityId.trim());
                 while (entity != null && entity.getParent() != null) {
                     if (Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY, entity)) {
-                        entitySummaries.add(fromEntity(entity));
+                        entities.add(entity);
                     }
                     entity = entity.getParent();
                 }
             }
         }
+
+        List<Entity> returned = Lists.newArrayList();
+        for (Entity entity : entities) {
+            if (sinceTime == null || isChangedSince(entity, sinceTime)) {
+                returned.add(entity);
+            }
+        }
+
+        // the details of each entity returned include its descendants, so the tag is over those, and the parameters;
+        // read their versions before the details, so a concurrent change is reported (again) next time rather than missed
+        Set<Entity> described = Sets.newLinkedHashSet();
+        for (Entity entity : returned) {
+            Iterables.addAll(described, Entities.descendantsAndSelf(entity));
+        }
+        String variant = "items=" + (entityIds != null ? entityIds : "") + (sinceTime != null ? ";since=" + sinceTime : "");
+        EntityTagFilter.evaluatePreconditions(request, servletRequest,
+                EntityChangeVersions.entityTag(described, variant), EntityChangeVersions.lastModified(described));
+
+        List<EntityDetail> entitySummaries = Lists.newArrayList();
+        for (Entity entity : returned) {
+            entitySummaries.add(fromEntity(entity));
+        }
         return entitySummaries;
     }
 
+    private static boolean isChangedSince(Entity entity, long sinceTime) {
+        for (Entity e : Entities.descendantsAndSelf(entity)) {
+            if (EntityChangeVersions.isChangedSince(e, sinceTime)) return true;
+        }
+        return false;
+    }
+
     @Override
     public List<ApplicationSummary> list(String typeRegex) {
         if (Strings.isBlank(typeRegex)) {
@@ -466,10 +517,51 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
 
     @Override
     public Map<String, Object> getDescendantsSensor(String application, String sensor, String typeRegex) {
-        Iterable<Entity> descs = brooklyn().descendantsOfType(application, application, typeRegex);
+        Iterable<Entity> descs = brooklyn().descendantsOfType(application, application, typeRegex, sensor);
         return getSensorMap(sensor, descs);
     }
 
+    @Override
+    public void streamDescendantsSensorChanges(String application, List<String> sensors, String typeRegex,
+            String interval, String timeout, int maxBuffered, String lastEventId, AsyncResponse response) {
+        if (maxBuffered <= 0) {
+            throw WebResourceUtils.badRequest("maxBuffered must be positive, but was %s", maxBuffered);
+        }
+        Entity app = brooklyn().getApplication(application);
+        Duration batchInterval = Duration.of(interval);
+        Duration waitTimeout = Duration.of(timeout);
+        final Set<String> sensorNames = (sensors == null || sensors.isEmpty()) ? null : ImmutableSet.copyOf(sensors);
+        final Pattern typePattern = Pattern.compile(typeRegex);
+        EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        String parameters = app.getId()+";sensors="+sensorNames+";typeRegex="+typeRegex+";interval="+batchInterval+";maxBuffered="+maxBuffered;
+
+        SensorChangeStreams streams = SensorChangeStreams.get(mgmt());
+        SensorChangeStream stream = streams.find(lastEventId, parameters, entitlementContext);
+        if (stream == null) {
+            // entitlements are checked as changes are sent, under the requester's context, as the buffer finds entities on other threads
+            SensorChangeBuffer buffer = new SensorChangeBuffer(mgmt(), (sensorNames == null) ? null : new Predicate<Sensor<?>>() {
+                @Override
+                public boolean apply(Sensor<?> input) {
+                    return sensorNames.contains(input.getName());
+                }
+            }, maxBuffered).subscribeWithDescendants(app, new Predicate<Entity>() {
+                @Override
+                public boolean apply(Entity input) {
+                    return typePattern.matcher(input.getEntityType().getName()).matches();
+                }
+            });
+            final ObjectMapper mapper = mapper();
+            stream = streams.open(buffer, lastEventId != null, parameters, entitlementContext, batchInterval, mapper, new Function<SensorChange, Object>() {
+                @Override
+                public Object apply(SensorChange change) {
+                    return RestValueResolver.resolving(change.getValue()).mapper(mapper).preferJson(true).asJerseyOutermostReturnValue(false)
+                            .context(change.getEntity()).timeout(Duration.ZERO).renderAs(change.getSensor()).resolve();
+                }
+            });
+        }
+        stream.send(response, lastEventId, waitTimeout);
+    }
+
     public static Map<String, Object> getSensorMap(String sensor, Iterable<Entity> descs) {
         if (Iterables.isEmpty(descs))
             return Collections.emptyMap();
@@ -24,13 +24,18 @@ import static javax.ws.rs.core.Response.Status.ACCEPTED;
 import static org.apache.brooklyn.rest.util.WebResourceUtils.serviceAbsoluteUriBuilder;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
@@ -38,6 +43,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.core.mgmt.BrooklynTags;
@@ -52,15 +58,19 @@ import org.apache.brooklyn.rest.api.EntityApi;
 import org.apache.brooklyn.rest.domain.EntitySummary;
 import org.apache.brooklyn.rest.domain.LocationSummary;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.filter.EntityTagFilter;
 import org.apache.brooklyn.rest.filter.HaHotStateRequired;
 import org.apache.brooklyn.rest.transform.EntityTransformer;
 import org.apache.brooklyn.rest.transform.LocationTransformer;
 import org.apache.brooklyn.rest.transform.LocationTransformer.LocationDetailLevel;
 import org.apache.brooklyn.rest.transform.TaskTransformer;
+import org.apache.brooklyn.rest.util.EntityChangeVersions;
+import org.apache.brooklyn.rest.util.TaskPage;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.ResourceUtils;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,6 +93,12 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
     @Context
     private UriInfo uriInfo;
     
+    @Context
+    private Request request;
+
+    @Context
+    private HttpServletRequest servletRequest;
+    
     @Override
     public List<EntitySummary> list(final String application) {
         return FluentIterable
@@ -96,6 +112,8 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
     public EntitySummary get(String application, String entityName) {
         Entity entity = brooklyn().getEntity(application, entityName);
         if (Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY, entity)) {
+            EntityTagFilter.evaluatePreconditions(request, servletRequest,
+                    EntityChangeVersions.entityTag(entity, null), EntityChangeVersions.lastModified(entity));
             return EntityTransformer.entitySummary(entity, ui.getBaseUriBuilder());
         }
         throw WebResourceUtils.forbidden("User '%s' is not authorized to get entity '%s'",
@@ -160,6 +178,21 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
             TaskTransformer.fromTask(ui.getBaseUriBuilder())));
     }
     
+    @Override
+    public Response listTasksPage(String applicationId, String entityId, int limit, String cursor,
+            String tag, String status, String submittedAfter, String submittedBefore) {
+        Entity entity = brooklyn().getEntity(applicationId, entityId);
+        ExecutionManager em = mgmt().getExecutionManager();
+        Object contextTag = BrooklynTaskTags.tagForContextEntity(entity);
+        // scan the execution manager's tag index directly where we can, rather than a copy of it
+        Set<Task<?>> tasks = (em instanceof BasicExecutionManager)
+                ? ((BasicExecutionManager) em).tasksWithTagLiveOrNull(contextTag)
+                : em.getTasksWithTag(contextTag);
+        Iterator<Task<?>> candidates = (tasks == null) ? Collections.<Task<?>>emptyIterator() : tasks.iterator();
+        TaskPage page = TaskPage.select(candidates, TaskPage.filter(tag, status, submittedAfter, submittedBefore), cursor, limit);
+        return page.toResponse(ui.getRequestUriBuilder(), ui.getBaseUriBuilder(), mapper());
+    }
+
     /** API does not guarantee order, but this is a the one we use (when there are lots of tasks):
      * prefer top-level tasks and to recent tasks, 
      * balanced such that the following are equal:
@@ -301,7 +334,7 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
 
     @Override
     public Map<String, Object> getDescendantsSensor(String application, String entity, String sensor, String typeRegex) {
-        Iterable<Entity> descs = brooklyn().descendantsOfType(application, entity, typeRegex);
+        Iterable<Entity> descs = brooklyn().descendantsOfType(application, entity, typeRegex, sensor);
         return ApplicationResource.getSensorMap(sensor, descs);
     }
 
@@ -23,6 +23,10 @@ import static com.google.common.collect.Iterables.filter;
 import java.util.List;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
+
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
@@ -32,8 +36,10 @@ import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
 import org.apache.brooklyn.core.sensor.BasicAttributeSensor;
 import org.apache.brooklyn.rest.api.SensorApi;
 import org.apache.brooklyn.rest.domain.SensorSummary;
+import org.apache.brooklyn.rest.filter.EntityTagFilter;
 import org.apache.brooklyn.rest.filter.HaHotStateRequired;
 import org.apache.brooklyn.rest.transform.SensorTransformer;
+import org.apache.brooklyn.rest.util.EntityChangeVersions;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.Duration;
@@ -48,6 +54,12 @@ public class SensorResource extends AbstractBrooklynRestResource implements Sens
 
     private static final Logger log = LoggerFactory.getLogger(SensorResource.class);
 
+    @Context
+    private Request request;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
     @Override
     public List<SensorSummary> list(final String application, final String entityToken) {
         final Entity entity = brooklyn().getEntity(application, entityToken);
@@ -78,12 +90,27 @@ public class SensorResource extends AbstractBrooklynRestResource implements Sens
             throw WebResourceUtils.forbidden("User '%s' is not authorized to see entity '%s'",
                     Entitlements.getEntitlementContext().user(), entity);
         }
+        // not a parameter of the API method, so as not to change its signature for existing clients
+        Long sinceTime = EntityChangeVersions.parseSince(ui.getQueryParameters().getFirst("since"));
+
+        // read the version before the values, so a concurrent change is reported (again) next time rather than missed;
+        // the tag includes the parameters, as they select what is returned
+        String variant = (Boolean.TRUE.equals(raw) ? "raw" : "") + (sinceTime != null ? "since"+sinceTime : "");
+        EntityTagFilter.evaluatePreconditions(request, servletRequest,
+                EntityChangeVersions.entityTag(entity, variant), EntityChangeVersions.lastModified(entity));
+        return batchSensorRead(entity, raw, sinceTime);
+    }
 
+    /** The values of the sensors the user is entitled to see, or only those changed at or after the given time if not null. */
+    protected Map<String, Object> batchSensorRead(Entity entity, Boolean raw, Long sinceTime) {
         Map<String, Object> sensorMap = Maps.newHashMap();
         @SuppressWarnings("rawtypes")
         Iterable<AttributeSensor> sensors = filter(entity.getEntityType().getSensors(), AttributeSensor.class);
 
         for (AttributeSensor<?> sensor : sensors) {
+            if (sinceTime != null && !EntityChangeVersions.isAttributeChangedSince(entity, sensor.getName(), sinceTime)) {
+                continue;
+            }
             // Exclude sensors that user is not allowed to see
             if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_SENSOR, new EntityAndItem<String>(entity, sensor.getName()))) {
                 log.trace("User {} not authorized to see sensor {} of entity {}; excluding from current-state results", 
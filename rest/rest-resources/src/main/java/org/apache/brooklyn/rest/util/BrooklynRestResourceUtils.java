@@ -28,7 +28,9 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
 import javax.ws.rs.core.MediaType;
 
 import org.apache.brooklyn.api.catalog.BrooklynCatalog;
@@ -52,6 +54,8 @@ import org.apache.brooklyn.core.entity.trait.Startable;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.StringAndArgument;
+import org.apache.brooklyn.core.mgmt.internal.ApplicationEntityIndex;
+import org.apache.brooklyn.core.mgmt.internal.LocalEntityManager;
 import org.apache.brooklyn.core.objs.BrooklynTypes;
 import org.apache.brooklyn.enricher.stock.Enrichers;
 import org.apache.brooklyn.entity.stock.BasicApplication;
@@ -510,15 +514,55 @@ public class BrooklynRestResourceUtils {
         }
     }
 
-    public Iterable<Entity> descendantsOfType(String application, String entity, final String typeRegex) {
-        Iterable<Entity> result = descendantsOfAnyType(application, entity);
-        return Iterables.filter(result, new Predicate<Entity>() {
+    /**
+     * The entity and its descendants whose type name matches the regex, in tree order. Where the entity is
+     * in the {@link ApplicationEntityIndex}, they are read from there, matching the regex once per type name,
+     * rather than walking the tree.
+     */
+    public Iterable<Entity> descendantsOfType(String application, String entity, String typeRegex) {
+        return descendantsOfType(application, entity, typeRegex, null);
+    }
+
+    /**
+     * As {@link #descendantsOfType(String, String, String)}, but where the entity is indexed, only those
+     * which have set the given attribute (the caller must still check the value, as it may since have been
+     * removed or set to null); unless that is null.
+     */
+    public Iterable<Entity> descendantsOfType(String application, String entity, String typeRegex, @Nullable String attributeName) {
+        Entity e = getEntity(application, entity);
+        Predicate<String> typeNameMatches = typeNameMatching(typeRegex);
+        List<String> ids = null;
+        if (mgmt.getEntityManager() instanceof LocalEntityManager) {
+            ApplicationEntityIndex index = ((LocalEntityManager) mgmt.getEntityManager()).getApplicationEntityIndex();
+            ids = index.getSubtreeEntityIds(e.getId(), typeNameMatches, attributeName);
+        }
+        List<Entity> result = Lists.newArrayList();
+        if (ids != null) {
+            for (String id : ids) {
+                Entity descendant = mgmt.getEntityManager().getEntity(id);
+                if (descendant != null) result.add(descendant);
+            }
+        } else {
+            // not indexed, e.g. not managed here
+            List<Entity> descendants = Lists.newArrayList();
+            gatherAllDescendants(e, descendants);
+            for (Entity descendant : descendants) {
+                if (descendant != null && typeNameMatches.apply(descendant.getEntityType().getName())) {
+                    result.add(descendant);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Predicate<String> typeNameMatching(String typeRegex) {
+        final Pattern pattern = Pattern.compile(typeRegex);
+        return new Predicate<String>() {
             @Override
-            public boolean apply(Entity entity) {
-                if (entity==null) return false;
-                return (entity.getEntityType().getName().matches(typeRegex));
+            public boolean apply(String typeName) {
+                return pattern.matcher(typeName).matches();
             }
-        });
+        };
     }
 
     public void reloadBrooklynProperties() {
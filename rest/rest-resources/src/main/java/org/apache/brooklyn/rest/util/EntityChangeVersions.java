@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.core.EntityTag;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagementSupport;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Time;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Versions of entities for conditional REST requests, from the change counts kept by
+ * {@link EntityManagementSupport#getChangeCount()}: the {@link EntityTag} of an entity changes whenever
+ * its attributes, config, children, locations, tags or adjuncts do, and a {@code since} time
+ * (typically the {@code Last-Modified} of an earlier response) selects what has changed after it.
+ * <p>
+ * Setting an attribute only bumps counters for this; times are assigned to changes when a request asks,
+ * so a change may appear later than it happened, but never earlier.
+ * <p>
+ * Comparisons with a {@code since} time are inclusive, as HTTP dates are only to the second:
+ * a change may be reported again, but is never missed.
+ */
+@Beta
+public class EntityChangeVersions {
+
+    /** A tag for the current version of the entity; the variant (if any) distinguishes different representations of it. */
+    public static EntityTag entityTag(Entity entity, @Nullable String variant) {
+        EntityManagementSupport support = support(entity);
+        String version = Long.toString(support.getChangeTrackingStartTime(), Character.MAX_RADIX)+"-"+support.getChangeCount();
+        return new EntityTag(Strings.isBlank(variant) ? version : version+"-"+variant);
+    }
+
+    /** A tag for the current versions of all the given entities (and not their descendants), and the variant (if any). */
+    public static EntityTag entityTag(Iterable<? extends Entity> entities, @Nullable String variant) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(Strings.isBlank(variant) ? "" : variant, Charsets.UTF_8);
+        for (Entity entity : entities) {
+            EntityManagementSupport support = support(entity);
+            hasher.putString(entity.getId(), Charsets.UTF_8)
+                    .putLong(support.getChangeTrackingStartTime())
+                    .putLong(support.getChangeCount());
+        }
+        return new EntityTag(hasher.hash().toString());
+    }
+
+    public static Date lastModified(Entity entity) {
+        return new Date(support(entity).getLastChangeTime());
+    }
+
+    /** The most recent {@link #lastModified(Entity)} of the given entities, or null if there are none. */
+    @Nullable
+    public static Date lastModified(Iterable<? extends Entity> entities) {
+        long result = -1;
+        for (Entity entity : entities) {
+            result = Math.max(result, support(entity).getLastChangeTime());
+        }
+        return (result < 0) ? null : new Date(result);
+    }
+
+    /** Whether the entity has changed at or after the given time, or might have (if its changes were not tracked then). */
+    public static boolean isChangedSince(Entity entity, long since) {
+        EntityManagementSupport support = support(entity);
+        return support.getChangeTrackingStartTime() >= since || support.getLastChangeTime() >= since;
+    }
+
+    /** Whether the attribute has changed at or after the given time, or might have (if its changes were not tracked then). */
+    public static boolean isAttributeChangedSince(Entity entity, String attributeName, long since) {
+        EntityManagementSupport support = support(entity);
+        if (support.getChangeTrackingStartTime() >= since) return true;
+        if (support.getLastChangeTime() < since) return false;
+        Long changeTime = support.getAttributeChangeTime(attributeName);
+        return changeTime != null && changeTime >= since;
+    }
+
+    /**
+     * Parses a {@code since} parameter, as UTC milliseconds, an HTTP date (as in {@code Last-Modified}),
+     * or any format accepted by {@link Time#parseCalendarMaybe(String)}; returns null if blank.
+     */
+    @Nullable
+    public static Long parseSince(@Nullable String since) {
+        if (Strings.isBlank(since)) return null;
+        since = since.trim();
+        try {
+            return Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            // fall through to parse as a date
+        }
+        SimpleDateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return httpDateFormat.parse(since).getTime();
+        } catch (ParseException e) {
+            // fall through to the more lenient formats
+        }
+        Maybe<Calendar> result = Time.parseCalendarMaybe(since);
+        if (result.isAbsent()) {
+            throw WebResourceUtils.badRequest("Invalid time '%s'", since);
+        }
+        return result.get().getTimeInMillis();
+    }
+
+    private static EntityManagementSupport support(Entity entity) {
+        return ((EntityInternal) entity).getManagementSupport();
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
+import org.apache.brooklyn.core.sensor.SensorChangeBuffer;
+import org.apache.brooklyn.core.sensor.SensorChangeBuffer.SensorChange;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+
+/**
+ * Streams of sensor changes sent to REST clients by long-polling, in server-sent event ({@code text/event-stream})
+ * framing, without holding a request thread while waiting for changes.
+ * <p>
+ * This is not a persistent event stream connection: each request for a stream is {@link AsyncResponse suspended} until there are changes to send (but no sooner
+ * than the stream's interval after the previous batch) or its timeout, and then answered with one batch of events,
+ * ending the response. The response sets the client's reconnection delay to the interval, so an {@code EventSource}
+ * reconnects with the {@code Last-Event-ID} of the batch and resumes the stream, whose changes were collected
+ * (and coalesced) meanwhile by a {@link SensorChangeBuffer}.
+ * <p>
+ * A stream which cannot be resumed (e.g. it expired because the client stayed away, or the client missed a batch)
+ * is replaced by a new one which starts with a {@code reset} event, telling the client to re-read current values.
+ */
+@Beta
+public class SensorChangeStreams {
+
+    private static final Logger log = LoggerFactory.getLogger(SensorChangeStreams.class);
+
+    private static final ConfigKey<SensorChangeStreams> STREAMS = ConfigKeys.newConfigKey(SensorChangeStreams.class,
+            "brooklyn.rest.sensorChangeStreams");
+
+    /** How long a stream is kept for a client to reconnect, beyond the stream's interval, before it expires. */
+    public static final Duration EXPIRY_GRACE = Duration.THIRTY_SECONDS;
+
+    private static final Duration EXPIRY_PERIOD = Duration.TEN_SECONDS;
+
+    private static final Object CREATION_LOCK = new Object();
+
+    /** The streams for the given management context, created on first use. */
+    public static SensorChangeStreams get(ManagementContext mgmt) {
+        checkNotNull(mgmt, "mgmt");
+        synchronized (CREATION_LOCK) {
+            SensorChangeStreams streams = mgmt.getScratchpad().get(STREAMS);
+            if (streams == null) {
+                streams = new SensorChangeStreams(mgmt);
+                mgmt.getScratchpad().put(STREAMS, streams);
+            }
+            return streams;
+        }
+    }
+
+    private final ManagementContext mgmt;
+    private final Map<String, SensorChangeStream> streams = new ConcurrentHashMap<String, SensorChangeStream>();
+
+    /** Expires streams periodically while there are any, and closes them once the management context terminates. */
+    // guarded by streams
+    private ScheduledTask expiryTask;
+
+    @VisibleForTesting
+    SensorChangeStreams(ManagementContext mgmt) {
+        this.mgmt = mgmt;
+    }
+
+    private void startExpiryIfNecessary() {
+        synchronized (streams) {
+            if (expiryTask != null || streams.isEmpty()) return;
+            expiryTask = newExpiryTask(EXPIRY_PERIOD);
+            mgmt.getExecutionManager().submit(expiryTask);
+        }
+    }
+
+    private void stopExpiryIfDone() {
+        synchronized (streams) {
+            if (expiryTask != null && (streams.isEmpty() || !mgmt.isRunning())) {
+                expiryTask.cancel(false);
+                expiryTask = null;
+            }
+        }
+    }
+
+    private ScheduledTask newExpiryTask(Duration period) {
+        Callable<Task<?>> expiryTaskFactory = new Callable<Task<?>>() {
+            @Override public Task<Void> call() {
+                return Tasks.<Void>builder().dynamic(false).tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                    .displayName("sensor change stream expiry").body(new Callable<Void>() {
+                    @Override public Void call() {
+                        try {
+                            if (mgmt.isRunning()) {
+                                expire(System.currentTimeMillis());
+                            } else {
+                                close();
+                            }
+                        } catch (Exception e) {
+                            // don't rethrow, as the scheduled task would then not run again
+                            log.warn("Problem expiring sensor change streams", e);
+                        }
+                        return null;
+                    }}).build();
+            }
+        };
+        return new ScheduledTask(
+                MutableMap.of("displayName", "scheduled[sensor change stream expiry]"), expiryTaskFactory)
+                .period(period)
+                .delay(period);
+    }
+
+    /**
+     * The stream with the given last event ID, if the client can resume it: it has not expired, and was opened
+     * by the same user with the same parameters; otherwise null.
+     */
+    @Nullable
+    public SensorChangeStream find(@Nullable String lastEventId, String parameters, @Nullable EntitlementContext entitlementContext) {
+        if (lastEventId == null) return null;
+        int separator = lastEventId.lastIndexOf('-');
+        if (separator < 0) return null;
+        SensorChangeStream stream = streams.get(lastEventId.substring(0, separator));
+        if (stream == null || !stream.parameters.equals(parameters) || !Objects.equal(user(stream.entitlementContext), user(entitlementContext))) {
+            return null;
+        }
+        return stream.markActive() ? stream : null;
+    }
+
+    /**
+     * Opens a stream of the changes collected by the given buffer, which the stream closes when it expires.
+     *
+     * @param reset  whether the client is reconnecting to a stream which could not be resumed, so should be sent a {@code reset} event
+     * @param parameters  the stream's parameters, which a client must repeat to resume it
+     * @param valueRenderer  renders a change's value for the client, on the thread sending it
+     */
+    public SensorChangeStream open(SensorChangeBuffer buffer, boolean reset, String parameters, @Nullable EntitlementContext entitlementContext,
+            Duration interval, ObjectMapper mapper, Function<? super SensorChange, ?> valueRenderer) {
+        SensorChangeStream stream = new SensorChangeStream(buffer, reset, parameters, entitlementContext, interval, mapper, valueRenderer);
+        streams.put(stream.id, stream);
+        buffer.setChangeListener(stream.changeListener);
+        startExpiryIfNecessary();
+        return stream;
+    }
+
+    /** Closes the streams no client has asked for since their interval and the {@link #EXPIRY_GRACE}. */
+    @VisibleForTesting
+    void expire(long now) {
+        for (SensorChangeStream stream : streams.values()) {
+            if (stream.expireIfIdle(now)) {
+                streams.remove(stream.id);
+                log.debug("Expired {}", stream);
+            }
+        }
+        stopExpiryIfDone();
+    }
+
+    /** Closes all streams, e.g. as the management context has terminated, and stops expiring them. */
+    public void close() {
+        for (SensorChangeStream stream : streams.values()) {
+            stream.close();
+            streams.remove(stream.id);
+        }
+        synchronized (streams) {
+            if (expiryTask != null) {
+                expiryTask.cancel(false);
+                expiryTask = null;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int size() {
+        return streams.size();
+    }
+
+    @Nullable
+    private static String user(@Nullable EntitlementContext entitlementContext) {
+        return (entitlementContext == null) ? null : entitlementContext.user();
+    }
+
+    /** A client's stream of changes, sent over a series of requests. */
+    public class SensorChangeStream {
+        private final String id = Identifiers.makeRandomId(8);
+        private final SensorChangeBuffer buffer;
+        private final String parameters;
+        @Nullable private final EntitlementContext entitlementContext;
+        private final Duration interval;
+        private final ObjectMapper mapper;
+        private final Function<? super SensorChange, ?> valueRenderer;
+        private final Runnable changeListener = new Runnable() {
+            @Override
+            public void run() {
+                onChange();
+            }
+        };
+
+        // guarded by this
+        private long sequence;
+        private long discardedReported;
+        private boolean resetPending;
+        private long lastSentTime;
+        private long lastActiveTime;
+        private Duration waitTimeout = Duration.ZERO;
+        private AsyncResponse waiting;
+        private boolean sendScheduled;
+        private boolean closed;
+
+        private SensorChangeStream(SensorChangeBuffer buffer, boolean reset, String parameters, @Nullable EntitlementContext entitlementContext,
+                Duration interval, ObjectMapper mapper, Function<? super SensorChange, ?> valueRenderer) {
+            this.buffer = checkNotNull(buffer, "buffer");
+            this.parameters = checkNotNull(parameters, "parameters");
+            this.entitlementContext = entitlementContext;
+            this.interval = checkNotNull(interval, "interval");
+            this.mapper = checkNotNull(mapper, "mapper");
+            this.valueRenderer = checkNotNull(valueRenderer, "valueRenderer");
+            this.resetPending = reset;
+            this.lastActiveTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Answers the response with the next batch of events: at once for a new stream (so the client learns its ID)
+         * or if changes are due, otherwise when changes come in, or with no events after the timeout.
+         *
+         * @param lastEventId  the last event the client received, so it missed a batch if that was not the latest
+         */
+        public void send(final AsyncResponse response, @Nullable String lastEventId, Duration timeout) {
+            AsyncResponse superseded;
+            long delay = -1;
+            synchronized (this) {
+                if (sequence > 0 && !eventId(sequence).equals(lastEventId)) {
+                    resetPending = true;
+                }
+                superseded = waiting;
+                waiting = response;
+                waitTimeout = timeout;
+                lastActiveTime = System.currentTimeMillis();
+                if (sequence == 0 || resetPending || hasChanges()) {
+                    delay = Math.max(0, lastSentTime + interval.toMilliseconds() - lastActiveTime);
+                }
+            }
+            if (superseded != null) {
+                // the client gave up on the earlier request; answer it to free it, though the client will not see it
+                superseded.cancel();
+            }
+            // only once the response is waiting, so that a timeout finds it there and answers it
+            response.setTimeoutHandler(new TimeoutHandler() {
+                @Override
+                public void handleTimeout(AsyncResponse asyncResponse) {
+                    sendTo(asyncResponse);
+                }
+            });
+            response.setTimeout(timeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+            if (delay == 0) {
+                sendTo(response);
+            } else if (delay > 0) {
+                scheduleSend(delay);
+            }
+        }
+
+        private void onChange() {
+            long delay;
+            synchronized (this) {
+                if (waiting == null || sendScheduled || closed) return;
+                delay = Math.max(0, lastSentTime + interval.toMilliseconds() - System.currentTimeMillis());
+            }
+            scheduleSend(delay);
+        }
+
+        private void scheduleSend(long delay) {
+            synchronized (this) {
+                if (sendScheduled) return;
+                sendScheduled = true;
+            }
+            Callable<Task<?>> sendTaskFactory = new Callable<Task<?>>() {
+                @Override public Task<Void> call() {
+                    return Tasks.<Void>builder().dynamic(false).tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                        .displayName("sending sensor changes").body(new Runnable() {
+                        @Override public void run() {
+                            AsyncResponse response;
+                            synchronized (SensorChangeStream.this) {
+                                sendScheduled = false;
+                                response = waiting;
+                            }
+                            if (response != null) sendTo(response);
+                        }}).build();
+                }
+            };
+            mgmt.getExecutionManager().submit(new ScheduledTask(
+                    MutableMap.of("displayName", "scheduled[sending sensor changes]"), sendTaskFactory)
+                    .delay(Duration.millis(delay)));
+        }
+
+        /** Answers the response if it is still the one waiting; the response is resumed outside the lock, as it has its own. */
+        private void sendTo(AsyncResponse response) {
+            String events;
+            try {
+                synchronized (this) {
+                    if (waiting != response) return;
+                    waiting = null;
+                    lastSentTime = lastActiveTime = System.currentTimeMillis();
+                    events = takeEvents();
+                }
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                log.warn("Problem sending sensor changes for "+this+" (rethrowing to client)", e);
+                response.resume(e);
+                return;
+            }
+            response.resume(Response.ok(events, "text/event-stream").header("Cache-Control", "no-cache").build());
+        }
+
+        private String takeEvents() throws Exception {
+            long previousSequence = sequence;
+            StringBuilder events = new StringBuilder();
+            events.append("retry: ").append(interval.toMilliseconds()).append("\n\n");
+            if (resetPending) {
+                appendEvent(events, "reset", id);
+                resetPending = false;
+            }
+            for (SensorChange change : buffer.take(Duration.ZERO)) {
+                Entity entity = change.getEntity();
+                String sensorName = change.getSensor().getName();
+                if (!mgmt.getEntitlementManager().isEntitled(entitlementContext, Entitlements.SEE_ENTITY, entity)
+                        || !mgmt.getEntitlementManager().isEntitled(entitlementContext, Entitlements.SEE_SENSOR, new EntityAndItem<String>(entity, sensorName))) {
+                    continue;
+                }
+                appendEvent(events, "sensor", mapper.writeValueAsString(MutableMap.<String, Object>of(
+                        "entityId", entity.getId(), "sensor", sensorName, "value", valueRenderer.apply(change), "timestamp", change.getTimestamp())));
+            }
+            long discarded = buffer.getDiscardedCount();
+            if (discarded > discardedReported) {
+                appendEvent(events, "discarded", Long.toString(discarded - discardedReported));
+                discardedReported = discarded;
+            }
+            if (sequence == previousSequence) {
+                // no events, but the client still needs the ID to resume the stream
+                events.append("id: ").append(eventId(++sequence)).append("\n\n");
+            }
+            return events.toString();
+        }
+
+        private void appendEvent(StringBuilder events, String event, String data) {
+            events.append("id: ").append(eventId(++sequence)).append("\nevent: ").append(event).append("\ndata: ").append(data).append("\n\n");
+        }
+
+        private String eventId(long n) {
+            return id+"-"+n;
+        }
+
+        private boolean hasChanges() {
+            return buffer.hasChanges() || buffer.getDiscardedCount() > discardedReported;
+        }
+
+        private synchronized boolean markActive() {
+            if (closed) return false;
+            lastActiveTime = System.currentTimeMillis();
+            return true;
+        }
+
+        private boolean expireIfIdle(long now) {
+            synchronized (this) {
+                long idle = interval.toMilliseconds() + EXPIRY_GRACE.toMilliseconds() + (waiting == null ? 0 : waitTimeout.toMilliseconds());
+                if (closed || now - lastActiveTime <= idle) return false;
+            }
+            return close();
+        }
+
+        private boolean close() {
+            AsyncResponse abandoned;
+            synchronized (this) {
+                if (closed) return false;
+                closed = true;
+                abandoned = waiting;
+                waiting = null;
+            }
+            buffer.close();
+            if (abandoned != null) abandoned.cancel();
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "SensorChangeStream["+id+"]";
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.rest.transform.TaskTransformer;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Time;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.Beta;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+/**
+ * A page of tasks, most recently submitted first, selected from any number of candidate tasks
+ * (e.g. a live view of the execution manager's tasks with a tag) while holding only the page in memory;
+ * the page's {@link #toResponse(UriBuilder, UriBuilder, ObjectMapper) response} streams each task's summary
+ * as it is written, rather than building the list of summaries first.
+ * <p>
+ * Pages are continued with a cursor, which identifies the last task in the previous page
+ * by its submit time and ID, so tasks submitted (or removed) between requests do not shift later pages.
+ */
+@Beta
+public class TaskPage {
+
+    /** most recently submitted first, then by ID so the order is total */
+    private static final Comparator<Task<?>> ORDER = new Comparator<Task<?>>() {
+        @Override
+        public int compare(Task<?> t1, Task<?> t2) {
+            return compareKeys(t1.getSubmitTimeUtc(), t1.getId(), t2.getSubmitTimeUtc(), t2.getId());
+        }
+    };
+
+    private static int compareKeys(long submitTime1, String id1, long submitTime2, String id2) {
+        if (submitTime1 != submitTime2) return submitTime1 > submitTime2 ? -1 : 1;
+        return id1.compareTo(id2);
+    }
+
+    private final List<Task<?>> tasks;
+    private final String nextCursor;
+
+    protected TaskPage(List<Task<?>> tasks, @Nullable String nextCursor) {
+        this.tasks = tasks;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Selects the first tasks in the page order which match the filter and come after the cursor (if given),
+     * up to the limit (or all if the limit is negative).
+     */
+    public static TaskPage select(Iterator<Task<?>> candidates, Predicate<? super Task<?>> filter, @Nullable String cursor, int limit) {
+        Iterator<Task<?>> matching = Iterators.filter(candidates, Predicates.and(filter, afterCursor(cursor)));
+        if (limit < 0) {
+            List<Task<?>> tasks = Lists.newArrayList(matching);
+            Collections.sort(tasks, ORDER);
+            return new TaskPage(tasks, null);
+        }
+        // leastOf keeps only the limit, rather than all of the candidates, in memory
+        List<Task<?>> tasks = Ordering.from(ORDER).leastOf(matching, limit);
+        String nextCursor = (limit > 0 && tasks.size() == limit) ? toCursor(tasks.get(tasks.size()-1)) : null;
+        return new TaskPage(tasks, nextCursor);
+    }
+
+    /**
+     * Returns a filter for tasks with the given tag (compared as a string), status and submit time range,
+     * where each is ignored if null or empty; the status is one of
+     * {@code submitted}, {@code running}, {@code done}, {@code succeeded}, {@code failed} or {@code cancelled}.
+     */
+    public static Predicate<Task<?>> filter(@Nullable String tag, @Nullable String status, @Nullable String submittedAfter, @Nullable String submittedBefore) {
+        List<Predicate<? super Task<?>>> result = Lists.newArrayList();
+        if (Strings.isNonBlank(tag)) result.add(hasTag(tag));
+        if (Strings.isNonBlank(status)) result.add(hasStatus(status));
+        if (Strings.isNonBlank(submittedAfter) || Strings.isNonBlank(submittedBefore)) {
+            result.add(submittedBetween(parseTime(submittedAfter, Long.MIN_VALUE), parseTime(submittedBefore, Long.MAX_VALUE)));
+        }
+        return Predicates.and(result);
+    }
+
+    public List<Task<?>> getTasks() {
+        return tasks;
+    }
+
+    /** The cursor for the next page, or null if there are no more tasks. */
+    @Nullable
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Returns a response which streams the summaries of the tasks as a JSON list, with a {@code next} link
+     * (the given URI with the cursor query parameter set) if there may be more tasks.
+     */
+    public Response toResponse(UriBuilder requestUri, final UriBuilder baseUri, final ObjectMapper mapper) {
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                JsonGenerator generator = mapper.getFactory().createGenerator(out);
+                generator.writeStartArray();
+                for (Task<?> task : tasks) {
+                    mapper.writeValue(generator, TaskTransformer.taskSummary(task, baseUri));
+                }
+                generator.writeEndArray();
+                generator.flush();
+            }
+        };
+        Response.ResponseBuilder result = Response.ok(output, MediaType.APPLICATION_JSON_TYPE);
+        if (nextCursor != null) {
+            result.link(requestUri.replaceQueryParam("cursor", nextCursor).build(), "next");
+        }
+        return result.build();
+    }
+
+    private static String toCursor(Task<?> task) {
+        return task.getSubmitTimeUtc()+"-"+task.getId();
+    }
+
+    private static Predicate<Task<?>> afterCursor(@Nullable String cursor) {
+        if (Strings.isBlank(cursor)) return Predicates.alwaysTrue();
+        int separator = cursor.indexOf('-', 1);
+        final long submitTime;
+        try {
+            submitTime = Long.parseLong(cursor.substring(0, Math.max(separator, 0)));
+        } catch (NumberFormatException e) {
+            throw WebResourceUtils.badRequest("Invalid cursor '%s'", cursor);
+        }
+        final String id = cursor.substring(separator+1);
+        return new Predicate<Task<?>>() {
+            @Override
+            public boolean apply(Task<?> input) {
+                return compareKeys(input.getSubmitTimeUtc(), input.getId(), submitTime, id) > 0;
+            }
+        };
+    }
+
+    private static Predicate<Task<?>> hasTag(final String tag) {
+        return new Predicate<Task<?>>() {
+            @Override
+            public boolean apply(Task<?> input) {
+                for (Object t : input.getTags()) {
+                    if (t != null && tag.equals(t.toString())) return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static Predicate<Task<?>> hasStatus(String status) {
+        final String s = status.trim().toLowerCase();
+        if (!s.equals("submitted") && !s.equals("running") && !s.equals("done") &&
+                !s.equals("succeeded") && !s.equals("failed") && !s.equals("cancelled")) {
+            throw WebResourceUtils.badRequest("Invalid task status '%s'; must be one of submitted, running, done, succeeded, failed or cancelled", status);
+        }
+        return new Predicate<Task<?>>() {
+            @Override
+            public boolean apply(Task<?> input) {
+                switch (s) {
+                case "submitted": return input.isSubmitted() && !input.isBegun();
+                case "running": return input.isBegun() && !input.isDone();
+                case "done": return input.isDone();
+                case "succeeded": return input.isDone() && !input.isError();
+                case "failed": return input.isDone() && input.isError() && !input.isCancelled();
+                default: return input.isCancelled();
+                }
+            }
+        };
+    }
+
+    private static Predicate<Task<?>> submittedBetween(final long fromInclusive, final long toExclusive) {
+        return new Predicate<Task<?>>() {
+            @Override
+            public boolean apply(Task<?> input) {
+                long submitTime = input.getSubmitTimeUtc();
+                return submitTime >= 0 && submitTime >= fromInclusive && submitTime < toExclusive;
+            }
+        };
+    }
+
+    private static long parseTime(@Nullable String time, long defaultValue) {
+        if (Strings.isBlank(time)) return defaultValue;
+        Maybe<Calendar> result = Time.parseCalendarMaybe(time);
+        if (result.isAbsent()) {
+            throw WebResourceUtils.badRequest("Invalid time '%s'", time);
+        }
+        return result.get().getTimeInMillis();
+    }
+}
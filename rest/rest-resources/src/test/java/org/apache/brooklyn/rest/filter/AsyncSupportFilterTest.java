@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.filter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import javax.ws.rs.core.Response;
+
+import org.apache.brooklyn.api.entity.Application;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.entity.stock.BasicApplication;
+import org.apache.brooklyn.rest.resources.ApplicationResource;
+import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
+import org.testng.annotations.Test;
+
+public class AsyncSupportFilterTest extends BrooklynRestResourceTest {
+
+    @Override
+    protected void addBrooklynResources() {
+        addResource(new AsyncSupportFilter() {
+            @Override
+            protected boolean isAsyncSupported() {
+                return false;
+            }
+        });
+        addResource(new ApplicationResource());
+    }
+
+    @Test
+    public void testRejectsSuspendedRequestsWhenAsyncUnsupported() {
+        Application application = getManagementContext().getEntityManager().createEntity(
+                EntitySpec.create(BasicApplication.class).displayName("stream-app"));
+        try {
+            Response response = client().path("/applications/"+application.getId()+"/descendants/sensors/stream").get();
+            assertEquals(response.getStatus(), 501);
+            String body = response.readEntity(String.class);
+            assertTrue(body.contains("async request support"), body);
+
+            // requests which are not suspended are unaffected
+            assertEquals(client().path("/applications/"+application.getId()).get().getStatus(), 200);
+        } finally {
+            Entities.unmanage(application);
+        }
+    }
+
+}
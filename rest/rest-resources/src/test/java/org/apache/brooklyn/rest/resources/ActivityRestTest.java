@@ -21,9 +21,11 @@ package org.apache.brooklyn.rest.resources;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeoutException;
 
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Link;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -32,6 +34,10 @@ import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.TaskAdaptable;
+import org.apache.brooklyn.core.effector.AddEffector;
+import org.apache.brooklyn.core.effector.EffectorTasks.EffectorTaskFactory;
+import org.apache.brooklyn.core.effector.Effectors;
 import org.apache.brooklyn.core.effector.SampleManyTasksEffector;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.EntityManagementUtils;
@@ -42,12 +48,14 @@ import org.apache.brooklyn.rest.domain.TaskSummary;
 import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.http.HttpAsserts;
 import org.apache.brooklyn.util.time.CountdownTimer;
 import org.apache.brooklyn.util.time.Duration;
+import org.apache.cxf.jaxrs.client.WebClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -55,6 +63,7 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
 /** Tests {@link ActivityResource} and activity methods on {@link EntityResource} */
@@ -276,6 +285,128 @@ Task[eatand]@J90TKfIX: Waiting on Task[eat-sleep-rave-repeat]@QPa5o4kF
         Assert.assertFalse(tasksContain(tasks, leaf), "tasks should not have included leaf "+leaf+"; was "+tasks);
     }
 
+    @Test
+    public void testGetEntityActivitiesPaged() throws Exception {
+        Task<?> t = invokeQuickEffectorWithDescendants();
+        String path = "/applications/"+entity.getApplicationId()+"/entities/"+entity.getId()+"/activities";
+        
+        Response response = client().path(path).query("limit", -1).accept(MediaType.APPLICATION_JSON).get();
+        assertHealthy(response);
+        List<String> allIds = idsOf(response.readEntity(new GenericType<List<TaskSummary>>() {}));
+        
+        List<String> pagedIds = readAllPages(path+"/page", 3, null);
+        Assert.assertEquals(MutableSet.copyOf(pagedIds).size(), pagedIds.size(), "pages should not overlap; were "+pagedIds);
+        Assert.assertEquals(MutableSet.copyOf(pagedIds), MutableSet.copyOf(allIds));
+        
+        response = client().path(path+"/page").query("status", "done").query("tag", "EFFECTOR").query("limit", -1)
+            .accept(MediaType.APPLICATION_JSON)
+            .get();
+        assertHealthy(response);
+        Assert.assertNull(response.getLink("next"));
+        List<TaskSummary> tasks = response.readEntity(new GenericType<List<TaskSummary>>() {});
+        Assert.assertTrue(tasksContain(tasks, t), "tasks should have included effector "+t+"; was "+tasks);
+        for (TaskSummary task : tasks) {
+            Assert.assertNotNull(task.getEndTimeUtc(), "task should be done: "+task);
+            Assert.assertTrue(task.getRawTags().contains("EFFECTOR"), "task should be tagged: "+task);
+        }
+        
+        response = client().path(path+"/page").query("submittedAfter", System.currentTimeMillis()+60*1000)
+            .accept(MediaType.APPLICATION_JSON)
+            .get();
+        assertHealthy(response);
+        Assert.assertEquals(response.readEntity(new GenericType<List<TaskSummary>>() {}), ImmutableList.of());
+        
+        response = client().path(path+"/page").query("status", "sleepy").accept(MediaType.APPLICATION_JSON).get();
+        Assert.assertEquals(response.getStatus(), 400);
+    }
+    
+    @Test
+    public void testGetActivitiesChildrenPaged() throws Exception {
+        Task<?> t = invokeQuickEffectorWithDescendants();
+        
+        Response response = client().path("/activities/"+t.getId()+"/children/recurse")
+            .query("limit", -1)
+            .accept(MediaType.APPLICATION_JSON)
+            .get();
+        assertHealthy(response);
+        Map<String,TaskSummary> all = response.readEntity(new GenericType<Map<String,TaskSummary>>() {});
+        // 3 branches of 4 leaves each
+        Assert.assertTrue(all.size() >= 15, "descendants="+all.keySet());
+        
+        List<String> pagedIds = readAllPages("/activities/"+t.getId()+"/children/recurse/page", 2, null);
+        Assert.assertEquals(MutableSet.copyOf(pagedIds).size(), pagedIds.size(), "pages should not overlap; were "+pagedIds);
+        Assert.assertEquals(MutableSet.copyOf(pagedIds), all.keySet());
+        
+        List<String> childIds = readAllPages("/activities/"+t.getId()+"/children/recurse/page", 2, 1);
+        List<String> expectedChildIds = MutableList.of();
+        for (Task<?> child : children(t)) {
+            expectedChildIds.add(child.getId());
+        }
+        Assert.assertEquals(MutableSet.copyOf(childIds), MutableSet.copyOf(expectedChildIds));
+    }
+    
+    /**
+     * Invokes an effector with a few children and grandchildren which all complete quickly, and waits for it,
+     * so that its tasks do not change while they are paged through (unlike those of the sample effector).
+     */
+    private Task<?> invokeQuickEffectorWithDescendants() throws Exception {
+        Effector<String> quick = Effectors.effector(String.class, "quick").impl(new EffectorTaskFactory<String>() {
+            @Override
+            public TaskAdaptable<String> newTask(Entity entity, Effector<String> effector, ConfigBag parameters) {
+                List<Task<Object>> branches = MutableList.of();
+                for (int i = 0; i < 3; i++) {
+                    List<Task<Object>> leaves = MutableList.of();
+                    for (int j = 0; j < 4; j++) {
+                        leaves.add(Tasks.builder().displayName("leaf").body(new Callable<Object>() {
+                            @Override
+                            public Object call() {
+                                return "leaf";
+                            }
+                        }).build());
+                    }
+                    branches.add(Tasks.builder().displayName("branch").addAll(leaves).build());
+                }
+                return Tasks.<String>builder().displayName("quick").addAll(branches).build();
+            }
+        }).build();
+        new AddEffector(quick).apply((org.apache.brooklyn.api.entity.EntityLocal) entity);
+        Task<?> result = entity.invoke(quick, null);
+        result.get(Duration.ONE_MINUTE);
+        return result;
+    }
+
+    /** reads each page in turn, following the cursor in the 'next' link, and returns the IDs of all tasks */
+    private List<String> readAllPages(String path, int limit, Integer maxDepth) {
+        List<String> result = MutableList.of();
+        String cursor = null;
+        do {
+            WebClient client = client().path(path).query("limit", limit);
+            if (maxDepth != null) client.query("maxDepth", maxDepth);
+            if (cursor != null) client.query("cursor", cursor);
+            Response response = client.accept(MediaType.APPLICATION_JSON).get();
+            assertHealthy(response);
+            List<TaskSummary> page = response.readEntity(new GenericType<List<TaskSummary>>() {});
+            Assert.assertTrue(page.size() <= limit, "page="+page);
+            result.addAll(idsOf(page));
+            
+            Link next = response.getLink("next");
+            cursor = null;
+            if (next != null) {
+                cursor = next.getUri().getQuery().replaceAll(".*cursor=([^&]*).*", "$1");
+                Assert.assertEquals(page.size(), limit, "page="+page+"; next="+next);
+            }
+        } while (cursor != null);
+        return result;
+    }
+    
+    private static List<String> idsOf(List<TaskSummary> tasks) {
+        List<String> result = MutableList.of();
+        for (TaskSummary task : tasks) {
+            result.add(task.getId());
+        }
+        return result;
+    }
+
     private void assertHealthy(Response response) {
         if (!HttpAsserts.isHealthyStatusCode(response.getStatus())) {
             Asserts.fail("Bad response: "+response.getStatus()+" "+response.readEntity(String.class));
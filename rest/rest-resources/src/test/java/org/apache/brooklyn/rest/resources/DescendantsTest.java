@@ -19,27 +19,38 @@
 package org.apache.brooklyn.rest.resources;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.entity.stock.BasicApplication;
+import org.apache.brooklyn.entity.stock.BasicEntity;
 import org.apache.brooklyn.rest.domain.ApplicationSpec;
 import org.apache.brooklyn.rest.domain.EntitySpec;
 import org.apache.brooklyn.rest.domain.EntitySummary;
 import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
 import org.apache.brooklyn.rest.testing.mocks.RestMockSimpleEntity;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import javax.ws.rs.core.GenericType;
@@ -124,5 +135,72 @@ public class DescendantsTest extends BrooklynRestResourceTest {
             .get(new GenericType<Map<String,Object>>() {});
         assertEquals(sensors.size(), 0);
     }
-    
+
+    @Test
+    public void testStreamDescendantsSensorChanges() throws Exception {
+        final AttributeSensor<Long> foo = Sensors.newLongSensor("foo");
+        final Application application = getManagementContext().getEntityManager().createEntity(
+                org.apache.brooklyn.api.entity.EntitySpec.create(BasicApplication.class).displayName("stream-app"));
+        try {
+            final String path = "/applications/"+application.getId()+"/descendants/sensors/stream";
+
+            // a new stream is answered at once, with the ID to resume it
+            Response response = client().path(path).query("sensor", "foo").query("interval", "10ms").get();
+            assertEquals(response.getStatus(), 200);
+            assertEquals(response.getMediaType().toString(), "text/event-stream");
+            String events = response.readEntity(String.class);
+            assertFalse(events.contains("event: "), events);
+
+            // with no changes, the request waits until its timeout
+            events = client().path(path).query("sensor", "foo").query("interval", "10ms").query("timeout", "100ms")
+                    .header("Last-Event-ID", lastEventId(events)).get(String.class);
+            assertFalse(events.contains("event: "), events);
+
+            // a waiting request is answered when there is a change
+            Future<Response> waiting = client().path(path).query("sensor", "foo").query("interval", "10ms").query("timeout", "1m")
+                    .header("Last-Event-ID", lastEventId(events)).async().get();
+            application.sensors().set(foo, 1L);
+            events = waiting.get(Asserts.DEFAULT_LONG_TIMEOUT.toMilliseconds(), TimeUnit.MILLISECONDS).readEntity(String.class);
+            assertTrue(events.contains("event: sensor\ndata: {\"entityId\":\""+application.getId()+"\",\"sensor\":\"foo\",\"value\":1,"), events);
+
+            // including for children added since the stream was opened
+            final Entity child = application.addChild(org.apache.brooklyn.api.entity.EntitySpec.create(BasicEntity.class));
+            final AtomicReference<String> lastEventId = new AtomicReference<String>(lastEventId(events));
+            Asserts.succeedsEventually(new Runnable() {
+                @Override
+                public void run() {
+                    child.sensors().set(foo, 2L);
+                    String events = client().path(path).query("sensor", "foo").query("interval", "10ms").query("timeout", "100ms")
+                            .header("Last-Event-ID", lastEventId.get()).get(String.class);
+                    lastEventId.set(lastEventId(events));
+                    assertFalse(events.contains("event: reset"), events);
+                    assertTrue(events.contains("\"entityId\":\""+child.getId()+"\""), events);
+                }});
+        } finally {
+            Entities.unmanage(application);
+        }
+    }
+
+    @Test
+    public void testStreamDescendantsSensorChangesResetsUnknownStream() throws Exception {
+        Application application = getManagementContext().getEntityManager().createEntity(
+                org.apache.brooklyn.api.entity.EntitySpec.create(BasicApplication.class).displayName("stream-app"));
+        try {
+            String events = client().path("/applications/"+application.getId()+"/descendants/sensors/stream")
+                    .header("Last-Event-ID", "unknown-1").get(String.class);
+            assertTrue(events.contains("event: reset"), events);
+        } finally {
+            Entities.unmanage(application);
+        }
+    }
+
+    private static String lastEventId(String events) {
+        String result = null;
+        for (String line : Splitter.on('\n').split(events)) {
+            if (line.startsWith("id: ")) result = line.substring("id: ".length());
+        }
+        assertNotNull(result, "no event ID in "+events);
+        return result;
+    }
+
 }
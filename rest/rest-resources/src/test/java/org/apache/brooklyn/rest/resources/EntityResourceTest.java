@@ -19,28 +19,36 @@
 package org.apache.brooklyn.rest.resources;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.entity.stock.BasicApplication;
 import org.apache.brooklyn.entity.stock.BasicEntity;
 import org.apache.brooklyn.rest.domain.ApplicationSpec;
 import org.apache.brooklyn.rest.domain.EntitySpec;
+import org.apache.brooklyn.rest.domain.EntitySummary;
 import org.apache.brooklyn.rest.domain.TaskSummary;
 import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
 import org.apache.brooklyn.rest.testing.mocks.RestMockSimpleEntity;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.http.HttpAsserts;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -51,8 +59,10 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 import javax.ws.rs.core.Response;
 
 @Test(singleThreaded = true,
@@ -126,6 +136,68 @@ public class EntityResourceTest extends BrooklynRestResourceTest {
         assertEquals(data.trim(), yaml.trim());
     }
     
+    @Test
+    public void testGetConditional() throws Exception {
+        Response response = client().path(entityEndpoint).get();
+        assertEquals(response.getStatus(), 200);
+        String etag = response.getHeaderString("ETag");
+        assertNotNull(etag);
+        assertNotNull(response.getHeaderString("Last-Modified"));
+
+        response = client().path(entityEndpoint).header("If-None-Match", etag).get();
+        assertEquals(response.getStatus(), 304);
+
+        entity.sensors().set(Sensors.newStringSensor("testGetConditional"), "changed");
+        response = client().path(entityEndpoint).header("If-None-Match", etag).get();
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeaderString("ETag"), etag);
+        assertEquals(response.readEntity(EntitySummary.class).getId(), entity.getId());
+    }
+
+    @Test
+    public void testFetchConditionalAndSince() throws Exception {
+        Response response = client().path("/applications/fetch").get();
+        assertEquals(response.getStatus(), 200);
+        String etag = response.getHeaderString("ETag");
+        assertNotNull(etag);
+        String lastModified = response.getHeaderString("Last-Modified");
+        assertNotNull(lastModified);
+
+        response = client().path("/applications/fetch").header("If-None-Match", etag).get();
+        assertEquals(response.getStatus(), 304);
+
+        // the parameters select what is returned, so are part of the tag
+        response = client().path("/applications/fetch").query("items", entity.getId()).header("If-None-Match", etag).get();
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeaderString("ETag"), etag);
+
+        // nothing has changed after a time in the future
+        long future = System.currentTimeMillis() + Duration.ONE_DAY.toMilliseconds();
+        response = client().path("/applications/fetch").query("since", future).get();
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.readEntity(new GenericType<List<Map<String, Object>>>() {}), ImmutableList.of());
+        String emptyEtag = response.getHeaderString("ETag");
+        assertNotEquals(emptyEtag, etag);
+        response = client().path("/applications/fetch").query("since", future).header("If-None-Match", emptyEtag).get();
+        assertEquals(response.getStatus(), 304);
+
+        // a change to the entity is reported with its application, since the previous response
+        entity.sensors().set(Sensors.newStringSensor("testFetchConditionalAndSince"), "changed");
+        response = client().path("/applications/fetch").query("since", lastModified).get();
+        assertEquals(response.getStatus(), 200);
+        // read as maps, as EntityDetail's children do not deserialize as EntitySummary
+        List<Map<String, Object>> changed = response.readEntity(new GenericType<List<Map<String, Object>>>() {});
+        Set<Object> changedIds = Sets.newHashSet();
+        for (Map<String, Object> detail : changed) {
+            changedIds.add(detail.get("id"));
+        }
+        assertTrue(changedIds.contains(entity.getApplicationId()), "changed="+changedIds);
+
+        response = client().path("/applications/fetch").header("If-None-Match", etag).get();
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeaderString("ETag"), etag);
+    }
+
     @Test
     public void testTagsSanity() throws Exception {
         entity.tags().addTag("foo");
@@ -19,6 +19,8 @@
 package org.apache.brooklyn.rest.resources;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
 
 import java.io.InputStream;
 import java.util.Map;
@@ -153,6 +155,67 @@ public class SensorResourceTest extends BrooklynRestResourceTest {
         }
     }
 
+    @Test
+    public void testBatchSensorReadConditionalAndSince() throws Exception {
+        AttributeSensor<String> sensor = Sensors.newStringSensor("amphibian.name");
+        entity.sensors().set(sensor, "frog");
+
+        Response response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(response.getStatus(), 200);
+        String etag = response.getHeaderString("ETag");
+        assertNotNull(etag);
+        assertNotNull(response.getHeaderString("Last-Modified"));
+
+        response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .header("If-None-Match", etag)
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(response.getStatus(), 304);
+
+        // the parameters select what is returned, so are part of the tag
+        response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .query("raw", "true")
+                .header("If-None-Match", etag)
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeaderString("ETag"), etag);
+        response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .query("since", System.currentTimeMillis())
+                .header("If-None-Match", etag)
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeaderString("ETag"), etag);
+
+        long beforeChange = System.currentTimeMillis();
+        entity.sensors().set(sensor, "toad");
+        response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .header("If-None-Match", etag)
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeaderString("ETag"), etag);
+        assertNotNull(response.getHeaderString("Last-Modified"));
+
+        // attribute changes are tracked from the first request for the entity's tag, so only the later change is known
+        response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .query("since", beforeChange)
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        Map<String, ?> changed = response.readEntity(new GenericType<Map<String,?>>(Map.class) {});
+        assertEquals(changed.get("amphibian.name"), "toad");
+
+        response = client().path(SENSORS_ENDPOINT + "/current-state")
+                .query("since", System.currentTimeMillis() + Duration.ONE_DAY.toMilliseconds())
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        changed = response.readEntity(new GenericType<Map<String,?>>(Map.class) {});
+        assertEquals(changed, ImmutableMap.of());
+    }
+
     protected Response doSensorTest(Boolean raw, MediaType acceptsType, Object expectedValue) {
         return doSensorTestUntyped(
             raw==null ? null : (""+raw).toLowerCase(), 
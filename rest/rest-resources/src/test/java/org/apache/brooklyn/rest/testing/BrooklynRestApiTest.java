@@ -32,6 +32,8 @@ import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
 import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
 import org.apache.brooklyn.rest.BrooklynRestApi;
+import org.apache.brooklyn.rest.filter.AsyncSupportFilter;
+import org.apache.brooklyn.rest.filter.EntityTagFilter;
 import org.apache.brooklyn.rest.util.BrooklynRestResourceUtils;
 import org.apache.brooklyn.rest.util.ManagementContextProvider;
 import org.apache.brooklyn.rest.util.ShutdownHandlerProvider;
@@ -187,6 +189,8 @@ public abstract class BrooklynRestApiTest {
     protected void addDefaultResources() {
         addResource(new ShutdownHandlerProvider(shutdownListener));
         addResource(new ManagementContextProvider(getManagementContext()));
+        addResource(new EntityTagFilter());
+        addResource(new AsyncSupportFilter());
     }
 
 
@@ -51,6 +51,8 @@ public class RestApiSetup {
         servlet.getBus().getInFaultInterceptors().add(new GZIPInInterceptor());
         servlet.getBus().getOutInterceptors().add(new GZIPOutInterceptor());
         final ServletHolder servletHolder = new ServletHolder(servlet);
+        // for resources which suspend requests, e.g. streaming sensor changes
+        servletHolder.setAsyncSupported(true);
 
         context.addServlet(servletHolder, "/v1/*");
     }
@@ -62,7 +64,8 @@ public class RestApiSetup {
 
     public static void installServletFilters(ServletContextHandler context, Collection<Class<? extends Filter>> filters) {
         for (Class<? extends Filter> filter : filters) {
-            context.addFilter(filter, "/*", EnumSet.allOf(DispatcherType.class));
+            // async, as the requests they filter may be suspended
+            context.addFilter(filter, "/*", EnumSet.allOf(DispatcherType.class)).setAsyncSupported(true);
         }
     }
 
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.collections;
+
+import java.util.NoSuchElementException;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A sequence of timestamped numeric values, oldest first, held in growable ring buffers of primitives
+ * (so adding a value, or reading or {@link #removeOldest(int) removing} values, does not allocate),
+ * for time windows of recent values such as rolling averages.
+ * <p>
+ * Values are expected to be added in timestamp order, as when recording events as they happen;
+ * expired values are {@link #countBefore(long) found} and removed from the start of the buffer, in amortized O(1) per value.
+ * <p>
+ * {@link Double#NaN} can be used to record the absence of a value (e.g. a null sensor value);
+ * see {@link #toNumber(double)}.
+ * <p>
+ * Not thread-safe: like {@link java.util.ArrayDeque}, callers which share an instance between threads must synchronize.
+ */
+@Beta
+public class TimeSeriesBuffer {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    private long[] timestamps;
+    private double[] values;
+    /** index of the oldest value */
+    private int head;
+    private int size;
+
+    public TimeSeriesBuffer() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public TimeSeriesBuffer(int initialCapacity) {
+        if (initialCapacity < 1) throw new IllegalArgumentException("Initial capacity must be positive, but was "+initialCapacity);
+        timestamps = new long[initialCapacity];
+        values = new double[initialCapacity];
+    }
+
+    /** Returns the value as a {@link Double}, or null if it is {@link Double#NaN} (i.e. recorded as absent). */
+    public static Double toNumber(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /** Returns the number's value, or {@link Double#NaN} if it is null. */
+    public static double fromNumber(Number value) {
+        return (value == null) ? Double.NaN : value.doubleValue();
+    }
+
+    public void add(long timestamp, double value) {
+        if (size == timestamps.length) grow();
+        int index = physicalIndex(size);
+        timestamps[index] = timestamp;
+        values[index] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** The timestamp of the i'th value, where 0 is the oldest. */
+    public long getTimestamp(int i) {
+        return timestamps[physicalIndex(checkIndex(i))];
+    }
+
+    /** The i'th value, where 0 is the oldest. */
+    public double getValue(int i) {
+        return values[physicalIndex(checkIndex(i))];
+    }
+
+    public long getLatestTimestamp() {
+        if (size == 0) throw new NoSuchElementException();
+        return getTimestamp(size-1);
+    }
+
+    public double getLatestValue() {
+        if (size == 0) throw new NoSuchElementException();
+        return getValue(size-1);
+    }
+
+    /** Removes the given number of oldest values (or all, if there are fewer). */
+    public void removeOldest(int count) {
+        int n = Math.min(count, size);
+        if (n <= 0) return;
+        head = (head + n) % timestamps.length;
+        size -= n;
+        if (size == 0) head = 0;
+    }
+
+    /**
+     * Returns the number of values at the start of the buffer with timestamps before the given time
+     * (i.e. stopping at the first value which is not before that time), so which have expired for a window starting then.
+     */
+    public int countBefore(long time) {
+        int count = 0;
+        while (count < size && getTimestamp(count) < time) {
+            count++;
+        }
+        return count;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index "+i+", size "+size);
+        return i;
+    }
+
+    private int physicalIndex(int i) {
+        int result = head + i;
+        return (result < timestamps.length) ? result : result - timestamps.length;
+    }
+
+    private void grow() {
+        int newCapacity = timestamps.length * 2;
+        long[] newTimestamps = new long[newCapacity];
+        double[] newValues = new double[newCapacity];
+        // copy in order, so the oldest is at index 0
+        int firstPart = Math.min(size, timestamps.length - head);
+        System.arraycopy(timestamps, head, newTimestamps, 0, firstPart);
+        System.arraycopy(values, head, newValues, 0, firstPart);
+        System.arraycopy(timestamps, 0, newTimestamps, firstPart, size - firstPart);
+        System.arraycopy(values, 0, newValues, firstPart, size - firstPart);
+        timestamps = newTimestamps;
+        values = newValues;
+        head = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) result.append(", ");
+            result.append(getValue(i)).append("@").append(getTimestamp(i));
+        }
+        return result.append("]").toString();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.http.executor;
+
+import com.google.common.annotations.Beta;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * An {@link HttpExecutor} which can also send a request without blocking the caller,
+ * so that many requests can be in flight without holding a thread for each.
+ */
+@Beta
+public interface AsyncHttpExecutor extends HttpExecutor {
+
+    /**
+     * Sends the request, returning a future which is completed with the response once it has been received in full.
+     * <p>
+     * The future is completed by one of the executor's I/O threads, so listeners which do more than a little work
+     * should be given an executor of their own. Cancelling the future aborts the request.
+     * The response's content is held in memory, so need not be closed.
+     *
+     * @throws RuntimeException (and subclasses) if an unexpected error occurs creating the request;
+     *         problems talking to the server (i.e. {@link java.io.IOException}s) fail the returned future instead.
+     */
+    ListenableFuture<HttpResponse> executeAsync(HttpRequest request);
+}
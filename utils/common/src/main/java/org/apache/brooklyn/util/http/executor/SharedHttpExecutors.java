@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.http.executor;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.util.http.executor.apacheclient.PooledHttpExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Holds a {@link PooledHttpExecutor} shared by everything in a management context
+ * (in particular by HttpFeed), so that connections to each host are re-used, and the number of connections
+ * and of I/O threads is bounded, however many entities are polling.
+ * <p>
+ * Configured in brooklyn.properties: {@link #ENABLED} enables it for feeds, and the executor's
+ * {@link #SETTINGS settings} are given by properties with the prefix {@link #PREFIX}
+ * (e.g. {@code brooklyn.http.sharedExecutor.maxConnectionsPerHost}).
+ */
+@Beta
+public class SharedHttpExecutors implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedHttpExecutors.class);
+
+    /** whether HTTP feeds (unless given their own executor) use the shared executor, rather than opening a new connection for each request */
+    public static final String ENABLED = "brooklyn.http.sharedExecutor";
+
+    public static final String PREFIX = ENABLED+".";
+
+    /** the names (after {@link #PREFIX}) of the properties passed to {@link PooledHttpExecutor#PooledHttpExecutor(Map)} */
+    public static final List<String> SETTINGS = ImmutableList.of(
+            PooledHttpExecutor.MAX_CONNECTIONS,
+            PooledHttpExecutor.MAX_CONNECTIONS_PER_HOST,
+            PooledHttpExecutor.KEEP_ALIVE,
+            PooledHttpExecutor.CONNECTION_TIMEOUT,
+            PooledHttpExecutor.SOCKET_TIMEOUT,
+            PooledHttpExecutor.IO_THREADS);
+
+    private final Object lock = new Object();
+    private PooledHttpExecutor executor;
+
+    /**
+     * Returns the shared executor, creating it if necessary
+     * with the given settings (keyed by the names in {@link #SETTINGS}, without the prefix).
+     */
+    public PooledHttpExecutor get(Map<String, ?> settings) {
+        synchronized (lock) {
+            if (executor == null) {
+                executor = new PooledHttpExecutor(settings);
+                LOG.debug("Created shared HTTP executor: "+executor);
+            }
+            return executor;
+        }
+    }
+
+    /** Closes the shared executor, if one was created; a subsequent {@link #get(Map)} creates a new one. */
+    @Override
+    public void close() {
+        PooledHttpExecutor toClose;
+        synchronized (lock) {
+            toClose = executor;
+            executor = null;
+        }
+        if (toClose != null) toClose.close();
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.http.executor.apacheclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.http.HttpTool;
+import org.apache.brooklyn.util.http.HttpToolResponse;
+import org.apache.brooklyn.util.http.executor.AsyncHttpExecutor;
+import org.apache.brooklyn.util.http.executor.HttpConfig;
+import org.apache.brooklyn.util.http.executor.HttpExecutor;
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.http.executor.HttpResponse;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.ProtocolException;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.RedirectStrategy;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultRedirectStrategy;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A non-blocking {@link HttpExecutor} intended to be shared, e.g. by all the feeds of a management context.
+ * Requests are sent and their responses read by a few I/O threads (see {@link Builder#ioThreads(int)}),
+ * so {@link #executeAsync(HttpRequest)} holds no thread while a request is in flight,
+ * however many requests there are.
+ * <p>
+ * Connections are kept open (up to {@link Builder#maxConnections(int) maxConnections} in total,
+ * and {@link Builder#maxConnectionsPerHost(int) maxConnectionsPerHost} to each host)
+ * and re-used for subsequent requests, rather than opening a new connection for every request
+ * as {@link HttpExecutorImpl} does; requests wait for a free connection when at the limit.
+ * <p>
+ * A separate client, with its own connection pool and I/O threads, is used for each of the trust settings
+ * in {@link HttpConfig}, as that is part of how connections are established; there are at most four.
+ * Must be {@link #close() closed} when no longer required.
+ */
+@Beta
+public class PooledHttpExecutor implements AsyncHttpExecutor, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PooledHttpExecutor.class);
+
+    public static final String MAX_CONNECTIONS = "maxConnections";
+    public static final String MAX_CONNECTIONS_PER_HOST = "maxConnectionsPerHost";
+    public static final String KEEP_ALIVE = "keepAlive";
+    public static final String CONNECTION_TIMEOUT = "connectionTimeout";
+    public static final String SOCKET_TIMEOUT = "socketTimeout";
+    public static final String IO_THREADS = "ioThreads";
+
+    /** context attribute telling the {@link PerRequestRedirectStrategy} whether to follow redirects laxly */
+    private static final String LAX_REDIRECT_ATTRIBUTE = PooledHttpExecutor.class.getName()+".laxRedirect";
+
+    private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+
+    private static final HttpConfig DEFAULT_CONFIG = HttpConfig.builder()
+            .laxRedirect(false)
+            .trustAll(false)
+            .trustSelfSigned(false)
+            .build();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int maxConnections = 200;
+        private int maxConnectionsPerHost = 10;
+        private Duration keepAlive = Duration.seconds(30);
+        private Duration connectionTimeout = Duration.seconds(30);
+        private Duration socketTimeout = Duration.seconds(30);
+        private int ioThreads = 2;
+
+        /** the maximum number of connections open at once, to all hosts (default 200) */
+        public Builder maxConnections(int val) {
+            this.maxConnections = val;
+            return this;
+        }
+        /** the maximum number of connections open at once to any one host and port (default 10) */
+        public Builder maxConnectionsPerHost(int val) {
+            this.maxConnectionsPerHost = val;
+            return this;
+        }
+        /** how long an idle connection is kept open, unless the server says otherwise (default 30s) */
+        public Builder keepAlive(Duration val) {
+            this.keepAlive = val;
+            return this;
+        }
+        /** how long to wait to connect, and for a free connection when at the limit (default 30s) */
+        public Builder connectionTimeout(Duration val) {
+            this.connectionTimeout = val;
+            return this;
+        }
+        /** how long to wait for data from the server (default 30s) */
+        public Builder socketTimeout(Duration val) {
+            this.socketTimeout = val;
+            return this;
+        }
+        /** the number of threads doing I/O for each trust setting in use (default 2) */
+        public Builder ioThreads(int val) {
+            this.ioThreads = val;
+            return this;
+        }
+        public PooledHttpExecutor build() {
+            return new PooledHttpExecutor(this);
+        }
+    }
+
+    private final int maxConnections;
+    private final int maxConnectionsPerHost;
+    private final Duration keepAlive;
+    private final Duration connectionTimeout;
+    private final Duration socketTimeout;
+    private final int ioThreads;
+    private final RequestConfig requestConfig;
+    private final ThreadFactory threadFactory;
+
+    // keyed by trustAll, trustSelfSigned; guarded by clients for writes
+    private final ConcurrentMap<List<Boolean>, CloseableHttpAsyncClient> clients = new ConcurrentHashMap<List<Boolean>, CloseableHttpAsyncClient>();
+    private final ConcurrentMap<List<Boolean>, PoolingNHttpClientConnectionManager> connectionManagers = new ConcurrentHashMap<List<Boolean>, PoolingNHttpClientConnectionManager>();
+    private volatile boolean closed;
+
+    /**
+     * For use by {@link org.apache.brooklyn.util.executor.HttpExecutorFactoryImpl},
+     * taking the values of the {@link Builder} from the given properties (e.g. {@link #MAX_CONNECTIONS}), where set.
+     */
+    public PooledHttpExecutor(Map<?, ?> props) {
+        this(fromProps(props));
+    }
+
+    protected PooledHttpExecutor(Builder builder) {
+        this.maxConnections = builder.maxConnections;
+        this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+        this.keepAlive = builder.keepAlive;
+        this.connectionTimeout = builder.connectionTimeout;
+        this.socketTimeout = builder.socketTimeout;
+        this.ioThreads = builder.ioThreads;
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(toMillisInt(builder.connectionTimeout))
+                .setConnectionRequestTimeout(toMillisInt(builder.connectionTimeout))
+                .setSocketTimeout(toMillisInt(builder.socketTimeout))
+                .build();
+        this.threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-http-io-%d")
+                .setDaemon(true)
+                .build();
+    }
+
+    private static Builder fromProps(Map<?, ?> props) {
+        Builder result = builder();
+        if (props.get(MAX_CONNECTIONS) != null) result.maxConnections(Integer.parseInt(props.get(MAX_CONNECTIONS).toString()));
+        if (props.get(MAX_CONNECTIONS_PER_HOST) != null) result.maxConnectionsPerHost(Integer.parseInt(props.get(MAX_CONNECTIONS_PER_HOST).toString()));
+        if (props.get(KEEP_ALIVE) != null) result.keepAlive(Duration.of(props.get(KEEP_ALIVE)));
+        if (props.get(CONNECTION_TIMEOUT) != null) result.connectionTimeout(Duration.of(props.get(CONNECTION_TIMEOUT)));
+        if (props.get(SOCKET_TIMEOUT) != null) result.socketTimeout(Duration.of(props.get(SOCKET_TIMEOUT)));
+        if (props.get(IO_THREADS) != null) result.ioThreads(Integer.parseInt(props.get(IO_THREADS).toString()));
+        return result;
+    }
+
+    private static int toMillisInt(Duration val) {
+        long millis = val.toMilliseconds();
+        if (millis > Integer.MAX_VALUE) throw new IllegalArgumentException("HttpClient only accepts upto max-int millis for timeouts, but given "+val);
+        return (int) millis;
+    }
+
+    /** Sends the request and waits for its response; see {@link #executeAsync(HttpRequest)} to send it without waiting. */
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        ListenableFuture<HttpResponse> future = executeAsync(request);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw Exceptions.propagate(e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+
+    @Override
+    public ListenableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        if (closed) throw new IllegalStateException("HTTP executor "+this+" has been closed");
+        HttpConfig config = (request.config() != null) ? request.config() : DEFAULT_CONFIG;
+        CloseableHttpAsyncClient client = getClient(config);
+
+        HttpRequestBase httpRequest = newRequest(request);
+        httpRequest.setConfig(requestConfig);
+
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(LAX_REDIRECT_ATTRIBUTE, config.laxRedirect());
+        if (request.credentials() != null) {
+            URI uri = request.uri();
+            BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider.setCredentials(new AuthScope(uri.getHost(), uri.getPort()),
+                    new UsernamePasswordCredentials(request.credentials().getUser(), request.credentials().getPassword()));
+            context.setCredentialsProvider(credentialsProvider);
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final SettableFuture<HttpResponse> result = SettableFuture.create();
+        // the response's content is read into memory before this is called, and its connection returned to the pool
+        final Future<org.apache.http.HttpResponse> inFlight = client.execute(httpRequest, context, new FutureCallback<org.apache.http.HttpResponse>() {
+            @Override
+            public void completed(org.apache.http.HttpResponse response) {
+                try {
+                    result.set(new HttpResponseWrapper(new HttpToolResponse(response, startTime)));
+                } catch (Throwable t) {
+                    result.setException(t);
+                }
+            }
+            @Override
+            public void failed(Exception e) {
+                result.setException(e);
+            }
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (result.isCancelled()) inFlight.cancel(true);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    protected HttpRequestBase newRequest(HttpRequest request) {
+        switch (request.method().toUpperCase()) {
+        case HttpExecutor.GET:
+            return new HttpTool.HttpGetBuilder(request.uri()).headers(request.headers()).build();
+        case HttpExecutor.HEAD:
+            return new HttpTool.HttpHeadBuilder(request.uri()).headers(request.headers()).build();
+        case HttpExecutor.POST:
+            return new HttpTool.HttpPostBuilder(request.uri()).headers(request.headers()).body(orEmpty(request.body())).build();
+        case HttpExecutor.PUT:
+            return new HttpTool.HttpPutBuilder(request.uri()).headers(request.headers()).body(orEmpty(request.body())).build();
+        case HttpExecutor.DELETE:
+            return new HttpTool.HttpDeleteBuilder(request.uri()).headers(request.headers()).build();
+        default:
+            throw new IllegalArgumentException("Unsupported method '"+request.method()+"' for URI "+request.uri());
+        }
+    }
+
+    protected byte[] orEmpty(byte[] val) {
+        return (val != null) ? val : EMPTY_BYTE_ARRAY;
+    }
+
+    protected CloseableHttpAsyncClient getClient(HttpConfig config) {
+        List<Boolean> key = MutableList.of(config.trustAll(), config.trustSelfSigned());
+        CloseableHttpAsyncClient result = clients.get(key);
+        if (result == null) {
+            synchronized (clients) {
+                if (closed) throw new IllegalStateException("HTTP executor "+this+" has been closed");
+                result = clients.get(key);
+                if (result == null) {
+                    PoolingNHttpClientConnectionManager connectionManager = newConnectionManager(config);
+                    result = HttpAsyncClients.custom()
+                            .setConnectionManager(connectionManager)
+                            .setKeepAliveStrategy(newKeepAliveStrategy())
+                            .setRedirectStrategy(new PerRequestRedirectStrategy())
+                            .setDefaultRequestConfig(requestConfig)
+                            .setThreadFactory(threadFactory)
+                            .build();
+                    result.start();
+                    connectionManagers.put(key, connectionManager);
+                    clients.put(key, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    protected PoolingNHttpClientConnectionManager newConnectionManager(HttpConfig config) {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setConnectTimeout(toMillisInt(connectionTimeout))
+                .setSoTimeout(toMillisInt(socketTimeout))
+                .build();
+        PoolingNHttpClientConnectionManager result;
+        try {
+            result = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig, threadFactory),
+                    newSessionStrategyRegistry(config));
+        } catch (IOReactorException e) {
+            throw Exceptions.propagate(e);
+        }
+        result.setMaxTotal(maxConnections);
+        result.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        return result;
+    }
+
+    protected Registry<SchemeIOSessionStrategy> newSessionStrategyRegistry(HttpConfig config) {
+        SSLIOSessionStrategy sslStrategy;
+        try {
+            if (config.trustAll()) {
+                SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(null, new HttpTool.TrustAllStrategy()).build();
+                sslStrategy = new SSLIOSessionStrategy(sslContext, NoopHostnameVerifier.INSTANCE);
+            } else if (config.trustSelfSigned()) {
+                SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(null, new TrustSelfSignedStrategy()).build();
+                sslStrategy = new SSLIOSessionStrategy(sslContext, NoopHostnameVerifier.INSTANCE);
+            } else {
+                sslStrategy = SSLIOSessionStrategy.getDefaultStrategy();
+            }
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+        return RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", sslStrategy)
+                .build();
+    }
+
+    /** uses the server's keep-alive timeout where given, otherwise (rather than forever) {@link Builder#keepAlive(Duration)} */
+    protected ConnectionKeepAliveStrategy newKeepAliveStrategy() {
+        final long keepAliveMillis = keepAlive.toMilliseconds();
+        return new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(org.apache.http.HttpResponse response, HttpContext context) {
+                long result = response.containsHeader(HTTP.CONN_KEEP_ALIVE) ? super.getKeepAliveDuration(response, context) : -1;
+                return (result > 0) ? Math.min(result, keepAliveMillis) : keepAliveMillis;
+            }
+        };
+    }
+
+    /**
+     * Follows redirects as {@link LaxRedirectStrategy} does if the request's {@link HttpConfig#laxRedirect()} is set,
+     * otherwise as {@link DefaultRedirectStrategy}; so that one client can serve both.
+     */
+    private static class PerRequestRedirectStrategy implements RedirectStrategy {
+        @Override
+        public boolean isRedirected(org.apache.http.HttpRequest request, org.apache.http.HttpResponse response, HttpContext context) throws ProtocolException {
+            return delegate(context).isRedirected(request, response, context);
+        }
+        @Override
+        public HttpUriRequest getRedirect(org.apache.http.HttpRequest request, org.apache.http.HttpResponse response, HttpContext context) throws ProtocolException {
+            return delegate(context).getRedirect(request, response, context);
+        }
+        private RedirectStrategy delegate(HttpContext context) {
+            return Boolean.TRUE.equals(context.getAttribute(LAX_REDIRECT_ATTRIBUTE)) ? LaxRedirectStrategy.INSTANCE : DefaultRedirectStrategy.INSTANCE;
+        }
+    }
+
+    /** Closes idle connections, and any which have passed their keep-alive time; done by the pool before re-using a connection, but can be called periodically to release resources sooner. */
+    public void closeIdleConnections() {
+        for (PoolingNHttpClientConnectionManager connectionManager : connectionManagers.values()) {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(keepAlive.toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** The number of connections in each pool which are leased (in use) and available (idle), and of requests waiting for one, for monitoring. */
+    public String getPoolStats() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<List<Boolean>, PoolingNHttpClientConnectionManager> entry : connectionManagers.entrySet()) {
+            if (result.length() > 0) result.append("; ");
+            result.append("trustAll="+entry.getKey().get(0)+",trustSelfSigned="+entry.getKey().get(1)+": "+entry.getValue().getTotalStats());
+        }
+        return result.toString();
+    }
+
+    /** Aborts any requests in flight, and closes the connections and stops the I/O threads. */
+    @Override
+    public void close() {
+        synchronized (clients) {
+            closed = true;
+            for (CloseableHttpAsyncClient client : clients.values()) {
+                try {
+                    // also shuts down its connection manager
+                    client.close();
+                } catch (IOException e) {
+                    LOG.debug("Error closing HTTP client (continuing): "+e);
+                }
+            }
+            clients.clear();
+            connectionManagers.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"[maxConnections="+maxConnections+"; maxConnectionsPerHost="+maxConnectionsPerHost+"; keepAlive="+keepAlive+"; ioThreads="+ioThreads+"]";
+    }
+}
@@ -40,6 +40,8 @@ public interface TryCoercer {
      *       other fallbacks fail).
      *   <li>present - coercion successful.
      * </ul>
+     * Whether null is returned should depend only on the class of the input and the type, 
+     * as {@link TypeCoercerExtensible} will not try this coercer again for that class and type.
      */
     <T> Maybe<T> tryCoerce(Object input, TypeToken<T> type);
 }
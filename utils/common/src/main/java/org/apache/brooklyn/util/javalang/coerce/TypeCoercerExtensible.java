@@ -25,6 +25,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
@@ -39,6 +41,7 @@ import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -64,6 +67,9 @@ import com.google.common.reflect.TypeToken;
  * <li> {@link Date} -- parses using {@link Time#parseDate(String)}
  * <li> {@link Duration} -- parses using {@link Duration#parse(String)}
  * </ul>
+ * <p>
+ * The generic coercers and registry adapters which apply for a given source class and target type
+ * are cached (including where none apply), until another adapter is registered.
  */
 public class TypeCoercerExtensible implements TypeCoercer {
 
@@ -92,6 +98,58 @@ public class TypeCoercerExtensible implements TypeCoercer {
     /** Store the generic coercers. */
     private final List<TryCoercer> genericCoercers = Lists.newCopyOnWriteArrayList();
 
+    /** Max number of {@link CoercionPath paths} to cache, after which the cache is cleared (so that it is
+     * bounded even if classes are loaded dynamically, e.g. from bundles). */
+    private static final int MAX_CACHED_PATHS = 10000;
+
+    /** The {@link CoercionPath paths} for types coerced, by source class and target type; a new map is set
+     * whenever an adapter is registered, so coercions in progress cannot put stale paths in to it. */
+    private volatile ConcurrentMap<CoercionKey, CoercionPath> paths = new ConcurrentHashMap<CoercionKey, CoercionPath>();
+
+    private static final class CoercionKey {
+        final Class<?> sourceType;
+        final TypeToken<?> targetType;
+        
+        CoercionKey(Class<?> sourceType, TypeToken<?> targetType) {
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31*sourceType.hashCode() + targetType.hashCode();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CoercionKey)) return false;
+            CoercionKey other = (CoercionKey) obj;
+            return sourceType.equals(other.sourceType) && targetType.equals(other.targetType);
+        }
+    }
+
+    /**
+     * What to try when coercing from a given class to a given type: the generic coercers which may apply
+     * (those which have returned null for this pair are dropped, as they are expected to do so for any
+     * value of the class, see {@link TryCoercer}), and the registry adapters whose source type the class
+     * is assignable to. If both are empty the coercion is known to fail.
+     */
+    private static final class CoercionPath {
+        final List<TryCoercer> genericCoercers;
+        final List<Map.Entry<Class<?>, Function<?,?>>> adapters;
+        
+        CoercionPath(List<TryCoercer> genericCoercers, List<Map.Entry<Class<?>, Function<?,?>>> adapters) {
+            this.genericCoercers = genericCoercers;
+            this.adapters = adapters;
+        }
+        
+        CoercionPath withoutGenericCoercers(Collection<TryCoercer> notApplicable) {
+            List<TryCoercer> remaining = Lists.newArrayList(genericCoercers);
+            remaining.removeAll(notApplicable);
+            return new CoercionPath(ImmutableList.copyOf(remaining), adapters);
+        }
+    }
+
     @Override
     public <T> T coerce(Object value, Class<T> targetType) {
         return coerce(value, TypeToken.of(targetType));
@@ -154,11 +212,27 @@ public class TypeCoercerExtensible implements TypeCoercer {
         
         if (targetType.isInstance(value)) return Maybe.of( (T) value );
 
-        for (TryCoercer coercer : genericCoercers) {
+        ConcurrentMap<CoercionKey, CoercionPath> paths = this.paths;
+        CoercionKey key = new CoercionKey(value.getClass(), targetTypeToken);
+        CoercionPath path = paths.get(key);
+        if (path==null) path = newPath(paths, key);
+
+        List<TryCoercer> notApplicable = null;
+        for (TryCoercer coercer : path.genericCoercers) {
             result = coercer.tryCoerce(value, targetTypeToken);
-            if (result!=null && result.isPresent()) return result;
-            if (result!=null && firstError==null) firstError = result;
+            if (result==null) {
+                if (notApplicable==null) notApplicable = Lists.newArrayList();
+                notApplicable.add(coercer);
+                continue;
+            }
+            if (result.isPresent()) break;
+            if (firstError==null) firstError = result;
+        }
+        if (notApplicable!=null) {
+            // if another thread has changed the path, leave it; this one will be narrowed next time
+            paths.replace(key, path, path.withoutGenericCoercers(notApplicable));
         }
+        if (result!=null && result.isPresent()) return result;
         
         //ENHANCEMENT could look in type hierarchy of both types for a conversion method...
         
@@ -175,38 +249,33 @@ public class TypeCoercerExtensible implements TypeCoercer {
             }
         }
         
-        //now look in registry
-        synchronized (registry) {
-            Map<Class<?>, Function<?,?>> adapters = registry.row(targetType);
-            for (Map.Entry<Class<?>, Function<?,?>> entry : adapters.entrySet()) {
-                if (entry.getKey().isInstance(value)) {
-                    try {
-                        T resultT = ((Function<Object,T>)entry.getValue()).apply(value);
-                        
-                        // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
-                        // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
-                        // First check that value has changed, to avoid stack overflow!
-                        if (!Objects.equal(value, resultT) && targetTypeToken.getType() instanceof ParameterizedType) {
-                            // Could duplicate check for `result instanceof Collection` etc; but recursive call
-                            // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
-                            // and just return the result.
-                            return tryCoerce(resultT, targetTypeToken);
-                        }
-                        return Maybe.of(resultT);
-                    } catch (Exception e) {
-                        Exceptions.propagateIfFatal(e);
-                        if (log.isDebugEnabled()) {
-                            log.debug("When coercing, registry adapter "+entry+" gave error on "+value+" -> "+targetType+" "
-                                + (firstError==null ? "(rethrowing)" : "(suppressing as there is already an error)")
-                                + ": "+e, e);
-                        }
-                        if (firstError==null) {
-                            if (e instanceof ClassCoercionException) firstError = Maybe.absent(e);
-                            else firstError = Maybe.absent(new ClassCoercionException("Cannot coerce type "+value.getClass().getCanonicalName()+" to "+targetType.getCanonicalName()+" ("+value+")", e));
-                        }
-                        continue;
-                    }
+        //now look in registry (at the adapters for this source and target, found when the path was made)
+        for (Map.Entry<Class<?>, Function<?,?>> entry : path.adapters) {
+            try {
+                T resultT = ((Function<Object,T>)entry.getValue()).apply(value);
+                
+                // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
+                // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
+                // First check that value has changed, to avoid stack overflow!
+                if (!Objects.equal(value, resultT) && targetTypeToken.getType() instanceof ParameterizedType) {
+                    // Could duplicate check for `result instanceof Collection` etc; but recursive call
+                    // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
+                    // and just return the result.
+                    return tryCoerce(resultT, targetTypeToken);
+                }
+                return Maybe.of(resultT);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                if (log.isDebugEnabled()) {
+                    log.debug("When coercing, registry adapter "+entry+" gave error on "+value+" -> "+targetType+" "
+                        + (firstError==null ? "(rethrowing)" : "(suppressing as there is already an error)")
+                        + ": "+e, e);
                 }
+                if (firstError==null) {
+                    if (e instanceof ClassCoercionException) firstError = Maybe.absent(e);
+                    else firstError = Maybe.absent(new ClassCoercionException("Cannot coerce type "+value.getClass().getCanonicalName()+" to "+targetType.getCanonicalName()+" ("+value+")", e));
+                }
+                continue;
             }
         }
 
@@ -215,6 +284,21 @@ public class TypeCoercerExtensible implements TypeCoercer {
         return Maybe.absent(new ClassCoercionException("Cannot coerce type "+value.getClass().getCanonicalName()+" to "+targetType.getCanonicalName()+" ("+value+"): no adapter known"));
     }
 
+    private CoercionPath newPath(ConcurrentMap<CoercionKey, CoercionPath> paths, CoercionKey key) {
+        ImmutableList.Builder<Map.Entry<Class<?>, Function<?,?>>> adapters = ImmutableList.builder();
+        synchronized (registry) {
+            for (Map.Entry<Class<?>, Function<?,?>> entry : registry.row(key.targetType.getRawType()).entrySet()) {
+                if (entry.getKey().isAssignableFrom(key.sourceType)) {
+                    adapters.add(Maps.<Class<?>, Function<?,?>>immutableEntry(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        CoercionPath path = new CoercionPath(ImmutableList.copyOf(genericCoercers), adapters.build());
+        if (paths.size() >= MAX_CACHED_PATHS) paths.clear();
+        CoercionPath old = paths.putIfAbsent(key, path);
+        return old!=null ? old : path;
+    }
+
     @SuppressWarnings("unchecked")
     protected <T> Maybe<T> tryCoerceMap(Object value, TypeToken<T> targetTypeToken) {
         if (!(value instanceof Map) || !(Map.class.isAssignableFrom(targetTypeToken.getRawType()))) return null;
@@ -293,12 +377,18 @@ public class TypeCoercerExtensible implements TypeCoercer {
     /** Registers an adapter for use with type coercion. Returns any old adapter registered for this pair. */
     @SuppressWarnings("unchecked")
     public synchronized <A,B> Function<? super A,B> registerAdapter(Class<A> sourceType, Class<B> targetType, Function<? super A,B> fn) {
-        return (Function<? super A,B>) registry.put(targetType, sourceType, fn);
+        Function<? super A,B> old;
+        synchronized (registry) {
+            old = (Function<? super A,B>) registry.put(targetType, sourceType, fn);
+        }
+        paths = new ConcurrentHashMap<CoercionKey, CoercionPath>();
+        return old;
     }
     
     /** Registers a generic adapter for use with type coercion. */
     @Beta
     public synchronized void registerAdapter(TryCoercer fn) {
         genericCoercers.add(fn);
+        paths = new ConcurrentHashMap<CoercionKey, CoercionPath>();
     }
 }
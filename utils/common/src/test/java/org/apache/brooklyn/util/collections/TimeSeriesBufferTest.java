@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+
+import org.testng.annotations.Test;
+
+public class TimeSeriesBufferTest {
+
+    @Test
+    public void testAddAndGet() {
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer();
+        assertTrue(buffer.isEmpty());
+
+        buffer.add(10L, 1d);
+        buffer.add(20L, 2d);
+        assertEquals(buffer.size(), 2);
+        assertEquals(buffer.getTimestamp(0), 10L);
+        assertEquals(buffer.getValue(0), 1d);
+        assertEquals(buffer.getLatestTimestamp(), 20L);
+        assertEquals(buffer.getLatestValue(), 2d);
+    }
+
+    @Test
+    public void testGrowsWhenWrapped() {
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer(4);
+        for (int i = 0; i < 3; i++) {
+            buffer.add(i, i);
+        }
+        buffer.removeOldest(2);
+        // wraps around the end of the arrays, then grows
+        for (int i = 3; i < 10; i++) {
+            buffer.add(i, i);
+        }
+        assertEquals(buffer.size(), 8);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(buffer.getTimestamp(i), i+2L);
+            assertEquals(buffer.getValue(i), i+2d);
+        }
+    }
+
+    @Test
+    public void testCountBeforeAndRemoveOldest() {
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer();
+        buffer.add(10L, 1d);
+        buffer.add(20L, 2d);
+        buffer.add(30L, 3d);
+        assertEquals(buffer.countBefore(5L), 0);
+        assertEquals(buffer.countBefore(20L), 1);
+        assertEquals(buffer.countBefore(21L), 2);
+        assertEquals(buffer.countBefore(100L), 3);
+
+        buffer.removeOldest(buffer.countBefore(21L));
+        assertEquals(buffer.size(), 1);
+        assertEquals(buffer.getLatestValue(), 3d);
+
+        buffer.removeOldest(5);
+        assertTrue(buffer.isEmpty());
+        buffer.removeOldest(-1);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testNullsRecordedAsNaN() {
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer();
+        buffer.add(10L, TimeSeriesBuffer.fromNumber(null));
+        buffer.add(20L, TimeSeriesBuffer.fromNumber(2));
+        assertNull(TimeSeriesBuffer.toNumber(buffer.getValue(0)));
+        assertEquals(TimeSeriesBuffer.toNumber(buffer.getValue(1)), (Double) 2d);
+    }
+
+    @Test(expectedExceptions=IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() {
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer();
+        buffer.add(10L, 1d);
+        buffer.removeOldest(1);
+        buffer.getValue(0);
+    }
+
+    @Test(expectedExceptions=NoSuchElementException.class)
+    public void testLatestWhenEmpty() {
+        new TimeSeriesBuffer().getLatestValue();
+    }
+}
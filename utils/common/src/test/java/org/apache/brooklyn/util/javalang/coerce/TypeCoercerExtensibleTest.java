@@ -19,12 +19,15 @@
 package org.apache.brooklyn.util.javalang.coerce;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.util.guava.Maybe;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
 import com.google.common.reflect.TypeToken;
 
@@ -56,6 +59,46 @@ public class TypeCoercerExtensibleTest {
         assertEquals(coerce("abc", MyClazz.class), new MyClazz("myprefixabc"));
     }
     
+    @Test
+    public void testRegisterNewAdapterAfterFailedCoercion() {
+        coercer = TypeCoercerExtensible.newDefault();
+        assertFalse(coercer.tryCoerce("abc", MyClazz.class).isPresent());
+        
+        coercer.registerAdapter(String.class, MyClazz.class, new Function<String, MyClazz>() {
+            @Override
+            public MyClazz apply(String input) {
+                return new MyClazz("adapted"+input);
+            }
+        });
+        assertEquals(coerce("abc", MyClazz.class), new MyClazz("adaptedabc"));
+    }
+    
+    @Test
+    public void testGenericCoercerNotRetriedForTypesItDoesNotApplyTo() {
+        final AtomicInteger calls = new AtomicInteger();
+        coercer = TypeCoercerExtensible.newDefault();
+        coercer.registerAdapter(new TryCoercer() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> type) {
+                calls.incrementAndGet();
+                if (input instanceof String && type.getRawType() == MyClazz.class) {
+                    return (Maybe<T>) Maybe.of(new MyClazz("myprefix"+input));
+                } else {
+                    return null;
+                }
+            }
+        });
+        
+        assertFalse(coercer.tryCoerce(1, MyClazz.class).isPresent());
+        assertFalse(coercer.tryCoerce(2, MyClazz.class).isPresent());
+        assertEquals(calls.get(), 1);
+        
+        assertEquals(coerce("abc", MyClazz.class), new MyClazz("myprefixabc"));
+        assertEquals(coerce("def", MyClazz.class), new MyClazz("myprefixdef"));
+        assertEquals(calls.get(), 3);
+    }
+    
     public static class MyClazz {
         private final String val;
 